@@ -10,11 +10,13 @@ package org.jhotdraw.draw;
 import org.jhotdraw.draw.figure.Figure;
 import org.jhotdraw.draw.figure.AbstractAttributedCompositeFigure;
 import java.awt.font.*;
+import java.awt.geom.Rectangle2D;
 import java.io.*;
 import java.util.*;
 import javax.swing.*;
 import javax.swing.event.*;
 import javax.swing.undo.*;
+import org.jhotdraw.draw.event.FigureEvent;
 import org.jhotdraw.draw.io.InputFormat;
 import org.jhotdraw.draw.io.OutputFormat;
 import org.jhotdraw.xml.*;
@@ -33,6 +35,20 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
     private LinkedList<InputFormat> inputFormats = new LinkedList<>();
     private LinkedList<OutputFormat> outputFormats = new LinkedList<>();
     private static boolean debugMode = false;
+    private transient int bulkUpdateDepth;
+    private transient int changeTransactionDepth;
+    /**
+     * The union of the areas which have been invalidated by the children
+     * during the current change transaction, or null.
+     */
+    private transient Rectangle2D.Double transactionArea;
+    /**
+     * Whether a child has fired a figureChanged event during the current
+     * change transaction.
+     */
+    private transient boolean isTransactionFigureChanged;
+    private transient ConnectionScheduler connectionScheduler;
+    private transient ImageStore imageStore;
 
     /**
      * Creates a new instance.
@@ -87,11 +103,12 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
     @Override
     public void read(DOMInput in) throws IOException {
         in.openElement("figures");
+        ArrayList<Figure> figures = new ArrayList<>(in.getElementCount());
         for (int i = 0; i < in.getElementCount(); i++) {
-            Figure f;
-            add(f = (Figure) in.readObject(i));
+            figures.add((Figure) in.readObject(i));
         }
         in.closeElement();
+        addAll(figures);
     }
 
     @Override
@@ -152,6 +169,187 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
         return this;
     }
 
+    @Override
+    public void beginBulkUpdate() {
+        bulkUpdateDepth++;
+    }
+
+    @Override
+    public void endBulkUpdate() {
+        if (bulkUpdateDepth > 0) {
+            bulkUpdateDepth--;
+            if (bulkUpdateDepth == 0 && connectionScheduler != null) {
+                connectionScheduler.flush();
+            }
+        }
+    }
+
+    @Override
+    public boolean isBulkUpdating() {
+        return bulkUpdateDepth > 0;
+    }
+
+    @Override
+    public void beginChangeTransaction() {
+        changeTransactionDepth++;
+    }
+
+    @Override
+    public void endChangeTransaction() {
+        if (changeTransactionDepth > 0) {
+            changeTransactionDepth--;
+            if (changeTransactionDepth == 0 && transactionArea != null) {
+                Rectangle2D.Double area = transactionArea;
+                boolean isFigureChanged = isTransactionFigureChanged;
+                transactionArea = null;
+                isTransactionFigureChanged = false;
+                fireTransactionChanges(area, isFigureChanged);
+            }
+        }
+    }
+
+    @Override
+    public boolean isInChangeTransaction() {
+        return changeTransactionDepth > 0;
+    }
+
+    @Override
+    public ConnectionScheduler getConnectionScheduler() {
+        if (connectionScheduler == null) {
+            connectionScheduler = new ConnectionScheduler(this);
+        }
+        return connectionScheduler;
+    }
+
+    @Override
+    public boolean hasConnectionScheduler() {
+        return connectionScheduler != null;
+    }
+
+    @Override
+    public ImageStore getImageStore() {
+        if (imageStore == null) {
+            imageStore = new ImageStore();
+        }
+        return imageStore;
+    }
+
+    /**
+     * Informs the connection scheduler that the area of a child has changed,
+     * so that it can update the connections, whose routes pass the area.
+     *
+     * @param child The child which has been changed, added or removed.
+     * @param area The old and the new drawing area of the child.
+     */
+    protected void childAreaChanged(Figure child, Rectangle2D.Double area) {
+        if (connectionScheduler != null) {
+            connectionScheduler.areaChanged(child, area);
+        }
+    }
+
+    /**
+     * Informs the connection scheduler about the area of a child, which is
+     * going to change.
+     *
+     * @param child The child.
+     * @param area The drawing area of the child before the change.
+     */
+    protected void childAreaInvalidated(Figure child, Rectangle2D.Double area) {
+        if (connectionScheduler != null) {
+            connectionScheduler.areaInvalidated(child, area);
+        }
+    }
+
+    @Override
+    protected void fireFigureAdded(Figure f, int zIndex) {
+        childAreaChanged(f, f.getDrawingArea());
+        super.fireFigureAdded(f, zIndex);
+    }
+
+    @Override
+    protected void fireFigureRemoved(Figure f, int zIndex) {
+        childAreaChanged(f, f.getDrawingArea());
+        super.fireFigureRemoved(f, zIndex);
+    }
+
+    /**
+     * Adds an area, which has been invalidated by a child, to the current
+     * change transaction.
+     *
+     * @param area The invalidated area.
+     * @param isFigureChanged Whether the child has fired a figureChanged
+     * event.
+     */
+    protected void addToChangeTransaction(Rectangle2D.Double area, boolean isFigureChanged) {
+        if (transactionArea == null) {
+            transactionArea = (Rectangle2D.Double) area.clone();
+        } else {
+            transactionArea.add(area);
+        }
+        isTransactionFigureChanged |= isFigureChanged;
+    }
+
+    /**
+     * Fires the aggregated event at the end of a change transaction.
+     * <p>
+     * If a child has changed, this method lays out the drawing and fires a
+     * figureChanged event, like {@code EventHandler.figureChanged} does for
+     * a single child. Otherwise it fires an areaInvalidated event.
+     *
+     * @param area The union of the invalidated areas.
+     * @param isFigureChanged Whether a child has changed.
+     */
+    protected void fireTransactionChanges(Rectangle2D.Double area, boolean isFigureChanged) {
+        if (isFigureChanged) {
+            Rectangle2D.Double invalidatedArea = getDrawingArea();
+            invalidatedArea.add(area);
+            invalidate();
+            validate();
+            invalidatedArea.add(getDrawingArea());
+            fireFigureChanged(invalidatedArea);
+        } else {
+            fireAreaInvalidated(area);
+        }
+    }
+
+    @Override
+    protected EventHandler createEventHandler() {
+        return new DrawingEventHandler();
+    }
+
+    /**
+     * Handles the events of the children. Collects the invalidated areas
+     * of the children, while a change transaction is in progress.
+     */
+    protected class DrawingEventHandler extends EventHandler {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void figureChanged(FigureEvent e) {
+            if (!isChanging()) {
+                childAreaChanged(e.getFigure(), e.getInvalidatedArea());
+            }
+            if (isInChangeTransaction()) {
+                if (!isChanging()) {
+                    addToChangeTransaction(e.getInvalidatedArea(), true);
+                }
+            } else {
+                super.figureChanged(e);
+            }
+        }
+
+        @Override
+        public void areaInvalidated(FigureEvent e) {
+            childAreaInvalidated(e.getFigure(), e.getInvalidatedArea());
+            if (isInChangeTransaction()) {
+                addToChangeTransaction(e.getInvalidatedArea(), false);
+            } else {
+                super.areaInvalidated(e);
+            }
+        }
+    }
+
     /*@Override
     public Rectangle2D.Double getDrawingArea() {
         Rectangle2D.Double drawingArea;
@@ -173,6 +371,12 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
     @SuppressWarnings("unchecked")
     public AbstractDrawing clone() {
         AbstractDrawing that = (AbstractDrawing) super.clone();
+        that.bulkUpdateDepth = 0;
+        that.changeTransactionDepth = 0;
+        that.transactionArea = null;
+        that.isTransactionFigureChanged = false;
+        that.connectionScheduler = null;
+        that.imageStore = null;
         that.inputFormats = (this.inputFormats == null) ? null : (LinkedList<InputFormat>) this.inputFormats.clone();
         that.outputFormats = (this.outputFormats == null) ? null : (LinkedList<OutputFormat>) this.outputFormats.clone();
         return that;
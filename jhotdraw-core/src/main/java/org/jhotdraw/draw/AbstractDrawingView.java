@@ -109,6 +109,10 @@ public abstract class AbstractDrawingView implements DrawingView, EditableCompon
     //private double scaleFactor = 1;
     //private Point translation = new Point(0, 0);
     private int detailLevel;
+    /**
+     * The nesting depth of selection updates.
+     */
+    private int selectionUpdateDepth;
     private DrawingEditor editor;
     private JLabel emptyDrawingLabel;
     private boolean paintBackground = true;
@@ -597,6 +601,27 @@ public abstract class AbstractDrawingView implements DrawingView, EditableCompon
         }
     }
 
+    /**
+     * This view fires selection events immediately, also while a selection
+     * update is in progress.
+     */
+    @Override
+    public void beginSelectionUpdate() {
+        selectionUpdateDepth++;
+    }
+
+    @Override
+    public void endSelectionUpdate() {
+        if (selectionUpdateDepth > 0) {
+            selectionUpdateDepth--;
+        }
+    }
+
+    @Override
+    public boolean isSelectionUpdating() {
+        return selectionUpdateDepth > 0;
+    }
+
     /**
      * Selects all selectable figures.
      */
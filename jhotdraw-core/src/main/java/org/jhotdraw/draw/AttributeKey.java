@@ -8,6 +8,8 @@
 package org.jhotdraw.draw;
 
 import org.jhotdraw.draw.figure.Figure;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
 import javax.swing.undo.*;
@@ -56,6 +58,15 @@ public class AttributeKey<T> implements Serializable {
      * assignability of attribute values at runtime.
      */
     private Class<T> clazz;
+    /**
+     * The index of the key. Keys with the same key string have the same
+     * index.
+     */
+    private transient int index;
+    /**
+     * Maps key strings to indices.
+     */
+    private static final HashMap<String, Integer> INDICES = new HashMap<>();
 
     /**
      * Creates a new instance with the specified attribute key, type token class,
@@ -99,6 +110,34 @@ public class AttributeKey<T> implements Serializable {
         this.defaultValue = defaultValue;
         this.isNullValueAllowed = isNullValueAllowed;
         this.labels = (labels == null) ? ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels") : labels;
+        this.index = indexOf(key);
+    }
+
+    private static int indexOf(String key) {
+        synchronized (INDICES) {
+            Integer index = INDICES.get(key);
+            if (index == null) {
+                index = INDICES.size();
+                INDICES.put(key, index);
+            }
+            return index;
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        index = indexOf(key);
+    }
+
+    /**
+     * Returns the index of the key. Indices are assigned densely from 0 in
+     * the order in which the keys are created. Keys with the same key string
+     * have the same index.
+     *
+     * @return the index.
+     */
+    public int getIndex() {
+        return index;
     }
 
     /**
@@ -163,6 +202,9 @@ public class AttributeKey<T> implements Serializable {
      */
     @SuppressWarnings("unchecked")
     public T get(Map<AttributeKey<?>, Object> a) {
+        if (a instanceof AttributeMap) {
+            return ((AttributeMap) a).get(this);
+        }
         return a.containsKey(this) ? (T) a.get(this) : defaultValue;
     }
 
@@ -16,6 +16,7 @@ import org.jhotdraw.draw.liner.Liner;
 import org.jhotdraw.geom.Dimension2DDouble;
 import org.jhotdraw.geom.DoubleStroke;
 import org.jhotdraw.geom.Insets2D;
+import org.jhotdraw.util.LRUCache;
 import org.jhotdraw.util.ResourceBundleUtil;
 
 /**
@@ -31,6 +32,27 @@ import org.jhotdraw.util.ResourceBundleUtil;
 public class AttributeKeys {
 
     private static final ResourceBundleUtil LABELS = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
+    /**
+     * Caches the strokes returned by {@link #getStroke}, so that figures
+     * with the same stroke attributes share one stroke.
+     */
+    private static final LRUCache<StrokeKey, Stroke> STROKES = new LRUCache<>(256);
+    /**
+     * Caches the fonts returned by {@link #getFont}.
+     */
+    private static final LRUCache<FontKey, Font> FONTS = new LRUCache<>(256);
+    /**
+     * Holds the most recently used stroke for each hash bucket. This table is
+     * looked up before {@link #STROKES}, without allocating a key and without
+     * locking. Its entries are immutable, so that they can be read and
+     * replaced without synchronization.
+     */
+    private static final RecentStroke[] RECENT_STROKES = new RecentStroke[64];
+    /**
+     * Holds the most recently used font for each hash bucket, see
+     * {@link #RECENT_STROKES}.
+     */
+    private static final RecentFont[] RECENT_FONTS = new RecentFont[64];
     /**
      * Canvas fill color. The value of this attribute is a Color object. This attribute is used by a
      * Drawing object to specify the fill color of the drawing. The default value is white.
@@ -395,6 +417,19 @@ public class AttributeKeys {
         return scale != 0 ? 1.0 / scale : 1.0;
     }
 
+    /**
+     * Convenience method for computing the bounds of a figure with its
+     * TRANSFORM attribute applied.
+     */
+    public static Rectangle2D.Double getTransformedBounds(Figure f) {
+        Rectangle2D.Double r = f.getBounds();
+        if (f.get(TRANSFORM) != null) {
+            Rectangle2D rt = f.get(TRANSFORM).createTransformedShape(r).getBounds2D();
+            r = new Rectangle2D.Double(rt.getX(), rt.getY(), rt.getWidth(), rt.getHeight());
+        }
+        return r;
+    }
+
     /**
      * Convenience method for computing the total stroke width from the STROKE_WIDTH,
      * STROKE_INNER_WIDTH and STROKE_TYPE attributes.
@@ -423,53 +458,161 @@ public class AttributeKeys {
         }
     }
 
+    /**
+     * Returns the stroke for the stroke attributes of the figure. Figures
+     * with the same stroke attributes get the same stroke instance.
+     */
     public static Stroke getStroke(Figure f, double factor) {
+        StrokeType type = f.get(STROKE_TYPE);
         double strokeWidth = f.get(STROKE_WIDTH) * getGlobalValueFactor(f, factor);
+        double innerWidthFactor = f.get(STROKE_INNER_WIDTH_FACTOR);
+        int cap = f.get(STROKE_CAP);
+        int join = f.get(STROKE_JOIN);
         float miterLimit = (float) getStrokeTotalMiterLimit(f, factor);
-        double dashFactor = f.get(IS_STROKE_DASH_FACTOR) ? strokeWidth : 1d;
-        double dashPhase = f.get(STROKE_DASH_PHASE);
         double[] ddashes = f.get(STROKE_DASHES);
-        float[] dashes = null;
-        boolean isAllZeroes = true;
-        if (ddashes != null) {
-            dashes = new float[ddashes.length];
-            double dashSize = 0f;
-            for (int i = 0; i < dashes.length; i++) {
-                dashes[i] = Math.max(0f, (float) (ddashes[i] * dashFactor));
-                dashSize += dashes[i];
-                if (isAllZeroes && dashes[i] != 0) {
-                    isAllZeroes = false;
+        double dashPhase = f.get(STROKE_DASH_PHASE);
+        boolean isDashFactor = f.get(IS_STROKE_DASH_FACTOR);
+        int hash = StrokeKey.hashCode(type, strokeWidth, cap, join, miterLimit);
+        int bucket = (hash ^ (hash >>> 16)) & (RECENT_STROKES.length - 1);
+        RecentStroke recent = RECENT_STROKES[bucket];
+        if (recent != null && recent.key.matches(type, strokeWidth, innerWidthFactor, cap, join,
+                miterLimit, ddashes, dashPhase, isDashFactor)) {
+            return recent.stroke;
+        }
+        StrokeKey key = new StrokeKey(type, strokeWidth, innerWidthFactor, cap, join,
+                miterLimit, (ddashes == null) ? null : ddashes.clone(), dashPhase, isDashFactor);
+        Stroke stroke = STROKES.get(key);
+        if (stroke == null) {
+            stroke = STROKES.intern(key, key.createStroke());
+        }
+        RECENT_STROKES[bucket] = new RecentStroke(key, stroke);
+        return stroke;
+    }
+
+    private static class RecentStroke {
+
+        private final StrokeKey key;
+        private final Stroke stroke;
+
+        public RecentStroke(StrokeKey key, Stroke stroke) {
+            this.key = key;
+            this.stroke = stroke;
+        }
+    }
+
+    /**
+     * Holds the attribute values from which {@link #getStroke} creates a
+     * stroke.
+     */
+    private static class StrokeKey {
+
+        private final StrokeType type;
+        private final double strokeWidth;
+        private final double innerWidthFactor;
+        private final int cap;
+        private final int join;
+        private final float miterLimit;
+        private final double[] ddashes;
+        private final double dashPhase;
+        private final boolean isDashFactor;
+
+        public StrokeKey(StrokeType type, double strokeWidth, double innerWidthFactor, int cap, int join,
+                float miterLimit, double[] ddashes, double dashPhase, boolean isDashFactor) {
+            this.type = type;
+            this.strokeWidth = strokeWidth;
+            this.innerWidthFactor = innerWidthFactor;
+            this.cap = cap;
+            this.join = join;
+            this.miterLimit = miterLimit;
+            this.ddashes = ddashes;
+            this.dashPhase = dashPhase;
+            this.isDashFactor = isDashFactor;
+        }
+
+        public Stroke createStroke() {
+            double dashFactor = isDashFactor ? strokeWidth : 1d;
+            double dashPhase = this.dashPhase;
+            float[] dashes = null;
+            boolean isAllZeroes = true;
+            if (ddashes != null) {
+                dashes = new float[ddashes.length];
+                double dashSize = 0f;
+                for (int i = 0; i < dashes.length; i++) {
+                    dashes[i] = Math.max(0f, (float) (ddashes[i] * dashFactor));
+                    dashSize += dashes[i];
+                    if (isAllZeroes && dashes[i] != 0) {
+                        isAllZeroes = false;
+                    }
+                }
+                if (dashes.length % 2 == 1) {
+                    dashSize *= 2;
+                }
+                if (dashPhase < 0) {
+                    dashPhase = dashSize + dashPhase % dashSize;
                 }
             }
-            if (dashes.length % 2 == 1) {
-                dashSize *= 2;
+            if (isAllZeroes) {
+                // don't draw dashes, if all values are 0.
+                dashes = null;
             }
-            if (dashPhase < 0) {
-                dashPhase = dashSize + dashPhase % dashSize;
+            switch (type) {
+                case BASIC:
+                default:
+                    return new BasicStroke((float) strokeWidth,
+                            cap,
+                            join,
+                            Math.max(1, miterLimit),
+                            dashes, Math.max(0, (float) (dashPhase * dashFactor)));
+                //not reached
+                case DOUBLE:
+                    return new DoubleStroke(
+                            (float) (innerWidthFactor * strokeWidth),
+                            (float) strokeWidth,
+                            cap,
+                            join,
+                            Math.max(1, miterLimit),
+                            dashes, Math.max(0, (float) (dashPhase * dashFactor)));
+                //not reached
             }
         }
-        if (isAllZeroes) {
-            // don't draw dashes, if all values are 0.
-            dashes = null;
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof StrokeKey)) {
+                return false;
+            }
+            StrokeKey that = (StrokeKey) obj;
+            return matches(that.type, that.strokeWidth, that.innerWidthFactor, that.cap, that.join,
+                    that.miterLimit, that.ddashes, that.dashPhase, that.isDashFactor);
         }
-        switch (f.get(STROKE_TYPE)) {
-            case BASIC:
-            default:
-                return new BasicStroke((float) strokeWidth,
-                        f.get(STROKE_CAP),
-                        f.get(STROKE_JOIN),
-                        Math.max(1, miterLimit),
-                        dashes, Math.max(0, (float) (dashPhase * dashFactor)));
-            //not reached
-            case DOUBLE:
-                return new DoubleStroke(
-                        (float) (f.get(STROKE_INNER_WIDTH_FACTOR) * strokeWidth),
-                        (float) strokeWidth,
-                        f.get(STROKE_CAP),
-                        f.get(STROKE_JOIN),
-                        Math.max(1, miterLimit),
-                        dashes, Math.max(0, (float) (dashPhase * dashFactor)));
-            //not reached
+
+        /**
+         * Returns true, if this key holds the specified attribute values.
+         */
+        public boolean matches(StrokeType type, double strokeWidth, double innerWidthFactor, int cap, int join,
+                float miterLimit, double[] ddashes, double dashPhase, boolean isDashFactor) {
+            return this.type == type
+                    && this.strokeWidth == strokeWidth
+                    && this.innerWidthFactor == innerWidthFactor
+                    && this.cap == cap
+                    && this.join == join
+                    && this.miterLimit == miterLimit
+                    && this.dashPhase == dashPhase
+                    && this.isDashFactor == isDashFactor
+                    && Arrays.equals(this.ddashes, ddashes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode(type, strokeWidth, cap, join, miterLimit);
+        }
+
+        public static int hashCode(StrokeType type, double strokeWidth, int cap, int join, float miterLimit) {
+            long bits = Double.doubleToLongBits(strokeWidth);
+            int hash = (int) (bits ^ (bits >>> 32));
+            hash = hash * 31 + type.hashCode();
+            hash = hash * 31 + cap * 7 + join;
+            return hash * 31 + Float.floatToIntBits(miterLimit);
         }
     }
 
@@ -505,15 +648,88 @@ public class AttributeKeys {
         }
     }
 
+    /**
+     * Returns the font for the font attributes of the figure. Figures
+     * with the same font attributes get the same font instance.
+     */
     public static Font getFont(Figure f) {
         Font prototype = f.get(FONT_FACE);
         if (prototype == null) {
             return null;
         }
-        if (getFontStyle(f) != Font.PLAIN) {
-            return prototype.deriveFont(getFontStyle(f), f.get(FONT_SIZE).floatValue());
-        } else {
-            return prototype.deriveFont(f.get(FONT_SIZE).floatValue());
+        int style = getFontStyle(f);
+        float size = f.get(FONT_SIZE).floatValue();
+        int hash = FontKey.hashCode(prototype, style, size);
+        int bucket = (hash ^ (hash >>> 16)) & (RECENT_FONTS.length - 1);
+        RecentFont recent = RECENT_FONTS[bucket];
+        if (recent != null && recent.key.matches(prototype, style, size)) {
+            return recent.font;
+        }
+        FontKey key = new FontKey(prototype, style, size);
+        Font font = FONTS.get(key);
+        if (font == null) {
+            if (style != Font.PLAIN) {
+                font = prototype.deriveFont(style, size);
+            } else {
+                font = prototype.deriveFont(size);
+            }
+            font = FONTS.intern(key, font);
+        }
+        RECENT_FONTS[bucket] = new RecentFont(key, font);
+        return font;
+    }
+
+    private static class RecentFont {
+
+        private final FontKey key;
+        private final Font font;
+
+        public RecentFont(FontKey key, Font font) {
+            this.key = key;
+            this.font = font;
+        }
+    }
+
+    /**
+     * Holds the attribute values from which {@link #getFont} derives a font.
+     */
+    private static class FontKey {
+
+        private final Font prototype;
+        private final int style;
+        private final float size;
+
+        public FontKey(Font prototype, int style, float size) {
+            this.prototype = prototype;
+            this.style = style;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FontKey)) {
+                return false;
+            }
+            FontKey that = (FontKey) obj;
+            return matches(that.prototype, that.style, that.size);
+        }
+
+        /**
+         * Returns true, if this key holds the specified attribute values.
+         */
+        public boolean matches(Font prototype, int style, float size) {
+            return this.style == style
+                    && this.size == size
+                    && (this.prototype == prototype || this.prototype.equals(prototype));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode(prototype, style, size);
+        }
+
+        public static int hashCode(Font prototype, int style, float size) {
+            return (prototype.hashCode() * 31 + style) * 31 + Float.floatToIntBits(size);
         }
     }
 
@@ -0,0 +1,379 @@
+/*
+ * @(#)AttributeMap.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A compact map for the attributes of a figure, which supports cheap
+ * snapshots of its state.
+ * <p>
+ * The map uses the indices of the attribute keys, see
+ * {@link AttributeKey#getIndex}. A bitmap tells which keys are in the map,
+ * and the keys and values are packed into two arrays in the order of their
+ * indices. The position of a key in the arrays is the number of bits set
+ * below its index in the bitmap. Thus a look up does not need to compute a
+ * hash code, and the map uses less memory than a {@code HashMap}.
+ * <p>
+ * {@link #snapshot} returns a read-only view on the current state of the
+ * map without copying it. When the map is changed after a snapshot has been
+ * taken, the snapshot records the previous values of the changed keys.
+ * Thus the memory needed by a snapshot grows with the number of keys, which
+ * have been changed since, and not with the number of attributes.
+ * Snapshots are used as the restore data for undoing attribute changes,
+ * see {@link org.jhotdraw.draw.figure.Figure#getAttributesRestoreData}.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class AttributeMap extends AbstractMap<AttributeKey<?>, Object> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    /**
+     * Marks a key which is not in the map.
+     */
+    private static final Object ABSENT = new Object();
+    private static final long[] EMPTY_BITS = new long[0];
+    /**
+     * Bit {@code i} is set if the map contains the key with index {@code i}.
+     */
+    private transient long[] bits;
+    /**
+     * The keys in the order of their indices.
+     */
+    private transient AttributeKey<?>[] keys;
+    /**
+     * The values in the order of the indices of their keys.
+     */
+    private transient Object[] values;
+    private transient int size;
+    /**
+     * The snapshot of the current state of the map, or null.
+     */
+    private transient Snapshot tail;
+
+    /**
+     * Creates an empty map.
+     */
+    public AttributeMap() {
+        bits = EMPTY_BITS;
+        keys = new AttributeKey<?>[4];
+        values = new Object[4];
+    }
+
+    /**
+     * Creates a map with the same mappings as the specified map.
+     */
+    public AttributeMap(Map<AttributeKey<?>, Object> m) {
+        this();
+        if (m instanceof AttributeMap) {
+            AttributeMap that = (AttributeMap) m;
+            bits = that.bits.clone();
+            keys = that.keys.clone();
+            values = that.values.clone();
+            size = that.size;
+        } else {
+            putAll(m);
+        }
+    }
+
+    /**
+     * Returns the position of the key with the specified index in the
+     * arrays, or {@code -(insertion point) - 1} if the map does not contain
+     * the key.
+     */
+    private int positionOf(int index) {
+        int word = index >>> 6;
+        if (word >= bits.length) {
+            return -size - 1;
+        }
+        int position = 0;
+        for (int i = 0; i < word; i++) {
+            position += Long.bitCount(bits[i]);
+        }
+        long bit = 1L << index;
+        position += Long.bitCount(bits[word] & (bit - 1));
+        return (bits[word] & bit) != 0 ? position : -position - 1;
+    }
+
+    private int positionOf(Object key) {
+        return (key instanceof AttributeKey) ? positionOf(((AttributeKey<?>) key).getIndex()) : -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return positionOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = positionOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    /**
+     * Gets the value of the specified key, or the default value of the key
+     * if the map does not contain the key.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(AttributeKey<T> key) {
+        int i = positionOf(key.getIndex());
+        return i < 0 ? key.getDefaultValue() : (T) values[i];
+    }
+
+    @Override
+    public Object put(AttributeKey<?> key, Object value) {
+        int index = key.getIndex();
+        int i = positionOf(index);
+        if (i >= 0) {
+            Object oldValue = values[i];
+            if (tail != null) {
+                tail.record(key, oldValue);
+            }
+            keys[i] = key;
+            values[i] = value;
+            return oldValue;
+        }
+        if (tail != null) {
+            tail.record(key, ABSENT);
+        }
+        i = -i - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(values, i, values, i + 1, size - i);
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        int word = index >>> 6;
+        if (word >= bits.length) {
+            bits = Arrays.copyOf(bits, word + 1);
+        }
+        bits[word] |= 1L << index;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int i = positionOf(key);
+        if (i < 0) {
+            return null;
+        }
+        Object oldValue = values[i];
+        int index = keys[i].getIndex();
+        if (tail != null) {
+            tail.record(keys[i], oldValue);
+        }
+        size--;
+        System.arraycopy(keys, i + 1, keys, i, size - i);
+        System.arraycopy(values, i + 1, values, i, size - i);
+        keys[size] = null;
+        values[size] = null;
+        bits[index >>> 6] &= ~(1L << index);
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        if (tail != null) {
+            for (int i = 0; i < size; i++) {
+                tail.record(keys[i], values[i]);
+            }
+        }
+        Arrays.fill(bits, 0L);
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<AttributeKey<?>, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<AttributeKey<?>, Object>>() {
+            @Override
+            public Iterator<Map.Entry<AttributeKey<?>, Object>> iterator() {
+                return new Iterator<Map.Entry<AttributeKey<?>, Object>>() {
+                    private int index;
+                    private AttributeKey<?> lastKey;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size;
+                    }
+
+                    @Override
+                    public Map.Entry<AttributeKey<?>, Object> next() {
+                        if (index >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        lastKey = keys[index];
+                        Object value = values[index];
+                        index++;
+                        return new AbstractMap.SimpleImmutableEntry<AttributeKey<?>, Object>(lastKey, value);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (lastKey == null) {
+                            throw new IllegalStateException();
+                        }
+                        AttributeMap.this.remove(lastKey);
+                        lastKey = null;
+                        index--;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Writes the mappings as key value pairs, because the indices of the
+     * keys may be different when the map is read.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeObject(keys[i]);
+            out.writeObject(values[i]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        bits = EMPTY_BITS;
+        keys = new AttributeKey<?>[4];
+        values = new Object[4];
+        for (int i = 0, n = in.readInt(); i < n; i++) {
+            put((AttributeKey<?>) in.readObject(), in.readObject());
+        }
+    }
+
+    /**
+     * Returns a read-only snapshot of the current state of the map.
+     * Taking a snapshot does not copy the map.
+     */
+    public Snapshot snapshot() {
+        if (tail == null || tail.count > 0) {
+            Snapshot s = new Snapshot(this);
+            if (tail != null) {
+                tail.next = s;
+            }
+            tail = s;
+        }
+        return tail;
+    }
+
+    /**
+     * A read-only snapshot of the state of an {@code AttributeMap}.
+     * <p>
+     * The snapshots of a map form a chain from older to newer snapshots,
+     * which ends at the map. Each snapshot records the previous values of
+     * the keys which have been changed until the next snapshot was taken.
+     */
+    public static class Snapshot {
+
+        private final AttributeMap map;
+        /**
+         * The keys which have been changed after this snapshot was taken.
+         */
+        private AttributeKey<?>[] changedKeys;
+        /**
+         * The values of the changed keys at the time of this snapshot, or
+         * ABSENT if a key was not in the map.
+         */
+        private Object[] oldValues;
+        private int count;
+        private Snapshot next;
+
+        private Snapshot(AttributeMap map) {
+            this.map = map;
+        }
+
+        private void record(AttributeKey<?> key, Object oldValue) {
+            for (int i = 0; i < count; i++) {
+                if (changedKeys[i].getIndex() == key.getIndex()) {
+                    return;
+                }
+            }
+            if (changedKeys == null) {
+                changedKeys = new AttributeKey<?>[2];
+                oldValues = new Object[2];
+            } else if (count == changedKeys.length) {
+                changedKeys = Arrays.copyOf(changedKeys, count * 2);
+                oldValues = Arrays.copyOf(oldValues, count * 2);
+            }
+            changedKeys[count] = key;
+            oldValues[count] = oldValue;
+            count++;
+        }
+
+        private Object lookup(AttributeKey<?> key) {
+            int index = key.getIndex();
+            for (Snapshot s = this; s != null; s = s.next) {
+                for (int i = 0; i < s.count; i++) {
+                    if (s.changedKeys[i].getIndex() == index) {
+                        return s.oldValues[i];
+                    }
+                }
+            }
+            int i = map.positionOf(index);
+            return i < 0 ? ABSENT : map.values[i];
+        }
+
+        /**
+         * Returns true if the map contained the specified key at the time of
+         * the snapshot.
+         */
+        public boolean containsKey(AttributeKey<?> key) {
+            return lookup(key) != ABSENT;
+        }
+
+        /**
+         * Returns the value of the specified key at the time of the
+         * snapshot, or the default value of the key if the map did not
+         * contain the key.
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T get(AttributeKey<T> key) {
+            Object value = lookup(key);
+            return value == ABSENT ? key.getDefaultValue() : (T) value;
+        }
+
+        /**
+         * Returns the keys which have been changed in the map since the
+         * snapshot was taken.
+         */
+        public Set<AttributeKey<?>> getChangedKeys() {
+            LinkedHashSet<AttributeKey<?>> changed = new LinkedHashSet<>();
+            for (Snapshot s = this; s != null; s = s.next) {
+                for (int i = 0; i < s.count; i++) {
+                    changed.add(s.changedKeys[i]);
+                }
+            }
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * @(#)ConnectionScheduler.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import javax.swing.Timer;
+import org.jhotdraw.draw.figure.ConnectionFigure;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.geom.RTree;
+import org.jhotdraw.geom.SpatialIndex;
+
+/**
+ * Schedules the updates of the connection figures of a drawing.
+ * <p>
+ * A connection figure must be updated, when its start or its end figure has
+ * changed. Outside of a bulk update, the scheduler updates a connection
+ * immediately. While a bulk update of the drawing is in progress, for
+ * example while the user drags a selection of figures, the scheduler only
+ * marks the connection as dirty. Since the dirty connections are kept in a
+ * set, a connection is updated only once, no matter how often its figures
+ * have changed in the meantime.
+ * <p>
+ * The dirty connections are updated, when {@link #flush} is called. This is
+ * done by a timer once per frame, by the drawing view before it paints the
+ * drawing, and by the drawing when the bulk update ends. A connection, whose
+ * start or end figure is itself a dirty connection, is updated after that
+ * connection.
+ * <p>
+ * A liner, whose route depends on other figures than the start and the end
+ * figure of a connection, can register the area, which it has searched for
+ * the route, as the <em>corridor</em> of the connection, see
+ * {@link #setCorridor}. The drawing informs the scheduler about the areas of
+ * its children, which have changed. The scheduler keeps the corridors in a
+ * spatial index, so that it only invalidates the connections, whose
+ * corridor intersects a changed area.
+ * <p>
+ * For profiling, the scheduler counts the connection updates, see
+ * {@link #getUpdateCount} and {@link #getUpdatesPerSecond}.
+ * <p>
+ * This class is not thread safe. It is intended to be used on the AWT Event
+ * Dispatcher Thread.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class ConnectionScheduler {
+
+    /**
+     * The default delay of the timer in milliseconds. This is about the
+     * duration of a frame at 60 frames per second.
+     */
+    public static final int DEFAULT_DELAY = 16;
+    private final Drawing drawing;
+    private final LinkedHashSet<ConnectionFigure> dirtyConnections = new LinkedHashSet<>();
+    /**
+     * The corridors of the connections. This index is created lazily.
+     */
+    private SpatialIndex<ConnectionFigure> corridors;
+    /**
+     * The areas of the figures before their current change.
+     */
+    private HashMap<Figure, Rectangle2D.Double> pendingAreas;
+    private Timer timer;
+    private int delay = DEFAULT_DELAY;
+    private boolean isFlushing;
+    private long updateCount;
+    /**
+     * The start time and the update count of the current measuring interval.
+     */
+    private long intervalStart;
+    private long intervalCount;
+    private double updatesPerSecond;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param drawing The drawing which holds the connection figures.
+     */
+    public ConnectionScheduler(Drawing drawing) {
+        this.drawing = drawing;
+    }
+
+    /**
+     * Notifies the scheduler that the specified connection must be updated,
+     * because its start or its end figure has changed.
+     * <p>
+     * If a bulk update of the drawing is in progress, the connection is
+     * marked as dirty. Otherwise it is updated immediately.
+     */
+    public void invalidate(ConnectionFigure connection) {
+        if (drawing.isBulkUpdating()) {
+            if (dirtyConnections.add(connection) && !isFlushing) {
+                startTimer();
+            }
+        } else {
+            update(connection);
+        }
+    }
+
+    /**
+     * Removes the specified connection from the dirty connections. This
+     * method is called when the connection is removed from the drawing.
+     */
+    public void cancel(ConnectionFigure connection) {
+        dirtyConnections.remove(connection);
+        if (corridors != null) {
+            corridors.remove(connection);
+        }
+    }
+
+    /**
+     * Sets the corridor of the specified connection. The connection is
+     * invalidated, when a figure in the corridor changes.
+     *
+     * @param connection A connection figure.
+     * @param corridor The corridor in drawing coordinates, or null to remove
+     * the corridor.
+     */
+    public void setCorridor(ConnectionFigure connection, Rectangle2D.Double corridor) {
+        if (corridor == null) {
+            if (corridors != null) {
+                corridors.remove(connection);
+            }
+        } else {
+            if (corridors == null) {
+                corridors = new RTree<>();
+            }
+            corridors.update(connection, corridor);
+        }
+    }
+
+    /**
+     * Notifies the scheduler that the specified figure is going to change.
+     * The scheduler remembers the area until the figure has changed.
+     *
+     * @param figure The figure.
+     * @param area The drawing area of the figure before the change.
+     */
+    public void areaInvalidated(Figure figure, Rectangle2D.Double area) {
+        if (corridors == null || figure instanceof ConnectionFigure) {
+            return;
+        }
+        if (pendingAreas == null) {
+            pendingAreas = new HashMap<>();
+        }
+        Rectangle2D.Double pending = pendingAreas.get(figure);
+        if (pending == null) {
+            pendingAreas.put(figure, (Rectangle2D.Double) area.clone());
+        } else {
+            pending.add(area);
+        }
+    }
+
+    /**
+     * Notifies the scheduler that the area of the specified figure has
+     * changed. Invalidates the connections, whose corridor intersects the
+     * area, or the area which the figure had before the change. Changes of
+     * connection figures are ignored, because connections do not obstruct
+     * each other.
+     *
+     * @param figure The figure which has been changed, added or removed.
+     * @param area The new drawing area of the figure.
+     */
+    public void areaChanged(final Figure figure, Rectangle2D.Double area) {
+        if (corridors == null || figure instanceof ConnectionFigure) {
+            return;
+        }
+        Rectangle2D.Double pending = (pendingAreas == null) ? null : pendingAreas.remove(figure);
+        if (pending != null) {
+            pending.add(area);
+            area = pending;
+        }
+        final ArrayList<ConnectionFigure> affected = new ArrayList<>();
+        corridors.visitIntersects(area.x, area.y, area.width, area.height, new SpatialIndex.Visitor<ConnectionFigure>() {
+            @Override
+            public boolean visit(ConnectionFigure connection) {
+                // The connection handler updates the connection, if the
+                // figure is its start or its end figure
+                if (connection.getStartFigure() != figure && connection.getEndFigure() != figure) {
+                    affected.add(connection);
+                }
+                return true;
+            }
+        });
+        for (ConnectionFigure connection : affected) {
+            invalidate(connection);
+        }
+    }
+
+    /**
+     * Returns true if the specified connection is dirty.
+     */
+    public boolean isDirty(ConnectionFigure connection) {
+        return dirtyConnections.contains(connection);
+    }
+
+    /**
+     * Returns true if there are dirty connections.
+     */
+    public boolean hasDirtyConnections() {
+        return !dirtyConnections.isEmpty();
+    }
+
+    /**
+     * Updates all dirty connections.
+     * <p>
+     * The events of the updated connections are aggregated in a change
+     * transaction, so that the drawing views repaint them at once.
+     */
+    public void flush() {
+        if (isFlushing || dirtyConnections.isEmpty()) {
+            return;
+        }
+        isFlushing = true;
+        if (timer != null) {
+            timer.stop();
+        }
+        drawing.beginChangeTransaction();
+        try {
+            // Updating a connection may make other connections dirty,
+            // therefore we take one connection at a time.
+            while (!dirtyConnections.isEmpty()) {
+                Iterator<ConnectionFigure> i = dirtyConnections.iterator();
+                ConnectionFigure connection = i.next();
+                i.remove();
+                updateInDependencyOrder(connection);
+            }
+        } finally {
+            drawing.endChangeTransaction();
+            isFlushing = false;
+        }
+    }
+
+    /**
+     * Updates the dirty connections, which are the start or the end figure
+     * of the specified connection, and then the specified connection.
+     * The specified connection must already have been removed from the
+     * dirty connections.
+     */
+    private void updateInDependencyOrder(ConnectionFigure connection) {
+        Figure start = connection.getStartFigure();
+        if (start instanceof ConnectionFigure && dirtyConnections.remove(start)) {
+            updateInDependencyOrder((ConnectionFigure) start);
+        }
+        Figure end = connection.getEndFigure();
+        if (end instanceof ConnectionFigure && dirtyConnections.remove(end)) {
+            updateInDependencyOrder((ConnectionFigure) end);
+        }
+        update(connection);
+    }
+
+    private void update(ConnectionFigure connection) {
+        connection.willChange();
+        connection.updateConnection();
+        connection.changed();
+        countUpdate();
+    }
+
+    private void startTimer() {
+        if (timer == null) {
+            timer = new Timer(delay, new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    flush();
+                }
+            });
+            timer.setRepeats(false);
+        }
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    /**
+     * Sets the delay of the timer, which updates the dirty connections.
+     *
+     * @param newValue The delay in milliseconds.
+     */
+    public void setDelay(int newValue) {
+        delay = newValue;
+        if (timer != null) {
+            timer.setInitialDelay(newValue);
+        }
+    }
+
+    public int getDelay() {
+        return delay;
+    }
+
+    private void countUpdate() {
+        updateCount++;
+        long now = System.currentTimeMillis();
+        if (intervalStart == 0) {
+            intervalStart = now;
+        }
+        intervalCount++;
+        long elapsed = now - intervalStart;
+        if (elapsed >= 1000) {
+            updatesPerSecond = intervalCount * 1000d / elapsed;
+            intervalStart = now;
+            intervalCount = 0;
+        }
+    }
+
+    /**
+     * Returns the total number of connection updates performed by this
+     * scheduler.
+     */
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * Returns the number of connection updates per second, which has been
+     * measured over the last interval of at least one second, in which
+     * connections have been updated.
+     */
+    public double getUpdatesPerSecond() {
+        return updatesPerSecond;
+    }
+}
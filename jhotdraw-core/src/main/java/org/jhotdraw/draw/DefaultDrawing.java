@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Set;
 import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.LevelOfDetail;
 import org.jhotdraw.geom.Geom;
 import org.jhotdraw.util.ReversedList;
 
@@ -79,13 +80,13 @@ public class DefaultDrawing
         if (clipBounds != null) {
             for (Figure f : children) {
                 if (f.isVisible() && f.getDrawingArea(scale).intersects(clipBounds)) {
-                    f.draw(g);
+                    LevelOfDetail.draw(g, f, scale);
                 }
             }
         } else {
             for (Figure f : children) {
                 if (f.isVisible()) {
-                    f.draw(g);
+                    LevelOfDetail.draw(g, f, scale);
                 }
             }
         }
@@ -8,12 +8,14 @@
 package org.jhotdraw.draw;
 
 import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.LevelOfDetail;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.VolatileImage;
 import java.util.*;
+import java.util.List;
 import javax.swing.*;
 import javax.swing.undo.*;
 import org.jhotdraw.api.gui.EditableComponent;
@@ -28,6 +30,9 @@ import org.jhotdraw.draw.event.FigureSelectionListener;
 import org.jhotdraw.draw.event.HandleEvent;
 import org.jhotdraw.draw.event.HandleListener;
 import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.draw.handle.SelectionBoundsHandle;
+import org.jhotdraw.geom.RTree;
+import org.jhotdraw.geom.SpatialIndex;
 import org.jhotdraw.util.*;
 
 /**
@@ -56,6 +61,150 @@ public class DefaultDrawingView
      */
     private Set<Figure> selectedFigures = new LinkedHashSet<>();
     private LinkedList<Handle> selectionHandles = new LinkedList<>();
+    /**
+     * The selection handles of each selected figure, while the handles are
+     * valid.
+     */
+    private HashMap<Figure, Collection<Handle>> figureHandles = new HashMap<>();
+    /**
+     * The nesting depth of selection updates.
+     */
+    private int selectionUpdateDepth;
+    /**
+     * The figures which have been added to and removed from the selection
+     * since the current selection update began.
+     */
+    private LinkedHashSet<Figure> addedFigures = new LinkedHashSet<>();
+    private LinkedHashSet<Figure> removedFigures = new LinkedHashSet<>();
+    /**
+     * The record of the selection changes, which will be committed after the
+     * last selection event. The selection events use the records to compute
+     * their selection, when it is requested.
+     */
+    private SelectionChange selectionChanges = new SelectionChange();
+
+    /**
+     * A record of the figures which have been added to and removed from the
+     * selection by a committed selection update. The records form a list in
+     * the order of the updates. The view only holds the last record, so the
+     * records are discarded with the selection events which refer to them.
+     */
+    private static class SelectionChange {
+
+        private Set<Figure> added;
+        private Set<Figure> removed;
+        private SelectionChange next;
+    }
+
+    /**
+     * The selection of a selection event.
+     * <p>
+     * The figures are only copied from the selection of the view, when they
+     * are requested for the first time. Then the changes which have been
+     * made to the selection after the event are undone on the copy. Until
+     * the selection is changed again, the size and the contains method
+     * are answered by the selection of the view.
+     */
+    private class SelectionSnapshot extends AbstractSet<Figure> {
+
+        /**
+         * The record of the changes after the event, or null if the figures
+         * have been copied.
+         */
+        private SelectionChange changes;
+        private Set<Figure> figures;
+
+        public SelectionSnapshot(SelectionChange changes) {
+            this.changes = changes;
+        }
+
+        private boolean isCurrent() {
+            return changes != null && changes.next == null
+                    && addedFigures.isEmpty() && removedFigures.isEmpty();
+        }
+
+        private Set<Figure> getFigures() {
+            if (figures == null) {
+                // Whether a figure was selected at the time of the event is
+                // known from its first change after the event
+                HashMap<Figure, Boolean> wasSelected = new HashMap<>();
+                for (SelectionChange c = changes; c.next != null; c = c.next) {
+                    putFirst(wasSelected, c.added, c.removed);
+                }
+                putFirst(wasSelected, addedFigures, removedFigures);
+                LinkedHashSet<Figure> s = new LinkedHashSet<>();
+                for (Figure f : selectedFigures) {
+                    if (wasSelected.get(f) != Boolean.FALSE) {
+                        s.add(f);
+                    }
+                }
+                for (Map.Entry<Figure, Boolean> entry : wasSelected.entrySet()) {
+                    if (entry.getValue()) {
+                        s.add(entry.getKey());
+                    }
+                }
+                figures = Collections.unmodifiableSet(s);
+                changes = null;
+            }
+            return figures;
+        }
+
+        private void putFirst(HashMap<Figure, Boolean> wasSelected, Set<Figure> added, Set<Figure> removed) {
+            for (Figure f : added) {
+                wasSelected.putIfAbsent(f, Boolean.FALSE);
+            }
+            for (Figure f : removed) {
+                wasSelected.putIfAbsent(f, Boolean.TRUE);
+            }
+        }
+
+        @Override
+        public int size() {
+            return isCurrent() ? selectedFigures.size() : getFigures().size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return isCurrent() ? selectedFigures.contains(o) : getFigures().contains(o);
+        }
+
+        @Override
+        public Iterator<Figure> iterator() {
+            return getFigures().iterator();
+        }
+    }
+    /**
+     * The area in drawing coordinates, for which handles have been created.
+     * Handles are only created for the selected figures which are in the
+     * visible area of the view.
+     */
+    private Rectangle2D.Double handleArea;
+    /**
+     * Whether handles have been created for all selected figures.
+     */
+    private boolean isHandleAreaUnbounded;
+    /**
+     * The selection handles in the handle index. The index holds the
+     * positions of the handles in this list.
+     */
+    private ArrayList<Handle> indexedHandles = new ArrayList<>();
+    /**
+     * Spatial index of the drawing areas of the selection handles in view
+     * coordinates, or null if the index must be rebuilt.
+     */
+    private RTree<Integer> handleIndex;
+    public static final String SELECTION_HANDLE_LIMIT_PROPERTY = "selectionHandleLimit";
+    /**
+     * The default maximal number of selected figures, for which the handles
+     * of the individual figures are shown.
+     */
+    public static final int DEFAULT_SELECTION_HANDLE_LIMIT = 1000;
+    private int selectionHandleLimit = DEFAULT_SELECTION_HANDLE_LIMIT;
+    /**
+     * The handle which is shown instead of the handles of the selected
+     * figures, if more figures are selected than the selection handle limit.
+     */
+    private SelectionBoundsHandle aggregateHandle;
     private boolean isConstrainerVisible = false;
     private Constrainer visibleConstrainer = new GridConstrainer(8, 8);
     private Constrainer invisibleConstrainer = new GridConstrainer();
@@ -73,7 +222,27 @@ public class DefaultDrawingView
     private FigureListener handleInvalidator = new FigureAdapter() {
         @Override
         public void figureHandlesChanged(FigureEvent e) {
-            invalidateHandles();
+            if (aggregateHandle == null) {
+                invalidateHandles();
+            }
+        }
+
+        @Override
+        public void figureChanged(FigureEvent e) {
+            if (aggregateHandle != null) {
+                aggregateHandle.figuresChanged();
+            } else if (handlesAreValid && !isHandleAreaUnbounded && handleArea != null
+                    && getEditor() != null) {
+                // A selected figure may have been moved into the handle area
+                Figure figure = e.getFigure();
+                if (selectedFigures.contains(figure) && !figureHandles.containsKey(figure)
+                        && figure.getDrawingArea().intersects(handleArea)) {
+                    Rectangle invalidatedArea = createHandles(figure, null);
+                    if (invalidatedArea != null) {
+                        repaint(invalidatedArea);
+                    }
+                }
+            }
         }
     };
     private transient Rectangle2D.Double cachedDrawingArea;
@@ -99,6 +268,42 @@ public class DefaultDrawingView
      * buffer.
      */
     private Rectangle dirtyArea = new Rectangle(0, 0, -1, -1);
+    public static final String DRAWING_TILED_PROPERTY = "drawingTiled";
+    /**
+     * Whether the double buffer of the drawing is split into tiles.
+     */
+    private boolean isDrawingTiled;
+    /**
+     * The default memory budget of the tile cache in bytes.
+     */
+    protected static final long DEFAULT_TILE_CACHE_SIZE = 64L * 1024L * 1024L;
+    /**
+     * Holds rendered tiles of the drawing for all scale factors.
+     */
+    private DrawingTileCache tileCache = new DrawingTileCache(DEFAULT_TILE_CACHE_SIZE);
+    public static final String DRAWING_RENDERED_IN_BACKGROUND_PROPERTY = "drawingRenderedInBackground";
+    /**
+     * Whether the tiles of the drawing are rendered in the background.
+     */
+    private boolean isDrawingRenderedInBackground;
+    /**
+     * The time in milliseconds, which is spent on rendering tiles in the
+     * background, before other events are processed.
+     */
+    private static final long RENDER_SLICE_MILLIS = 20;
+    /**
+     * The tiles which are waiting for being rendered in the background.
+     */
+    private final ArrayDeque<DrawingTileCache.Tile> pendingTiles = new ArrayDeque<>();
+    /**
+     * Renders the pending tiles in the background.
+     */
+    private final Runnable tileRenderer = new Runnable() {
+        @Override
+        public void run() {
+            drawPendingTiles();
+        }
+    };
     private boolean paintEnabled = true;
     private static final boolean IS_WINDOWS;
 
@@ -213,6 +418,7 @@ public class DefaultDrawingView
 
         @Override
         public void areaInvalidated(HandleEvent evt) {
+            handleIndex = null;
             repaint(evt.getInvalidatedArea());
             invalidateDimension();
         }
@@ -358,12 +564,18 @@ public class DefaultDrawingView
     @Override
     public void paintComponent(Graphics gr) {
         Graphics2D g = (Graphics2D) gr;
+        if (drawing != null && drawing.hasConnectionScheduler()) {
+            // Update the deferred connections before they are drawn
+            drawing.getConnectionScheduler().flush();
+        }
         setViewRenderingHints(g);
         drawBackground(g);
         drawCanvas(g);
         drawConstrainer(g);
         if (isDrawingDoubleBuffered()) {
-            if (IS_WINDOWS) {
+            if (isDrawingTiled()) {
+                drawDrawingTiled(g);
+            } else if (IS_WINDOWS) {
                 drawDrawingNonvolatileBuffered(g);
             } else {
                 drawDrawingVolatileBuffered(g);
@@ -375,6 +587,163 @@ public class DefaultDrawingView
         drawTool(g);
     }
 
+    /**
+     * Draws the drawing double buffered using cached tiles.
+     * <p>
+     * Only the tiles which intersect the clip bounds are drawn. Tiles which
+     * are not in the cache are created, and the dirty areas of the tiles
+     * are rendered before the tiles are drawn.
+     */
+    protected void drawDrawingTiled(Graphics2D g) {
+        if (drawing == null) {
+            return;
+        }
+        if (drawing.getChildCount() == 0 && emptyDrawingLabel != null) {
+            drawDrawing(g);
+            return;
+        }
+        Rectangle clip = g.getClipBounds();
+        Rectangle vr = getVisibleRect();
+        clip = (clip == null) ? vr : clip.intersection(vr);
+        if (clip.isEmpty()) {
+            return;
+        }
+        boolean isBackground = isDrawingRenderedInBackground();
+        int size = DrawingTileCache.TILE_SIZE;
+        int x0 = Math.floorDiv(clip.x + translation.x, size);
+        int y0 = Math.floorDiv(clip.y + translation.y, size);
+        int x1 = Math.floorDiv(clip.x + clip.width - 1 + translation.x, size);
+        int y1 = Math.floorDiv(clip.y + clip.height - 1 + translation.y, size);
+        for (int ty = y0; ty <= y1; ty++) {
+            for (int tx = x0; tx <= x1; tx++) {
+                DrawingTileCache.Tile tile = tileCache.get(scaleFactor, tx, ty);
+                if (tile == null) {
+                    tile = tileCache.create(scaleFactor, tx, ty);
+                }
+                if (tile.isDirty()) {
+                    if (isBackground) {
+                        if (!tile.isPending()) {
+                            drawTileInBackground(tile);
+                        }
+                    } else {
+                        try {
+                            drawTile(tile);
+                        } catch (OutOfMemoryError e) {
+                            // There is not enough memory available for the tiles;
+                            // draw without buffering.
+                            tileCache.clear();
+                            drawDrawing(g);
+                            return;
+                        }
+                    }
+                }
+                if (tile.getImage() != null) {
+                    g.drawImage(tile.getImage(), tile.getX() - translation.x, tile.getY() - translation.y, null);
+                } else {
+                    drawReplacementTile(g, tile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the rendered tiles of another scale factor in place of a tile,
+     * which has not been rendered yet.
+     */
+    private void drawReplacementTile(Graphics2D g, DrawingTileCache.Tile tile) {
+        int size = DrawingTileCache.TILE_SIZE;
+        double s = tile.getScaleFactor();
+        Rectangle2D.Double area = new Rectangle2D.Double(tile.getX() / s, tile.getY() / s, size / s, size / s);
+        List<DrawingTileCache.Tile> replacements = tileCache.findRenderedTiles(s, area);
+        if (replacements.isEmpty()) {
+            return;
+        }
+        Graphics2D gr = (Graphics2D) g.create();
+        gr.clipRect(tile.getX() - translation.x, tile.getY() - translation.y, size, size);
+        gr.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        for (DrawingTileCache.Tile r : replacements) {
+            AffineTransform tx = new AffineTransform();
+            tx.translate(-translation.x, -translation.y);
+            tx.scale(s / r.getScaleFactor(), s / r.getScaleFactor());
+            tx.translate(r.getX(), r.getY());
+            gr.drawImage(r.getImage(), tx, null);
+        }
+        gr.dispose();
+    }
+
+    /**
+     * Renders the dirty area of a tile.
+     */
+    private void drawTile(DrawingTileCache.Tile tile) {
+        if (tile.getImage() == null) {
+            tile.setImage(DrawingTileCache.createImage(getGraphicsConfiguration()));
+        }
+        Rectangle dirty = tile.getDirtyArea();
+        Graphics2D gBuf = tile.getImage().createGraphics();
+        setViewRenderingHints(gBuf);
+        // Clear the dirty area
+        gBuf.setComposite(AlphaComposite.Src);
+        gBuf.setBackground(new Color(0x0, true));
+        gBuf.clearRect(dirty.x, dirty.y, dirty.width, dirty.height);
+        gBuf.setComposite(AlphaComposite.SrcOver);
+        // Repaint the dirty area
+        gBuf.clip(dirty);
+        gBuf.translate(-tile.getX(), -tile.getY());
+        gBuf.scale(tile.getScaleFactor(), tile.getScaleFactor());
+        drawing.setFontRenderContext(gBuf.getFontRenderContext());
+        drawing.draw(gBuf);
+        gBuf.dispose();
+        tile.validate();
+    }
+
+    /**
+     * Renders the dirty area of a tile in the background.
+     * <p>
+     * The figures are only drawn on the AWT Event Dispatcher Thread, because
+     * they are changed on it. The tile is queued, and the queued tiles are
+     * rendered one after the other in later events. After
+     * {@link #RENDER_SLICE_MILLIS}, the rendering yields to the other events,
+     * so that the view stays responsive while a large drawing is rendered.
+     * Until a tile has been rendered, the view shows the stale tile image.
+     */
+    private void drawTileInBackground(DrawingTileCache.Tile tile) {
+        tile.setPending(true);
+        pendingTiles.add(tile);
+        if (pendingTiles.size() == 1) {
+            SwingUtilities.invokeLater(tileRenderer);
+        }
+    }
+
+    /**
+     * Renders pending tiles until the time slice is used up.
+     */
+    private void drawPendingTiles() {
+        long deadline = System.currentTimeMillis() + RENDER_SLICE_MILLIS;
+        int size = DrawingTileCache.TILE_SIZE;
+        while (!pendingTiles.isEmpty() && System.currentTimeMillis() < deadline) {
+            DrawingTileCache.Tile tile = pendingTiles.poll();
+            tile.setPending(false);
+            if (tile.isDiscarded() || !tile.isDirty() || drawing == null) {
+                continue;
+            }
+            try {
+                drawTile(tile);
+            } catch (OutOfMemoryError e) {
+                // There is not enough memory available for the tiles;
+                // the next paint draws without buffering.
+                tileCache.clear();
+                repaint();
+                continue;
+            }
+            if (tile.getScaleFactor() == scaleFactor) {
+                repaint(tile.getX() - translation.x, tile.getY() - translation.y, size, size);
+            }
+        }
+        if (!pendingTiles.isEmpty()) {
+            SwingUtilities.invokeLater(tileRenderer);
+        }
+    }
+
     /**
      * Draws the drawing double buffered using a volatile image.
      */
@@ -582,6 +951,8 @@ public class DefaultDrawingView
         g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
         g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
         g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        // Draw figures which cover only a few pixels with less detail
+        g.setRenderingHint(LevelOfDetail.KEY_LEVEL_OF_DETAIL, LevelOfDetail.VALUE_LEVEL_OF_DETAIL_ON);
     }
 
     /**
@@ -657,8 +1028,17 @@ public class DefaultDrawingView
     protected void drawHandles(java.awt.Graphics2D g) {
         if (editor != null && editor.getActiveView() == this) {
             validateHandles();
-            for (Handle h : getSelectionHandles()) {
-                h.draw(g);
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) {
+                for (Handle h : getSelectionHandles()) {
+                    h.draw(g);
+                }
+            } else {
+                // Only draw the handles which intersect the clip bounds
+                BitSet positions = findHandlePositions(clip.x, clip.y, clip.width, clip.height);
+                for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+                    indexedHandles.get(i).draw(g);
+                }
             }
             for (Handle h : getSecondaryHandles()) {
                 h.draw(g);
@@ -686,6 +1066,7 @@ public class DefaultDrawingView
             this.drawing.addFigureListener(eventHandler);
         }
         dirtyArea.add(bufferedArea);
+        tileCache.clear();
         firePropertyChange(DRAWING_PROPERTY, oldValue, newValue);
         // Revalidate without flickering
         revalidate();
@@ -713,6 +1094,7 @@ public class DefaultDrawingView
         Rectangle vr = drawingToView(r);
         vr.grow(2, 2);
         dirtyArea.add(vr);
+        tileCache.invalidate(r);
         repaint(vr);
     }
 
@@ -733,6 +1115,7 @@ public class DefaultDrawingView
             drawingBufferV.flush();
             drawingBufferV = null;
         }
+        tileCache.clear();
     }
 
     /**
@@ -743,27 +1126,13 @@ public class DefaultDrawingView
         if (DEBUG) {
             System.out.println("DefaultDrawingView" + ".addToSelection(" + figure + ")");
         }
-        Set<Figure> oldSelection = new HashSet<>(selectedFigures);
-        if (selectedFigures.add(figure)) {
-            figure.addFigureListener(handleInvalidator);
-            Set<Figure> newSelection = new HashSet<>(selectedFigures);
-            Rectangle invalidatedArea = null;
-            if (handlesAreValid && getEditor() != null) {
-                for (Handle h : figure.createHandles(detailLevel)) {
-                    h.setView(this);
-                    selectionHandles.add(h);
-                    h.addHandleListener(eventHandler);
-                    if (invalidatedArea == null) {
-                        invalidatedArea = h.getDrawingArea();
-                    } else {
-                        invalidatedArea.add(h.getDrawingArea());
-                    }
-                }
-            }
-            fireSelectionChanged(oldSelection, newSelection);
-            if (invalidatedArea != null) {
-                repaint(invalidatedArea);
+        beginSelectionUpdate();
+        try {
+            if (selectedFigures.add(figure)) {
+                selectionAdded(figure);
             }
+        } finally {
+            endSelectionUpdate();
         }
     }
 
@@ -772,34 +1141,15 @@ public class DefaultDrawingView
      */
     @Override
     public void addToSelection(Collection<Figure> figures) {
-        Set<Figure> oldSelection = new HashSet<>(selectedFigures);
-        Set<Figure> newSelection = new HashSet<>(selectedFigures);
-        boolean selectionChanged = false;
-        Rectangle invalidatedArea = null;
-        for (Figure figure : figures) {
-            if (selectedFigures.add(figure)) {
-                selectionChanged = true;
-                newSelection.add(figure);
-                figure.addFigureListener(handleInvalidator);
-                if (handlesAreValid && getEditor() != null) {
-                    for (Handle h : figure.createHandles(detailLevel)) {
-                        h.setView(this);
-                        selectionHandles.add(h);
-                        h.addHandleListener(eventHandler);
-                        if (invalidatedArea == null) {
-                            invalidatedArea = h.getDrawingArea();
-                        } else {
-                            invalidatedArea.add(h.getDrawingArea());
-                        }
-                    }
+        beginSelectionUpdate();
+        try {
+            for (Figure figure : figures) {
+                if (selectedFigures.add(figure)) {
+                    selectionAdded(figure);
                 }
             }
-        }
-        if (selectionChanged) {
-            fireSelectionChanged(oldSelection, newSelection);
-            if (invalidatedArea != null) {
-                repaint(invalidatedArea);
-            }
+        } finally {
+            endSelectionUpdate();
         }
     }
 
@@ -808,14 +1158,173 @@ public class DefaultDrawingView
      */
     @Override
     public void removeFromSelection(Figure figure) {
-        Set<Figure> oldSelection = new HashSet<>(selectedFigures);
-        if (selectedFigures.remove(figure)) {
-            Set<Figure> newSelection = new HashSet<>(selectedFigures);
+        beginSelectionUpdate();
+        try {
+            if (selectedFigures.remove(figure)) {
+                selectionRemoved(figure);
+            }
+        } finally {
+            endSelectionUpdate();
+        }
+    }
+
+    /**
+     * Records that a figure has been added to the selection.
+     */
+    private void selectionAdded(Figure figure) {
+        figure.addFigureListener(handleInvalidator);
+        if (!removedFigures.remove(figure)) {
+            addedFigures.add(figure);
+        }
+    }
+
+    /**
+     * Records that a figure has been removed from the selection.
+     */
+    private void selectionRemoved(Figure figure) {
+        figure.removeFigureListener(handleInvalidator);
+        if (!addedFigures.remove(figure)) {
+            removedFigures.add(figure);
+        }
+    }
+
+    /**
+     * Begins a selection update.
+     * <p>
+     * Until the outermost selection update ends, this view only records
+     * which figures are added to and removed from the selection. Then it
+     * updates the handles of these figures, repaints their area and fires a
+     * single {@code FigureSelectionEvent} with the added and removed figures.
+     */
+    @Override
+    public void beginSelectionUpdate() {
+        selectionUpdateDepth++;
+    }
+
+    @Override
+    public void endSelectionUpdate() {
+        if (selectionUpdateDepth > 0) {
+            selectionUpdateDepth--;
+            if (selectionUpdateDepth == 0
+                    && (!addedFigures.isEmpty() || !removedFigures.isEmpty())) {
+                Set<Figure> added = Collections.unmodifiableSet(addedFigures);
+                Set<Figure> removed = Collections.unmodifiableSet(removedFigures);
+                addedFigures = new LinkedHashSet<>();
+                removedFigures = new LinkedHashSet<>();
+                updateHandles(added, removed);
+                SelectionChange change = selectionChanges;
+                change.added = added;
+                change.removed = removed;
+                change.next = new SelectionChange();
+                selectionChanges = change.next;
+                fireSelectionChanged(new FigureSelectionEvent(this,
+                        new SelectionSnapshot(selectionChanges), added, removed));
+            }
+        }
+    }
+
+    @Override
+    public boolean isSelectionUpdating() {
+        return selectionUpdateDepth > 0;
+    }
+
+    /**
+     * Removes the handles of the removed figures and creates handles for the
+     * added figures, if the handles are valid.
+     */
+    private void updateHandles(Set<Figure> added, Set<Figure> removed) {
+        if (!handlesAreValid || getEditor() == null) {
+            return;
+        }
+        if ((aggregateHandle != null) != (selectedFigures.size() > selectionHandleLimit)) {
             invalidateHandles();
-            figure.removeFigureListener(handleInvalidator);
-            fireSelectionChanged(oldSelection, newSelection);
-            repaint();
+            return;
+        }
+        Rectangle invalidatedArea = null;
+        if (aggregateHandle != null) {
+            selectionHandles.clear();
+            invalidatedArea = disposeHandle(aggregateHandle, invalidatedArea);
+            invalidatedArea = createAggregateHandle(invalidatedArea);
+            repaint(invalidatedArea);
+            return;
+        }
+        HashSet<Handle> obsoleteHandles = new HashSet<>();
+        for (Figure figure : removed) {
+            Collection<Handle> handles = figureHandles.remove(figure);
+            if (handles != null) {
+                obsoleteHandles.addAll(handles);
+            }
+        }
+        if (!obsoleteHandles.isEmpty()) {
+            for (Iterator<Handle> i = selectionHandles.iterator(); i.hasNext();) {
+                Handle handle = i.next();
+                if (obsoleteHandles.contains(handle)) {
+                    i.remove();
+                    invalidatedArea = disposeHandle(handle, invalidatedArea);
+                }
+            }
+            if (secondaryHandleOwner != null && obsoleteHandles.contains(secondaryHandleOwner)) {
+                for (Handle handle : secondaryHandles) {
+                    obsoleteHandles.add(handle);
+                    invalidatedArea = disposeHandle(handle, invalidatedArea);
+                }
+                secondaryHandles.clear();
+                secondaryHandleOwner = null;
+            }
+            if (activeHandle != null && obsoleteHandles.contains(activeHandle)) {
+                setActiveHandle(null);
+            }
+        }
+        for (Figure figure : added) {
+            if (isHandleAreaUnbounded
+                    || handleArea != null && figure.getDrawingArea().intersects(handleArea)) {
+                invalidatedArea = createHandles(figure, invalidatedArea);
+            }
+        }
+        if (invalidatedArea != null) {
+            repaint(invalidatedArea);
+        }
+    }
+
+    /**
+     * Creates the selection handles for the specified figure.
+     *
+     * @return The invalidated area extended by the drawing area of the
+     * handles.
+     */
+    private Rectangle createHandles(Figure figure, Rectangle invalidatedArea) {
+        Collection<Handle> handles = figure.createHandles(detailLevel);
+        figureHandles.put(figure, handles);
+        handleIndex = null;
+        for (Handle handle : handles) {
+            handle.setView(this);
+            selectionHandles.add(handle);
+            handle.addHandleListener(eventHandler);
+            if (invalidatedArea == null) {
+                invalidatedArea = handle.getDrawingArea();
+            } else {
+                invalidatedArea.add(handle.getDrawingArea());
+            }
         }
+        return invalidatedArea;
+    }
+
+    /**
+     * Disposes the specified handle.
+     *
+     * @return The invalidated area extended by the drawing area of the
+     * handle.
+     */
+    private Rectangle disposeHandle(Handle handle, Rectangle invalidatedArea) {
+        handleIndex = null;
+        handle.removeHandleListener(eventHandler);
+        if (invalidatedArea == null) {
+            invalidatedArea = handle.getDrawingArea();
+        } else {
+            invalidatedArea.add(handle.getDrawingArea());
+        }
+        handle.dispose();
+        return invalidatedArea;
     }
 
     /**
@@ -842,17 +1351,17 @@ public class DefaultDrawingView
      */
     @Override
     public void selectAll() {
-        Set<Figure> oldSelection = new HashSet<>(selectedFigures);
-        selectedFigures.clear();
-        for (Figure figure : drawing.getChildren()) {
-            if (figure.isSelectable()) {
-                selectedFigures.add(figure);
+        beginSelectionUpdate();
+        try {
+            clearSelection();
+            for (Figure figure : drawing.getChildren()) {
+                if (figure.isSelectable() && selectedFigures.add(figure)) {
+                    selectionAdded(figure);
+                }
             }
+        } finally {
+            endSelectionUpdate();
         }
-        Set<Figure> newSelection = new HashSet<>(selectedFigures);
-        invalidateHandles();
-        fireSelectionChanged(oldSelection, newSelection);
-        repaint();
     }
 
     /**
@@ -861,11 +1370,15 @@ public class DefaultDrawingView
     @Override
     public void clearSelection() {
         if (getSelectionCount() > 0) {
-            Set<Figure> oldSelection = new HashSet<>(selectedFigures);
-            selectedFigures.clear();
-            Set<Figure> newSelection = new HashSet<>(selectedFigures);
-            invalidateHandles();
-            fireSelectionChanged(oldSelection, newSelection);
+            beginSelectionUpdate();
+            try {
+                for (Figure figure : selectedFigures) {
+                    selectionRemoved(figure);
+                }
+                selectedFigures.clear();
+            } finally {
+                endSelectionUpdate();
+            }
         }
     }
 
@@ -937,6 +1450,11 @@ public class DefaultDrawingView
             }
             selectionHandles.clear();
             secondaryHandles.clear();
+            figureHandles.clear();
+            aggregateHandle = null;
+            handleArea = null;
+            isHandleAreaUnbounded = false;
+            handleIndex = null;
             setActiveHandle(null);
             if (invalidatedArea != null) {
                 repaint(invalidatedArea);
@@ -946,41 +1464,158 @@ public class DefaultDrawingView
 
     /**
      * Validates the handles.
+     * <p>
+     * Handles are only created for the selected figures which are in the
+     * visible area of the view. When the visible area changes, the handles
+     * of the figures which have become visible are created. If more figures
+     * are selected than the selection handle limit, a single
+     * {@link SelectionBoundsHandle} is created instead.
      */
     private void validateHandles() {
         // Validate handles only, if they are invalid, and if
         // the DrawingView has a DrawingEditor.
-        if (!handlesAreValid && getEditor() != null) {
+        if (getEditor() == null) {
+            return;
+        }
+        Rectangle invalidatedArea = null;
+        if (!handlesAreValid) {
             handlesAreValid = true;
             selectionHandles.clear();
-            Rectangle invalidatedArea = null;
-            while (true) {
-                for (Figure figure : getSelectedFigures()) {
-                    for (Handle handle : figure.createHandles(detailLevel)) {
-                        handle.setView(this);
-                        selectionHandles.add(handle);
-                        handle.addHandleListener(eventHandler);
-                        if (invalidatedArea == null) {
-                            invalidatedArea = handle.getDrawingArea();
-                        } else {
-                            invalidatedArea.add(handle.getDrawingArea());
-                        }
+            figureHandles.clear();
+            handleArea = null;
+            isHandleAreaUnbounded = false;
+            handleIndex = null;
+            if (selectedFigures.size() > selectionHandleLimit) {
+                invalidatedArea = createAggregateHandle(invalidatedArea);
+            } else {
+                while (true) {
+                    invalidatedArea = createVisibleHandles(invalidatedArea);
+                    if (selectionHandles.isEmpty() && !figureHandles.isEmpty() && detailLevel != 0) {
+                        // No handles are available at the desired detail level.
+                        // Retry with detail level 0.
+                        detailLevel = 0;
+                        figureHandles.clear();
+                        handleArea = null;
+                        continue;
                     }
+                    break;
                 }
-                if (selectionHandles.size() == 0 && detailLevel != 0) {
-                    // No handles are available at the desired detail level.
-                    // Retry with detail level 0.
-                    detailLevel = 0;
-                    continue;
+            }
+        } else if (aggregateHandle == null) {
+            invalidatedArea = createVisibleHandles(invalidatedArea);
+        }
+        if (invalidatedArea != null) {
+            repaint(invalidatedArea);
+        }
+    }
+
+    /**
+     * Creates the handles of the selected figures in the visible area of
+     * the view, which do not have handles yet.
+     *
+     * @return The invalidated area extended by the drawing area of the
+     * created handles.
+     */
+    private Rectangle createVisibleHandles(Rectangle invalidatedArea) {
+        Rectangle vr = getVisibleRect();
+        if (isHandleAreaUnbounded || vr.isEmpty()
+                || handleArea != null && handleArea.contains(viewToDrawing(vr))) {
+            return invalidatedArea;
+        }
+        // Cover more than the visible area, so that we do not have to look
+        // at all selected figures again for each small scroll step. The
+        // handles of a figure can be located outside of its drawing area.
+        vr.grow(vr.width / 4 + 32, vr.height / 4 + 32);
+        Rectangle2D.Double area = viewToDrawing(vr);
+        for (Figure figure : selectedFigures) {
+            if (!figureHandles.containsKey(figure) && figure.getDrawingArea().intersects(area)) {
+                invalidatedArea = createHandles(figure, invalidatedArea);
+            }
+        }
+        handleArea = area;
+        return invalidatedArea;
+    }
+
+    /**
+     * Creates the handles of all selected figures, which do not have handles
+     * yet.
+     */
+    private void createAllHandles() {
+        validateHandles();
+        if (getEditor() != null && aggregateHandle == null && !isHandleAreaUnbounded) {
+            Rectangle invalidatedArea = null;
+            for (Figure figure : selectedFigures) {
+                if (!figureHandles.containsKey(figure)) {
+                    invalidatedArea = createHandles(figure, invalidatedArea);
                 }
-                break;
             }
+            isHandleAreaUnbounded = true;
             if (invalidatedArea != null) {
                 repaint(invalidatedArea);
             }
         }
     }
 
+    /**
+     * Creates the handle which is shown instead of the handles of the
+     * selected figures.
+     *
+     * @return The invalidated area extended by the drawing area of the
+     * handle.
+     */
+    private Rectangle createAggregateHandle(Rectangle invalidatedArea) {
+        aggregateHandle = new SelectionBoundsHandle(selectedFigures.iterator().next(),
+                Collections.unmodifiableSet(selectedFigures));
+        aggregateHandle.setView(this);
+        aggregateHandle.addHandleListener(eventHandler);
+        selectionHandles.add(aggregateHandle);
+        handleIndex = null;
+        if (invalidatedArea == null) {
+            invalidatedArea = aggregateHandle.getDrawingArea();
+        } else {
+            invalidatedArea.add(aggregateHandle.getDrawingArea());
+        }
+        return invalidatedArea;
+    }
+
+    /**
+     * Collects the positions of the handles found in the handle index.
+     */
+    private static class PositionCollector implements SpatialIndex.Visitor<Integer> {
+
+        private final BitSet positions = new BitSet();
+
+        @Override
+        public boolean visit(Integer o) {
+            positions.set(o);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the positions of the selection handles in
+     * {@code indexedHandles}, whose drawing area intersects the specified
+     * rectangle in view coordinates.
+     */
+    private BitSet findHandlePositions(double x, double y, double w, double h) {
+        if (handleIndex == null) {
+            indexedHandles.clear();
+            indexedHandles.addAll(selectionHandles);
+            ArrayList<Integer> positions = new ArrayList<>(indexedHandles.size());
+            ArrayList<Rectangle2D.Double> bounds = new ArrayList<>(indexedHandles.size());
+            for (int i = 0, n = indexedHandles.size(); i < n; i++) {
+                Rectangle r = indexedHandles.get(i).getDrawingArea();
+                positions.add(i);
+                bounds.add(new Rectangle2D.Double(r.x, r.y, r.width, r.height));
+            }
+            handleIndex = new RTree<>();
+            handleIndex.addAll(positions, bounds);
+        }
+        PositionCollector collector = new PositionCollector();
+        handleIndex.visitIntersects(x, y, w, h, collector);
+        return collector.positions;
+    }
+
     /**
      * Finds a handle at a given coordinates.
      *
@@ -995,7 +1630,11 @@ public class DefaultDrawingView
                 return handle;
             }
         }
-        for (Handle handle : new ReversedList<>(getSelectionHandles())) {
+        // The handle index is a superset of the handles which contain the
+        // point, because a handle is only hit inside of its drawing area.
+        BitSet positions = findHandlePositions(p.x, p.y, 1, 1);
+        for (int i = positions.length() - 1; i >= 0; i = positions.previousSetBit(i - 1)) {
+            Handle handle = indexedHandles.get(i);
             if (handle.contains(p)) {
                 return handle;
             }
@@ -1010,7 +1649,9 @@ public class DefaultDrawingView
      */
     @Override
     public Collection<Handle> getCompatibleHandles(Handle master) {
-        validateHandles();
+        // All compatible handles take part in an interaction, including
+        // those of the figures outside of the visible area.
+        createAllHandles();
         HashSet<Figure> owners = new HashSet<>();
         LinkedList<Handle> compatibleHandles = new LinkedList<>();
         owners.add(master.getOwner());
@@ -1062,26 +1703,27 @@ public class DefaultDrawingView
     protected void fireSelectionChanged(
             Set<Figure> oldValue,
             Set<Figure> newValue) {
-        if (listenerList.getListenerCount() > 0) {
-            FigureSelectionEvent event = null;
-            // Notify all listeners that have registered interest for
-            // Guaranteed to return a non-null array
-            Object[] listeners = listenerList.getListenerList();
-            // Process the listeners last to first, notifying
-            // those that are interested in this event
-            for (int i = listeners.length - 2; i
-                    >= 0; i
-                    -= 2) {
-                if (listeners[i] == FigureSelectionListener.class) {
-                    // Lazily create the event:
-                    if (event == null) {
-                        event = new FigureSelectionEvent(this, oldValue, newValue);
-                    }
-                    ((FigureSelectionListener) listeners[i + 1]).selectionChanged(event);
-                }
+        fireSelectionChanged(new FigureSelectionEvent(this, oldValue, newValue));
+    }
+
+    /**
+     * Notify all listenerList that have registered interest for notification on this event type.
+     * Also notify listeners who listen for {@link EditableComponent#SELECTION_EMPTY_PROPERTY}.
+     */
+    protected void fireSelectionChanged(FigureSelectionEvent event) {
+        int newSize = event.getNewSelection().size();
+        boolean wasEmpty = newSize - event.getAddedFigures().size() + event.getRemovedFigures().size() == 0;
+        boolean isEmpty = newSize == 0;
+        // Guaranteed to return a non-null array
+        Object[] listeners = listenerList.getListenerList();
+        // Process the listeners last to first, notifying
+        // those that are interested in this event
+        for (int i = listeners.length - 2; i >= 0; i -= 2) {
+            if (listeners[i] == FigureSelectionListener.class) {
+                ((FigureSelectionListener) listeners[i + 1]).selectionChanged(event);
             }
         }
-        firePropertyChange(EditableComponent.SELECTION_EMPTY_PROPERTY, oldValue.isEmpty(), newValue.isEmpty());
+        firePropertyChange(EditableComponent.SELECTION_EMPTY_PROPERTY, wasEmpty, isEmpty);
     }
 
     protected void invalidateDimension() {
@@ -1254,6 +1896,7 @@ public class DefaultDrawingView
     }
 
     protected void fireViewTransformChanged() {
+        handleIndex = null;
         for (Handle handle : selectionHandles) {
             handle.viewTransformChanged();
         }
@@ -1454,6 +2097,9 @@ public class DefaultDrawingView
             drawingBufferNV.flush();
             drawingBufferNV = null;
         }
+        if (!isDrawingDoubleBuffered) {
+            tileCache.clear();
+        }
         firePropertyChange(DRAWING_DOUBLE_BUFFERED_PROPERTY, oldValue, newValue);
     }
 
@@ -1464,6 +2110,112 @@ public class DefaultDrawingView
         return isDrawingDoubleBuffered;
     }
 
+    /**
+     * Sets whether the double buffer of the drawing is split into tiles.
+     * <p>
+     * The default value is false.
+     * <p>
+     * This is a bound property.
+     * <p>
+     * A tiled double buffer keeps the rendered tiles of recently visible
+     * areas of the drawing for all scale factors, so that scrolling and
+     * zooming back do not need to render the drawing again. Changes of the
+     * drawing only invalidate the affected parts of the tiles.
+     * This property has no effect, if the drawing is not double buffered.
+     * <p>
+     * Each tile is rendered separately. This only pays off with a drawing
+     * which finds the figures in a tile quickly, such as a
+     * {@link QuadTreeDrawing}. A drawing which has to look at all its figures
+     * for each tile, such as a {@link DefaultDrawing}, is better rendered
+     * into a single double buffer.
+     */
+    public void setDrawingTiled(boolean newValue) {
+        boolean oldValue = isDrawingTiled;
+        isDrawingTiled = newValue;
+        if (!isDrawingTiled) {
+            tileCache.clear();
+        }
+        dirtyArea.add(bufferedArea);
+        firePropertyChange(DRAWING_TILED_PROPERTY, oldValue, newValue);
+        repaint();
+    }
+
+    /**
+     * Returns true, if the double buffer of the drawing is split into tiles.
+     */
+    public boolean isDrawingTiled() {
+        return isDrawingTiled;
+    }
+
+    /**
+     * Sets the memory budget of the tile cache in bytes.
+     * When the budget is exceeded, the least recently used tiles are
+     * discarded.
+     */
+    public void setTileCacheSize(long newValue) {
+        tileCache.setMaxBytes(newValue);
+    }
+
+    public long getTileCacheSize() {
+        return tileCache.getMaxBytes();
+    }
+
+    /**
+     * Sets whether the tiles of the drawing are rendered in the background.
+     * <p>
+     * The default value is false.
+     * <p>
+     * This is a bound property.
+     * <p>
+     * If this property is true, dirty tiles are not rendered while the view
+     * is painted, but one after the other in later events on the AWT Event
+     * Dispatcher Thread, so that the view stays responsive while a large
+     * drawing is rendered. Until a tile has been rendered, the view shows the
+     * stale tile, or scaled tiles of another scale factor.
+     * This property has no effect, if the drawing is not double buffered
+     * with tiles.
+     */
+    public void setDrawingRenderedInBackground(boolean newValue) {
+        boolean oldValue = isDrawingRenderedInBackground;
+        isDrawingRenderedInBackground = newValue;
+        tileCache.clear();
+        firePropertyChange(DRAWING_RENDERED_IN_BACKGROUND_PROPERTY, oldValue, newValue);
+        repaint();
+    }
+
+    /**
+     * Returns true, if the tiles of the drawing are rendered in the
+     * background.
+     */
+    public boolean isDrawingRenderedInBackground() {
+        return isDrawingRenderedInBackground;
+    }
+
+    /**
+     * Sets the maximal number of selected figures, for which the view shows
+     * the handles of the individual figures. If more figures are selected,
+     * the view shows a single {@link SelectionBoundsHandle} around them.
+     * <p>
+     * The default value is {@value #DEFAULT_SELECTION_HANDLE_LIMIT}.
+     * <p>
+     * This is a bound property.
+     */
+    public void setSelectionHandleLimit(int newValue) {
+        int oldValue = selectionHandleLimit;
+        selectionHandleLimit = newValue;
+        invalidateHandles();
+        firePropertyChange(SELECTION_HANDLE_LIMIT_PROPERTY, oldValue, newValue);
+        repaint();
+    }
+
+    /**
+     * Returns the maximal number of selected figures, for which the view
+     * shows the handles of the individual figures.
+     */
+    public int getSelectionHandleLimit() {
+        return selectionHandleLimit;
+    }
+
     /**
      * Returns a paint for drawing the background of the drawing area.
      *
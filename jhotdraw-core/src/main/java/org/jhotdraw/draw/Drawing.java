@@ -316,6 +316,97 @@ public interface Drawing extends CompositeFigure, Serializable, DOMStorable {
      */
     List<Figure> sort(Collection<? extends Figure> figures);
 
+    /**
+     * Informs the drawing that many of its figures are going to change in
+     * rapid succession, for example, while the user drags a selection of
+     * figures.
+     * <p>
+     * While a bulk update is in progress, the drawing may defer the
+     * maintenance of internal data structures, such as a spatial index,
+     * until they are needed, or until the bulk update ends.
+     * <p>
+     * Calls to this method can be nested. Each call must be balanced by a
+     * call to {@link #endBulkUpdate}.
+     */
+    void beginBulkUpdate();
+
+    /**
+     * Informs the drawing that a bulk update has ended.
+     *
+     * @see #beginBulkUpdate
+     */
+    void endBulkUpdate();
+
+    /**
+     * Returns true if a bulk update is in progress.
+     *
+     * @see #beginBulkUpdate
+     */
+    boolean isBulkUpdating();
+
+    /**
+     * Begins a change transaction.
+     * <p>
+     * Until the outermost change transaction ends, the drawing does not
+     * forward the change events of its children to its listeners. Instead
+     * it collects the areas which have been invalidated by the children.
+     * When the transaction ends, the drawing fires a single event with the
+     * union of these areas.
+     * <p>
+     * Use a change transaction when many figures are changed at once, for
+     * example, for each step while the user drags a selection of figures.
+     * Thus the drawing views repaint the drawing once for all figures,
+     * instead of once for each figure.
+     * <p>
+     * Calls to this method can be nested. Each call must be balanced by a
+     * call to {@link #endChangeTransaction}.
+     */
+    void beginChangeTransaction();
+
+    /**
+     * Ends a change transaction.
+     *
+     * @see #beginChangeTransaction
+     */
+    void endChangeTransaction();
+
+    /**
+     * Returns true if a change transaction is in progress.
+     *
+     * @see #beginChangeTransaction
+     */
+    boolean isInChangeTransaction();
+
+    /**
+     * Returns the scheduler, which updates the connection figures of the
+     * drawing, when their start or end figures have changed.
+     * <p>
+     * While a bulk update is in progress, the scheduler defers the updates
+     * of the connections. The drawing updates the deferred connections when
+     * the bulk update ends.
+     *
+     * @see #beginBulkUpdate
+     */
+    ConnectionScheduler getConnectionScheduler();
+
+    /**
+     * Returns true, if the scheduler of the drawing has been created.
+     * Callers, which only need to notify an existing scheduler, use this
+     * method to avoid creating one.
+     *
+     * @see #getConnectionScheduler
+     */
+    boolean hasConnectionScheduler();
+
+    /**
+     * Returns the store, which holds the image data of the image figures
+     * of the drawing, so that figures with equal image data share it.
+     * <p>
+     * Image figures acquire their image data from the store when they are
+     * added to the drawing, and release it when they are removed.
+     */
+    ImageStore getImageStore();
+
     /**
      * Adds a listener for undooable edit events.
      */
@@ -0,0 +1,335 @@
+/*
+ * @(#)DrawingTileCache.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches rendered tiles of a drawing for {@link DefaultDrawingView}.
+ * <p>
+ * A tile is a square image of {@link #TILE_SIZE} pixels, which holds a part
+ * of the drawing rendered at a specific scale factor. Tile {@code (x, y)} at
+ * scale factor {@code s} holds the pixels from {@code x * TILE_SIZE} to
+ * {@code (x + 1) * TILE_SIZE} of the drawing scaled by {@code s}. Since the
+ * tiles do not depend on the translation of the view, they can be reused
+ * when the view is scrolled. Since the tiles of different scale factors are
+ * kept apart, they can be reused when the view is zoomed back.
+ * <p>
+ * Each tile keeps track of its dirty area. Invalidating an area of the
+ * drawing only marks the intersecting parts of the tiles as dirty, so that
+ * only these parts need to be rendered again.
+ * <p>
+ * The tiles are kept in least recently used order. When the memory used by
+ * the tiles exceeds the memory budget, the least recently used tiles are
+ * discarded.
+ * <p>
+ * A tile does not allocate its image until it is rendered for the first time.
+ * If the tiles are rendered in the background, a tile keeps its stale
+ * image until it has been rendered again, and tiles which have not been
+ * rendered yet can be replaced by tiles of other scale factors, see
+ * {@link #findRenderedTiles}.
+ * <p>
+ * This class is not thread safe. It is intended to be used on the AWT Event
+ * Dispatcher Thread.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+class DrawingTileCache {
+
+    /**
+     * The width and height of a tile in pixels.
+     */
+    public static final int TILE_SIZE = 256;
+    private static final long TILE_BYTES = TILE_SIZE * TILE_SIZE * 4L;
+    private final LinkedHashMap<Key, Tile> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long maxBytes;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxBytes The memory budget for the tiles in bytes.
+     */
+    public DrawingTileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the tile with the specified scale factor and tile coordinates,
+     * or null if the tile is not in the cache.
+     */
+    public Tile get(double scaleFactor, int x, int y) {
+        return tiles.get(new Key(scaleFactor, x, y));
+    }
+
+    /**
+     * Creates a tile and puts it into the cache. The whole tile is dirty.
+     * Discards the least recently used tiles, if the memory budget is
+     * exceeded.
+     */
+    public Tile create(double scaleFactor, int x, int y) {
+        Key key = new Key(scaleFactor, x, y);
+        Tile tile = new Tile(key);
+        tiles.put(key, tile);
+        trim();
+        return tile;
+    }
+
+    /**
+     * Creates an image for a tile. Tiles are rendered on the AWT Event
+     * Dispatcher Thread, in time slices between paint requests, so this
+     * method is invoked on that thread when a tile is rendered for the
+     * first time. The method itself does not access the cache.
+     *
+     * @param gc The graphics configuration for creating a compatible image,
+     * or null.
+     */
+    public static BufferedImage createImage(GraphicsConfiguration gc) {
+        return (gc == null)
+                ? new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE)
+                : gc.createCompatibleImage(TILE_SIZE, TILE_SIZE, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Returns the rendered tiles of the scale factor closest to the specified
+     * scale factor, which intersect the specified drawing area. Tiles of the
+     * specified scale factor are not returned.
+     */
+    public List<Tile> findRenderedTiles(double scaleFactor, Rectangle2D.Double r) {
+        ArrayList<Tile> found = new ArrayList<>();
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (Tile tile : tiles.values()) {
+            double s = tile.key.scaleFactor;
+            if (tile.image == null || s == scaleFactor) {
+                continue;
+            }
+            double distance = Math.abs(Math.log(s / scaleFactor));
+            if (distance > bestDistance) {
+                continue;
+            }
+            if (tile.key.x * TILE_SIZE < (r.x + r.width) * s
+                    && (tile.key.x + 1) * TILE_SIZE > r.x * s
+                    && tile.key.y * TILE_SIZE < (r.y + r.height) * s
+                    && (tile.key.y + 1) * TILE_SIZE > r.y * s) {
+                if (distance < bestDistance) {
+                    found.clear();
+                    bestDistance = distance;
+                }
+                found.add(tile);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Marks the parts of all tiles which intersect the specified drawing
+     * area as dirty.
+     */
+    public void invalidate(Rectangle2D.Double r) {
+        for (Tile tile : tiles.values()) {
+            double s = tile.key.scaleFactor;
+            int x0 = (int) Math.floor(r.x * s) - 2 - tile.key.x * TILE_SIZE;
+            int y0 = (int) Math.floor(r.y * s) - 2 - tile.key.y * TILE_SIZE;
+            int x1 = (int) Math.ceil((r.x + r.width) * s) + 2 - tile.key.x * TILE_SIZE;
+            int y1 = (int) Math.ceil((r.y + r.height) * s) + 2 - tile.key.y * TILE_SIZE;
+            x0 = Math.max(x0, 0);
+            y0 = Math.max(y0, 0);
+            x1 = Math.min(x1, TILE_SIZE);
+            y1 = Math.min(y1, TILE_SIZE);
+            if (x0 < x1 && y0 < y1) {
+                tile.invalidate(x0, y0, x1 - x0, y1 - y0);
+            }
+        }
+    }
+
+    /**
+     * Marks all tiles as dirty.
+     */
+    public void invalidateAll() {
+        for (Tile tile : tiles.values()) {
+            tile.invalidate(0, 0, TILE_SIZE, TILE_SIZE);
+        }
+    }
+
+    /**
+     * Discards all tiles.
+     */
+    public void clear() {
+        for (Tile tile : tiles.values()) {
+            tile.discard();
+        }
+        tiles.clear();
+    }
+
+    /**
+     * Sets the memory budget for the tiles in bytes.
+     */
+    public void setMaxBytes(long newValue) {
+        maxBytes = newValue;
+        trim();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private void trim() {
+        for (Iterator<Map.Entry<Key, Tile>> i = tiles.entrySet().iterator(); i.hasNext();) {
+            if (tiles.size() * TILE_BYTES <= maxBytes) {
+                break;
+            }
+            i.next().getValue().discard();
+            i.remove();
+        }
+    }
+
+    /**
+     * Identifies a tile by scale factor and tile coordinates.
+     */
+    private static class Key {
+
+        private final double scaleFactor;
+        private final int x;
+        private final int y;
+
+        public Key(double scaleFactor, int x, int y) {
+            this.scaleFactor = scaleFactor;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) obj;
+            return this.x == that.x && this.y == that.y
+                    && Double.compare(this.scaleFactor, that.scaleFactor) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(scaleFactor);
+            return (int) (bits ^ (bits >>> 32)) * 31 * 31 + x * 31 + y;
+        }
+    }
+
+    /**
+     * A tile holds a rendered part of the drawing.
+     */
+    public static class Tile {
+
+        private final Key key;
+        private BufferedImage image;
+        /**
+         * The dirty area in tile coordinates.
+         */
+        private final Rectangle dirtyArea = new Rectangle(0, 0, TILE_SIZE, TILE_SIZE);
+        private boolean isPending;
+        private boolean isDiscarded;
+
+        private Tile(Key key) {
+            this.key = key;
+        }
+
+        /**
+         * Returns the image of the tile, or null if the tile has not been
+         * rendered yet.
+         */
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * Replaces the image of the tile.
+         */
+        public void setImage(BufferedImage newValue) {
+            if (image != null && image != newValue) {
+                image.flush();
+            }
+            image = newValue;
+        }
+
+        public double getScaleFactor() {
+            return key.scaleFactor;
+        }
+
+        /**
+         * Returns the x-coordinate of the tile in the scaled drawing.
+         */
+        public int getX() {
+            return key.x * TILE_SIZE;
+        }
+
+        /**
+         * Returns the y-coordinate of the tile in the scaled drawing.
+         */
+        public int getY() {
+            return key.y * TILE_SIZE;
+        }
+
+        public boolean isDirty() {
+            return !dirtyArea.isEmpty();
+        }
+
+        /**
+         * Returns the dirty area in tile coordinates.
+         */
+        public Rectangle getDirtyArea() {
+            return new Rectangle(dirtyArea);
+        }
+
+        public void invalidate(int x, int y, int w, int h) {
+            if (dirtyArea.isEmpty()) {
+                dirtyArea.setBounds(x, y, w, h);
+            } else {
+                dirtyArea.add(new Rectangle(x, y, w, h));
+            }
+        }
+
+        public void validate() {
+            dirtyArea.setSize(0, 0);
+        }
+
+        /**
+         * Returns true, if the tile is waiting for being rendered in the
+         * background.
+         */
+        public boolean isPending() {
+            return isPending;
+        }
+
+        public void setPending(boolean newValue) {
+            isPending = newValue;
+        }
+
+        /**
+         * Returns true, if the tile has been removed from the cache.
+         */
+        public boolean isDiscarded() {
+            return isDiscarded;
+        }
+
+        private void discard() {
+            isDiscarded = true;
+            if (image != null) {
+                image.flush();
+            }
+        }
+    }
+}
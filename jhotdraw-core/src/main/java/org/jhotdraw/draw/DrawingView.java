@@ -232,6 +232,35 @@ public interface DrawingView {
      */
     public void selectAll();
 
+    /**
+     * Informs the view that the selection is going to be changed many times
+     * in rapid succession, for example, when figures are selected by a
+     * script.
+     * <p>
+     * While a selection update is in progress, the view may defer the
+     * creation of handles, repaints and the notification of
+     * {@code FigureSelectionListener}s until the update ends. Then it fires
+     * a single {@code FigureSelectionEvent}, which describes all changes.
+     * <p>
+     * Calls to this method can be nested. Each call must be balanced by a
+     * call to {@link #endSelectionUpdate}.
+     */
+    public void beginSelectionUpdate();
+
+    /**
+     * Informs the view that a selection update has ended.
+     *
+     * @see #beginSelectionUpdate
+     */
+    public void endSelectionUpdate();
+
+    /**
+     * Returns true if a selection update is in progress.
+     *
+     * @see #beginSelectionUpdate
+     */
+    public boolean isSelectionUpdating();
+
     /**
      * Gets the selected figures. Returns an empty set, if no figures are selected.
      */
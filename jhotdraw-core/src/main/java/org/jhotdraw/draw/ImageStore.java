@@ -0,0 +1,362 @@
+/*
+ * @(#)ImageStore.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.jhotdraw.draw.figure.ImageHolderFigure;
+import org.jhotdraw.io.Base64;
+import org.jhotdraw.xml.DOMInput;
+import org.jhotdraw.xml.DOMOutput;
+
+/**
+ * Holds the encoded image data of the image figures of a drawing, so that
+ * figures with equal image data share a single copy of it.
+ * <p>
+ * The image data is identified by its content hash. When an image figure is
+ * added to the drawing, it acquires its image data from the store, and
+ * replaces its own array with the array which is held by the store. When the
+ * figure is removed from the drawing, it releases the image data. The store
+ * counts the references to each distinct image data, and discards the image
+ * data when its last reference has been released.
+ * <p>
+ * Since figures with equal image data hold the same array, the
+ * {@link MipmapImageCache}, which identifies image data by identity, holds
+ * only one decoded image and one mip pyramid for it. The store does not hold
+ * decoded images of its own, {@link #getBufferedImage} returns the full
+ * resolution image of the cache. Java serialization writes a shared array
+ * only once.
+ * <p>
+ * The static methods {@link #writeImageData} and {@link #readImageData}
+ * write and read the image data of a figure. A format, which writes a
+ * document or a clipboard fragment, can enclose the figures in an image
+ * table, see {@link #beginImageTable(DOMOutput)}. Then each distinct image
+ * data is written only once into an "images" element at the end of the
+ * document, and the figures refer to it by its content hash. Without an
+ * image table, each figure writes its own copy of the image data.
+ * <p>
+ * This class is not thread safe. It is intended to be used on the AWT Event
+ * Dispatcher Thread. The static methods can be used from any thread.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class ImageStore {
+
+    /**
+     * The image tables of the outputs, which are being written.
+     */
+    private static final Map<DOMOutput, OutputTable> OUTPUT_TABLES
+            = Collections.synchronizedMap(new WeakHashMap<DOMOutput, OutputTable>());
+    /**
+     * The image tables of the inputs, which are being read.
+     */
+    private static final Map<DOMInput, InputTable> INPUT_TABLES
+            = Collections.synchronizedMap(new WeakHashMap<DOMInput, InputTable>());
+    /**
+     * The entries by content hash.
+     */
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    /**
+     * The entries by the identity of their image data array.
+     */
+    private final IdentityHashMap<byte[], Entry> entriesByData = new IdentityHashMap<>();
+
+    private static class Entry {
+
+        private final String hash;
+        private final byte[] data;
+        private int referenceCount;
+
+        public Entry(String hash, byte[] data) {
+            this.hash = hash;
+            this.data = data;
+        }
+    }
+
+    /**
+     * The image data which is written to an output, by content hash.
+     */
+    private static class OutputTable {
+
+        private final LinkedHashMap<String, byte[]> images = new LinkedHashMap<>();
+        /**
+         * The content hashes of the arrays, which have been written. The
+         * figures of a drawing share their arrays, so most of the hashes
+         * are only computed once.
+         */
+        private final IdentityHashMap<byte[], String> hashes = new IdentityHashMap<>();
+    }
+
+    /**
+     * The figures of an input, which wait for the image data of the image
+     * table, by content hash.
+     */
+    private static class InputTable {
+
+        private final HashMap<String, List<ImageHolderFigure>> pendingFigures = new HashMap<>();
+    }
+
+    /**
+     * Creates a new instance.
+     */
+    public ImageStore() {
+    }
+
+    /**
+     * Acquires a reference to the specified image data.
+     *
+     * @param data The encoded image data. Can be null.
+     * @param image The image decoded from the data, or null. The image is
+     * put into the {@link MipmapImageCache}, so that the image data does not
+     * have to be decoded again.
+     * @return The array held by the store, which has the same content as the
+     * specified array. The figure must use this array instead of its own.
+     * Returns null if data is null.
+     */
+    public byte[] acquire(byte[] data, BufferedImage image) {
+        if (data == null) {
+            return null;
+        }
+        Entry entry = entriesByData.get(data);
+        if (entry == null) {
+            String hash = getHash(data);
+            entry = entries.get(hash);
+            if (entry == null) {
+                entry = new Entry(hash, data);
+                entries.put(hash, entry);
+                entriesByData.put(data, entry);
+            }
+        }
+        if (image != null) {
+            MipmapImageCache.getInstance().putFullImage(entry.data, image);
+        }
+        entry.referenceCount++;
+        return entry.data;
+    }
+
+    /**
+     * Releases a reference to the specified image data. The image data must
+     * be an array, which has been returned by {@link #acquire}.
+     *
+     * @param data The image data. Can be null.
+     */
+    public void release(byte[] data) {
+        Entry entry = (data == null) ? null : entriesByData.get(data);
+        if (entry != null && --entry.referenceCount <= 0) {
+            entries.remove(entry.hash);
+            entriesByData.remove(data);
+            MipmapImageCache.getInstance().remove(data);
+        }
+    }
+
+    /**
+     * Returns the image decoded from the specified image data. This is the
+     * full resolution image of the {@link MipmapImageCache}, so the image
+     * data is not decoded again, as long as the cache holds it.
+     *
+     * @param data The image data. This should be an array, which has been
+     * returned by {@link #acquire}.
+     * @return The image.
+     * @throws IOException if the image data can not be decoded. The image
+     * data is not decoded again, and the same exception is thrown on
+     * subsequent calls.
+     */
+    public BufferedImage getBufferedImage(byte[] data) throws IOException {
+        return MipmapImageCache.getInstance().getFullImage(data);
+    }
+    /**
+     * Returns the number of references to the specified image data.
+     */
+    public int getReferenceCount(byte[] data) {
+        Entry entry = entriesByData.get(data);
+        return (entry == null) ? 0 : entry.referenceCount;
+    }
+
+    /**
+     * Returns the number of distinct image data in the store.
+     */
+    public int getImageCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the content hash of the specified image data as a hexadecimal
+     * SHA-256 digest.
+     */
+    public static String getHash(byte[] data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            InternalError error = new InternalError(e.getMessage());
+            error.initCause(e);
+            throw error;
+        }
+        byte[] hash = digest.digest(data);
+        byte[] hex = new byte[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = (byte) Character.forDigit((hash[i] >> 4) & 0xf, 16);
+            hex[i * 2 + 1] = (byte) Character.forDigit(hash[i] & 0xf, 16);
+        }
+        return new String(hex, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Begins an image table for the specified output. Until the image table
+     * is ended, {@link #writeImageData} writes each distinct image data only
+     * once into the table.
+     */
+    public static void beginImageTable(DOMOutput out) {
+        OUTPUT_TABLES.put(out, new OutputTable());
+    }
+
+    /**
+     * Ends the image table of the specified output, and writes it as an
+     * "images" element into the current element. Nothing is written, if
+     * the table is empty.
+     */
+    public static void endImageTable(DOMOutput out) {
+        OutputTable table = OUTPUT_TABLES.remove(out);
+        if (table != null && !table.images.isEmpty()) {
+            out.openElement("images");
+            for (Map.Entry<String, byte[]> entry : table.images.entrySet()) {
+                out.openElement("image");
+                out.addAttribute("hash", entry.getKey());
+                out.addText(Base64.encodeBytes(entry.getValue()));
+                out.closeElement();
+            }
+            out.closeElement();
+        }
+    }
+
+    /**
+     * Begins an image table for the specified input. Figures, whose image
+     * data refers to the image table, get their image data when the image
+     * table is ended.
+     */
+    public static void beginImageTable(DOMInput in) {
+        INPUT_TABLES.put(in, new InputTable());
+    }
+
+    /**
+     * Ends the image table of the specified input. Reads the "images"
+     * element from the current element, and sets the image data of the
+     * figures, which refer to it.
+     *
+     * @throws IOException if the image data of a figure is missing in the
+     * image table.
+     */
+    public static void endImageTable(DOMInput in) throws IOException {
+        InputTable table = INPUT_TABLES.remove(in);
+        if (table == null || table.pendingFigures.isEmpty()) {
+            return;
+        }
+        if (in.getElementCount("images") > 0) {
+            in.openElement("images");
+            try {
+                for (int i = 0, n = in.getElementCount("image"); i < n; i++) {
+                    in.openElement("image", i);
+                    try {
+                        List<ImageHolderFigure> figures = table.pendingFigures.remove(in.getAttribute("hash", ""));
+                        if (figures != null) {
+                            byte[] data = Base64.decode(in.getText(""));
+                            for (ImageHolderFigure figure : figures) {
+                                figure.setImage(data, null);
+                            }
+                        }
+                    } finally {
+                        in.closeElement();
+                    }
+                }
+            } finally {
+                in.closeElement();
+            }
+        }
+        if (!table.pendingFigures.isEmpty()) {
+            throw new IOException("Image data " + table.pendingFigures.keySet().iterator().next() + " missing.");
+        }
+    }
+
+    /**
+     * Writes the specified image data as an "imageData" element. If the
+     * output has an image table, the element refers to the image data in the
+     * table by its content hash. Otherwise the element holds the image data
+     * encoded in Base64.
+     */
+    public static void writeImageData(DOMOutput out, byte[] data) {
+        OutputTable table = OUTPUT_TABLES.get(out);
+        out.openElement("imageData");
+        if (table == null) {
+            out.addText(Base64.encodeBytes(data));
+        } else {
+            String hash = table.hashes.get(data);
+            if (hash == null) {
+                hash = getHash(data);
+                table.hashes.put(data, hash);
+                if (!table.images.containsKey(hash)) {
+                    table.images.put(hash, data);
+                }
+            }
+            out.addAttribute("ref", hash);
+        }
+        out.closeElement();
+    }
+
+    /**
+     * Reads image data, which has been written by {@link #writeImageData},
+     * from the "imageData" element, and sets it on the specified figure.
+     * If the element refers to the image table of the input, the image data
+     * is set, when the image table is ended.
+     * <p>
+     * Nothing is set, if the input does not have an "imageData" element, or
+     * if the element is empty.
+     *
+     * @throws IOException if the element refers to an image table, but the
+     * input has no image table.
+     */
+    public static void readImageData(DOMInput in, ImageHolderFigure figure) throws IOException {
+        if (in.getElementCount("imageData") == 0) {
+            return;
+        }
+        in.openElement("imageData");
+        try {
+            String ref = in.getAttribute("ref", null);
+            if (ref != null) {
+                InputTable table = INPUT_TABLES.get(in);
+                if (table == null) {
+                    throw new IOException("Image data " + ref + " refers to an image table.");
+                }
+                List<ImageHolderFigure> figures = table.pendingFigures.get(ref);
+                if (figures == null) {
+                    figures = new ArrayList<>();
+                    table.pendingFigures.put(ref, figures);
+                }
+                figures.add(figure);
+            } else {
+                String base64Data = in.getText();
+                if (base64Data != null && !base64Data.trim().isEmpty()) {
+                    figure.setImage(Base64.decode(base64Data), null);
+                }
+            }
+        } finally {
+            in.closeElement();
+        }
+    }
+}
@@ -0,0 +1,600 @@
+/*
+ * @(#)MipmapImageCache.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+/**
+ * Decodes images in background threads and caches them at different
+ * resolutions for drawing them at different scale factors.
+ * <p>
+ * The cache is used by image figures. An image is identified by its
+ * <em>source</em>, which is either the array with the encoded image data, or
+ * a {@code BufferedImage}. Sources are compared by identity.
+ * <p>
+ * For each source, the cache holds a mip pyramid: level 0 is the image at
+ * full resolution, and each further level halves the width and the height
+ * of the previous level. {@link #getImage} returns the smallest level which
+ * is at least as large as the image is drawn, so that drawing a zoomed out
+ * image does not scale down the full resolution image on every frame.
+ * <p>
+ * If the requested level is not in the cache, {@code getImage} returns the
+ * nearest level which is in the cache, or null if there is none. Then it
+ * decodes the image data or scales down the image in a background thread.
+ * When this is done, the cache invokes the callback of the request on the
+ * AWT Event Dispatcher Thread, so that the figure can repaint itself. Until
+ * then, the figure should draw a placeholder.
+ * <p>
+ * The levels are kept in least recently used order. When the memory used by
+ * the levels exceeds the memory budget, the least recently used levels are
+ * discarded. The full resolution image of a {@code BufferedImage} source is
+ * the source itself, it is not held by the cache.
+ * <p>
+ * The full resolution image of image data can also be requested
+ * synchronously with {@link #getFullImage}. The {@link ImageStore} of a
+ * drawing does so, so that the image which it returns, and the image from
+ * which the figures draw the levels, is the same single decoded copy.
+ * <p>
+ * A level, which has just been created, is pinned until it has been returned
+ * by {@code getImage}, so that the figure which has requested it can draw it
+ * at least once. A level, which is larger than the memory budget, is never
+ * requested; the next coarser level, which fits into the budget, is used
+ * instead. If a level is requested again shortly after it has been
+ * discarded, the images which are drawn do not fit into the budget together.
+ * Then the cache caps the source at the next coarser level, until the finer
+ * level fits into the free memory, so that the figures do not keep the
+ * background threads busy with decoding the same images over and over.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class MipmapImageCache {
+
+    private static MipmapImageCache instance;
+    /**
+     * The time in milliseconds, during which a new level is not discarded,
+     * if it has not been drawn.
+     */
+    private static final long PIN_MILLIS = 2000;
+    /**
+     * If a level is requested again within this time in milliseconds after
+     * it has been discarded, the source is capped at a coarser level.
+     */
+    private static final long THRASH_MILLIS = 1000;
+    /**
+     * The time in milliseconds, after which the cap of a source expires.
+     */
+    private static final long CAP_MILLIS = 10000;
+    /**
+     * The decoded levels in least recently used order.
+     */
+    private final LinkedHashMap<Key, BufferedImage> levels = new LinkedHashMap<>(64, 0.75f, true);
+    /**
+     * The full resolution sizes of the sources, which have been decoded,
+     * as pairs of width and height.
+     */
+    private final WeakHashMap<Object, int[]> sizes = new WeakHashMap<>();
+    /**
+     * The sources whose image data could not be decoded, with the error
+     * which occurred.
+     */
+    private final WeakHashMap<Object, IOException> brokenSources = new WeakHashMap<>();
+    /**
+     * The levels which are being created, with the callbacks which must be
+     * invoked, when they are done.
+     */
+    private final HashMap<Key, List<Runnable>> pendingLevels = new HashMap<>();
+    /**
+     * The levels which have been created, but have not been returned by
+     * {@link #getImage} yet, with the time when they have been created.
+     */
+    private final HashMap<Key, Long> pinnedLevels = new HashMap<>();
+    /**
+     * The levels which have been discarded last, by source, as pairs of level
+     * and time.
+     */
+    private final WeakHashMap<Object, long[]> evictions = new WeakHashMap<>();
+    /**
+     * The finest levels which are requested for the sources, which do not
+     * fit into the budget together with the other images, as pairs of level
+     * and time.
+     */
+    private final WeakHashMap<Object, long[]> levelCaps = new WeakHashMap<>();
+    private final ExecutorService executor;
+    private long requestCount;
+    private long maxBytes;
+    private long bytes;
+
+    /**
+     * Identifies a level of a source.
+     */
+    private static class Key {
+
+        private final Object source;
+        private final int level;
+
+        public Key(Object source, int level) {
+            this.source = source;
+            this.level = level;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return this.source == that.source && this.level == that.level;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(source) * 31 + level;
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxBytes The memory budget in bytes.
+     */
+    public MipmapImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "MipmapImageCache");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Returns the shared instance. Its memory budget is an eighth of the
+     * maximal heap size, but at most 256 MB.
+     */
+    public static synchronized MipmapImageCache getInstance() {
+        if (instance == null) {
+            instance = new MipmapImageCache(Math.min(Runtime.getRuntime().maxMemory() / 8, 256L << 20));
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the memory budget. Discards the least recently used levels, if
+     * they exceed the new budget.
+     *
+     * @param newValue The memory budget in bytes.
+     */
+    public synchronized void setMaxBytes(long newValue) {
+        maxBytes = newValue;
+        levelCaps.clear();
+        evict();
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the memory used by the cached levels in bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of levels, which have been requested from the
+     * background threads.
+     */
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns the image of the specified source at a resolution, which is
+     * suitable for drawing it with the specified size.
+     *
+     * @param source The encoded image data as a {@code byte[]}, or a
+     * {@code BufferedImage}.
+     * @param width The width in pixels with which the image is drawn.
+     * @param height The height in pixels with which the image is drawn.
+     * @param callback This callback is invoked on the AWT Event Dispatcher
+     * Thread, when a better level of the image is available, or when the
+     * image data could not be decoded. Can be null. The callback should be
+     * the same object for all requests of a figure, because the cache keeps
+     * only one of equal callbacks for a pending request.
+     * @return The image, or null if no level of the image is available yet.
+     */
+    public BufferedImage getImage(Object source, double width, double height, Runnable callback) {
+        int[] size;
+        synchronized (this) {
+            size = sizes.get(source);
+        }
+        if (size == null) {
+            if (source instanceof BufferedImage) {
+                BufferedImage image = (BufferedImage) source;
+                size = new int[]{image.getWidth(), image.getHeight()};
+                synchronized (this) {
+                    sizes.put(source, size);
+                }
+            } else {
+                synchronized (this) {
+                    if (brokenSources.containsKey(source)) {
+                        return null;
+                    }
+                }
+                request(new Key(source, 0), callback);
+                return null;
+            }
+        }
+        int level = limitLevel(source, size, getLevel(size[0], size[1], width, height));
+        BufferedImage image = getLevel(source, level);
+        if (image == null) {
+            request(new Key(source, level), callback);
+            // Use the nearest finer level, or a slightly coarser level
+            for (int l = level - 1; image == null && l >= 0; l--) {
+                image = getLevel(source, l);
+            }
+            for (int l = level + 1; image == null && l <= level + 2; l++) {
+                image = getLevel(source, l);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Returns true if the image data of the specified source could not be
+     * decoded.
+     */
+    public synchronized boolean isBroken(Object source) {
+        return brokenSources.containsKey(source);
+    }
+
+    /**
+     * Returns the image decoded from the specified image data at full
+     * resolution. If level 0 of the image data is not in the cache, the
+     * image data is decoded on the calling thread, and the image is kept as
+     * level 0, if it fits into the memory budget.
+     *
+     * @param data The encoded image data.
+     * @return The image.
+     * @throws IOException if the image data can not be decoded. The cache
+     * does not try to decode the image data again, and throws the same
+     * exception on subsequent calls.
+     */
+    public BufferedImage getFullImage(byte[] data) throws IOException {
+        Key key = new Key(data, 0);
+        synchronized (this) {
+            IOException error = brokenSources.get(data);
+            if (error != null) {
+                throw error;
+            }
+            BufferedImage image = levels.get(key);
+            if (image != null) {
+                return image;
+            }
+        }
+        BufferedImage image = decodeData(data);
+        synchronized (this) {
+            BufferedImage cached = levels.get(key);
+            if (cached != null) {
+                // Another thread has decoded the image data in the meantime
+                return cached;
+            }
+            if (getBytes(image) <= maxBytes) {
+                put(key, image);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Puts an image, which has been decoded from the specified image data,
+     * into the cache as level 0, unless the cache already holds a level 0
+     * for the image data, or the image does not fit into the memory budget.
+     *
+     * @param data The encoded image data.
+     * @param image The image decoded from the data.
+     */
+    public synchronized void putFullImage(byte[] data, BufferedImage image) {
+        Key key = new Key(data, 0);
+        sizes.put(data, new int[]{image.getWidth(), image.getHeight()});
+        brokenSources.remove(data);
+        if (!levels.containsKey(key) && getBytes(image) <= maxBytes) {
+            put(key, image);
+        }
+    }
+
+    /**
+     * Returns the level, whose size is the smallest size which is at least
+     * the specified size.
+     */
+    private static int getLevel(int imageWidth, int imageHeight, double width, double height) {
+        int level = 0;
+        while ((imageWidth >> (level + 1)) >= width && (imageHeight >> (level + 1)) >= height
+                && (imageWidth >> (level + 1)) > 0 && (imageHeight >> (level + 1)) > 0) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Limits the specified level of a source to the levels, which fit into
+     * the memory budget.
+     */
+    private synchronized int limitLevel(Object source, int[] size, int level) {
+        while (getBytes(size, level) > maxBytes && canScaleDown(size, level)) {
+            level++;
+        }
+        long now = System.currentTimeMillis();
+        long[] cap = levelCaps.get(source);
+        if (cap != null && level < cap[0]) {
+            if (bytes + getBytes(size, level) <= maxBytes || now - cap[1] > CAP_MILLIS) {
+                levelCaps.remove(source);
+            } else {
+                level = (int) cap[0];
+            }
+        }
+        Key key = new Key(source, level);
+        long[] eviction = evictions.get(source);
+        if (eviction != null && level <= eviction[0] && now - eviction[1] <= THRASH_MILLIS
+                && !levels.containsKey(key) && !pendingLevels.containsKey(key)) {
+            // The level has been discarded, while it was still drawn
+            evictions.remove(source);
+            if (canScaleDown(size, (int) eviction[0])) {
+                level = (int) eviction[0] + 1;
+                levelCaps.put(source, new long[]{level, now});
+                // The finer levels of the source take the memory of the
+                // other images
+                Iterator<Map.Entry<Key, BufferedImage>> i = levels.entrySet().iterator();
+                while (i.hasNext()) {
+                    Map.Entry<Key, BufferedImage> entry = i.next();
+                    if (entry.getKey().source == source && entry.getKey().level < level) {
+                        bytes -= getBytes(entry.getValue());
+                        pinnedLevels.remove(entry.getKey());
+                        i.remove();
+                    }
+                }
+            }
+        }
+        return level;
+    }
+
+    private static boolean canScaleDown(int[] size, int level) {
+        return (size[0] >> (level + 1)) > 0 || (size[1] >> (level + 1)) > 0;
+    }
+
+    /**
+     * Returns the memory needed by the specified level of an image with the
+     * specified size.
+     */
+    private static long getBytes(int[] size, int level) {
+        return (long) Math.max(1, size[0] >> level) * Math.max(1, size[1] >> level) * 4;
+    }
+
+    private synchronized BufferedImage getLevel(Object source, int level) {
+        if (level == 0 && source instanceof BufferedImage) {
+            return (BufferedImage) source;
+        }
+        Key key = new Key(source, level);
+        BufferedImage image = levels.get(key);
+        if (image != null && pinnedLevels.remove(key) != null && bytes > maxBytes) {
+            // The pinned levels have exceeded the budget
+            evict();
+        }
+        return image;
+    }
+
+    /**
+     * Requests the creation of the specified level in a background thread.
+     */
+    private void request(final Key key, Runnable callback) {
+        synchronized (this) {
+            List<Runnable> callbacks = pendingLevels.get(key);
+            if (callbacks != null) {
+                if (callback != null && !callbacks.contains(callback)) {
+                    callbacks.add(callback);
+                }
+                return;
+            }
+            callbacks = new ArrayList<>();
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+            pendingLevels.put(key, callbacks);
+            requestCount++;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                BufferedImage image = null;
+                try {
+                    image = createLevel(key);
+                } finally {
+                    final List<Runnable> callbacks;
+                    synchronized (MipmapImageCache.this) {
+                        callbacks = pendingLevels.remove(key);
+                        if (image != null && !(key.level == 0 && key.source instanceof BufferedImage)
+                                && getBytes(image) <= maxBytes) {
+                            pinnedLevels.put(key, System.currentTimeMillis());
+                            put(key, image);
+                        }
+                    }
+                    if (!callbacks.isEmpty()) {
+                        SwingUtilities.invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                for (Runnable r : callbacks) {
+                                    r.run();
+                                }
+                            }
+                        });
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the specified level by decoding the image data, or by scaling
+     * down the nearest finer level which is in the cache.
+     */
+    private BufferedImage createLevel(Key key) {
+        BufferedImage image = null;
+        int level = key.level;
+        while (image == null && level > 0) {
+            level--;
+            image = getLevel(key.source, level);
+        }
+        if (image == null) {
+            image = decode(key.source);
+            if (image == null) {
+                return null;
+            }
+            if (key.level > 0) {
+                synchronized (this) {
+                    // Keep the full resolution image only if it does not
+                    // push out other images
+                    if (bytes + getBytes(image) <= maxBytes) {
+                        put(new Key(key.source, 0), image);
+                    }
+                }
+            }
+        }
+        while (level < key.level) {
+            image = scaleDown(image);
+            level++;
+        }
+        return image;
+    }
+
+    private BufferedImage decode(Object source) {
+        try {
+            return decodeData((byte[]) source);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the specified image data. Records the size of the image, or
+     * the error which occurred. ImageIO throws runtime exceptions on some
+     * corrupt image data, these are reported as an IOException too.
+     */
+    private BufferedImage decodeData(byte[] data) throws IOException {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(data));
+            if (image == null) {
+                throw new IOException("Unsupported image format.");
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                brokenSources.put(data, e);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            IOException error = new IOException("Corrupt image data.", e);
+            synchronized (this) {
+                brokenSources.put(data, error);
+            }
+            throw error;
+        }
+        synchronized (this) {
+            sizes.put(data, new int[]{image.getWidth(), image.getHeight()});
+        }
+        return image;
+    }
+
+    /**
+     * Returns an image with half the width and the height of the specified
+     * image.
+     */
+    private static BufferedImage scaleDown(BufferedImage image) {
+        int w = Math.max(1, image.getWidth() / 2);
+        int h = Math.max(1, image.getHeight() / 2);
+        BufferedImage scaled = new BufferedImage(w, h,
+                image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, w, h, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private void put(Key key, BufferedImage image) {
+        BufferedImage old = levels.put(key, image);
+        if (old != null) {
+            bytes -= getBytes(old);
+        }
+        bytes += getBytes(image);
+        evict();
+    }
+
+    /**
+     * Discards the least recently used levels, until the memory used by the
+     * levels fits into the budget. Pinned levels are not discarded.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Key, BufferedImage>> i = levels.entrySet().iterator();
+        while (bytes > maxBytes && i.hasNext()) {
+            Map.Entry<Key, BufferedImage> entry = i.next();
+            Key key = entry.getKey();
+            Long pinned = pinnedLevels.get(key);
+            if (pinned != null) {
+                if (now - pinned <= PIN_MILLIS) {
+                    continue;
+                }
+                pinnedLevels.remove(key);
+            }
+            bytes -= getBytes(entry.getValue());
+            i.remove();
+            evictions.put(key.source, new long[]{key.level, now});
+        }
+    }
+
+    private static long getBytes(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    /**
+     * Removes all levels of the specified source from the cache.
+     */
+    public synchronized void remove(Object source) {
+        Iterator<Map.Entry<Key, BufferedImage>> i = levels.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<Key, BufferedImage> entry = i.next();
+            if (entry.getKey().source == source) {
+                bytes -= getBytes(entry.getValue());
+                pinnedLevels.remove(entry.getKey());
+                i.remove();
+            }
+        }
+        sizes.remove(source);
+        evictions.remove(source);
+        levelCaps.remove(source);
+        brokenSources.remove(source);
+    }
+}
@@ -8,20 +8,25 @@
 package org.jhotdraw.draw;
 
 import org.jhotdraw.draw.figure.Figure;
-import org.jhotdraw.draw.figure.AbstractCompositeFigure;
+import org.jhotdraw.draw.figure.LevelOfDetail;
 import java.awt.*;
 import java.awt.geom.*;
 import java.util.*;
 import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.draw.event.FigureEvent;
 import org.jhotdraw.geom.Geom;
-import org.jhotdraw.geom.QuadTree;
+import org.jhotdraw.geom.RTree;
+import org.jhotdraw.geom.SpatialIndex;
 import org.jhotdraw.util.*;
 
 /**
  * An implementation of {@link Drawing} which uses a
- * {@link org.jhotdraw.geom.QuadTree} to provide a good responsiveness for
+ * {@link org.jhotdraw.geom.SpatialIndex} to provide a good responsiveness for
  * drawings which contain many figures.
+ * <p>
+ * By default, the figures are indexed with an {@link RTree}. Subclasses can
+ * plug in a different index, for example a {@link org.jhotdraw.geom.QuadTree},
+ * by overriding {@link #createSpatialIndex}.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -29,8 +34,73 @@ import org.jhotdraw.util.*;
 public class QuadTreeDrawing extends AbstractDrawing {
 
     private static final long serialVersionUID = 1L;
-    private QuadTree<Figure> quadTree = new QuadTree<>();
+    private SpatialIndex<Figure> spatialIndex = createSpatialIndex();
     private boolean needsSorting = false;
+    /**
+     * Holds the figures which have changed during a bulk update, and whose
+     * entries in the spatial index have not been updated yet.
+     */
+    private transient HashSet<Figure> pendingUpdates;
+    /**
+     * Holds the bounds of the transformed children, which have been
+     * computed by {@link #findFiguresWithin}.
+     */
+    private transient HashMap<Figure, Rectangle2D.Double> transformedBounds;
+    /**
+     * Holds the z-order rank of each child.
+     */
+    private HashMap<Figure, ZOrder> zOrders = new HashMap<>();
+    /**
+     * The initial distance between the ranks of adjacent children.
+     */
+    private static final long RANK_GAP = 1L << 16;
+
+    /**
+     * Holds the z-order rank and the layer of a child.
+     * <p>
+     * The ranks increase from back to front, but are not consecutive. Thus,
+     * a figure can be inserted between two others, or be brought to the
+     * front, without renumbering the other figures.
+     */
+    private static class ZOrder implements java.io.Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private long rank;
+        private int layer;
+    }
+
+    /**
+     * Compares children by their z-order rank.
+     */
+    private class RankComparator implements Comparator<Figure> {
+
+        @Override
+        public int compare(Figure f1, Figure f2) {
+            return Long.compare(zOrders.get(f1).rank, zOrders.get(f2).rank);
+        }
+    }
+
+    /**
+     * Collects the figures visited in the spatial index.
+     */
+    private static class FigureCollector implements SpatialIndex.Visitor<Figure> {
+
+        private final ArrayList<Figure> figures = new ArrayList<>();
+
+        @Override
+        public boolean visit(Figure f) {
+            figures.add(f);
+            return true;
+        }
+    }
+
+    /**
+     * Creates the spatial index which is used to find the figures of this
+     * drawing.
+     */
+    protected SpatialIndex<Figure> createSpatialIndex() {
+        return new RTree<>();
+    }
 
     @Override
     public int indexOf(Figure figure) {
@@ -40,15 +110,49 @@ public class QuadTreeDrawing extends AbstractDrawing {
     @Override
     public void basicAdd(int index, Figure figure) {
         super.basicAdd(index, figure);
-        quadTree.add(figure, figure.getDrawingArea());
-        needsSorting = true;
+        spatialIndex.add(figure, figure.getDrawingArea());
+        assignRank(index);
+    }
+
+    /**
+     * Adds the figures to the spatial index in bulk, which is considerably
+     * faster than adding them one by one when a drawing is read.
+     */
+    @Override
+    public void basicAddAll(int index, Collection<? extends Figure> newFigures) {
+        ArrayList<Figure> figures = new ArrayList<>(newFigures);
+        ArrayList<Rectangle2D.Double> areas = new ArrayList<>(figures.size());
+        boolean isAppending = index == children.size();
+        for (Figure f : figures) {
+            super.basicAdd(index, f);
+            areas.add(f.getDrawingArea());
+            if (isAppending) {
+                assignRank(index);
+            } else {
+                ZOrder z = new ZOrder();
+                z.layer = f.getLayer();
+                zOrders.put(f, z);
+            }
+            index++;
+        }
+        if (!isAppending) {
+            renumber();
+            needsSorting = true;
+        }
+        spatialIndex.addAll(figures, areas);
     }
 
     @Override
     public Figure basicRemoveChild(int index) {
         Figure figure = getChild(index);
-        quadTree.remove(figure);
-        needsSorting = true;
+        spatialIndex.remove(figure);
+        zOrders.remove(figure);
+        if (pendingUpdates != null) {
+            pendingUpdates.remove(figure);
+        }
+        if (transformedBounds != null) {
+            transformedBounds.remove(figure);
+        }
         super.basicRemoveChild(index);
         return figure;
     }
@@ -57,10 +161,9 @@ public class QuadTreeDrawing extends AbstractDrawing {
     public void draw(Graphics2D g) {
         Rectangle2D clipBounds = g.getClipBounds();
         if (clipBounds != null) {
-            Collection<Figure> c = quadTree.findIntersects(clipBounds);
-            Collection<Figure> toDraw = sort(c);
-            draw(g, toDraw);
+            draw(g, findFigures(clipBounds.getX(), clipBounds.getY(), clipBounds.getWidth(), clipBounds.getHeight()));
         } else {
+            ensureSorted();
             draw(g, children);
         }
     }
@@ -72,11 +175,18 @@ public class QuadTreeDrawing extends AbstractDrawing {
     public java.util.List<Figure> sort(Collection<? extends Figure> c) {
         ensureSorted();
         ArrayList<Figure> sorted = new ArrayList<>(c.size());
-        for (Figure f : children) {
-            if (c.contains(f)) {
+        for (Figure f : c) {
+            if (zOrders.containsKey(f)) {
                 sorted.add(f);
             }
         }
+        Collections.sort(sorted, new RankComparator());
+        // Remove duplicates, which are adjacent after sorting
+        for (int i = sorted.size() - 1; i > 0; i--) {
+            if (sorted.get(i) == sorted.get(i - 1)) {
+                sorted.remove(i);
+            }
+        }
         return sorted;
     }
 
@@ -84,7 +194,7 @@ public class QuadTreeDrawing extends AbstractDrawing {
         double factor = AttributeKeys.getScaleFactorFromGraphics(g);
         for (Figure f : c) {
             if (f.isVisible()) {
-                f.draw(g);
+                LevelOfDetail.draw(g, f, factor);
                 if (isDebugMode()) {
                     Graphics2D g2 = (Graphics2D) g.create();
                     try {
@@ -101,7 +211,8 @@ public class QuadTreeDrawing extends AbstractDrawing {
     }
 
     public java.util.List<Figure> getChildren(Rectangle2D.Double bounds) {
-        return new LinkedList<>(quadTree.findInside(bounds));
+        validateSpatialIndex();
+        return new LinkedList<>(spatialIndex.findInside(bounds));
     }
 
     @Override
@@ -111,9 +222,8 @@ public class QuadTreeDrawing extends AbstractDrawing {
 
     @Override
     public Figure findFigureInside(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
-        for (Figure f : getFiguresFrontToBack()) {
-            if (c.contains(f) && f.contains(p)) {
+        for (Figure f : findFiguresFrontToBack(p)) {
+            if (f.isVisible() && f.contains(p)) {
                 return f.findFigureInside(p);
             }
         }
@@ -132,88 +242,65 @@ public class QuadTreeDrawing extends AbstractDrawing {
 
     @Override
     public Figure findFigure(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0:
-                return null;
-            case 1:
-                Figure f = c.iterator().next();
-                return (f.contains(p)) ? f : null;
-            default: 
-                for (Figure f2 : getFiguresFrontToBack()) {
-                    if (c.contains(f2) && f2.contains(p)) {
-                        return f2;
-                    }
-                }
-                return null;
+        for (Figure f : findFiguresFrontToBack(p)) {
+            if (f.isVisible() && f.contains(p)) {
+                return f;
+            }
         }
+        return null;
     }
 
     @Override
     public Figure findFigureExcept(Point2D.Double p, Figure ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0:
-                return null;
-            case 1: 
-                Figure f = c.iterator().next();
-                return (f == ignore || !f.contains(p)) ? null : f;
-            default: 
-                for (Figure f2 : getFiguresFrontToBack()) {
-                    if (f2 != ignore && f2.contains(p)) {
-                        return f2;
-                    }
-                }
-                return null;
+        for (Figure f : findFiguresFrontToBack(p)) {
+            if (f != ignore && f.isVisible() && f.contains(p)) {
+                return f;
+            }
         }
+        return null;
     }
 
     @Override
     public Figure findFigureExcept(Point2D.Double p, Collection<? extends Figure> ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0:
-                return null;
-            case 1:
-                Figure f = c.iterator().next();
-                return (!ignore.contains(f) || !f.contains(p)) ? null : f;
-            default: 
-                for (Figure f2 : getFiguresFrontToBack()) {
-                    if (!ignore.contains(f2) && f2.contains(p)) {
-                        return f2;
-                    }
-                }
-                return null;
+        for (Figure f : findFiguresFrontToBack(p)) {
+            if (!ignore.contains(f) && f.isVisible() && f.contains(p)) {
+                return f;
+            }
         }
+        return null;
     }
 
     @Override
     public Figure findFigureBehind(Point2D.Double p, Figure figure) {
-        boolean isBehind = false;
-        for (Figure f : getFiguresFrontToBack()) {
-            if (isBehind) {
-                if (f.isVisible() && f.contains(p)) {
-                    return f;
-                }
-            } else {
-                isBehind = figure == f;
+        ZOrder z = zOrders.get(figure);
+        if (z == null) {
+            return null;
+        }
+        // Retrieve the candidates first, because this may renumber the ranks
+        java.util.List<Figure> candidates = findFiguresFrontToBack(p);
+        long rank = z.rank;
+        for (Figure f : candidates) {
+            if (zOrders.get(f).rank < rank && f.isVisible() && f.contains(p)) {
+                return f;
             }
         }
         return null;
     }
 
     @Override
-    public Figure findFigureBehind(Point2D.Double p, Collection<? extends Figure> children) {
-        int inFrontOf = children.size();
-        for (Figure f : getFiguresFrontToBack()) {
-            if (inFrontOf == 0) {
-                if (f.isVisible() && f.contains(p)) {
-                    return f;
-                }
-            } else {
-                if (children.contains(f)) {
-                    inFrontOf--;
-                }
+    public Figure findFigureBehind(Point2D.Double p, Collection<? extends Figure> figures) {
+        java.util.List<Figure> candidates = findFiguresFrontToBack(p);
+        long rank = Long.MAX_VALUE;
+        for (Figure f : figures) {
+            ZOrder z = zOrders.get(f);
+            if (z == null) {
+                return null;
+            }
+            rank = Math.min(rank, z.rank);
+        }
+        for (Figure f : candidates) {
+            if (zOrders.get(f).rank < rank && f.isVisible() && f.contains(p)) {
+                return f;
             }
         }
         return null;
@@ -221,38 +308,124 @@ public class QuadTreeDrawing extends AbstractDrawing {
 
     @Override
     public java.util.List<Figure> findFigures(Rectangle2D.Double r) {
-        LinkedList<Figure> c = new LinkedList<>(quadTree.findIntersects(r));
-        switch (c.size()) {
-            case 0:
-            // fall through
-            case 1:
-                return c;
-            default:
-                return sort(c);
+        return findFigures(r.x, r.y, r.width, r.height);
+    }
+
+    /**
+     * Returns the figures whose drawing area intersects the specified
+     * rectangle, sorted in z-order from back to front.
+     */
+    private java.util.List<Figure> findFigures(double x, double y, double w, double h) {
+        validateSpatialIndex();
+        ensureSorted();
+        FigureCollector collector = new FigureCollector();
+        spatialIndex.visitIntersects(x, y, w, h, collector);
+        Collections.sort(collector.figures, new RankComparator());
+        return collector.figures;
+    }
+
+    /**
+     * Returns the figures whose drawing area intersects the specified
+     * rectangle, in no particular order. This is faster than
+     * {@link #findFigures}, because the figures are not sorted.
+     */
+    public java.util.List<Figure> findFiguresUnordered(Rectangle2D.Double r) {
+        validateSpatialIndex();
+        FigureCollector collector = new FigureCollector();
+        spatialIndex.visitIntersects(r.x, r.y, r.width, r.height, collector);
+        return collector.figures;
+    }
+
+    /**
+     * Returns the figures whose drawing area contains the specified point,
+     * sorted in z-order from front to back.
+     */
+    private java.util.List<Figure> findFiguresFrontToBack(Point2D.Double p) {
+        validateSpatialIndex();
+        ensureSorted();
+        FigureCollector collector = new FigureCollector();
+        spatialIndex.visitContains(p.x, p.y, collector);
+        if (collector.figures.size() > 1) {
+            Collections.sort(collector.figures, Collections.reverseOrder(new RankComparator()));
         }
+        return collector.figures;
     }
 
+    /**
+     * Returns the figures whose bounds are inside of the specified
+     * rectangle, sorted in z-order from back to front.
+     * <p>
+     * The bounds of a figure are inside of its drawing area. Thus only the
+     * figures whose drawing area intersects the rectangle are looked at,
+     * and they are found with the spatial index.
+     */
     @Override
     public java.util.List<Figure> findFiguresWithin(Rectangle2D.Double bounds) {
-        LinkedList<Figure> contained = new LinkedList<>();
-        for (Figure f : children) {
-            Rectangle2D.Double r = f.getBounds();
-            if (f.get(TRANSFORM) != null) {
-                Rectangle2D rt = f.get(TRANSFORM).createTransformedShape(r).getBounds2D();
-                r = (rt instanceof Rectangle2D.Double) ? (Rectangle2D.Double) rt : new Rectangle2D.Double(rt.getX(), rt.getY(), rt.getWidth(), rt.getHeight());
-            }
-            if (f.isVisible() && Geom.contains(bounds, r)) {
+        validateSpatialIndex();
+        ensureSorted();
+        FigureCollector collector = new FigureCollector();
+        spatialIndex.visitIntersects(bounds.x, bounds.y, bounds.width, bounds.height, collector);
+        ArrayList<Figure> contained = new ArrayList<>();
+        for (Figure f : collector.figures) {
+            if (f.isVisible() && Geom.contains(bounds, getTransformedBounds(f))) {
                 contained.add(f);
             }
         }
+        Collections.sort(contained, new RankComparator());
         return contained;
     }
 
+    /**
+     * Returns the bounds of the specified figure with its transform applied.
+     * The bounds of transformed children are cached until they change.
+     * <p>
+     * Note: For performance reasons this method may return the cached
+     * rectangle. Do not modify it.
+     */
+    public Rectangle2D.Double getTransformedBounds(Figure f) {
+        if (f.get(TRANSFORM) == null) {
+            return f.getBounds();
+        }
+        if (!zOrders.containsKey(f)) {
+            return AttributeKeys.getTransformedBounds(f);
+        }
+        if (transformedBounds == null) {
+            transformedBounds = new HashMap<>();
+        }
+        Rectangle2D.Double r = transformedBounds.get(f);
+        if (r == null) {
+            r = AttributeKeys.getTransformedBounds(f);
+            transformedBounds.put(f, r);
+        }
+        return r;
+    }
+
+    /**
+     * Updates the spatial index with the figures which have changed during
+     * a bulk update.
+     */
+    private void validateSpatialIndex() {
+        if (pendingUpdates != null && !pendingUpdates.isEmpty()) {
+            for (Figure f : pendingUpdates) {
+                spatialIndex.update(f, f.getDrawingArea());
+            }
+            pendingUpdates.clear();
+        }
+    }
+
+    @Override
+    public void endBulkUpdate() {
+        super.endBulkUpdate();
+        if (!isBulkUpdating()) {
+            validateSpatialIndex();
+        }
+    }
+
     @Override
     public void bringToFront(Figure figure) {
         if (children.remove(figure)) {
             children.add(figure);
-            needsSorting = true;
+            assignRank(children.size() - 1);
             fireAreaInvalidated(figure.getDrawingArea());
         }
     }
@@ -261,14 +434,57 @@ public class QuadTreeDrawing extends AbstractDrawing {
     public void sendToBack(Figure figure) {
         if (children.remove(figure)) {
             children.add(0, figure);
-            needsSorting = true;
+            assignRank(0);
             fireAreaInvalidated(figure.getDrawingArea());
         }
     }
 
     @Override
     public boolean contains(Figure f) {
-        return children.contains(f);
+        return zOrders.containsKey(f);
+    }
+
+    /**
+     * Assigns a rank to the child at the specified index, which lies between
+     * the ranks of its neighbours. Renumbers all children if there is no gap
+     * left between the ranks of the neighbours.
+     */
+    private void assignRank(int index) {
+        Figure figure = children.get(index);
+        ZOrder z = zOrders.get(figure);
+        if (z == null) {
+            z = new ZOrder();
+            zOrders.put(figure, z);
+        }
+        z.layer = figure.getLayer();
+        ZOrder prev = (index == 0) ? null : zOrders.get(children.get(index - 1));
+        ZOrder next = (index == children.size() - 1) ? null : zOrders.get(children.get(index + 1));
+        if (prev == null && next == null) {
+            z.rank = 0;
+        } else if (next == null) {
+            z.rank = prev.rank + RANK_GAP;
+        } else if (prev == null) {
+            z.rank = next.rank - RANK_GAP;
+        } else if (next.rank - prev.rank > 1) {
+            z.rank = prev.rank + (next.rank - prev.rank) / 2;
+        } else {
+            renumber();
+        }
+        if (prev != null && prev.layer > z.layer || next != null && z.layer > next.layer) {
+            needsSorting = true;
+        }
+    }
+
+    /**
+     * Assigns evenly spaced ranks to all children.
+     */
+    private void renumber() {
+        for (int i = 0, n = children.size(); i < n; i++) {
+            Figure f = children.get(i);
+            ZOrder z = zOrders.get(f);
+            z.rank = i * RANK_GAP;
+            z.layer = f.getLayer();
+        }
     }
 
     /**
@@ -277,6 +493,7 @@ public class QuadTreeDrawing extends AbstractDrawing {
     private void ensureSorted() {
         if (needsSorting) {
             Collections.sort(children, FigureLayerComparator.INSTANCE);
+            renumber();
             needsSorting = false;
         }
     }
@@ -289,10 +506,19 @@ public class QuadTreeDrawing extends AbstractDrawing {
     @Override
     public QuadTreeDrawing clone() {
         QuadTreeDrawing that = (QuadTreeDrawing) super.clone();
-        that.quadTree = new QuadTree<>();
-        for (Figure f : getChildren()) {
-            quadTree.add(f, f.getDrawingArea());
+        that.spatialIndex = that.createSpatialIndex();
+        that.pendingUpdates = null;
+        that.transformedBounds = null;
+        that.zOrders = new HashMap<>();
+        for (Figure f : that.children) {
+            that.zOrders.put(f, new ZOrder());
         }
+        that.renumber();
+        ArrayList<Rectangle2D.Double> areas = new ArrayList<>(that.children.size());
+        for (Figure f : that.children) {
+            areas.add(f.getDrawingArea());
+        }
+        that.spatialIndex.addAll(that.children, areas);
         return that;
     }
 
@@ -304,19 +530,45 @@ public class QuadTreeDrawing extends AbstractDrawing {
     /**
      * Handles all figure events fired by Figures contained in the Drawing.
      */
-    protected class QuadTreeEventHandler extends AbstractCompositeFigure.EventHandler {
+    protected class QuadTreeEventHandler extends DrawingEventHandler {
 
         private static final long serialVersionUID = 1L;
 
         @Override
         public void figureChanged(FigureEvent e) {
+            if (transformedBounds != null) {
+                transformedBounds.remove(e.getFigure());
+            }
             if (!isChanging()) {
-                quadTree.remove(e.getFigure());
-                quadTree.add(e.getFigure(), e.getFigure().getDrawingArea());
-                needsSorting = true;
+                if (isBulkUpdating()) {
+                    if (pendingUpdates == null) {
+                        pendingUpdates = new HashSet<>();
+                    }
+                    pendingUpdates.add(e.getFigure());
+                } else {
+                    spatialIndex.update(e.getFigure(), e.getFigure().getDrawingArea());
+                }
+                ZOrder z = zOrders.get(e.getFigure());
+                if (z != null && z.layer != e.getFigure().getLayer()) {
+                    z.layer = e.getFigure().getLayer();
+                    needsSorting = true;
+                }
                 invalidate();
-                fireAreaInvalidated(e);
+                childAreaChanged(e.getFigure(), e.getInvalidatedArea());
+                if (isInChangeTransaction()) {
+                    addToChangeTransaction(e.getInvalidatedArea(), false);
+                } else {
+                    fireAreaInvalidated(e);
+                }
+            }
+        }
+
+        @Override
+        public void attributeChanged(FigureEvent e) {
+            if (transformedBounds != null && e.getAttribute() == TRANSFORM) {
+                transformedBounds.remove(e.getFigure());
             }
+            super.attributeChanged(e);
         }
     }
 
@@ -42,13 +42,18 @@ public abstract class MoveAction extends AbstractSelectedAction {
         AffineTransform tx = new AffineTransform();
         tx.translate(dx, dy);
         HashSet<Figure> transformedFigures = new HashSet<>();
-        for (Figure f : getView().getSelectedFigures()) {
-            if (f.isTransformable()) {
-                transformedFigures.add(f);
-                f.willChange();
-                f.transform(tx);
-                f.changed();
+        getDrawing().beginChangeTransaction();
+        try {
+            for (Figure f : getView().getSelectedFigures()) {
+                if (f.isTransformable()) {
+                    transformedFigures.add(f);
+                    f.willChange();
+                    f.transform(tx);
+                    f.changed();
+                }
             }
+        } finally {
+            getDrawing().endChangeTransaction();
         }
         fireUndoableEditHappened(new TransformEdit(transformedFigures, tx));
     }
@@ -74,10 +74,15 @@ public abstract class MoveConstrainedAction extends AbstractSelectedAction {
             }
             AffineTransform tx = new AffineTransform();
             tx.translate(r.x - p0.x, r.y - p0.y);
-            for (Figure f : transformedFigures) {
-                f.willChange();
-                f.transform(tx);
-                f.changed();
+            getDrawing().beginChangeTransaction();
+            try {
+                for (Figure f : transformedFigures) {
+                    f.willChange();
+                    f.transform(tx);
+                    f.changed();
+                }
+            } finally {
+                getDrawing().endChangeTransaction();
             }
             CompositeEdit edit;
             fireUndoableEditHappened(new TransformEdit(transformedFigures, tx));
@@ -33,6 +33,8 @@ public class FigureSelectionEvent extends java.util.EventObject {
     private static final long serialVersionUID = 1L;
     private Set<Figure> oldValue;
     private Set<Figure> newValue;
+    private Set<Figure> addedFigures;
+    private Set<Figure> removedFigures;
 
     /**
      * Creates a new instance.
@@ -43,15 +45,64 @@ public class FigureSelectionEvent extends java.util.EventObject {
         this.newValue = newValue;
     }
 
+    /**
+     * Creates a new instance, which describes the change of the selection
+     * by the figures which have been added to and removed from the selection.
+     * The old selection is only computed, when it is requested.
+     *
+     * @param newValue The new selection. This set is not copied, and must not
+     * be changed afterwards.
+     * @param addedFigures The figures which have been added to the selection.
+     * @param removedFigures The figures which have been removed from the
+     * selection.
+     */
+    public FigureSelectionEvent(DrawingView source, Set<Figure> newValue,
+            Set<Figure> addedFigures, Set<Figure> removedFigures) {
+        super(source);
+        this.newValue = newValue;
+        this.addedFigures = addedFigures;
+        this.removedFigures = removedFigures;
+    }
+
     public DrawingView getView() {
         return (DrawingView) source;
     }
 
     public Set<Figure> getOldSelection() {
+        if (oldValue == null) {
+            LinkedHashSet<Figure> s = new LinkedHashSet<>(newValue);
+            s.removeAll(addedFigures);
+            s.addAll(removedFigures);
+            oldValue = Collections.unmodifiableSet(s);
+        }
         return oldValue;
     }
 
     public Set<Figure> getNewSelection() {
         return newValue;
     }
+
+    /**
+     * Returns the figures which have been added to the selection.
+     */
+    public Set<Figure> getAddedFigures() {
+        if (addedFigures == null) {
+            LinkedHashSet<Figure> s = new LinkedHashSet<>(newValue);
+            s.removeAll(oldValue);
+            addedFigures = Collections.unmodifiableSet(s);
+        }
+        return addedFigures;
+    }
+
+    /**
+     * Returns the figures which have been removed from the selection.
+     */
+    public Set<Figure> getRemovedFigures() {
+        if (removedFigures == null) {
+            LinkedHashSet<Figure> s = new LinkedHashSet<>(oldValue);
+            s.removeAll(newValue);
+            removedFigures = Collections.unmodifiableSet(s);
+        }
+        return removedFigures;
+    }
 }
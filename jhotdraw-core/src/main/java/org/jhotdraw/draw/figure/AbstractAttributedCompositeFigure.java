@@ -12,6 +12,7 @@ import java.awt.geom.*;
 import java.io.*;
 import java.util.*;
 import org.jhotdraw.draw.AttributeKey;
+import org.jhotdraw.draw.AttributeMap;
 import org.jhotdraw.draw.AttributeKeys;
 import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.geom.Dimension2DDouble;
@@ -29,7 +30,7 @@ import org.jhotdraw.xml.DOMOutput;
 public abstract class AbstractAttributedCompositeFigure extends AbstractCompositeFigure {
 
     private static final long serialVersionUID = 1L;
-    private HashMap<AttributeKey<?>, Object> attributes = new HashMap<>();
+    private AttributeMap attributes = new AttributeMap();
     /**
      * Forbidden attributes can't be put by the put() operation.
      * They can only be changed by put().
@@ -95,27 +96,35 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
      */
     @Override
     public <T> T get(AttributeKey<T> key) {
-        return key.get(attributes);
+        return attributes.get(key);
     }
 
     @Override
     public Object getAttributesRestoreData() {
-        LinkedList<Object> list = new LinkedList<>();
-        list.add(new HashMap<>(getAttributes()));
-        for (Figure child : getChildren()) {
-            list.add(child.getAttributesRestoreData());
+        java.util.List<Figure> children = getChildren();
+        Object[] data = new Object[children.size() + 1];
+        data[0] = attributes.snapshot();
+        for (int i = 0, n = children.size(); i < n; i++) {
+            data[i + 1] = children.get(i).getAttributesRestoreData();
         }
-        return list;
+        return data;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public void restoreAttributesTo(Object restoreData) {
-        Iterator<Object> i = ((LinkedList<Object>) restoreData).iterator();
-        attributes.clear();
-        setAttributes((Map<AttributeKey<?>, Object>) i.next());
-        for (Figure child : getChildren()) {
-            child.restoreAttributesTo(i.next());
+        Object[] data = (Object[]) restoreData;
+        AttributeMap.Snapshot snapshot = (AttributeMap.Snapshot) data[0];
+        for (AttributeKey<?> key : snapshot.getChangedKeys()) {
+            if (snapshot.containsKey(key)) {
+                set((AttributeKey<Object>) key, snapshot.get(key));
+            } else {
+                removeAttribute(key);
+            }
+        }
+        java.util.List<Figure> children = getChildren();
+        for (int i = 0, n = children.size(); i < n; i++) {
+            children.get(i).restoreAttributesTo(data[i + 1]);
         }
     }
 
@@ -198,7 +207,7 @@ public abstract class AbstractAttributedCompositeFigure extends AbstractComposit
     @Override
     public AbstractAttributedCompositeFigure clone() {
         AbstractAttributedCompositeFigure that = (AbstractAttributedCompositeFigure) super.clone();
-        that.attributes = new HashMap<>(this.attributes);
+        that.attributes = new AttributeMap(this.attributes);
         if (this.forbiddenAttributes != null) {
             that.forbiddenAttributes = new HashSet<>(this.forbiddenAttributes);
         }
@@ -12,6 +12,7 @@ import java.awt.geom.*;
 import java.io.*;
 import java.util.*;
 import org.jhotdraw.draw.AttributeKey;
+import org.jhotdraw.draw.AttributeMap;
 import org.jhotdraw.draw.AttributeKeys;
 import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.geom.Dimension2DDouble;
@@ -34,7 +35,7 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     /**
      * Holds the attributes of the figure.
      */
-    private HashMap<AttributeKey<?>, Object> attributes = new HashMap<>();
+    private AttributeMap attributes = new AttributeMap();
     /**
      * Forbidden attributes can't be put by the put() operation. They can only
      * be changed by put().
@@ -74,17 +75,31 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
         return (Map<AttributeKey<?>, Object>) new HashMap<>(attributes);
     }
 
+    /**
+     * Returns a snapshot of the attributes. The snapshot only holds the
+     * previous values of the attributes, which are changed after it has
+     * been taken.
+     */
     @Override
     public Object getAttributesRestoreData() {
-        return getAttributes();
+        return attributes.snapshot();
     }
 
+    /**
+     * Restores the attributes, which have been changed since the restore
+     * data was taken.
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public void restoreAttributesTo(Object restoreData) {
-        attributes.clear();
-        @SuppressWarnings("unchecked")
-        HashMap<AttributeKey<?>, Object> restoreDataHashMap = (HashMap<AttributeKey<?>, Object>) restoreData;
-        setAttributes(restoreDataHashMap);
+        AttributeMap.Snapshot snapshot = (AttributeMap.Snapshot) restoreData;
+        for (AttributeKey<?> key : snapshot.getChangedKeys()) {
+            if (snapshot.containsKey(key)) {
+                set((AttributeKey<Object>) key, snapshot.get(key));
+            } else {
+                removeAttribute(key);
+            }
+        }
     }
 
     /**
@@ -106,7 +121,7 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
      */
     @Override
     public <T> T get(AttributeKey<T> key) {
-        return key.get(attributes);
+        return attributes.get(key);
     }
 
     @Override
@@ -187,7 +202,7 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     @Override
     public AbstractAttributedFigure clone() {
         AbstractAttributedFigure that = (AbstractAttributedFigure) super.clone();
-        that.attributes = new HashMap<>(this.attributes);
+        that.attributes = new AttributeMap(this.attributes);
         if (this.forbiddenAttributes != null) {
             that.forbiddenAttributes = new HashSet<>(this.forbiddenAttributes);
         }
@@ -156,12 +156,12 @@ public abstract class AbstractCompositeFigure
     }
 
     public final void addAll(int index, Collection<? extends Figure> figures) {
+        basicAddAll(index, figures);
         for (Figure f : figures) {
-            basicAdd(index++, f);
             if (getDrawing() != null) {
                 f.addNotify(getDrawing());
             }
-            fireFigureAdded(f, index);
+            fireFigureAdded(f, index++);
         }
         invalidate();
     }
@@ -354,19 +354,18 @@ public abstract class AbstractCompositeFigure
 
     @Override
     public Object getAttributesRestoreData() {
-        LinkedList<Object> data = new LinkedList<>();
-        for (Figure child : getChildren()) {
-            data.add(child.getAttributesRestoreData());
+        Object[] data = new Object[children.size()];
+        for (int i = 0, n = children.size(); i < n; i++) {
+            data[i] = children.get(i).getAttributesRestoreData();
         }
         return data;
     }
 
     @Override
     public void restoreAttributesTo(Object newData) {
-        @SuppressWarnings("unchecked")
-        Iterator<Object> data = ((LinkedList<Object>) newData).iterator();
-        for (Figure child : getChildren()) {
-            child.restoreAttributesTo(data.next());
+        Object[] data = (Object[]) newData;
+        for (int i = 0, n = children.size(); i < n; i++) {
+            children.get(i).restoreAttributesTo(data[i]);
         }
     }
 
@@ -502,16 +501,17 @@ public abstract class AbstractCompositeFigure
     @Override
     public void draw(Graphics2D g) {
         Rectangle2D clipBounds = g.getClipBounds();
+        double factor = getScaleFactorFromGraphics(g);
         if (clipBounds != null) {
             for (Figure child : getChildren()) {
                 if (child.isVisible() && child.getDrawingArea().intersects(clipBounds)) {
-                    child.draw(g);
+                    LevelOfDetail.draw(g, child, factor);
                 }
             }
         } else {
             for (Figure child : getChildren()) {
                 if (child.isVisible()) {
-                    child.draw(g);
+                    LevelOfDetail.draw(g, child, factor);
                 }
             }
         }
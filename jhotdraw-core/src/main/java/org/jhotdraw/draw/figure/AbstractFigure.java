@@ -17,6 +17,7 @@ import javax.swing.event.*;
 import javax.swing.undo.*;
 import org.jhotdraw.beans.AbstractBean;
 import org.jhotdraw.draw.AttributeKey;
+import org.jhotdraw.draw.AttributeKeys;
 import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.DrawingView;
 import org.jhotdraw.draw.connector.ChopRectangleConnector;
@@ -42,6 +43,11 @@ public abstract class AbstractFigure
         implements Figure {
 
     private static final long serialVersionUID = 1L;
+    /**
+     * Text with a font size below this number of pixels is not drawn with
+     * {@code LevelOfDetail.FULL}.
+     */
+    protected static final double GREEKED_FONT_SIZE = 4;
     protected EventListenerList listenerList = new EventListenerList();
     private Drawing drawing;
     private boolean isSelectable = true;
@@ -574,6 +580,87 @@ public abstract class AbstractFigure
         }
     }
 
+    /**
+     * Returns {@code LevelOfDetail.NONE} if the figure covers less than a
+     * quarter of a pixel, {@code LevelOfDetail.BOUNDS} if it covers less
+     * than 2 pixels, and {@code LevelOfDetail.FULL} otherwise.
+     */
+    @Override
+    public LevelOfDetail getLevelOfDetail(double factor) {
+        double size = getPixelSize(factor);
+        if (size < 0.25) {
+            return LevelOfDetail.NONE;
+        }
+        if (size < 2) {
+            return LevelOfDetail.BOUNDS;
+        }
+        return LevelOfDetail.FULL;
+    }
+
+    /**
+     * Returns the width or height of the bounds of the figure in pixels,
+     * whichever is larger.
+     *
+     * @param factor The scale factor as returned by
+     * {@code AttributeKeys.getScaleFactorFromGraphics}.
+     */
+    protected double getPixelSize(double factor) {
+        Rectangle2D.Double r = getBounds();
+        return Math.max(r.width, r.height) / factor;
+    }
+
+    /**
+     * Draws the figure with the specified level of detail.
+     * <p>
+     * This implementation fills the bounds of the figure with the
+     * color returned by {@link #getLevelOfDetailColor} for
+     * {@code LevelOfDetail.SIMPLIFIED} and {@code LevelOfDetail.BOUNDS}.
+     */
+    @Override
+    public void drawLevelOfDetail(Graphics2D g, LevelOfDetail level) {
+        switch (level) {
+            case FULL:
+                draw(g);
+                break;
+            case SIMPLIFIED:
+            case BOUNDS:
+                Color color = getLevelOfDetailColor();
+                if (color != null) {
+                    Rectangle2D r = getBounds();
+                    AffineTransform tx = get(AttributeKeys.TRANSFORM);
+                    if (tx != null) {
+                        r = tx.createTransformedShape(r).getBounds2D();
+                    }
+                    // Make sure that the figure covers at least one pixel
+                    double factor = AttributeKeys.getScaleFactorFromGraphics(g);
+                    double w = Math.max(r.getWidth(), factor);
+                    double h = Math.max(r.getHeight(), factor);
+                    g.setColor(color);
+                    g.fill(new Rectangle2D.Double(r.getCenterX() - w / 2, r.getCenterY() - h / 2, w, h));
+                }
+                break;
+            case NONE:
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the color for drawing the figure with a lower level of detail.
+     * This implementation returns the stroke color, the fill color or the
+     * text color of the figure, whichever is not null.
+     */
+    protected Color getLevelOfDetailColor() {
+        Color color = get(AttributeKeys.STROKE_COLOR);
+        if (color == null) {
+            color = get(AttributeKeys.FILL_COLOR);
+        }
+        if (color == null) {
+            color = get(AttributeKeys.TEXT_COLOR);
+        }
+        return color;
+    }
+
     @Override
     public Collection<Figure> getDecomposition() {
         LinkedList<Figure> list = new LinkedList<>();
@@ -58,6 +58,12 @@ import org.jhotdraw.xml.DOMOutput;
 public class BezierFigure extends AbstractAttributedFigure {
 
     private static final long serialVersionUID = 1L;
+    /**
+     * Figures which cover less than this number of pixels are drawn with
+     * {@code LevelOfDetail.SIMPLIFIED}.
+     */
+    protected static final double SIMPLIFIED_PIXEL_SIZE = 8;
+    private static final BasicStroke SIMPLIFIED_STROKE = new BasicStroke(0f);
     /**
      * The BezierPath.
      */
@@ -129,6 +135,55 @@ public class BezierFigure extends AbstractAttributedFigure {
         drawCaps(g);
     }
 
+    /**
+     * Returns {@code LevelOfDetail.SIMPLIFIED} if the figure covers less than
+     * {@code SIMPLIFIED_PIXEL_SIZE} pixels and would otherwise be drawn with
+     * all details.
+     */
+    @Override
+    public LevelOfDetail getLevelOfDetail(double factor) {
+        LevelOfDetail level = super.getLevelOfDetail(factor);
+        if (level == LevelOfDetail.FULL && getPixelSize(factor) < SIMPLIFIED_PIXEL_SIZE) {
+            level = LevelOfDetail.SIMPLIFIED;
+        }
+        return level;
+    }
+
+    /**
+     * Draws the figure with the specified level of detail.
+     * <p>
+     * With {@code LevelOfDetail.SIMPLIFIED}, the figure is drawn as a
+     * polygon through its nodes with a hairline stroke, and without
+     * decorations.
+     */
+    @Override
+    public void drawLevelOfDetail(Graphics2D g, LevelOfDetail level) {
+        if (level != LevelOfDetail.SIMPLIFIED || getNodeCount() < 2) {
+            super.drawLevelOfDetail(g, level);
+            return;
+        }
+        Path2D.Double polyline = new Path2D.Double(Path2D.WIND_EVEN_ODD, path.size() + 1);
+        BezierPath.Node flyweight = new BezierPath.Node();
+        BezierPath.Node node = path.getNode(0, flyweight);
+        polyline.moveTo(node.x[0], node.y[0]);
+        for (int i = 1, n = path.size(); i < n; i++) {
+            node = path.getNode(i, flyweight);
+            polyline.lineTo(node.x[0], node.y[0]);
+        }
+        if (isClosed()) {
+            polyline.closePath();
+            if (get(FILL_COLOR) != null) {
+                g.setColor(get(FILL_COLOR));
+                g.fill(polyline);
+            }
+        }
+        if (get(STROKE_COLOR) != null) {
+            g.setColor(get(STROKE_COLOR));
+            g.setStroke(SIMPLIFIED_STROKE);
+            g.draw(polyline);
+        }
+    }
+
     protected void drawCaps(Graphics2D g) {
         if (getNodeCount() > 1) {
             if (get(START_DECORATION) != null) {
@@ -175,10 +230,7 @@ public class BezierFigure extends AbstractAttributedFigure {
                 return true;
             }
             double grow = AttributeKeys.getPerpendicularHitGrowth(this, 1.0) * 2d;
-            GrowStroke gs = new GrowStroke(grow,
-                    AttributeKeys.getStrokeTotalWidth(this, 1.0)
-                    * get(STROKE_MITER_LIMIT));
-            if (gs.createStrokedShape(path).contains(p)) {
+            if (grow > 0 && path.outlineContains(p, grow)) {
                 return true;
             } else {
                 if (isClosed()) {
@@ -337,8 +389,8 @@ public class BezierFigure extends AbstractAttributedFigure {
             } else {
                 if (cappedPath.size() > 1) {
                     if (get(START_DECORATION) != null) {
-                        BezierPath.Node p0 = cappedPath.get(0);
-                        BezierPath.Node p1 = cappedPath.get(1);
+                        BezierPath.Node p0 = cappedPath.getNode(0, new BezierPath.Node());
+                        BezierPath.Node p1 = cappedPath.getNode(1, new BezierPath.Node());
                         Point2D.Double pp;
                         if ((p0.getMask() & BezierPath.C2_MASK) != 0) {
                             pp = p0.getControlPoint(2);
@@ -352,8 +404,8 @@ public class BezierFigure extends AbstractAttributedFigure {
                         cappedPath.set(0, 0, Geom.cap(pp, p0.getControlPoint(0), -Math.min(radius, lineLength)));
                     }
                     if (get(END_DECORATION) != null) {
-                        BezierPath.Node p0 = cappedPath.get(cappedPath.size() - 1);
-                        BezierPath.Node p1 = cappedPath.get(cappedPath.size() - 2);
+                        BezierPath.Node p0 = cappedPath.getNode(cappedPath.size() - 1, new BezierPath.Node());
+                        BezierPath.Node p1 = cappedPath.getNode(cappedPath.size() - 2, new BezierPath.Node());
                         Point2D.Double pp;
                         if ((p0.getMask() & BezierPath.C1_MASK) != 0) {
                             pp = p0.getControlPoint(1);
@@ -403,7 +455,7 @@ public class BezierFigure extends AbstractAttributedFigure {
      * Gets a control point.
      */
     public BezierPath.Node getNode(int index) {
-        return (BezierPath.Node) path.get(index).clone();
+        return (BezierPath.Node) path.getNode(index, new BezierPath.Node()).clone();
     }
 
     /**
@@ -411,14 +463,14 @@ public class BezierFigure extends AbstractAttributedFigure {
      * specified node.
      */
     public Point2D.Double getPoint(int index) {
-        return path.get(index).getControlPoint(0);
+        return path.get(index, 0);
     }
 
     /**
      * Gets the point coordinate of a control point.
      */
     public Point2D.Double getPoint(int index, int coord) {
-        return path.get(index).getControlPoint(coord);
+        return path.get(index, coord);
     }
 
     /**
@@ -492,8 +544,9 @@ public class BezierFigure extends AbstractAttributedFigure {
      */
     public int findNode(Point2D.Double p) {
         BezierPath tp = path;
+        BezierPath.Node flyweight = new BezierPath.Node();
         for (int i = 0; i < tp.size(); i++) {
-            BezierPath.Node p2 = tp.get(i);
+            BezierPath.Node p2 = tp.getNode(i, flyweight);
             if (p2.x[0] == p.x && p2.y[0] == p.y) {
                 return i;
             }
@@ -152,6 +152,26 @@ public interface Figure extends Cloneable, Serializable {
      */
     public void draw(Graphics2D g);
 
+    /**
+     * Returns the level of detail with which the figure should be drawn at
+     * the specified scale factor.
+     * <p>
+     * Figures, which cover only a few pixels on the screen, should return a
+     * lower level of detail than {@link LevelOfDetail#FULL}.
+     *
+     * @param factor The scale factor as returned by
+     * {@code AttributeKeys.getScaleFactorFromGraphics}.
+     */
+    public LevelOfDetail getLevelOfDetail(double factor);
+
+    /**
+     * Draws the figure with the specified level of detail.
+     *
+     * @param g The Graphics2D to draw to.
+     * @param level The level of detail.
+     */
+    public void drawLevelOfDetail(Graphics2D g, LevelOfDetail level);
+
     /**
      * Gets the layer number of the figure.
      * The layer is used to determine the z-ordering of a figure inside of a
@@ -15,17 +15,23 @@ import java.util.*;
 import javax.imageio.*;
 import javax.swing.*;
 import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.ImageStore;
+import org.jhotdraw.draw.MipmapImageCache;
 import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.draw.connector.ChopRectangleConnector;
 import org.jhotdraw.draw.connector.Connector;
 import org.jhotdraw.geom.Dimension2DDouble;
 import org.jhotdraw.geom.Geom;
-import org.jhotdraw.io.Base64;
 import org.jhotdraw.util.*;
 import org.jhotdraw.xml.*;
 
 /**
  * A default implementation of {@link ImageHolderFigure} which can hold a buffered image.
+ * <p>
+ * While the figure is part of a drawing, it shares its image data with the
+ * other figures of the drawing, which have equal image data, through the
+ * {@link ImageStore} of the drawing.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -43,9 +49,16 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
      */
     private byte[] imageData;
     /**
-     * The buffered image. This can be null, if we haven't yet parsed the imageData.
+     * The buffered image. This can be null, if we haven't yet parsed the imageData,
+     * or if the figure is part of a drawing, whose image store holds the
+     * image decoded from the imageData.
      */
     private transient BufferedImage bufferedImage;
+    /**
+     * Repaints the figure, when the image cache has created a level of the
+     * image. This is created lazily.
+     */
+    private transient Runnable imageCallback;
 
     /**
      * Creates a new instance.
@@ -93,10 +106,24 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
         g.fill(r);
     }
 
+    /**
+     * Draws the image. The image is decoded and scaled down to the resolution
+     * at which it is drawn by the {@link MipmapImageCache} in a background
+     * thread. Until then, a placeholder is drawn.
+     */
     protected void drawImage(Graphics2D g) {
-        BufferedImage image = getBufferedImage();
+        Object source = (bufferedImage != null) ? bufferedImage : imageData;
+        BufferedImage image = null;
+        if (source != null) {
+            double scale = AttributeKeys.getScaleFactorFromGraphics(g);
+            image = MipmapImageCache.getInstance().getImage(source,
+                    rectangle.width * scale, rectangle.height * scale, getImageCallback());
+        }
         if (image != null) {
             g.drawImage(image, (int) rectangle.x, (int) rectangle.y, (int) rectangle.width, (int) rectangle.height, null);
+        } else if (source != null && !MipmapImageCache.getInstance().isBroken(source)) {
+            g.setColor(Color.lightGray);
+            g.fill(rectangle);
         } else {
             g.setStroke(new BasicStroke());
             g.setColor(Color.red);
@@ -106,6 +133,18 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
         }
     }
 
+    private Runnable getImageCallback() {
+        if (imageCallback == null) {
+            imageCallback = new Runnable() {
+                @Override
+                public void run() {
+                    fireAreaInvalidated();
+                }
+            };
+        }
+        return imageCallback;
+    }
+
     @Override
     protected void drawStroke(Graphics2D g) {
         Rectangle2D.Double r = (Rectangle2D.Double) rectangle.clone();
@@ -199,29 +238,36 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
     public ImageFigure clone() {
         ImageFigure that = (ImageFigure) super.clone();
         that.rectangle = (Rectangle2D.Double) this.rectangle.clone();
+        that.imageCallback = null;
         return that;
     }
 
+    @Override
+    public void addNotify(Drawing d) {
+        if (imageData != null) {
+            imageData = d.getImageStore().acquire(imageData, bufferedImage);
+            bufferedImage = null;
+        }
+        super.addNotify(d);
+    }
+
+    @Override
+    public void removeNotify(Drawing d) {
+        d.getImageStore().release(imageData);
+        super.removeNotify(d);
+    }
+
     @Override
     public void read(DOMInput in) throws IOException {
         super.read(in);
-        if (in.getElementCount("imageData") > 0) {
-            in.openElement("imageData");
-            String base64Data = in.getText();
-            if (base64Data != null) {
-                setImageData(Base64.decode(base64Data));
-            }
-            in.closeElement();
-        }
+        ImageStore.readImageData(in, this);
     }
 
     @Override
     public void write(DOMOutput out) throws IOException {
         super.write(out);
         if (getImageData() != null) {
-            out.openElement("imageData");
-            out.addText(Base64.encodeBytes(getImageData()));
-            out.closeElement();
+            ImageStore.writeImageData(out, getImageData());
         }
     }
 
@@ -235,8 +281,7 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
     @Override
     public void setImage(byte[] imageData, BufferedImage bufferedImage) {
         willChange();
-        this.imageData = imageData;
-        this.bufferedImage = bufferedImage;
+        basicSetImage(imageData, bufferedImage);
         changed();
     }
 
@@ -248,8 +293,7 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
      */
     public void setImageData(byte[] imageData) {
         willChange();
-        this.imageData = imageData;
-        this.bufferedImage = null;
+        basicSetImage(imageData, null);
         changed();
     }
 
@@ -259,11 +303,28 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
     @Override
     public void setBufferedImage(BufferedImage image) {
         willChange();
-        this.imageData = null;
-        this.bufferedImage = image;
+        basicSetImage(null, image);
         changed();
     }
 
+    /**
+     * Sets the image data and the buffered image. If the figure is part of
+     * a drawing, the old image data is released from the image store of the
+     * drawing, and the new image data is acquired from it.
+     */
+    private void basicSetImage(byte[] imageData, BufferedImage bufferedImage) {
+        Drawing d = getDrawing();
+        if (d != null) {
+            d.getImageStore().release(this.imageData);
+            if (imageData != null) {
+                imageData = d.getImageStore().acquire(imageData, bufferedImage);
+                bufferedImage = null;
+            }
+        }
+        this.imageData = imageData;
+        this.bufferedImage = bufferedImage;
+    }
+
     /**
      * Gets the buffered image. If necessary, this method creates the buffered image from the image
      * data.
@@ -272,12 +333,18 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
     public BufferedImage getBufferedImage() {
         if (bufferedImage == null && imageData != null) {
             try {
+                if (getDrawing() != null) {
+                    return getDrawing().getImageStore().getBufferedImage(imageData);
+                }
                 bufferedImage = ImageIO.read(new ByteArrayInputStream(imageData));
             } catch (IOException e) {
                 e.printStackTrace();
                 // If we can't create a buffered image from the image data,
                 // there is no use to keep the image data and try again, so
                 // we drop the image data.
+                if (getDrawing() != null) {
+                    getDrawing().getImageStore().release(imageData);
+                }
                 imageData = null;
             }
         }
@@ -298,7 +365,7 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
                 ByteArrayOutputStream bout = new ByteArrayOutputStream();
                 ImageIO.write(bufferedImage, "PNG", bout);
                 bout.close();
-                imageData = bout.toByteArray();
+                basicSetImage(bout.toByteArray(), bufferedImage);
             } catch (IOException e) {
                 e.printStackTrace();
                 // If we can't create image data from the buffered image,
@@ -335,8 +402,7 @@ public class ImageFigure extends AbstractAttributedDecoratedFigure
             ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
             throw new IOException(labels.getFormatted("file.failedToLoadImage.message", in.toString()));
         }
-        imageData = baos.toByteArray();
-        bufferedImage = img;
+        basicSetImage(baos.toByteArray(), img);
     }
 
     private void writeObject(ObjectOutputStream out) throws IOException {
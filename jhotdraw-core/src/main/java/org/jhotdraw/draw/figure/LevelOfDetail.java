@@ -0,0 +1,106 @@
+/*
+ * @(#)LevelOfDetail.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.figure;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+/**
+ * Specifies the level of detail with which a figure is drawn.
+ * <p>
+ * A drawing view can render figures, which cover only a few pixels on the
+ * screen, with a lower level of detail. The level of detail is chosen by the
+ * figure with {@link Figure#getLevelOfDetail}, from the scale factor of the
+ * Graphics2D object, and the figure is drawn with
+ * {@link Figure#drawLevelOfDetail}.
+ * <p>
+ * Figures are only drawn with a lower level of detail, if the rendering hint
+ * {@link #KEY_LEVEL_OF_DETAIL} is set to {@link #VALUE_LEVEL_OF_DETAIL_ON}.
+ * Drawing views set this hint for painting on the screen. The hint is not set
+ * for printing and exporting.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public enum LevelOfDetail {
+
+    /**
+     * The figure is drawn with all details.
+     */
+    FULL,
+    /**
+     * The figure is drawn with a simplified shape, for example, a polyline
+     * without decorations.
+     */
+    SIMPLIFIED,
+    /**
+     * The bounds of the figure are filled with a single color.
+     */
+    BOUNDS,
+    /**
+     * The figure is not drawn.
+     */
+    NONE;
+
+    /**
+     * Rendering hint key for drawing figures with a lower level of detail.
+     */
+    public static final RenderingHints.Key KEY_LEVEL_OF_DETAIL = new Key();
+    /**
+     * Rendering hint value for drawing figures with a lower level of detail.
+     */
+    public static final Object VALUE_LEVEL_OF_DETAIL_ON = Boolean.TRUE;
+    /**
+     * Rendering hint value for drawing figures with all details.
+     * This is the default value.
+     */
+    public static final Object VALUE_LEVEL_OF_DETAIL_OFF = Boolean.FALSE;
+
+    /**
+     * Returns true, if figures may be drawn with a lower level of detail on
+     * the specified Graphics2D object.
+     */
+    public static boolean isEnabled(Graphics2D g) {
+        return g.getRenderingHint(KEY_LEVEL_OF_DETAIL) == VALUE_LEVEL_OF_DETAIL_ON;
+    }
+
+    /**
+     * Draws a figure with the level of detail, which the figure chooses for
+     * the specified scale factor. If the level of detail is not enabled on
+     * the Graphics2D object, the figure is drawn with all details.
+     *
+     * @param g The Graphics2D to draw to.
+     * @param f The figure.
+     * @param factor The scale factor as returned by
+     * {@code AttributeKeys.getScaleFactorFromGraphics}.
+     */
+    public static void draw(Graphics2D g, Figure f, double factor) {
+        if (isEnabled(g)) {
+            LevelOfDetail level = f.getLevelOfDetail(factor);
+            if (level == FULL) {
+                f.draw(g);
+            } else {
+                f.drawLevelOfDetail(g, level);
+            }
+        } else {
+            f.draw(g);
+        }
+    }
+
+    private static class Key extends RenderingHints.Key {
+
+        public Key() {
+            super(4711);
+        }
+
+        @Override
+        public boolean isCompatibleValue(Object val) {
+            return val instanceof Boolean;
+        }
+    }
+}
@@ -82,9 +82,14 @@ public class LineConnectionFigure extends LineFigure
             if (!owner.isChanging()) {
                 if (e.getSource() == owner.getStartFigure()
                         || e.getSource() == owner.getEndFigure()) {
-                    owner.willChange();
-                    owner.updateConnection();
-                    owner.changed();
+                    Drawing drawing = owner.getDrawing();
+                    if (drawing != null) {
+                        drawing.getConnectionScheduler().invalidate(owner);
+                    } else {
+                        owner.willChange();
+                        owner.updateConnection();
+                        owner.changed();
+                    }
                 }
             }
         }
@@ -170,6 +175,16 @@ public class LineConnectionFigure extends LineFigure
         lineout();
     }
 
+    /**
+     * Returns the drawing which holds this connection, or null. This method
+     * is public, so that liners can route the connection around the other
+     * figures of the drawing.
+     */
+    @Override
+    public Drawing getDrawing() {
+        return super.getDrawing();
+    }
+
     @Override
     public boolean canConnect(Connector start, Connector end) {
         return start.getOwner().isConnectable() && end.getOwner().isConnectable();
@@ -301,6 +316,9 @@ public class LineConnectionFigure extends LineFigure
      */
     @Override
     public void removeNotify(Drawing drawing) {
+        if (drawing.hasConnectionScheduler()) {
+            drawing.getConnectionScheduler().cancel(this);
+        }
         if (getStartConnector() != null && getEndConnector() != null) {
             handleDisconnect(getStartConnector(), getEndConnector());
         }
@@ -96,8 +96,9 @@ public abstract class QuadTreeCompositeFigure
     }
 
     public void draw(Graphics2D g, Collection<Figure> c) {
+        double factor = getScaleFactorFromGraphics(g);
         for (Figure f : c) {
-            f.draw(g);
+            LevelOfDetail.draw(g, f, factor);
         }
     }
 
@@ -80,6 +80,43 @@ public class TextAreaFigure extends AbstractAttributedDecoratedFigure implements
     }
 
     // DRAWING
+    /**
+     * Returns {@code LevelOfDetail.SIMPLIFIED} if the font is smaller than
+     * {@code GREEKED_FONT_SIZE} pixels. This avoids the layout of text,
+     * which is too small to be read.
+     */
+    @Override
+    public LevelOfDetail getLevelOfDetail(double factor) {
+        LevelOfDetail level = super.getLevelOfDetail(factor);
+        if (level == LevelOfDetail.FULL && getFontSize() / factor < GREEKED_FONT_SIZE) {
+            level = LevelOfDetail.SIMPLIFIED;
+        }
+        return level;
+    }
+
+    /**
+     * Draws the figure with the specified level of detail.
+     * <p>
+     * With {@code LevelOfDetail.SIMPLIFIED}, the fill and the stroke of the
+     * figure are drawn, but not the text.
+     */
+    @Override
+    public void drawLevelOfDetail(Graphics2D g, LevelOfDetail level) {
+        if (level != LevelOfDetail.SIMPLIFIED) {
+            super.drawLevelOfDetail(g, level);
+            return;
+        }
+        if (get(FILL_COLOR) != null) {
+            g.setColor(get(FILL_COLOR));
+            drawFill(g);
+        }
+        if (get(STROKE_COLOR) != null && get(STROKE_WIDTH) >= 0d) {
+            g.setStroke(AttributeKeys.getStroke(this, AttributeKeys.getScaleFactorFromGraphics(g)));
+            g.setColor(get(STROKE_COLOR));
+            drawStroke(g);
+        }
+    }
+
     @Override
     protected void drawText(Graphics2D g) {
         if (getText() != null || isEditable()) {
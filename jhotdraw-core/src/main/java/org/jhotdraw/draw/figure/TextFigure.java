@@ -45,6 +45,11 @@ public class TextFigure extends AbstractAttributedDecoratedFigure
     protected boolean editable = true;
     // cache of the TextFigure's layout
     transient protected TextLayout textLayout;
+    /**
+     * Shares text layouts between text figures with the same text, font and
+     * font render context.
+     */
+    private static final LRUCache<LayoutKey, TextLayout> LAYOUTS = new LRUCache<>(1024);
 
     /**
      * Creates a new instance.
@@ -59,6 +64,25 @@ public class TextFigure extends AbstractAttributedDecoratedFigure
     }
 
     // DRAWING
+    /**
+     * Returns {@code LevelOfDetail.BOUNDS} if the font is smaller than
+     * {@code GREEKED_FONT_SIZE} pixels. This avoids the creation of text
+     * layouts for text, which is too small to be read.
+     */
+    @Override
+    public LevelOfDetail getLevelOfDetail(double factor) {
+        LevelOfDetail level = super.getLevelOfDetail(factor);
+        if (level == LevelOfDetail.FULL && getFontSize() / factor < GREEKED_FONT_SIZE) {
+            level = LevelOfDetail.BOUNDS;
+        }
+        return level;
+    }
+
+    @Override
+    protected Color getLevelOfDetailColor() {
+        return get(TEXT_COLOR);
+    }
+
     @Override
     protected void drawStroke(java.awt.Graphics2D g) {
     }
@@ -115,16 +139,55 @@ public class TextFigure extends AbstractAttributedDecoratedFigure
                 text = " ";
             }
             FontRenderContext frc = getFontRenderContext();
-            HashMap<TextAttribute, Object> textAttributes = new HashMap<>();
-            textAttributes.put(TextAttribute.FONT, getFont());
-            if (get(FONT_UNDERLINE)) {
-                textAttributes.put(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_LOW_ONE_PIXEL);
+            LayoutKey key = new LayoutKey(text, getFont(), get(FONT_UNDERLINE), frc);
+            textLayout = LAYOUTS.get(key);
+            if (textLayout == null) {
+                HashMap<TextAttribute, Object> textAttributes = new HashMap<>();
+                textAttributes.put(TextAttribute.FONT, key.font);
+                if (key.isUnderline) {
+                    textAttributes.put(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_LOW_ONE_PIXEL);
+                }
+                textLayout = LAYOUTS.intern(key, new TextLayout(text, textAttributes, frc));
             }
-            textLayout = new TextLayout(text, textAttributes, frc);
         }
         return textLayout;
     }
 
+    /**
+     * Holds the values from which a text layout is created.
+     */
+    private static class LayoutKey {
+
+        private final String text;
+        private final Font font;
+        private final boolean isUnderline;
+        private final FontRenderContext frc;
+
+        public LayoutKey(String text, Font font, boolean isUnderline, FontRenderContext frc) {
+            this.text = text;
+            this.font = font;
+            this.isUnderline = isUnderline;
+            this.frc = frc;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof LayoutKey)) {
+                return false;
+            }
+            LayoutKey that = (LayoutKey) obj;
+            return this.isUnderline == that.isUnderline
+                    && this.text.equals(that.text)
+                    && Objects.equals(this.font, that.font)
+                    && this.frc.equals(that.frc);
+        }
+
+        @Override
+        public int hashCode() {
+            return (text.hashCode() * 31 + Objects.hashCode(font)) * 31 + (isUnderline ? 1 : 0);
+        }
+    }
+
     @Override
     public Rectangle2D.Double getBounds() {
         TextLayout layout = getTextLayout();
@@ -0,0 +1,345 @@
+/*
+ * @(#)SelectionBoundsHandle.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.handle;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import javax.swing.SwingUtilities;
+import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.event.FigureEvent;
+import org.jhotdraw.draw.event.TransformEdit;
+import org.jhotdraw.draw.figure.Figure;
+
+/**
+ * A {@link Handle} which draws the bounds of a collection of figures, and
+ * which can be used to move and to resize all of them at once.
+ * <p>
+ * A drawing view uses this handle instead of the handles of the individual
+ * figures, when so many figures are selected, that creating and drawing their
+ * handles would make the view unresponsive. Dragging a corner of the bounds
+ * scales the figures, dragging the outline moves them.
+ * <p>
+ * The handle only listens to its owner, which is one of the figures. The view
+ * must call {@link #figuresChanged} when one of the other figures changes.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class SelectionBoundsHandle extends AbstractHandle {
+
+    /**
+     * The value of {@code region}, if the outline of the bounds is hit.
+     * The values 0 to 3 stand for the north west, north east, south east
+     * and south west corners.
+     */
+    private static final int OUTLINE = 4;
+    private static final int NONE = -1;
+    private static final int[] CORNER_CURSORS = {
+        Cursor.NW_RESIZE_CURSOR, Cursor.NE_RESIZE_CURSOR,
+        Cursor.SE_RESIZE_CURSOR, Cursor.SW_RESIZE_CURSOR
+    };
+    private Collection<Figure> figures;
+    /**
+     * The union of the bounds of the figures in drawing coordinates, or null
+     * if it must be computed.
+     */
+    private Rectangle2D.Double figureBounds;
+    /**
+     * Whether the new area of the handle is going to be invalidated.
+     */
+    private boolean isRepaintPending;
+    private boolean isDisposed;
+    /**
+     * The part of the handle, which has been hit by the last call of
+     * {@link #contains}.
+     */
+    private int region = NONE;
+    /**
+     * The part of the handle, which is being tracked.
+     */
+    private int trackedRegion = NONE;
+    /**
+     * The transformable figures, which are being tracked.
+     */
+    private ArrayList<Figure> trackedFigures;
+    /**
+     * The bounds of the tracked figures after the last tracking step.
+     */
+    private Rectangle2D.Double trackedBounds;
+    /**
+     * The last tracked point in drawing coordinates.
+     */
+    private Point2D.Double trackedPoint;
+    /**
+     * The transform which has been applied to the tracked figures.
+     */
+    private AffineTransform trackedTransform;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param owner One of the figures.
+     * @param figures The figures. The handle does not copy the collection,
+     * so it can be a view on the selection of a drawing view.
+     */
+    public SelectionBoundsHandle(Figure owner, Collection<Figure> figures) {
+        super(owner);
+        this.figures = figures;
+    }
+
+    /**
+     * Returns the union of the bounds of the figures in drawing coordinates.
+     */
+    public Rectangle2D.Double getFigureBounds() {
+        if (figureBounds == null) {
+            Rectangle2D.Double r = null;
+            for (Figure f : figures) {
+                Rectangle2D.Double b = AttributeKeys.getTransformedBounds(f);
+                if (r == null) {
+                    r = b;
+                } else {
+                    r.add(b);
+                }
+            }
+            figureBounds = (r == null) ? new Rectangle2D.Double() : r;
+        }
+        return (Rectangle2D.Double) figureBounds.clone();
+    }
+
+    /**
+     * Notifies the handle that the figures or their bounds have changed.
+     * The previous area of the handle is invalidated at once. The new bounds
+     * are computed and invalidated later on the event dispatcher thread.
+     * Thus the bounds are computed only once, when many figures change at
+     * once.
+     */
+    public void figuresChanged() {
+        if (figureBounds != null) {
+            fireAreaInvalidated(getDrawingArea());
+            figureBounds = null;
+            invalidate();
+        }
+        if (!isRepaintPending) {
+            isRepaintPending = true;
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    isRepaintPending = false;
+                    if (!isDisposed && view != null) {
+                        fireAreaInvalidated(getDrawingArea());
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    protected Rectangle basicGetBounds() {
+        Rectangle r = view.drawingToView(getFigureBounds());
+        r.grow(2, 2);
+        return r;
+    }
+
+    @Override
+    public void figureChanged(FigureEvent evt) {
+        figuresChanged();
+    }
+
+    @Override
+    public void areaInvalidated(FigureEvent evt) {
+        figuresChanged();
+    }
+
+    @Override
+    public void dispose() {
+        isDisposed = true;
+        super.dispose();
+    }
+
+    /**
+     * Returns the part of the handle at the specified point in view
+     * coordinates.
+     */
+    private int getRegion(Point p) {
+        Rectangle r = view.drawingToView(getFigureBounds());
+        int tolerance = getHandlesize() / 2 + 1;
+        int[] xs = {r.x, r.x + r.width, r.x + r.width, r.x};
+        int[] ys = {r.y, r.y, r.y + r.height, r.y + r.height};
+        for (int i = 0; i < 4; i++) {
+            if (Math.abs(p.x - xs[i]) <= tolerance && Math.abs(p.y - ys[i]) <= tolerance) {
+                return i;
+            }
+        }
+        Rectangle outer = new Rectangle(r);
+        outer.grow(tolerance, tolerance);
+        Rectangle inner = new Rectangle(r);
+        inner.grow(-tolerance, -tolerance);
+        if (outer.contains(p) && (inner.isEmpty() || !inner.contains(p))) {
+            return OUTLINE;
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns true, if the point is on a corner or on the outline of the
+     * bounds. Points inside of the bounds are left to the figures.
+     */
+    @Override
+    public boolean contains(Point p) {
+        region = getRegion(p);
+        return region != NONE;
+    }
+
+    @Override
+    public Cursor getCursor() {
+        if (region >= 0 && region < CORNER_CURSORS.length) {
+            return Cursor.getPredefinedCursor(CORNER_CURSORS[region]);
+        }
+        return Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR);
+    }
+
+    private Point2D.Double constrainPoint(Point p) {
+        Point2D.Double d = view.viewToDrawing(p);
+        return view.getConstrainer() == null ? d : view.getConstrainer().constrainPoint(d);
+    }
+
+    @Override
+    public void trackStart(Point anchor, int modifiersEx) {
+        trackedRegion = getRegion(anchor);
+        if (trackedRegion == NONE) {
+            trackedRegion = OUTLINE;
+        }
+        trackedFigures = new ArrayList<>();
+        for (Figure f : figures) {
+            if (f.isTransformable()) {
+                trackedFigures.add(f);
+            }
+        }
+        trackedBounds = getFigureBounds();
+        trackedPoint = constrainPoint(anchor);
+        trackedTransform = new AffineTransform();
+        view.getDrawing().beginBulkUpdate();
+    }
+
+    @Override
+    public void trackStep(Point anchor, Point lead, int modifiersEx) {
+        if (trackedFigures == null) {
+            return;
+        }
+        Point2D.Double p = constrainPoint(lead);
+        AffineTransform tx = new AffineTransform();
+        if (trackedRegion == OUTLINE) {
+            tx.translate(p.x - trackedPoint.x, p.y - trackedPoint.y);
+        } else {
+            Rectangle2D.Double r = trackedBounds;
+            // The corner opposite of the tracked corner stays in place
+            double fixedX = (trackedRegion == 0 || trackedRegion == 3) ? r.x + r.width : r.x;
+            double fixedY = (trackedRegion == 0 || trackedRegion == 1) ? r.y + r.height : r.y;
+            double x = (fixedX == r.x) ? Math.max(fixedX + 1, p.x) : Math.min(fixedX - 1, p.x);
+            double y = (fixedY == r.y) ? Math.max(fixedY + 1, p.y) : Math.min(fixedY - 1, p.y);
+            Rectangle2D.Double newBounds = new Rectangle2D.Double(
+                    Math.min(x, fixedX), Math.min(y, fixedY),
+                    Math.abs(x - fixedX), Math.abs(y - fixedY));
+            if (r.width <= 0 || r.height <= 0 || newBounds.equals(r)) {
+                return;
+            }
+            tx.translate(newBounds.x, newBounds.y);
+            tx.scale(newBounds.width / r.width, newBounds.height / r.height);
+            tx.translate(-r.x, -r.y);
+        }
+        if (tx.isIdentity()) {
+            return;
+        }
+        for (Figure f : trackedFigures) {
+            f.willChange();
+            f.transform(tx);
+            f.changed();
+        }
+        Rectangle2D b = tx.createTransformedShape(trackedBounds).getBounds2D();
+        trackedBounds = new Rectangle2D.Double(b.getX(), b.getY(), b.getWidth(), b.getHeight());
+        trackedTransform.preConcatenate(tx);
+        trackedPoint = p;
+    }
+
+    @Override
+    public void trackEnd(Point anchor, Point lead, int modifiersEx) {
+        if (trackedFigures == null) {
+            return;
+        }
+        view.getDrawing().endBulkUpdate();
+        if (!trackedTransform.isIdentity() && !trackedFigures.isEmpty()) {
+            fireUndoableEditHappened(new TransformEdit(trackedFigures, trackedTransform));
+        }
+        trackedFigures = null;
+        trackedBounds = null;
+        trackedPoint = null;
+        trackedTransform = null;
+        trackedRegion = NONE;
+    }
+
+    @Override
+    public void draw(Graphics2D g) {
+        Rectangle r = view.drawingToView(getFigureBounds());
+        Stroke stroke1;
+        Color strokeColor1;
+        Stroke stroke2;
+        Color strokeColor2;
+        if (getEditor().getTool() == null || getEditor().getTool().supportsHandleInteraction()) {
+            stroke1 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_STROKE_1);
+            strokeColor1 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_COLOR_1);
+            stroke2 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_STROKE_2);
+            strokeColor2 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_COLOR_2);
+        } else {
+            stroke1 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_STROKE_1_DISABLED);
+            strokeColor1 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_COLOR_1_DISABLED);
+            stroke2 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_STROKE_2_DISABLED);
+            strokeColor2 = getEditor().getHandleAttribute(HandleAttributeKeys.RESIZE_BOUNDS_COLOR_2_DISABLED);
+        }
+        if (stroke1 != null && strokeColor1 != null) {
+            g.setStroke(stroke1);
+            g.setColor(strokeColor1);
+            g.draw(r);
+        }
+        if (stroke2 != null && strokeColor2 != null) {
+            g.setStroke(stroke2);
+            g.setColor(strokeColor2);
+            g.draw(r);
+        }
+        // Mark the corners like the handles of a single figure
+        int size = getHandlesize();
+        Color fill = getEditor().getHandleAttribute(HandleAttributeKeys.HANDLE_FILL_COLOR);
+        Color stroke = getEditor().getHandleAttribute(HandleAttributeKeys.HANDLE_STROKE_COLOR);
+        int[] xs = {r.x, r.x + r.width};
+        int[] ys = {r.y, r.y + r.height};
+        g.setStroke(new BasicStroke());
+        for (int x : xs) {
+            for (int y : ys) {
+                if (fill != null) {
+                    g.setColor(fill);
+                    g.fillRect(x - size / 2, y - size / 2, size, size);
+                }
+                if (stroke != null) {
+                    g.setColor(stroke);
+                    g.drawRect(x - size / 2, y - size / 2, size - 1, size - 1);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Rectangle getDrawingArea() {
+        Rectangle r = getBounds();
+        int grow = getHandlesize() / 2 + 2;
+        r.grow(grow, grow);
+        return r;
+    }
+}
@@ -202,6 +202,7 @@ public class TransformHandleKit {
                 return;
             }
             geometry = getOwner().getTransformRestoreData();
+            view.getDrawing().beginBulkUpdate();
             Point location = getLocation();
             dx = -anchor.x + location.x;
             dy = -anchor.y + location.y;
@@ -224,6 +225,7 @@ public class TransformHandleKit {
             if (!isTransformableCache) {
                 return;
             }
+            view.getDrawing().endBulkUpdate();
             fireUndoableEditHappened(
                     new TransformRestoreEdit(getOwner(), geometry, getOwner().getTransformRestoreData()));
         }
@@ -113,16 +113,19 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
      * in the element that represents the drawing.
      */
     protected void read(URL url, InputStream in, Drawing drawing, LinkedList<Figure> figures) throws IOException {
-        JavaxDOMInput domi = new JavaxDOMInput(factory, in);
-        domi.openElement(factory.getName(drawing));
-        domi.openElement("figures", 0);
-        figures.clear();
-        for (int i = 0, n = domi.getElementCount(); i < n; i++) {
-            Figure f = (Figure) domi.readObject();
-            figures.add(f);
+        try (StreamingDOMInput domi = new StreamingDOMInput(factory, in)) {
+            domi.openElement(factory.getName(drawing));
+            ImageStore.beginImageTable(domi);
+            domi.openElement("figures", 0);
+            figures.clear();
+            for (int i = 0, n = domi.getElementCount(); i < n; i++) {
+                Figure f = (Figure) domi.readObject(i);
+                figures.add(f);
+            }
+            domi.closeElement();
+            ImageStore.endImageTable(domi);
+            domi.closeElement();
         }
-        domi.closeElement();
-        domi.closeElement();
         drawing.basicAddAll(drawing.getChildCount(), figures);
     }
 
@@ -149,11 +152,13 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
 
     @Override
     public void write(OutputStream out, Drawing drawing) throws IOException {
-        JavaxDOMOutput domo = new JavaxDOMOutput(factory);
-        domo.openElement(factory.getName(drawing));
-        drawing.write(domo);
-        domo.closeElement();
-        domo.save(out);
+        try (StreamingDOMOutput domo = new StreamingDOMOutput(factory, out)) {
+            domo.openElement(factory.getName(drawing));
+            ImageStore.beginImageTable(domo);
+            drawing.write(domo);
+            ImageStore.endImageTable(domo);
+            domo.closeElement();
+        }
     }
 
     @Override
@@ -178,26 +183,33 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
 
     @Override
     public void read(InputStream in, Drawing drawing, boolean replace) throws IOException {
-        JavaxDOMInput domi = new JavaxDOMInput(factory, in);
-        domi.openElement(factory.getName(drawing));
-        if (replace) {
-            drawing.removeAllChildren();
+        try (StreamingDOMInput domi = new StreamingDOMInput(factory, in)) {
+            domi.openElement(factory.getName(drawing));
+            if (replace) {
+                drawing.removeAllChildren();
+            }
+            ImageStore.beginImageTable(domi);
+            drawing.read(domi);
+            ImageStore.endImageTable(domi);
+            domi.closeElement();
         }
-        drawing.read(domi);
-        domi.closeElement();
     }
 
     @Override
     public void read(Transferable t, Drawing drawing, boolean replace) throws UnsupportedFlavorException, IOException {
         LinkedList<Figure> figures = new LinkedList<>();
         InputStream in = (InputStream) t.getTransferData(new DataFlavor(mimeType, description));
-        JavaxDOMInput domi = new JavaxDOMInput(factory, in);
-        domi.openElement("Drawing-Clip");
-        for (int i = 0, n = domi.getElementCount(); i < n; i++) {
-            Figure f = (Figure) domi.readObject(i);
-            figures.add(f);
+        try (StreamingDOMInput domi = new StreamingDOMInput(factory, in)) {
+            domi.openElement("Drawing-Clip");
+            ImageStore.beginImageTable(domi);
+            // The image table is the last element of the clip
+            for (int i = 0, n = domi.getElementCount() - domi.getElementCount("images"); i < n; i++) {
+                Figure f = (Figure) domi.readObject(i);
+                figures.add(f);
+            }
+            ImageStore.endImageTable(domi);
+            domi.closeElement();
         }
-        domi.closeElement();
         if (replace) {
             drawing.removeAllChildren();
         }
@@ -207,13 +219,15 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
     @Override
     public Transferable createTransferable(Drawing drawing, List<Figure> figures, double scaleFactor) throws IOException {
         ByteArrayOutputStream buf = new ByteArrayOutputStream();
-        JavaxDOMOutput domo = new JavaxDOMOutput(factory);
-        domo.openElement("Drawing-Clip");
-        for (Figure f : figures) {
-            domo.writeObject(f);
+        try (StreamingDOMOutput domo = new StreamingDOMOutput(factory, buf)) {
+            domo.openElement("Drawing-Clip");
+            ImageStore.beginImageTable(domo);
+            for (Figure f : figures) {
+                domo.writeObject(f);
+            }
+            ImageStore.endImageTable(domo);
+            domo.closeElement();
         }
-        domo.closeElement();
-        domo.save(buf);
         return new InputStreamTransferable(new DataFlavor(mimeType, description), buf.toByteArray());
     }
 }
@@ -0,0 +1,265 @@
+/*
+ * @(#)OrthogonalLiner.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.liner;
+
+import java.awt.geom.*;
+import java.util.*;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.QuadTreeDrawing;
+import org.jhotdraw.draw.connector.Connector;
+import org.jhotdraw.draw.figure.ConnectionFigure;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.LineConnectionFigure;
+import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.xml.DOMInput;
+import org.jhotdraw.xml.DOMOutput;
+import org.jhotdraw.xml.DOMStorable;
+
+/**
+ * A {@link Liner} that routes a connection with orthogonal lines around the
+ * other figures of the drawing.
+ * <p>
+ * The liner searches for the route in a rectangular area around the start
+ * and the end point of the connection. It asks the drawing for the figures
+ * in this area. A {@link QuadTreeDrawing} finds them with its spatial index,
+ * without sorting them. The bounds of
+ * these figures, grown by the {@code margin}, are the obstacles. The liner
+ * builds a sparse orthogonal grid from the start point, the end point and
+ * the edges of the obstacles, and finds the shortest route with the fewest
+ * bends on this grid with an A* search. If no route is found, the search
+ * area is enlarged.
+ * <p>
+ * The start and the end figure of the connection and all connection figures
+ * are not obstacles. Neither are figures which contain the start or the end
+ * point, such as a group or a container which holds the start or the end
+ * figure.
+ * <p>
+ * The liner caches the route together with the obstacles. If the connection
+ * is laid out again, and neither its end points nor the obstacles have
+ * changed, the cached route is used. The liner registers the bounds of the
+ * route, grown by twice the margin, as the corridor of the connection with
+ * the {@link org.jhotdraw.draw.ConnectionScheduler} of the drawing. Thus,
+ * when a figure is moved, only the connections whose corridor is affected by
+ * the move are laid out again. Since the shortest orthogonal routes between
+ * two points lie inside the bounds of the two points, an obstacle which
+ * forces a detour intersects the corridor.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class OrthogonalLiner
+        implements Liner, DOMStorable {
+
+    /**
+     * The number of times the search area is enlarged, before the liner
+     * gives up and uses a route which ignores the obstacles.
+     */
+    private static final int MAX_SEARCH_ATTEMPTS = 3;
+    /**
+     * Coordinates of the start and the end point which differ by less than
+     * this value are considered equal, so that rounding errors of the
+     * connectors do not cause tiny bends.
+     */
+    private static final double EPSILON = 1e-6;
+    private double margin;
+    /**
+     * The cached route, the end points and the obstacles from which it has
+     * been computed. The obstacles are stored as quadruples of x, y, width
+     * and height.
+     */
+    private transient double[] cachedRoute;
+    private transient Point2D.Double cachedStart;
+    private transient Point2D.Double cachedEnd;
+    private transient double[] cachedObstacles;
+    private transient int routeCount;
+
+    /**
+     * Creates a new instance.
+     */
+    public OrthogonalLiner() {
+        this(10);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param margin The minimal distance between the route and the obstacles.
+     */
+    public OrthogonalLiner(double margin) {
+        this.margin = margin;
+    }
+
+    public double getMargin() {
+        return margin;
+    }
+
+    public void setMargin(double newValue) {
+        margin = newValue;
+        cachedRoute = null;
+    }
+
+    /**
+     * Returns the number of routes which have been computed by this liner.
+     * Routes which have been taken from the cache are not counted.
+     */
+    public int getRouteCount() {
+        return routeCount;
+    }
+
+    @Override
+    public Collection<Handle> createHandles(BezierPath path) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void lineout(ConnectionFigure figure) {
+        BezierPath path = ((LineConnectionFigure) figure).getBezierPath();
+        Connector start = figure.getStartConnector();
+        Connector end = figure.getEndConnector();
+        if (start == null || end == null || path == null) {
+            return;
+        }
+        Point2D.Double sp = start.findStart(figure);
+        Point2D.Double ep = end.findEnd(figure);
+        if (Math.abs(ep.x - sp.x) < EPSILON) {
+            ep.x = sp.x;
+        }
+        if (Math.abs(ep.y - sp.y) < EPSILON) {
+            ep.y = sp.y;
+        }
+        Drawing drawing = (figure instanceof LineConnectionFigure)
+                ? ((LineConnectionFigure) figure).getDrawing() : null;
+
+        double[] route = null;
+        Rectangle2D.Double area = new Rectangle2D.Double(sp.x, sp.y, 0, 0);
+        area.add(ep);
+        double grow = Math.max(margin * 4, Math.max(area.width, area.height) / 4);
+        for (int attempt = 0; route == null && attempt < MAX_SEARCH_ATTEMPTS; attempt++) {
+            area.setRect(area.x - grow, area.y - grow, area.width + grow * 2, area.height + grow * 2);
+            double[] obstacles = (drawing == null) ? new double[0] : findObstacles(drawing, figure, area, sp, ep);
+            if (cachedRoute != null && sp.equals(cachedStart) && ep.equals(cachedEnd)
+                    && Arrays.equals(obstacles, cachedObstacles)) {
+                route = cachedRoute;
+            } else {
+                route = new OrthogonalRouter(area, obstacles, margin).route(sp, ep);
+                if (route != null) {
+                    routeCount++;
+                    cachedRoute = route;
+                    cachedStart = sp;
+                    cachedEnd = ep;
+                    cachedObstacles = obstacles;
+                }
+            }
+            grow *= 2;
+        }
+        if (route == null) {
+            // No route around the obstacles: use an elbow
+            route = new double[]{sp.x, sp.y, ep.x, sp.y, ep.x, ep.y};
+            cachedRoute = null;
+        } else if (route.length == 2) {
+            // The start point is the end point
+            route = new double[]{sp.x, sp.y, ep.x, ep.y};
+        }
+        if (drawing != null) {
+            Rectangle2D.Double corridor = new Rectangle2D.Double(route[0], route[1], 0, 0);
+            for (int i = 2; i < route.length; i += 2) {
+                corridor.add(route[i], route[i + 1]);
+            }
+            double m = margin * 2 + 1;
+            corridor.setRect(corridor.x - m, corridor.y - m, corridor.width + m * 2, corridor.height + m * 2);
+            drawing.getConnectionScheduler().setCorridor(figure, corridor);
+        }
+
+        path.clear();
+        for (int i = 0; i < route.length; i += 2) {
+            path.add(new BezierPath.Node(route[i], route[i + 1]));
+        }
+        // Ensure all path nodes are straight
+        for (BezierPath.Node node : path) {
+            node.setMask(BezierPath.C0_MASK);
+        }
+        path.invalidatePath();
+    }
+
+    /**
+     * Returns the bounds of the obstacles in the specified area, grown by
+     * the margin, as quadruples of x, y, width and height. The obstacles
+     * are sorted by their coordinates, so that they can be compared with the
+     * cached obstacles.
+     */
+    private double[] findObstacles(Drawing drawing, ConnectionFigure connection, Rectangle2D.Double area,
+            Point2D.Double sp, Point2D.Double ep) {
+        Figure startFigure = connection.getStartFigure();
+        Figure endFigure = connection.getEndFigure();
+        List<Figure> figures = (drawing instanceof QuadTreeDrawing)
+                ? ((QuadTreeDrawing) drawing).findFiguresUnordered(area) : drawing.findFigures(area);
+        ArrayList<Rectangle2D.Double> bounds = new ArrayList<>();
+        for (Figure f : figures) {
+            if (f == connection || f == startFigure || f == endFigure
+                    || f instanceof ConnectionFigure || !f.isVisible()) {
+                continue;
+            }
+            Rectangle2D.Double r = f.getBounds();
+            r.setRect(r.x - margin, r.y - margin, r.width + margin * 2, r.height + margin * 2);
+            if (r.contains(sp) || r.contains(ep)) {
+                continue;
+            }
+            bounds.add(r);
+        }
+        Collections.sort(bounds, new Comparator<Rectangle2D.Double>() {
+            @Override
+            public int compare(Rectangle2D.Double a, Rectangle2D.Double b) {
+                int c = Double.compare(a.x, b.x);
+                if (c == 0) {
+                    c = Double.compare(a.y, b.y);
+                }
+                if (c == 0) {
+                    c = Double.compare(a.width, b.width);
+                }
+                return (c == 0) ? Double.compare(a.height, b.height) : c;
+            }
+        });
+        double[] obstacles = new double[bounds.size() * 4];
+        int count = 0;
+        for (Rectangle2D.Double r : bounds) {
+            obstacles[count++] = r.x;
+            obstacles[count++] = r.y;
+            obstacles[count++] = r.width;
+            obstacles[count++] = r.height;
+        }
+        return obstacles;
+    }
+
+    @Override
+    public void read(DOMInput in) {
+        margin = in.getAttribute("margin", 10d);
+    }
+
+    @Override
+    public void write(DOMOutput out) {
+        out.addAttribute("margin", margin);
+    }
+
+    @Override
+    public Liner clone() {
+        try {
+            OrthogonalLiner that = (OrthogonalLiner) super.clone();
+            that.cachedRoute = null;
+            that.cachedStart = null;
+            that.cachedEnd = null;
+            that.cachedObstacles = null;
+            that.routeCount = 0;
+            return that;
+        } catch (CloneNotSupportedException ex) {
+            InternalError error = new InternalError(ex.getMessage());
+            error.initCause(ex);
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * @(#)OrthogonalRouter.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.liner;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * Finds orthogonal routes around rectangular obstacles.
+ * <p>
+ * The router builds a sparse grid, whose vertical lines go through the x
+ * coordinates of the start point, the end point and the left and right edges
+ * of the obstacles, and whose horizontal lines go through the corresponding
+ * y coordinates. Since the edges of the obstacles are grid lines, a grid
+ * segment between two adjacent grid points is either entirely inside an
+ * obstacle or entirely outside of it.
+ * <p>
+ * The route is found with an A* search on the grid. The search state is a
+ * grid point together with the direction in which it has been reached, so
+ * that each bend of the route can be charged with an extra cost. The
+ * heuristic is the manhattan distance to the end point.
+ * <p>
+ * This class is used by {@link OrthogonalLiner}.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+class OrthogonalRouter {
+
+    private static final int HORIZONTAL = 0;
+    private static final int VERTICAL = 1;
+    private final Rectangle2D.Double area;
+    private final double[] obstacles;
+    private final double bendCost;
+    private double[] xs;
+    private double[] ys;
+    private int nx;
+    private int ny;
+    private boolean[] blockedNodes;
+    /**
+     * Blocked horizontal segments. Segment {@code j * nx + i} goes from
+     * grid point {@code (i, j)} to {@code (i + 1, j)}.
+     */
+    private boolean[] blockedH;
+    /**
+     * Blocked vertical segments. Segment {@code j * nx + i} goes from
+     * grid point {@code (i, j)} to {@code (i, j + 1)}.
+     */
+    private boolean[] blockedV;
+    /**
+     * The binary heap of the A* search, with the search states and their
+     * estimated costs.
+     */
+    private int[] heapStates = new int[64];
+    private double[] heapCosts = new double[64];
+    private int heapSize;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param area The area in which the route is searched.
+     * @param obstacles The bounds of the obstacles, as quadruples of x, y,
+     * width and height.
+     * @param margin The distance between the route and the obstacles. This
+     * is used to compute the cost of a bend.
+     */
+    public OrthogonalRouter(Rectangle2D.Double area, double[] obstacles, double margin) {
+        this.area = area;
+        this.obstacles = obstacles;
+        this.bendCost = margin * 2 + 1;
+    }
+
+    /**
+     * Returns the coordinates of the points of the route from the start to
+     * the end point, as pairs of x and y. The route only contains the start
+     * point, the bends and the end point.
+     *
+     * @return the route, or null if there is no route inside the area.
+     */
+    public double[] route(Point2D.Double sp, Point2D.Double ep) {
+        buildGrid(sp, ep);
+        int start = Arrays.binarySearch(ys, 0, ny, sp.y) * nx + Arrays.binarySearch(xs, 0, nx, sp.x);
+        int goal = Arrays.binarySearch(ys, 0, ny, ep.y) * nx + Arrays.binarySearch(xs, 0, nx, ep.x);
+        if (blockedNodes[start] || blockedNodes[goal]) {
+            return null;
+        }
+        int stateCount = nx * ny * 2;
+        double[] costs = new double[stateCount];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        int[] parents = new int[stateCount];
+        boolean[] closed = new boolean[stateCount];
+        for (int d = HORIZONTAL; d <= VERTICAL; d++) {
+            int state = start * 2 + d;
+            costs[state] = 0;
+            parents[state] = -1;
+            push(state, estimate(start, ep));
+        }
+        while (heapSize > 0) {
+            int state = pop();
+            if (closed[state]) {
+                continue;
+            }
+            closed[state] = true;
+            int node = state >> 1;
+            if (node == goal) {
+                return createRoute(state, parents);
+            }
+            int direction = state & 1;
+            int i = node % nx;
+            int j = node / nx;
+            double cost = costs[state];
+            // Horizontal neighbours
+            double bend = (direction == HORIZONTAL) ? 0 : bendCost;
+            if (i > 0 && !blockedH[node - 1]) {
+                relax(node - 1, HORIZONTAL, cost + xs[i] - xs[i - 1] + bend, state, costs, parents, closed, ep);
+            }
+            if (i < nx - 1 && !blockedH[node]) {
+                relax(node + 1, HORIZONTAL, cost + xs[i + 1] - xs[i] + bend, state, costs, parents, closed, ep);
+            }
+            // Vertical neighbours
+            bend = (direction == VERTICAL) ? 0 : bendCost;
+            if (j > 0 && !blockedV[node - nx]) {
+                relax(node - nx, VERTICAL, cost + ys[j] - ys[j - 1] + bend, state, costs, parents, closed, ep);
+            }
+            if (j < ny - 1 && !blockedV[node]) {
+                relax(node + nx, VERTICAL, cost + ys[j + 1] - ys[j] + bend, state, costs, parents, closed, ep);
+            }
+        }
+        return null;
+    }
+
+    private void relax(int node, int direction, double cost, int parent,
+            double[] costs, int[] parents, boolean[] closed, Point2D.Double ep) {
+        int state = node * 2 + direction;
+        if (!blockedNodes[node] && !closed[state] && cost < costs[state]) {
+            costs[state] = cost;
+            parents[state] = parent;
+            push(state, cost + estimate(node, ep));
+        }
+    }
+
+    private double estimate(int node, Point2D.Double ep) {
+        return Math.abs(xs[node % nx] - ep.x) + Math.abs(ys[node / nx] - ep.y);
+    }
+
+    /**
+     * Creates the route which ends at the specified search state, leaving
+     * out the grid points which are not bends.
+     */
+    private double[] createRoute(int state, int[] parents) {
+        int length = 0;
+        for (int s = state; s != -1; s = parents[s]) {
+            length++;
+        }
+        int[] nodes = new int[length];
+        for (int s = state, k = length - 1; s != -1; s = parents[s], k--) {
+            nodes[k] = s >> 1;
+        }
+        double[] route = new double[length * 2];
+        int count = 0;
+        for (int k = 0; k < length; k++) {
+            double x = xs[nodes[k] % nx];
+            double y = ys[nodes[k] / nx];
+            if (count >= 4) {
+                // Drop the previous point, if it is on the line from the
+                // point before it to this point
+                double px = route[count - 4];
+                double py = route[count - 3];
+                if ((px == route[count - 2] && px == x) || (py == route[count - 1] && py == y)) {
+                    count -= 2;
+                }
+            }
+            route[count++] = x;
+            route[count++] = y;
+        }
+        return Arrays.copyOf(route, count);
+    }
+
+    private void buildGrid(Point2D.Double sp, Point2D.Double ep) {
+        int n = obstacles.length / 4;
+        double[] gx = new double[n * 2 + 4];
+        double[] gy = new double[gx.length];
+        gx[0] = area.x;
+        gx[1] = area.x + area.width;
+        gx[2] = sp.x;
+        gx[3] = ep.x;
+        gy[0] = area.y;
+        gy[1] = area.y + area.height;
+        gy[2] = sp.y;
+        gy[3] = ep.y;
+        for (int k = 0; k < n; k++) {
+            gx[k * 2 + 4] = clampX(obstacles[k * 4]);
+            gx[k * 2 + 5] = clampX(obstacles[k * 4] + obstacles[k * 4 + 2]);
+            gy[k * 2 + 4] = clampY(obstacles[k * 4 + 1]);
+            gy[k * 2 + 5] = clampY(obstacles[k * 4 + 1] + obstacles[k * 4 + 3]);
+        }
+        xs = unique(gx);
+        ys = unique(gy);
+        nx = xs.length;
+        ny = ys.length;
+        blockedNodes = new boolean[nx * ny];
+        blockedH = new boolean[nx * ny];
+        blockedV = new boolean[nx * ny];
+        for (int k = 0; k < n; k++) {
+            double x0 = obstacles[k * 4];
+            double y0 = obstacles[k * 4 + 1];
+            double x1 = x0 + obstacles[k * 4 + 2];
+            double y1 = y0 + obstacles[k * 4 + 3];
+            int ia = Arrays.binarySearch(xs, clampX(x0));
+            int ib = Arrays.binarySearch(xs, clampX(x1));
+            int ja = Arrays.binarySearch(ys, clampY(y0));
+            int jb = Arrays.binarySearch(ys, clampY(y1));
+            if (ia >= ib || ja >= jb) {
+                continue;
+            }
+            // The grid lines on an edge of the obstacle are free, unless
+            // the edge has been clamped to the area.
+            int iFrom = (x0 < xs[ia]) ? ia : ia + 1;
+            int iTo = (x1 > xs[ib]) ? ib : ib - 1;
+            int jFrom = (y0 < ys[ja]) ? ja : ja + 1;
+            int jTo = (y1 > ys[jb]) ? jb : jb - 1;
+            for (int j = jFrom; j <= jTo; j++) {
+                for (int i = ia; i < ib; i++) {
+                    blockedH[j * nx + i] = true;
+                }
+                for (int i = iFrom; i <= iTo; i++) {
+                    blockedNodes[j * nx + i] = true;
+                }
+            }
+            for (int j = ja; j < jb; j++) {
+                for (int i = iFrom; i <= iTo; i++) {
+                    blockedV[j * nx + i] = true;
+                }
+            }
+        }
+    }
+
+    private double clampX(double x) {
+        return Math.max(area.x, Math.min(area.x + area.width, x));
+    }
+
+    private double clampY(double y) {
+        return Math.max(area.y, Math.min(area.y + area.height, y));
+    }
+
+    private static double[] unique(double[] values) {
+        Arrays.sort(values);
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (count == 0 || values[i] != values[count - 1]) {
+                values[count++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    private void push(int state, double cost) {
+        if (heapSize == heapStates.length) {
+            heapStates = Arrays.copyOf(heapStates, heapSize * 2);
+            heapCosts = Arrays.copyOf(heapCosts, heapSize * 2);
+        }
+        int k = heapSize++;
+        while (k > 0) {
+            int parent = (k - 1) >> 1;
+            if (heapCosts[parent] <= cost) {
+                break;
+            }
+            heapStates[k] = heapStates[parent];
+            heapCosts[k] = heapCosts[parent];
+            k = parent;
+        }
+        heapStates[k] = state;
+        heapCosts[k] = cost;
+    }
+
+    private int pop() {
+        int result = heapStates[0];
+        int state = heapStates[--heapSize];
+        double cost = heapCosts[heapSize];
+        int k = 0;
+        int half = heapSize >> 1;
+        while (k < half) {
+            int child = k * 2 + 1;
+            if (child + 1 < heapSize && heapCosts[child + 1] < heapCosts[child]) {
+                child++;
+            }
+            if (cost <= heapCosts[child]) {
+                break;
+            }
+            heapStates[k] = heapStates[child];
+            heapCosts[k] = heapCosts[child];
+            k = child;
+        }
+        heapStates[k] = state;
+        heapCosts[k] = cost;
+        return result;
+    }
+}
@@ -73,6 +73,11 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
     protected Point2D.Double anchorPoint;
     private boolean isDragging;
     private HashSet<Figure> transformedFigures;
+    /**
+     * The drawing on which this tracker has begun a bulk update, or null if
+     * no bulk update is open.
+     */
+    private Drawing bulkUpdateDrawing;
 
     /**
      * Creates a new instance.
@@ -120,6 +125,7 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
             if (dragRect != null) {
                 anchorPoint = previousPoint = view.viewToDrawing(anchor);
                 anchorOrigin = previousOrigin = new Point2D.Double(dragRect.x, dragRect.y);
+                beginBulkUpdate();
             }
         }
     }
@@ -143,10 +149,16 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
             tx.translate(
                     constrainedRect.x - previousOrigin.x,
                     constrainedRect.y - previousOrigin.y);
-            for (Figure f : transformedFigures) {
-                f.willChange();
-                f.transform(tx);
-                f.changed();
+            // Repaint the drawing once for all figures
+            getDrawing().beginChangeTransaction();
+            try {
+                for (Figure f : transformedFigures) {
+                    f.willChange();
+                    f.transform(tx);
+                    f.changed();
+                }
+            } finally {
+                getDrawing().endChangeTransaction();
             }
             previousPoint = currentPoint;
             previousOrigin = new Point2D.Double(constrainedRect.x, constrainedRect.y);
@@ -157,6 +169,7 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
     public void mouseReleased(MouseEvent evt) {
         super.mouseReleased(evt);
         DrawingView view = getView();
+        endBulkUpdate();
         if (transformedFigures != null && !transformedFigures.isEmpty()) {
             isDragging = false;
             int x = evt.getX();
@@ -171,10 +184,15 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
                     tx.translate(
                             anchorOrigin.x - previousOrigin.x,
                             anchorOrigin.y - previousOrigin.y);
-                    for (Figure f : transformedFigures) {
-                        f.willChange();
-                        f.transform(tx);
-                        f.changed();
+                    getDrawing().beginChangeTransaction();
+                    try {
+                        for (Figure f : transformedFigures) {
+                            f.willChange();
+                            f.transform(tx);
+                            f.changed();
+                        }
+                    } finally {
+                        getDrawing().endChangeTransaction();
                     }
                     Rectangle r = new Rectangle(anchor.x, anchor.y, 0, 0);
                     r.add(evt.getX(), evt.getY());
@@ -199,6 +217,33 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
         fireToolDone();
     }
 
+    @Override
+    public void deactivate(DrawingEditor editor) {
+        endBulkUpdate();
+        super.deactivate(editor);
+    }
+
+    /**
+     * Begins a bulk update on the drawing. A bulk update, which is still
+     * open from a previous press, is ended first.
+     */
+    private void beginBulkUpdate() {
+        endBulkUpdate();
+        bulkUpdateDrawing = getDrawing();
+        bulkUpdateDrawing.beginBulkUpdate();
+    }
+
+    /**
+     * Ends the bulk update which has been begun by this tracker, if any.
+     */
+    private void endBulkUpdate() {
+        if (bulkUpdateDrawing != null) {
+            Drawing d = bulkUpdateDrawing;
+            bulkUpdateDrawing = null;
+            d.endBulkUpdate();
+        }
+    }
+
     @Override
     public void setDraggedFigure(Figure f) {
         anchorFigure = f;
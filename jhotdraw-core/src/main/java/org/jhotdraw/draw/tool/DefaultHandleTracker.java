@@ -179,8 +179,15 @@ public class DefaultHandleTracker extends AbstractTool implements HandleTracker
     @Override
     public void mouseDragged(MouseEvent evt) {
         dragLocation = new Point(evt.getX(), evt.getY());
-        multicaster.trackStep(anchor, dragLocation,
-                evt.getModifiersEx(), getView());
+        // Repaint the drawing once for all handles
+        Drawing drawing = getView().getDrawing();
+        drawing.beginChangeTransaction();
+        try {
+            multicaster.trackStep(anchor, dragLocation,
+                    evt.getModifiersEx(), getView());
+        } finally {
+            drawing.endChangeTransaction();
+        }
         clearHoverHandles();
     }
 
@@ -11,9 +11,12 @@ import org.jhotdraw.draw.figure.Figure;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.util.*;
 import org.jhotdraw.draw.*;
 import org.jhotdraw.draw.handle.Handle;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import org.jhotdraw.geom.Geom;
 
 /**
  * <code>DefaultSelectAreaTracker</code> implements interactions with the background
@@ -23,6 +26,11 @@ import org.jhotdraw.draw.handle.Handle;
  * <code>SelectionTool</code>. It comes into action, when the user presses
  * the mouse button over the background of a <code>Drawing</code>.
  * <p>
+ * By default, the figures inside of the rubberband are selected when the
+ * mouse button is released. In live preview mode, the selection is updated
+ * while the rubberband is dragged. For each drag step, only the figures in
+ * the area between the previous and the current rubberband are looked at.
+ * <p>
  * Design pattern:<br>
  * Name: Chain of Responsibility.<br>
  * Role: Handler.<br>
@@ -66,6 +74,15 @@ public class DefaultSelectAreaTracker extends AbstractTool implements SelectArea
      * hovering.
      */
     private Figure hoverFigure = null;
+    /**
+     * Whether the selection is updated while the rubberband is dragged.
+     */
+    private boolean isLivePreview;
+    /**
+     * The figures which have been added to the selection while the
+     * rubberband is dragged in live preview mode.
+     */
+    private LinkedHashSet<Figure> previewFigures = new LinkedHashSet<>();
 
     /**
      * Creates a new instance.
@@ -77,17 +94,20 @@ public class DefaultSelectAreaTracker extends AbstractTool implements SelectArea
     public void mousePressed(MouseEvent evt) {
         super.mousePressed(evt);
         clearRubberBand();
+        previewFigures.clear();
     }
 
     @Override
     public void mouseReleased(MouseEvent evt) {
         selectGroup(evt.isShiftDown());
         clearRubberBand();
+        previewFigures.clear();
     }
 
     @Override
     public void mouseDragged(MouseEvent evt) {
         Rectangle invalidatedArea = (Rectangle) rubberband.clone();
+        Rectangle oldRubberband = (Rectangle) rubberband.clone();
         rubberband.setBounds(
                 Math.min(anchor.x, evt.getX()),
                 Math.min(anchor.y, evt.getY()),
@@ -99,6 +119,9 @@ public class DefaultSelectAreaTracker extends AbstractTool implements SelectArea
             invalidatedArea = invalidatedArea.union(rubberband);
         }
         fireAreaInvalidated(invalidatedArea);
+        if (isLivePreview) {
+            updatePreview(oldRubberband);
+        }
     }
 
     @Override
@@ -158,14 +181,130 @@ public class DefaultSelectAreaTracker extends AbstractTool implements SelectArea
     }
 
     private void selectGroup(boolean toggle) {
-        Collection<Figure> figures = getView().findFiguresWithin(rubberband);
-        for (Figure f : figures) {
-            if (f.isSelectable()) {
-                getView().addToSelection(f);
+        DrawingView view = getView();
+        Collection<Figure> figures = view.findFiguresWithin(rubberband);
+        view.beginSelectionUpdate();
+        try {
+            if (isLivePreview) {
+                // Remove the preview figures which are no longer inside
+                // of the rubberband. This only matters, if the rubberband
+                // has changed without a drag step.
+                previewFigures.removeAll(figures);
+                for (Figure f : previewFigures) {
+                    view.removeFromSelection(f);
+                }
+            }
+            for (Figure f : figures) {
+                if (f.isSelectable()) {
+                    view.addToSelection(f);
+                }
+            }
+        } finally {
+            view.endSelectionUpdate();
+        }
+    }
+
+    /**
+     * Updates the selection in live preview mode after the rubberband has
+     * changed.
+     * <p>
+     * A figure can only have entered or left the rubberband, if its bounds
+     * intersect the area which is covered by only one of the old and the
+     * new rubberband. Thus only the figures in this area are looked at.
+     */
+    private void updatePreview(Rectangle oldRubberband) {
+        DrawingView view = getView();
+        if (view == null || view.getDrawing() == null) {
+            return;
+        }
+        ArrayList<Rectangle> strips = new ArrayList<>();
+        subtract(rubberband, oldRubberband, strips);
+        subtract(oldRubberband, rubberband, strips);
+        if (strips.isEmpty()) {
+            return;
+        }
+        Rectangle2D.Double r = view.viewToDrawing(rubberband);
+        Drawing drawing = view.getDrawing();
+        HashSet<Figure> candidates = new HashSet<>();
+        view.beginSelectionUpdate();
+        try {
+            for (Rectangle strip : strips) {
+                strip.grow(1, 1);
+                for (Figure f : view.findFigures(strip)) {
+                    if (!candidates.add(f)) {
+                        continue;
+                    }
+                    boolean isInside = !rubberband.isEmpty() && f.isVisible() && f.isSelectable()
+                            && Geom.contains(r, getTransformedBounds(drawing, f));
+                    if (isInside) {
+                        if (!view.isFigureSelected(f)) {
+                            previewFigures.add(f);
+                            view.addToSelection(f);
+                        }
+                    } else if (previewFigures.remove(f)) {
+                        view.removeFromSelection(f);
+                    }
+                }
             }
+        } finally {
+            view.endSelectionUpdate();
         }
     }
 
+    /**
+     * Adds the parts of rectangle {@code a}, which are not covered by
+     * rectangle {@code b}, as up to four rectangles to the specified list.
+     */
+    private static void subtract(Rectangle a, Rectangle b, java.util.List<Rectangle> result) {
+        if (a.isEmpty()) {
+            return;
+        }
+        if (b.isEmpty() || !a.intersects(b)) {
+            result.add(new Rectangle(a));
+            return;
+        }
+        Rectangle i = a.intersection(b);
+        if (i.y > a.y) {
+            result.add(new Rectangle(a.x, a.y, a.width, i.y - a.y));
+        }
+        if (i.y + i.height < a.y + a.height) {
+            result.add(new Rectangle(a.x, i.y + i.height, a.width, a.y + a.height - i.y - i.height));
+        }
+        if (i.x > a.x) {
+            result.add(new Rectangle(a.x, i.y, i.x - a.x, i.height));
+        }
+        if (i.x + i.width < a.x + a.width) {
+            result.add(new Rectangle(i.x + i.width, i.y, a.x + a.width - i.x - i.width, i.height));
+        }
+    }
+
+    /**
+     * Returns the bounds of a figure with its transform applied. Uses the
+     * cached bounds of a {@link QuadTreeDrawing}.
+     */
+    private static Rectangle2D.Double getTransformedBounds(Drawing drawing, Figure f) {
+        if (drawing instanceof QuadTreeDrawing) {
+            return ((QuadTreeDrawing) drawing).getTransformedBounds(f);
+        }
+        return AttributeKeys.getTransformedBounds(f);
+    }
+
+    /**
+     * Sets whether the selection is updated while the rubberband is
+     * dragged. The default value is false.
+     */
+    public void setLivePreview(boolean newValue) {
+        isLivePreview = newValue;
+    }
+
+    /**
+     * Returns true, if the selection is updated while the rubberband is
+     * dragged.
+     */
+    public boolean isLivePreview() {
+        return isLivePreview;
+    }
+
     protected void clearHoverHandles() {
         updateHoverHandles(null, null);
     }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Random;
+import javax.swing.undo.UndoableEdit;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests snapshots of {@link AttributeMap}.
+ *
+ * @author Werner Randelshofer
+ */
+public class AttributeMapNGTest {
+
+    public AttributeMapNGTest() {
+    }
+
+    @Test
+    public void testSnapshotKeepsState() {
+        AttributeMap map = new AttributeMap();
+        map.put(FILL_COLOR, Color.red);
+        map.put(STROKE_WIDTH, 2d);
+        AttributeMap.Snapshot s1 = map.snapshot();
+        map.put(FILL_COLOR, Color.green);
+        map.put(FILL_COLOR, Color.blue);
+        map.remove(STROKE_WIDTH);
+        AttributeMap.Snapshot s2 = map.snapshot();
+        map.put(TEXT_COLOR, Color.white);
+        map.clear();
+
+        assertEquals(s1.get(FILL_COLOR), Color.red);
+        assertEquals(s1.get(STROKE_WIDTH), (Double) 2d);
+        assertFalse(s1.containsKey(TEXT_COLOR));
+        assertEquals(s1.getChangedKeys().size(), 3);
+        assertEquals(s2.get(FILL_COLOR), Color.blue);
+        assertFalse(s2.containsKey(STROKE_WIDTH));
+        assertEquals(s2.get(STROKE_WIDTH), STROKE_WIDTH.getDefaultValue());
+        assertTrue(map.isEmpty());
+        assertSame(map.snapshot(), map.snapshot());
+    }
+
+    @Test
+    public void testUndoAttributeChange() {
+        RectangleFigure f = new RectangleFigure(0, 0, 10, 10);
+        f.set(FILL_COLOR, Color.red);
+        f.set(STROKE_WIDTH, 2d);
+        f.willChange();
+        UndoableEdit edit1 = FILL_COLOR.setUndoable(f, Color.blue);
+        UndoableEdit edit2 = TEXT_COLOR.setUndoable(f, Color.green);
+        f.changed();
+        assertEquals(f.get(FILL_COLOR), Color.blue);
+
+        edit2.undo();
+        edit1.undo();
+        assertEquals(f.get(FILL_COLOR), Color.red);
+        assertEquals(f.get(STROKE_WIDTH), (Double) 2d);
+        assertFalse(f.hasAttribute(TEXT_COLOR));
+
+        edit1.redo();
+        edit2.redo();
+        assertEquals(f.get(FILL_COLOR), Color.blue);
+        assertEquals(f.get(TEXT_COLOR), Color.green);
+    }
+
+    @Test
+    public void testSameAsHashMap() throws IOException, ClassNotFoundException {
+        AttributeKey<?>[] keys = new AttributeKey<?>[150];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new AttributeKey<>("testSameAsHashMap" + i, Integer.class);
+        }
+        Random random = new Random(5);
+        AttributeMap map = new AttributeMap();
+        HashMap<AttributeKey<?>, Object> expected = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            AttributeKey<?> key = keys[random.nextInt(keys.length)];
+            if (random.nextInt(3) == 0) {
+                assertEquals(map.remove(key), expected.remove(key));
+            } else {
+                assertEquals(map.put(key, i), expected.put(key, i));
+            }
+            assertEquals(map.size(), expected.size());
+        }
+        assertEquals(map, expected);
+        assertEquals(new AttributeMap(expected), map);
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(map);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            assertEquals(in.readObject(), expected);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Point;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.jhotdraw.draw.event.FigureSelectionEvent;
+import org.jhotdraw.draw.event.FigureSelectionListener;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.draw.handle.SelectionBoundsHandle;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the selection events and the selection handles of
+ * {@link DefaultDrawingView}.
+ *
+ * @author Werner Randelshofer
+ */
+public class DefaultDrawingViewNGTest {
+
+    public DefaultDrawingViewNGTest() {
+    }
+
+    private static class Recorder implements FigureSelectionListener {
+
+        private final List<FigureSelectionEvent> events = new ArrayList<>();
+
+        @Override
+        public void selectionChanged(FigureSelectionEvent evt) {
+            events.add(evt);
+        }
+    }
+
+    @Test
+    public void testSelectionUpdate() {
+        DefaultDrawing drawing = new DefaultDrawing();
+        List<Figure> figures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            RectangleFigure f = new RectangleFigure(i, i, 10, 10);
+            figures.add(f);
+            drawing.add(f);
+        }
+        DefaultDrawingView view = new DefaultDrawingView();
+        view.setDrawing(drawing);
+        Recorder recorder = new Recorder();
+        view.addFigureSelectionListener(recorder);
+
+        // All changes of a selection update are fired as one event
+        view.beginSelectionUpdate();
+        for (Figure f : figures.subList(0, 500)) {
+            view.addToSelection(f);
+        }
+        view.removeFromSelection(figures.get(0));
+        assertTrue(recorder.events.isEmpty());
+        view.endSelectionUpdate();
+        assertEquals(recorder.events.size(), 1);
+        FigureSelectionEvent evt = recorder.events.get(0);
+        assertEquals(evt.getAddedFigures(), new HashSet<>(figures.subList(1, 500)));
+        assertTrue(evt.getRemovedFigures().isEmpty());
+        assertTrue(evt.getOldSelection().isEmpty());
+        assertEquals(view.getSelectionCount(), 499);
+
+        // A single change
+        recorder.events.clear();
+        view.toggleSelection(figures.get(1));
+        assertEquals(recorder.events.size(), 1);
+        evt = recorder.events.get(0);
+        assertTrue(evt.getAddedFigures().isEmpty());
+        assertEquals(evt.getRemovedFigures(), Collections.singleton(figures.get(1)));
+        assertEquals(evt.getOldSelection(), new HashSet<>(figures.subList(1, 500)));
+
+        // Select all only reports the figures which were not selected
+        recorder.events.clear();
+        view.selectAll();
+        assertEquals(recorder.events.size(), 1);
+        evt = recorder.events.get(0);
+        HashSet<Figure> expected = new HashSet<>(figures.subList(500, 1000));
+        expected.add(figures.get(0));
+        expected.add(figures.get(1));
+        assertEquals(evt.getAddedFigures(), expected);
+        assertTrue(evt.getRemovedFigures().isEmpty());
+
+        // Nothing is fired, if the selection did not change
+        recorder.events.clear();
+        view.beginSelectionUpdate();
+        view.removeFromSelection(figures.get(2));
+        view.addToSelection(figures.get(2));
+        view.endSelectionUpdate();
+        assertTrue(recorder.events.isEmpty());
+
+        // An event is not affected by later changes of the selection
+        recorder.events.clear();
+        view.removeFromSelection(figures.get(3));
+        evt = recorder.events.get(0);
+        view.removeFromSelection(figures.get(4));
+        assertEquals(evt.getNewSelection().size(), 999);
+        assertEquals(evt.getOldSelection().size(), 1000);
+        assertTrue(evt.getOldSelection().contains(figures.get(4)));
+
+        // The selection of an event is computed after many later changes
+        recorder.events.clear();
+        view.removeFromSelection(figures.get(5));
+        evt = recorder.events.get(0);
+        Set<Figure> expectedSelection = new HashSet<>(view.getSelectedFigures());
+        for (int i = 0; i < 10; i++) {
+            view.removeFromSelection(figures.get(10 + i));
+            view.addToSelection(figures.get(5));
+            view.removeFromSelection(figures.get(5));
+            view.addToSelection(figures.get(4));
+        }
+        assertEquals(evt.getNewSelection().size(), expectedSelection.size());
+        assertEquals(evt.getNewSelection(), expectedSelection);
+        assertTrue(evt.getOldSelection().contains(figures.get(5)));
+
+        recorder.events.clear();
+        view.selectAll();
+        view.clearSelection();
+        assertEquals(recorder.events.size(), 2);
+        recorder.events.remove(0);
+        assertEquals(recorder.events.get(0).getRemovedFigures().size(), 1000);
+        assertTrue(recorder.events.get(0).getNewSelection().isEmpty());
+    }
+
+    @Test
+    public void testSelectionHandles() {
+        DefaultDrawing drawing = new DefaultDrawing();
+        List<Figure> figures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            RectangleFigure f = new RectangleFigure(i * 50, 0, 10, 10);
+            figures.add(f);
+            drawing.add(f);
+        }
+        DefaultDrawingView view = new DefaultDrawingView();
+        DefaultDrawingEditor editor = new DefaultDrawingEditor();
+        editor.add(view);
+        view.setDrawing(drawing);
+        view.setBounds(0, 0, 400, 300);
+        view.selectAll();
+
+        // Handles are found in the visible area
+        Handle handle = view.findHandle(view.drawingToView(new Point2D.Double(50, 0)));
+        assertNotNull(handle);
+        assertSame(handle.getOwner(), figures.get(1));
+        assertNull(view.findHandle(view.drawingToView(new Point2D.Double(25, 0))));
+
+        // A figure which is moved into the visible area gets its handles
+        AffineTransform tx = new AffineTransform();
+        tx.translate(-5000 + 25, 100);
+        Figure moved = figures.get(100);
+        moved.willChange();
+        moved.transform(tx);
+        moved.changed();
+        handle = view.findHandle(view.drawingToView(new Point2D.Double(25, 100)));
+        assertNotNull(handle);
+        assertSame(handle.getOwner(), moved);
+        tx.setToTranslation(5000 - 25, -100);
+        moved.willChange();
+        moved.transform(tx);
+        moved.changed();
+
+        // An interaction includes the figures outside of the visible area
+        assertEquals(view.getCompatibleHandles(view.findHandle(view.drawingToView(new Point2D.Double(50, 0)))).size(), 400);
+
+        // Past the limit, the figures share a handle, which moves all of them
+        view.setSelectionHandleLimit(100);
+        handle = view.findHandle(view.drawingToView(new Point2D.Double(50, 0)));
+        assertTrue(handle instanceof SelectionBoundsHandle);
+        assertNull(view.findHandle(view.drawingToView(new Point2D.Double(50, 300))));
+        Point anchor = view.drawingToView(new Point2D.Double(50, 0));
+        Point lead = view.drawingToView(new Point2D.Double(60, 20));
+        handle.trackStart(anchor, 0);
+        handle.trackStep(anchor, lead, 0);
+        handle.trackEnd(anchor, lead, 0);
+        assertEquals(figures.get(399).getBounds(), new Rectangle2D.Double(399 * 50 + 10, 20, 10, 10));
+
+        view.beginSelectionUpdate();
+        for (Figure f : figures.subList(100, 400)) {
+            view.removeFromSelection(f);
+        }
+        view.endSelectionUpdate();
+        handle = view.findHandle(view.drawingToView(new Point2D.Double(60, 20)));
+        assertNotNull(handle);
+        assertSame(handle.getOwner(), figures.get(1));
+    }
+
+    @Test
+    public void testSelectionBoundsHandleResizesFigures() {
+        DefaultDrawing drawing = new DefaultDrawing();
+        RectangleFigure a = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure b = new RectangleFigure(30, 30, 10, 10);
+        drawing.add(a);
+        drawing.add(b);
+        DefaultDrawingView view = new DefaultDrawingView();
+        DefaultDrawingEditor editor = new DefaultDrawingEditor();
+        editor.add(view);
+        view.setDrawing(drawing);
+        view.setBounds(0, 0, 400, 300);
+        view.setSelectionHandleLimit(1);
+        view.selectAll();
+
+        // Drag the south east corner from (40, 40) to (80, 60)
+        Point anchor = view.drawingToView(new Point2D.Double(40, 40));
+        Point lead = view.drawingToView(new Point2D.Double(80, 60));
+        Handle handle = view.findHandle(anchor);
+        assertTrue(handle instanceof SelectionBoundsHandle);
+        handle.trackStart(anchor, 0);
+        handle.trackStep(anchor, lead, 0);
+        handle.trackEnd(anchor, lead, 0);
+        assertEquals(a.getBounds(), new Rectangle2D.Double(0, 0, 20, 15));
+        assertEquals(b.getBounds(), new Rectangle2D.Double(60, 45, 20, 15));
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.ImageFigure;
+import org.jhotdraw.draw.io.DOMStorableInputOutputFormat;
+import org.jhotdraw.io.Base64;
+import org.jhotdraw.xml.DefaultDOMFactory;
+import org.jhotdraw.xml.JavaxDOMInput;
+import org.jhotdraw.xml.JavaxDOMOutput;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that the image figures of a drawing share equal image data through
+ * the {@link ImageStore} of the drawing.
+ *
+ * @author Werner Randelshofer
+ */
+public class ImageStoreNGTest {
+
+    public ImageStoreNGTest() {
+    }
+
+    @Test
+    public void testShareImageData() throws IOException {
+        BufferedImage image = new BufferedImage(8, 4, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "PNG", out);
+        DefaultDrawing drawing = new DefaultDrawing();
+        ImageStore store = drawing.getImageStore();
+        ImageFigure a = new ImageFigure(0, 0, 8, 4);
+        a.setImageData(out.toByteArray());
+        ImageFigure b = new ImageFigure(10, 0, 8, 4);
+        b.setImageData(out.toByteArray());
+        assertNotSame(a.getImageData(), b.getImageData());
+
+        drawing.add(a);
+        drawing.add(b);
+        drawing.add(a.clone());
+        assertSame(a.getImageData(), b.getImageData(), "equal image data is shared");
+        assertEquals(store.getImageCount(), 1);
+        assertEquals(store.getReferenceCount(a.getImageData()), 3);
+        assertSame(a.getBufferedImage(), b.getBufferedImage(), "image data is decoded once");
+        assertEquals(a.getBufferedImage().getWidth(), 8);
+
+        drawing.remove(a);
+        assertEquals(store.getReferenceCount(b.getImageData()), 2);
+        b.setBufferedImage(image);
+        assertEquals(store.getReferenceCount(a.getImageData()), 1);
+        drawing.removeAllChildren();
+        assertEquals(store.getImageCount(), 0);
+    }
+
+    @Test
+    public void testReadFigureOnItsOwn() throws IOException {
+        BufferedImage image = new BufferedImage(8, 4, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        ImageIO.write(image, "PNG", buf);
+        DefaultDrawing drawing = new DefaultDrawing();
+        ImageFigure a = new ImageFigure(0, 0, 8, 4);
+        a.setImageData(buf.toByteArray());
+        ImageFigure b = new ImageFigure(10, 0, 8, 4);
+        b.setImageData(buf.toByteArray());
+        drawing.add(a);
+        drawing.add(b);
+
+        DefaultDOMFactory factory = new DefaultDOMFactory();
+        factory.addStorableClass("image", ImageFigure.class);
+        JavaxDOMOutput out = new JavaxDOMOutput(factory);
+        out.openElement("figures");
+        out.writeObject(a);
+        out.writeObject(b);
+        out.closeElement();
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        out.save(xml);
+
+        // The second figure does not depend on the first one
+        JavaxDOMInput in = new JavaxDOMInput(factory, new ByteArrayInputStream(xml.toByteArray()));
+        in.openElement("figures");
+        ImageFigure c = (ImageFigure) in.readObject(1);
+        in.closeElement();
+        assertEquals(c.getImageData(), buf.toByteArray());
+    }
+
+    @Test
+    public void testBrokenImageData() {
+        ImageStore store = new ImageStore();
+        byte[] data = store.acquire(new byte[]{1, 2, 3}, null);
+        IOException first = null;
+        try {
+            store.getBufferedImage(data);
+        } catch (IOException e) {
+            first = e;
+        }
+        assertNotNull(first);
+        try {
+            store.getBufferedImage(data);
+            fail("broken image data is reported again");
+        } catch (IOException e) {
+            assertSame(e, first);
+        }
+    }
+
+    @Test
+    public void testWriteImageDataOnce() throws IOException, UnsupportedFlavorException {
+        BufferedImage image = new BufferedImage(8, 4, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        ImageIO.write(image, "PNG", buf);
+        byte[] data = buf.toByteArray();
+        DefaultDrawing drawing = new DefaultDrawing();
+        for (int i = 0; i < 3; i++) {
+            ImageFigure f = new ImageFigure(i * 10, 0, 8, 4);
+            f.setImageData(data.clone());
+            drawing.add(f);
+        }
+        DefaultDOMFactory factory = new DefaultDOMFactory();
+        factory.addStorableClass("drawing", DefaultDrawing.class);
+        factory.addStorableClass("image", ImageFigure.class);
+        DOMStorableInputOutputFormat format = new DOMStorableInputOutputFormat(factory);
+        String base64 = Base64.encodeBytes(data);
+
+        // Document
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        format.write(xml, drawing);
+        assertEquals(count(xml, base64), 1, "image data is written once");
+        DefaultDrawing read = new DefaultDrawing();
+        format.read(new ByteArrayInputStream(xml.toByteArray()), read, true);
+        assertEquals(read.getChildCount(), 3);
+        for (Figure f : read.getChildren()) {
+            assertEquals(((ImageFigure) f).getImageData(), data);
+        }
+        assertEquals(read.getImageStore().getImageCount(), 1);
+
+        // Clipboard fragment
+        Transferable t = format.createTransferable(drawing, Arrays.asList(drawing.getChild(0), drawing.getChild(2)), 1.0);
+        ByteArrayOutputStream clip = new ByteArrayOutputStream();
+        try (InputStream in = (InputStream) t.getTransferData(t.getTransferDataFlavors()[0])) {
+            for (int b = in.read(); b != -1; b = in.read()) {
+                clip.write(b);
+            }
+        }
+        assertEquals(count(clip, base64), 1, "image data is written once");
+        DefaultDrawing pasted = new DefaultDrawing();
+        format.read(t, pasted, false);
+        assertEquals(pasted.getChildCount(), 2);
+        for (Figure f : pasted.getChildren()) {
+            assertEquals(((ImageFigure) f).getImageData(), data);
+        }
+    }
+
+    @Test
+    public void testShareDecodedImageWithCache() throws IOException {
+        BufferedImage image = new BufferedImage(8, 4, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        ImageIO.write(image, "PNG", buf);
+        ImageStore store = new ImageStore();
+        byte[] data = store.acquire(buf.toByteArray(), null);
+        BufferedImage decoded = store.getBufferedImage(data);
+        assertSame(MipmapImageCache.getInstance().getImage(data, 8, 4, null), decoded,
+                "the store and the cache share one decoded image");
+        assertSame(store.getBufferedImage(data), decoded);
+    }
+
+    private static int count(ByteArrayOutputStream buf, String text) {
+        String s = new String(buf.toByteArray(), StandardCharsets.UTF_8);
+        int count = 0;
+        for (int i = s.indexOf(text); i != -1; i = s.indexOf(text, i + text.length())) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that the {@link MipmapImageCache} stops requesting levels, which do
+ * not fit into its memory budget.
+ *
+ * @author Werner Randelshofer
+ */
+public class MipmapImageCacheNGTest {
+
+    public MipmapImageCacheNGTest() {
+    }
+
+    private static byte[] createImageData(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "PNG", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Draws the specified sources like a view which repaints them, until the
+     * cache returns an image for each of them.
+     */
+    private static BufferedImage[] draw(MipmapImageCache cache, byte[][] sources) throws InterruptedException {
+        BufferedImage[] images = new BufferedImage[sources.length];
+        for (int attempt = 0; attempt < 500; attempt++) {
+            boolean isComplete = true;
+            for (int i = 0; i < sources.length; i++) {
+                images[i] = cache.getImage(sources[i], 100, 100, null);
+                isComplete &= images[i] != null;
+            }
+            if (isComplete) {
+                return images;
+            }
+            Thread.sleep(10);
+        }
+        fail("the cache did not return the images");
+        return null;
+    }
+
+    @Test
+    public void testLevelLargerThanBudget() throws Exception {
+        // A 100 x 100 image needs 40000 bytes at full resolution
+        MipmapImageCache cache = new MipmapImageCache(1000);
+        byte[] data = createImageData(100, 100);
+        BufferedImage image = draw(cache, new byte[][]{data})[0];
+        assertTrue(image.getWidth() * image.getHeight() * 4 <= 1000, "the level fits into the budget");
+        assertTrue(cache.getBytes() <= 1000);
+
+        long requestCount = cache.getRequestCount();
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(cache.getImage(data, 100, 100, null));
+        }
+        assertEquals(cache.getRequestCount(), requestCount, "the level is not requested again");
+    }
+
+    @Test
+    public void testCorruptImageData() throws Exception {
+        // ImageIO throws an IllegalArgumentException on this GIF
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB), "GIF", out);
+        byte[] data = out.toByteArray();
+        data[24] = 0;
+        MipmapImageCache cache = new MipmapImageCache(1 << 20);
+        assertNull(cache.getImage(data, 16, 16, null));
+        for (int attempt = 0; attempt < 500 && !cache.isBroken(data); attempt++) {
+            Thread.sleep(10);
+        }
+        assertTrue(cache.isBroken(data), "corrupt image data is marked as broken");
+
+        long requestCount = cache.getRequestCount();
+        assertNull(cache.getImage(data, 16, 16, null));
+        assertEquals(cache.getRequestCount(), requestCount, "broken image data is not requested again");
+        try {
+            cache.getFullImage(data);
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof RuntimeException);
+        }
+    }
+
+    @Test
+    public void testImagesLargerThanBudget() throws Exception {
+        // Each image fits into the budget, but not both together
+        MipmapImageCache cache = new MipmapImageCache(50000);
+        byte[][] sources = {createImageData(100, 100), createImageData(100, 100)};
+        draw(cache, sources);
+
+        // Keep on drawing, until the cache does not request levels anymore
+        long requestCount = cache.getRequestCount();
+        for (int stableRounds = 0, round = 0; stableRounds < 20; round++) {
+            assertTrue(round < 500, "the images are decoded over and over");
+            draw(cache, sources);
+            stableRounds = (cache.getRequestCount() == requestCount) ? stableRounds + 1 : 0;
+            requestCount = cache.getRequestCount();
+        }
+        assertTrue(requestCount <= 8, "requests: " + requestCount);
+        for (int i = 0; i < 20; i++) {
+            BufferedImage[] images = draw(cache, sources);
+            assertNotNull(images[0]);
+            assertNotNull(images[1]);
+        }
+        assertEquals(cache.getRequestCount(), requestCount);
+        assertTrue(cache.getBytes() <= 50000);
+    }
+}
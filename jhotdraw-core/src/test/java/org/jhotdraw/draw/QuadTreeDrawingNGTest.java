@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.event.FigureAdapter;
+import org.jhotdraw.draw.event.FigureEvent;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.LineConnectionFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.geom.Geom;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that the z-order of {@link QuadTreeDrawing} matches the order of
+ * its children, that the queries and change transactions of the drawing
+ * agree with a plain iteration over the children, and that connections are
+ * updated once at the end of a bulk update.
+ *
+ * @author Werner Randelshofer
+ */
+public class QuadTreeDrawingNGTest {
+
+    public QuadTreeDrawingNGTest() {
+    }
+
+    private List<Figure> createFigures(QuadTreeDrawing drawing, int count) {
+        ArrayList<Figure> figures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RectangleFigure f = new RectangleFigure(i * 5, i * 5, 100, 100);
+            figures.add(f);
+            drawing.add(f);
+        }
+        return figures;
+    }
+
+    @Test
+    public void testFindFigureReturnsFrontmost() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        List<Figure> figures = createFigures(drawing, 10);
+        Point2D.Double p = new Point2D.Double(50, 50);
+        assertSame(drawing.findFigure(p), figures.get(9));
+        drawing.bringToFront(figures.get(3));
+        assertSame(drawing.findFigure(p), figures.get(3));
+        drawing.sendToBack(figures.get(3));
+        assertSame(drawing.findFigure(p), figures.get(9));
+        assertSame(drawing.findFigureBehind(p, figures.get(9)), figures.get(8));
+        assertSame(drawing.findFigureBehind(p, Arrays.asList(figures.get(9), figures.get(5))), figures.get(4));
+        assertSame(drawing.findFigureExcept(p, figures.get(9)), figures.get(8));
+    }
+
+    @Test
+    public void testFindFiguresIsSortedBackToFront() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        List<Figure> figures = createFigures(drawing, 50);
+        for (int i = 0; i < 50; i += 3) {
+            drawing.bringToFront(figures.get(i));
+        }
+        RectangleFigure inserted = new RectangleFigure(0, 0, 10, 10);
+        drawing.add(20, inserted);
+        assertEquals(drawing.findFigures(new Rectangle2D.Double(0, 0, 1000, 1000)), drawing.getChildren());
+        assertEquals(drawing.sort(new ArrayList<>(drawing.getChildren())), drawing.getChildren());
+    }
+
+    @Test
+    public void testFindFigureAfterMove() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        List<Figure> figures = createFigures(drawing, 10);
+        Figure f = figures.get(0);
+        drawing.beginBulkUpdate();
+        f.willChange();
+        f.transform(AffineTransform.getTranslateInstance(1000, 1000));
+        f.changed();
+        assertSame(drawing.findFigure(new Point2D.Double(1050, 1050)), f);
+        drawing.endBulkUpdate();
+        assertSame(drawing.findFigure(new Point2D.Double(1050, 1050)), f);
+    }
+
+    @Test
+    public void testFindFiguresWithin() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        Random rnd = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            drawing.add(new RectangleFigure(rnd.nextInt(1000), rnd.nextInt(1000),
+                    rnd.nextInt(100), rnd.nextInt(100)));
+        }
+        drawing.bringToFront(drawing.getChild(0));
+        Figure moved = drawing.getChild(1);
+        moved.willChange();
+        moved.transform(AffineTransform.getTranslateInstance(-500, -500));
+        moved.changed();
+        for (int i = 0; i < 50; i++) {
+            Rectangle2D.Double r = new Rectangle2D.Double(rnd.nextInt(1000) - 500, rnd.nextInt(1000) - 500,
+                    rnd.nextInt(1000), rnd.nextInt(1000));
+            ArrayList<Figure> expected = new ArrayList<>();
+            for (Figure f : drawing.getChildren()) {
+                if (Geom.contains(r, f.getBounds())) {
+                    expected.add(f);
+                }
+            }
+            assertEquals(drawing.findFiguresWithin(r), expected);
+        }
+    }
+
+    @Test
+    public void testChangeTransaction() {
+        for (AbstractDrawing drawing : Arrays.asList(new QuadTreeDrawing(), new DefaultDrawing())) {
+            List<Figure> figures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                RectangleFigure f = new RectangleFigure(i * 20, 0, 10, 10);
+                figures.add(f);
+                drawing.add(f);
+            }
+            final List<Rectangle2D.Double> areas = new ArrayList<>();
+            drawing.addFigureListener(new FigureAdapter() {
+                @Override
+                public void areaInvalidated(FigureEvent e) {
+                    areas.add(e.getInvalidatedArea());
+                }
+
+                @Override
+                public void figureChanged(FigureEvent e) {
+                    areas.add(e.getInvalidatedArea());
+                }
+            });
+            AffineTransform tx = AffineTransform.getTranslateInstance(0, 100);
+            drawing.beginChangeTransaction();
+            for (Figure f : figures) {
+                f.willChange();
+                f.transform(tx);
+                f.changed();
+            }
+            assertTrue(areas.isEmpty());
+            drawing.endChangeTransaction();
+            assertEquals(areas.size(), 1);
+            Rectangle2D.Double area = areas.get(0);
+            assertTrue(area.contains(new Rectangle2D.Double(0, 0, 1990, 110)));
+            assertSame(drawing.findFigure(new Point2D.Double(1985, 105)), figures.get(99));
+        }
+    }
+
+    @Test
+    public void testRemoveConnectionWithoutScheduler() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        RectangleFigure a = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure b = new RectangleFigure(100, 0, 10, 10);
+        LineConnectionFigure c = new LineConnectionFigure();
+        c.setStartConnector(new ChopRectangleConnector(a));
+        c.setEndConnector(new ChopRectangleConnector(b));
+        drawing.add(a);
+        drawing.add(b);
+        drawing.add(c);
+        drawing.remove(c);
+        assertFalse(drawing.hasConnectionScheduler(), "removing a connection does not create a scheduler");
+    }
+
+    @Test
+    public void testConnectionScheduler() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        RectangleFigure hub = new RectangleFigure(0, 0, 10, 10);
+        drawing.add(hub);
+        List<LineConnectionFigure> connections = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            RectangleFigure node = new RectangleFigure(100, i * 20, 10, 10);
+            drawing.add(node);
+            LineConnectionFigure c = new LineConnectionFigure();
+            c.setStartConnector(new ChopRectangleConnector(hub));
+            c.setEndConnector(new ChopRectangleConnector(node));
+            drawing.add(c);
+            connections.add(c);
+        }
+        ConnectionScheduler scheduler = drawing.getConnectionScheduler();
+        long count = scheduler.getUpdateCount();
+        Point2D.Double oldStart = connections.get(0).getStartPoint();
+
+        drawing.beginBulkUpdate();
+        AffineTransform tx = AffineTransform.getTranslateInstance(0, 1000);
+        for (int step = 0; step < 10; step++) {
+            hub.willChange();
+            hub.transform(tx);
+            hub.changed();
+        }
+        assertTrue(scheduler.hasDirtyConnections());
+        assertEquals(connections.get(0).getStartPoint(), oldStart);
+        drawing.endBulkUpdate();
+
+        assertFalse(scheduler.hasDirtyConnections());
+        assertEquals(scheduler.getUpdateCount() - count, connections.size());
+        for (LineConnectionFigure c : connections) {
+            assertTrue(c.getStartPoint().y > 9000);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw.liner;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import org.jhotdraw.draw.QuadTreeDrawing;
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.figure.LineConnectionFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.geom.BezierPath;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that {@link OrthogonalLiner} routes around obstacles, and that it
+ * only routes again when an obstacle in its corridor changes.
+ *
+ * @author Werner Randelshofer
+ */
+public class OrthogonalLinerNGTest {
+
+    public OrthogonalLinerNGTest() {
+    }
+
+    @Test
+    public void testRouteAroundObstacle() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        RectangleFigure start = new RectangleFigure(0, 0, 20, 20);
+        RectangleFigure end = new RectangleFigure(200, 0, 20, 20);
+        RectangleFigure obstacle = new RectangleFigure(90, -50, 20, 120);
+        RectangleFigure other = new RectangleFigure(1000, 1000, 20, 20);
+        drawing.add(start);
+        drawing.add(end);
+        drawing.add(obstacle);
+        drawing.add(other);
+        OrthogonalLiner liner = new OrthogonalLiner(10);
+        LineConnectionFigure c = new LineConnectionFigure();
+        c.setLiner(liner);
+        c.setStartConnector(new ChopRectangleConnector(start));
+        c.setEndConnector(new ChopRectangleConnector(end));
+        drawing.add(c);
+        liner = (OrthogonalLiner) c.getLiner();
+
+        assertRoute(c.getBezierPath(), obstacle.getBounds());
+        assertTrue(c.getBezierPath().size() > 2);
+        int count = liner.getRouteCount();
+
+        // A figure outside of the corridor does not cause a new route
+        other.willChange();
+        other.transform(AffineTransform.getTranslateInstance(10, 0));
+        other.changed();
+        assertEquals(liner.getRouteCount(), count);
+
+        // Moving the obstacle away straightens the route
+        obstacle.willChange();
+        obstacle.transform(AffineTransform.getTranslateInstance(0, 1000));
+        obstacle.changed();
+        assertEquals(liner.getRouteCount(), count + 1);
+        assertEquals(c.getBezierPath().size(), 2);
+    }
+
+    /**
+     * Asserts that the path is orthogonal, and that it does not intersect
+     * the obstacle.
+     */
+    private void assertRoute(BezierPath path, Rectangle2D.Double obstacle) {
+        for (int i = 1; i < path.size(); i++) {
+            BezierPath.Node p = path.get(i - 1);
+            BezierPath.Node q = path.get(i);
+            assertTrue(p.x[0] == q.x[0] || p.y[0] == q.y[0]);
+            assertFalse(obstacle.intersectsLine(new Line2D.Double(p.x[0], p.y[0], q.x[0], q.y[0])));
+        }
+    }
+}
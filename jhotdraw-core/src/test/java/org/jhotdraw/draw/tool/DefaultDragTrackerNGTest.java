@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw.tool;
+
+import java.awt.event.MouseEvent;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.DefaultDrawingEditor;
+import org.jhotdraw.draw.DefaultDrawingView;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that {@link DefaultDragTracker} ends the bulk update of the drawing
+ * even if the mouse release is lost.
+ *
+ * @author Werner Randelshofer
+ */
+public class DefaultDragTrackerNGTest {
+
+    public DefaultDragTrackerNGTest() {
+    }
+
+    @Test
+    public void testEndBulkUpdate() {
+        DefaultDrawing drawing = new DefaultDrawing();
+        RectangleFigure figure = new RectangleFigure(10, 10, 20, 20);
+        drawing.add(figure);
+        DefaultDrawingView view = new DefaultDrawingView();
+        DefaultDrawingEditor editor = new DefaultDrawingEditor();
+        editor.add(view);
+        editor.setActiveView(view);
+        view.setDrawing(drawing);
+        view.setBounds(0, 0, 400, 300);
+        DefaultDragTracker tracker = new DefaultDragTracker(figure);
+        tracker.activate(editor);
+
+        // A second press without a release
+        tracker.mousePressed(createEvent(view, MouseEvent.MOUSE_PRESSED));
+        assertTrue(drawing.isBulkUpdating());
+        tracker.mousePressed(createEvent(view, MouseEvent.MOUSE_PRESSED));
+        tracker.mouseReleased(createEvent(view, MouseEvent.MOUSE_RELEASED));
+        assertFalse(drawing.isBulkUpdating());
+
+        // Deactivation during a drag
+        tracker.mousePressed(createEvent(view, MouseEvent.MOUSE_PRESSED));
+        assertTrue(drawing.isBulkUpdating());
+        tracker.deactivate(editor);
+        assertFalse(drawing.isBulkUpdating());
+    }
+
+    private static MouseEvent createEvent(DefaultDrawingView view, int id) {
+        return new MouseEvent(view, id, 0, 0, 15, 15, 1, false, MouseEvent.BUTTON1);
+    }
+}
@@ -22,6 +22,7 @@ public class ODGConstants {
     public static final String SVG_NAMESPACE = "urn:oasis:names:tc:opendocument:xmlns:svg-compatible:1.0";
     public static final String STYLE_NAMESPACE = "urn:oasis:names:tc:opendocument:xmlns:style:1.0";
     public static final String TEXT_NAMESPACE = "urn:oasis:names:tc:opendocument:xmlns:text:1.0";
+    public static final String XLINK_NAMESPACE = "http://www.w3.org/1999/xlink";
 
     public static enum StrokeStyle {
         NONE, DASH, SOLID
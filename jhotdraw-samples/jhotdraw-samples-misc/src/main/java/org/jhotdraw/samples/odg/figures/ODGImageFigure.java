@@ -0,0 +1,210 @@
+/*
+ * @(#)ODGImageFigure.java
+ *
+ * Copyright (c) 2007 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.samples.odg.figures;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.swing.SwingWorker;
+import static org.jhotdraw.draw.AttributeKeys.FILL_COLOR;
+import static org.jhotdraw.draw.AttributeKeys.STROKE_COLOR;
+import org.jhotdraw.draw.figure.ImageFigure;
+
+/**
+ * An image of an ODG &lt;draw:frame&gt; element.
+ * <p>
+ * The image data can be left in the ODG file, see {@link #setPicture}. Then
+ * it is loaded from the file in a background thread, when the image is drawn
+ * for the first time, and a placeholder is drawn until then. It is loaded
+ * synchronously, when its image data or its buffered image is requested.
+ * If the picture can not be loaded, the figure is marked as broken, and it
+ * draws a broken image placeholder.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class ODGImageFigure extends ImageFigure implements ODGFigure {
+
+    private static final long serialVersionUID = 1L;
+    /**
+     * The ODG file and the name of the ZIP entry, which hold the image data,
+     * or null if the image data has been loaded.
+     */
+    private File pictureFile;
+    private String pictureName;
+    /**
+     * True, if the image data is being loaded in a background thread.
+     */
+    private transient boolean isPictureLoading;
+    /**
+     * True, if the image data could not be loaded from the ODG file.
+     */
+    private boolean isPictureBroken;
+
+    /**
+     * Creates a new instance.
+     */
+    public ODGImageFigure() {
+        this(0, 0, 0, 0);
+    }
+
+    public ODGImageFigure(double x, double y, double width, double height) {
+        super(x, y, width, height);
+        set(FILL_COLOR, null);
+        set(STROKE_COLOR, null);
+    }
+
+    /**
+     * Sets the ZIP entry of an ODG file, which holds the image data. The
+     * image data is loaded lazily.
+     *
+     * @param file The ODG file.
+     * @param name The name of the ZIP entry, for example "Pictures/1.png".
+     */
+    public void setPicture(File file, String name) {
+        pictureFile = file;
+        pictureName = name;
+        isPictureBroken = false;
+    }
+
+    /**
+     * Returns true, if the image data could not be loaded from the ODG file.
+     */
+    public boolean isPictureBroken() {
+        return isPictureBroken;
+    }
+
+    /**
+     * Loads the image data from the ODG file, if this has not been done yet.
+     */
+    private void loadPicture() {
+        if (pictureFile != null) {
+            File file = pictureFile;
+            String name = pictureName;
+            pictureFile = null;
+            pictureName = null;
+            try {
+                loadImage(new ByteArrayInputStream(readPicture(file, name)));
+            } catch (IOException e) {
+                setPictureBroken(file, name, e);
+            }
+        }
+    }
+
+    /**
+     * Loads the image data from the ODG file in a background thread. The
+     * image data is decoded by the image cache, when it is drawn.
+     */
+    private void requestPicture() {
+        if (isPictureLoading) {
+            return;
+        }
+        isPictureLoading = true;
+        final File file = pictureFile;
+        final String name = pictureName;
+        new SwingWorker<byte[], Object>() {
+            @Override
+            protected byte[] doInBackground() throws IOException {
+                return readPicture(file, name);
+            }
+
+            @Override
+            protected void done() {
+                isPictureLoading = false;
+                // The picture may have been loaded synchronously, or replaced
+                if (pictureFile != file || !name.equals(pictureName)) {
+                    return;
+                }
+                pictureFile = null;
+                pictureName = null;
+                try {
+                    setImageData(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    setPictureBroken(file, name, e.getCause() != null ? e.getCause() : e);
+                    fireAreaInvalidated();
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Reads the image data of a picture from an ODG file.
+     */
+    private static byte[] readPicture(File file, String name) throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            ZipEntry entry = zip.getEntry(name);
+            if (entry == null) {
+                throw new IOException("Picture " + name + " missing in " + file);
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                byte[] bytes = new byte[4096];
+                for (int len = in.read(bytes); len != -1; len = in.read(bytes)) {
+                    buf.write(bytes, 0, len);
+                }
+                return buf.toByteArray();
+            }
+        }
+    }
+
+    private void setPictureBroken(File file, String name, Throwable cause) {
+        isPictureBroken = true;
+        Logger.getLogger(ODGImageFigure.class.getName()).log(Level.WARNING,
+                "Could not load picture " + name + " from " + file, cause);
+    }
+
+    /**
+     * Draws the image. Until the image data has been loaded from the ODG
+     * file, a placeholder is drawn. If the picture is broken, the broken
+     * image placeholder of the superclass is drawn.
+     */
+    @Override
+    protected void drawImage(Graphics2D g) {
+        if (pictureFile != null) {
+            requestPicture();
+            g.setColor(Color.lightGray);
+            g.fill(getBounds());
+        } else {
+            super.drawImage(g);
+        }
+    }
+
+    @Override
+    public BufferedImage getBufferedImage() {
+        loadPicture();
+        return super.getBufferedImage();
+    }
+
+    @Override
+    public byte[] getImageData() {
+        loadPicture();
+        return super.getImageData();
+    }
+
+    @Override
+    public ODGImageFigure clone() {
+        ODGImageFigure that = (ODGImageFigure) super.clone();
+        that.isPictureLoading = false;
+        return that;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getBounds().isEmpty();
+    }
+}
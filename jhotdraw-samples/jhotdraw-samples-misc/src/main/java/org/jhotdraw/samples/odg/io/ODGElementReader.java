@@ -0,0 +1,204 @@
+/*
+ * @(#)ODGElementReader.java
+ *
+ * Copyright (c) 2007 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.samples.odg.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Reads the elements of an XML document of an ODG file with a pull parser.
+ * <p>
+ * The reader does not build a DOM of the whole document. It moves forward
+ * through the document, and only reads the elements, which are of interest,
+ * into small detached DOM trees, see {@link #readElement}. Thus, the memory
+ * needed for reading a document does not grow with the size of the document.
+ * <p>
+ * The elements of the DOM trees have no prefix. Their namespace URI and
+ * their local name are set. Whitespace between elements is ignored.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+class ODGElementReader implements Closeable {
+
+    private final XMLStreamReader reader;
+    /**
+     * The document which creates the elements of the DOM trees.
+     */
+    private final Document document;
+    /**
+     * The number of open elements including the current element.
+     */
+    private int depth;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param in The input stream. It is not closed by this reader.
+     */
+    public ODGElementReader(InputStream in) throws IOException {
+        XMLInputFactory f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        f.setProperty(XMLInputFactory.IS_COALESCING, true);
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            reader = f.createXMLStreamReader(in);
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        } catch (XMLStreamException | ParserConfigurationException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Moves to the next start element in document order.
+     *
+     * @return false if the end of the document has been reached.
+     */
+    public boolean nextStartElement() throws IOException {
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    return true;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            return false;
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Moves to the next child element of the element at the specified depth.
+     * The descendants of the current element are skipped, if it is a child
+     * element which has not been read with {@link #readElement}.
+     *
+     * @param parentDepth The depth of the parent element, as returned by
+     * {@link #getDepth} when the reader was at the start of the parent.
+     * @return false if the end of the parent element has been reached.
+     */
+    public boolean nextChildElement(int parentDepth) throws IOException {
+        try {
+            while (depth >= parentDepth && reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == parentDepth + 1) {
+                        return true;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            return false;
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Returns the number of open elements including the current element.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the local name of the current element.
+     */
+    public String getLocalName() {
+        return reader.getLocalName();
+    }
+
+    /**
+     * Returns the namespace URI of the current element.
+     */
+    public String getNamespaceURI() {
+        return reader.getNamespaceURI();
+    }
+
+    /**
+     * Creates a detached element without a prefix.
+     */
+    public Element createElement(String namespaceURI, String localName) {
+        return document.createElementNS(namespaceURI, localName);
+    }
+
+    /**
+     * Reads the current element with its descendants into a detached DOM
+     * tree. The reader must be at a start element. Afterwards, it is at the
+     * end of the element.
+     */
+    public Element readElement() throws IOException {
+        try {
+            Element root = createCurrentElement();
+            Element current = root;
+            int rootDepth = depth;
+            while (depth >= rootDepth) {
+                int event = reader.next();
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        Element child = createCurrentElement();
+                        current.appendChild(child);
+                        current = child;
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        depth--;
+                        if (current != root) {
+                            current = (Element) current.getParentNode();
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (!reader.isWhiteSpace()) {
+                            current.appendChild(document.createTextNode(reader.getText()));
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return root;
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    private Element createCurrentElement() {
+        Element elem = document.createElementNS(reader.getNamespaceURI(), reader.getLocalName());
+        for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+            String ns = reader.getAttributeNamespace(i);
+            elem.setAttributeNS((ns == null || ns.isEmpty()) ? null : ns,
+                    reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        return elem;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+}
@@ -17,9 +17,6 @@ import java.util.*;
 import java.util.zip.*;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import org.jhotdraw.draw.*;
 import org.jhotdraw.draw.io.InputFormat;
 import org.jhotdraw.geom.BezierPath;
@@ -30,14 +27,12 @@ import org.jhotdraw.samples.odg.figures.ODGBezierFigure;
 import org.jhotdraw.samples.odg.figures.ODGEllipseFigure;
 import org.jhotdraw.samples.odg.figures.ODGFigure;
 import org.jhotdraw.samples.odg.figures.ODGGroupFigure;
+import org.jhotdraw.samples.odg.figures.ODGImageFigure;
 import org.jhotdraw.samples.odg.figures.ODGPathFigure;
 import org.jhotdraw.samples.odg.figures.ODGRectFigure;
 import org.jhotdraw.samples.odg.geom.EnhancedPath;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 /**
  * ODGInputFormat.
@@ -58,11 +53,25 @@ public class ODGInputFormat implements InputFormat {
      * Holds the figures that are currently being read.
      */
     private LinkedList<Figure> figures;
+    private ODGStylesReader styles;
     /**
-     * Holds the document that is currently being read.
+     * The ODG file from which the pictures are loaded lazily, or null if the
+     * document is not read from a file.
      */
-    private Document document;
-    private ODGStylesReader styles;
+    private File pictureFile;
+    /**
+     * The opened ODG file, in which the pictures are looked up.
+     */
+    private ZipFile pictureZip;
+    /**
+     * The pictures which have been read from a ZIP input stream before the
+     * content.xml entry.
+     */
+    private HashMap<String, byte[]> pictures;
+    /**
+     * The image figures which wait for their pictures in a ZIP input stream.
+     */
+    private HashMap<String, List<ODGImageFigure>> pendingPictures;
 
     /**
      * Creates a new instance.
@@ -94,12 +103,57 @@ public class ODGInputFormat implements InputFormat {
         read(file, drawing, true);
     }
 
+    /**
+     * Reads an ODG file.
+     * <p>
+     * The file is opened as a {@code ZipFile}, so that the styles.xml and the
+     * content.xml entries can be read directly from the file. The pictures
+     * are left in the file, they are loaded when they are drawn for the first
+     * time. If the file is not a ZIP file, it is read as a flat XML document.
+     *
+     * @throws IOException if the content.xml entry or a picture which is
+     * referenced by the content is missing.
+     */
     public void read(File file, Drawing drawing, boolean replace) throws IOException {
-        BufferedInputStream in = new BufferedInputStream(new FileInputStream(file));
+        ZipFile zip;
         try {
-            read(in, drawing, replace);
+            zip = new ZipFile(file);
+        } catch (ZipException e) {
+            BufferedInputStream in = new BufferedInputStream(new FileInputStream(file));
+            try {
+                read(in, drawing, replace);
+            } finally {
+                in.close();
+            }
+            return;
+        }
+        try {
+            styles = new ODGStylesReader();
+            ZipEntry stylesEntry = zip.getEntry("styles.xml");
+            if (stylesEntry != null) {
+                InputStream in = zip.getInputStream(stylesEntry);
+                try {
+                    styles.read(in);
+                } finally {
+                    in.close();
+                }
+            }
+            ZipEntry contentEntry = zip.getEntry("content.xml");
+            if (contentEntry == null) {
+                throw new IOException("content.xml missing in " + file);
+            }
+            pictureFile = file;
+            pictureZip = zip;
+            InputStream in = zip.getInputStream(contentEntry);
+            try {
+                readFiguresFromDocumentContent(in, drawing, replace);
+            } finally {
+                in.close();
+            }
         } finally {
-            in.close();
+            pictureFile = null;
+            pictureZip = null;
+            zip.close();
         }
     }
 
@@ -124,7 +178,7 @@ public class ODGInputFormat implements InputFormat {
      */
     private byte[] readAllBytes(InputStream in) throws IOException {
         ByteArrayOutputStream tmp = new ByteArrayOutputStream();
-        byte[] buf = new byte[512];
+        byte[] buf = new byte[8192];
         for (int len; -1 != (len = in.read(buf));) {
             tmp.write(buf, 0, len);
         }
@@ -132,108 +186,122 @@ public class ODGInputFormat implements InputFormat {
         return tmp.toByteArray();
     }
 
+    /**
+     * Reads an ODG file or a flat ODG XML document from the input stream.
+     * <p>
+     * The entries of the ODG file are read from a {@code ZipInputStream} in
+     * the order in which they are stored. Only if the content.xml entry is
+     * stored before the styles.xml entry, it is buffered. The pictures are
+     * held as image data, they are decoded when they are drawn for the
+     * first time.
+     *
+     * @throws IOException if the content.xml entry or a picture which is
+     * referenced by the content is missing.
+     */
     @Override
     public void read(InputStream in, Drawing drawing, boolean replace) throws IOException {
-        // Read the file into a byte array.
-        byte[] tmp = readAllBytes(in);
-
-        // Input stream of the content.xml file
-        InputStream contentIn = null;
-
-        // Input stream of the styles.xml file
-        InputStream stylesIn = null;
+        if (!in.markSupported()) {
+            in = new BufferedInputStream(in);
+        }
+        styles = new ODGStylesReader();
+        // Check for the signature of a ZIP file
+        in.mark(4);
+        byte[] signature = new byte[4];
+        int count = 0;
+        for (int len; count < 4 && -1 != (len = in.read(signature, count, 4 - count));) {
+            count += len;
+        }
+        in.reset();
+        if (count < 4 || signature[0] != 'P' || signature[1] != 'K' || signature[2] != 3 || signature[3] != 4) {
+            readFiguresFromDocumentContent(in, drawing, replace);
+            return;
+        }
 
-        // Try to read "tmp" as a ZIP-File.
-        boolean isZipped = true;
+        pictures = new HashMap<String, byte[]>();
+        pendingPictures = new HashMap<String, List<ODGImageFigure>>();
         try {
-            ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(tmp));
+            ZipInputStream zin = new ZipInputStream(in);
+            byte[] content = null;
+            boolean isStylesRead = false;
+            boolean isContentRead = false;
             for (ZipEntry entry; null != (entry = zin.getNextEntry());) {
-                if ("content.xml".equals(entry.getName())) {
-                    contentIn = new ByteArrayInputStream(
-                            readAllBytes(zin));
-                } else if ("styles.xml".equals(entry.getName())) {
-                    stylesIn = new ByteArrayInputStream(
-                            readAllBytes(zin));
+                String name = entry.getName();
+                if ("styles.xml".equals(name)) {
+                    styles.read(zin);
+                    isStylesRead = true;
+                    if (content != null) {
+                        readFiguresFromDocumentContent(new ByteArrayInputStream(content), drawing, replace);
+                        content = null;
+                        isContentRead = true;
+                    }
+                } else if ("content.xml".equals(name)) {
+                    if (isStylesRead) {
+                        readFiguresFromDocumentContent(zin, drawing, replace);
+                        isContentRead = true;
+                    } else {
+                        content = readAllBytes(zin);
+                    }
+                } else if (pendingPictures.containsKey(name)) {
+                    byte[] data = readAllBytes(zin);
+                    for (ODGImageFigure f : pendingPictures.remove(name)) {
+                        f.setImageData(data);
+                    }
+                } else if (!isContentRead && name.startsWith("Pictures/")) {
+                    pictures.put(name, readAllBytes(zin));
                 }
             }
-
-        } catch (ZipException e) {
-            isZipped = false;
-        }
-        if (contentIn == null) {
-            contentIn = new ByteArrayInputStream(tmp);
-        }
-        if (stylesIn == null) {
-            stylesIn = new ByteArrayInputStream(tmp);
+            if (content != null) {
+                readFiguresFromDocumentContent(new ByteArrayInputStream(content), drawing, replace);
+            } else if (!isContentRead) {
+                throw new IOException("content.xml missing.");
+            }
+            if (!pendingPictures.isEmpty()) {
+                throw new IOException("Picture " + pendingPictures.keySet().iterator().next() + " missing.");
+            }
+        } finally {
+            pictures = null;
+            pendingPictures = null;
         }
-
-        styles = new ODGStylesReader();
-        styles.read(stylesIn);
-
-        readFiguresFromDocumentContent(contentIn, drawing, replace);
     }
 
     /**
      * Reads figures from the content.xml file of an ODG open document drawing
      * document.
+     * <p>
+     * The document is read with a pull parser. Only the styles and the
+     * shapes on the draw pages are read into small DOM trees, one at a time.
      */
-    @SuppressWarnings("unchecked")
     public void readFiguresFromDocumentContent(InputStream in, Drawing drawing, boolean replace) throws IOException {
         this.figures = new LinkedList<Figure>();
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-
-        try {
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(in);
-        } catch (ParserConfigurationException | SAXException ex) {
-            IOException e = new IOException(ex.getMessage());
-            e.initCause(ex);
-            throw e;
-        }
-
         if (styles == null) {
             styles = new ODGStylesReader();
         }
-
-        styles.read(document.getDocumentElement());
-
-        // Search for the first 'office:drawing' element in the XML document
-        // in preorder sequence
-        Element drawingElem = document.getDocumentElement();
-        Stack<Node> stack = new Stack<Node>();
-        //LinkedList<Element> ll = new LinkedList<Element>();
-        //ll.add(document.getDocumentElement());
-        stack.push(document.getDocumentElement().getFirstChild());
-        while (!stack.empty() && stack.peek().getNextSibling() != null) {
-            Node iter = stack.peek();
-            Node node = iter.getNextSibling();
-            if (node.getNextSibling() == null) {
-                stack.pop();
-            } else {
-                stack.set(stack.indexOf(iter), node);
-            }
-            Node children = node.getFirstChild();
-            if (children.getNextSibling() != null) {
-                stack.push(children);
+        ODGElementReader reader = new ODGElementReader(in);
+        try {
+            // Read the styles and search for the first 'office:drawing'
+            // element in the XML document in preorder sequence
+            boolean isDrawingFound = false;
+            while (!isDrawingFound && reader.nextStartElement()) {
+                String name = reader.getLocalName();
+                if (!OFFICE_NAMESPACE.equals(reader.getNamespaceURI())) {
+                    continue;
+                }
+                if ("automatic-styles".equals(name) || "master-styles".equals(name) || "styles".equals(name)) {
+                    Element content = reader.createElement(OFFICE_NAMESPACE, "document-content");
+                    content.appendChild(reader.readElement());
+                    styles.read(content);
+                } else if ("drawing".equals(name)) {
+                    readDrawingElement(reader);
+                    isDrawingFound = true;
+                }
             }
-            if (node.getLocalName() != null
-                    && node.getLocalName().equals("drawing")
-                    && (node.getPrefix() == null
-                    || node.getPrefix().equals(OFFICE_NAMESPACE))) {
-                drawingElem = (Element) node;
-                break;
+            if (!isDrawingFound) {
+                throw new IOException("'office:drawing' element expected.");
             }
+        } finally {
+            reader.close();
         }
 
-        if (drawingElem.getLocalName() == null
-                || !drawingElem.getLocalName().equals("drawing")
-                || (drawingElem.getPrefix() != null
-                && !drawingElem.getPrefix().equals(OFFICE_NAMESPACE))) {
-            throw new IOException("'office:drawing' element expected: " + drawingElem.getLocalName());
-        }
-
-        readDrawingElement(drawingElem);
-
         if (replace) {
             drawing.removeAllChildren();
         }
@@ -243,7 +311,7 @@ public class ODGInputFormat implements InputFormat {
     /**
      * Reads an ODG "office:drawing" element.
      */
-    private void readDrawingElement(Element elem)
+    private void readDrawingElement(ODGElementReader reader)
             throws IOException {
         /*
         2.3.2Drawing Documents
@@ -283,15 +351,11 @@ public class ODGInputFormat implements InputFormat {
         </define>
          */
 
-        NodeList list = elem.getChildNodes();
-        for (int i = 0; i < list.getLength(); i++) {
-            Element child = (Element) list.item(i);
-            if (child.getPrefix() == null
-                    || child.getPrefix().equals(DRAWING_NAMESPACE)) {
-                String name = child.getLocalName();
-                if ("page".equals(name)) {
-                    readPageElement(child);
-                }
+        int depth = reader.getDepth();
+        while (reader.nextChildElement(depth)) {
+            if (DRAWING_NAMESPACE.equals(reader.getNamespaceURI())
+                    && "page".equals(reader.getLocalName())) {
+                readPageElement(reader);
             }
         }
     }
@@ -299,7 +363,7 @@ public class ODGInputFormat implements InputFormat {
     /**
      * Reads an ODG "draw:page" element.
      */
-    private void readPageElement(Element elem)
+    private void readPageElement(ODGElementReader reader)
             throws IOException {
         /* 9.1.4Drawing Pages
          *
@@ -351,10 +415,9 @@ public class ODGInputFormat implements InputFormat {
         • Animations
         • Presentation notes
          */
-        NodeList list = elem.getChildNodes();
-        for (int i = 0; i < list.getLength(); i++) {
-            Element child = (Element) list.item(i);
-            ODGFigure figure = readElement(child);
+        int depth = reader.getDepth();
+        while (reader.nextChildElement(depth)) {
+            ODGFigure figure = readElement(reader.readElement());
             if (figure != null) {
                 figures.add(figure);
             }
@@ -690,7 +753,39 @@ public class ODGInputFormat implements InputFormat {
      * @param elem A &lt;frame&gt; element.
      */
     private ODGFigure readFrameElement(Element elem) throws IOException {
-        throw new UnsupportedOperationException("not implemented.");
+        NodeList list = elem.getElementsByTagNameNS(DRAWING_NAMESPACE, "image");
+        if (list.getLength() == 0) {
+            // Frames with text boxes or objects are not supported
+            return null;
+        }
+        Element imageElem = (Element) list.item(0);
+        String href = imageElem.getAttributeNS(XLINK_NAMESPACE, "href");
+        ODGImageFigure figure = new ODGImageFigure(
+                toLength(elem.getAttributeNS(SVG_NAMESPACE, "x"), 1),
+                toLength(elem.getAttributeNS(SVG_NAMESPACE, "y"), 1),
+                toLength(elem.getAttributeNS(SVG_NAMESPACE, "width"), 1),
+                toLength(elem.getAttributeNS(SVG_NAMESPACE, "height"), 1));
+        if (elem.hasAttributeNS(DRAWING_NAMESPACE, "transform")) {
+            figure.transform(toTransform(elem.getAttributeNS(DRAWING_NAMESPACE, "transform")));
+        }
+        if (href.length() > 0 && !href.contains(":")) {
+            if (pictureFile != null) {
+                if (pictureZip.getEntry(href) == null) {
+                    throw new IOException("Picture " + href + " missing in " + pictureFile);
+                }
+                figure.setPicture(pictureFile, href);
+            } else if (pictures != null && pictures.containsKey(href)) {
+                figure.setImageData(pictures.get(href));
+            } else if (pendingPictures != null) {
+                List<ODGImageFigure> pending = pendingPictures.get(href);
+                if (pending == null) {
+                    pending = new ArrayList<ODGImageFigure>();
+                    pendingPictures.put(href, pending);
+                }
+                pending.add(figure);
+            }
+        }
+        return figure;
     }
 
     /**
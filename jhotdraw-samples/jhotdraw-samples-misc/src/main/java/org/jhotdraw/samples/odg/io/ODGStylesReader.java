@@ -10,16 +10,11 @@ package org.jhotdraw.samples.odg.io;
 import java.awt.Color;
 import java.io.*;
 import java.util.*;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import org.jhotdraw.draw.*;
 import static org.jhotdraw.samples.odg.ODGAttributeKeys.*;
 import static org.jhotdraw.samples.odg.ODGConstants.*;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 /**
  * ODGStylesReader reads an ODG &lt;document-styles&gt; element,
@@ -71,6 +66,12 @@ public class ODGStylesReader {
      * way, a separation of content and layout is achieved.
      */
     private HashMap<String, Style> automaticStyles;
+    /**
+     * The attributes of the styles, which have been resolved by
+     * {@link #getAttributes}, by style name. This map is cleared, when
+     * styles are read.
+     */
+    private HashMap<String, Map<AttributeKey<?>, Object>> resolvedStyles;
 
     /**
      * Creates a new instance.
@@ -79,9 +80,35 @@ public class ODGStylesReader {
         reset();
     }
 
+    /**
+     * Returns the attributes of the specified style, including the attributes
+     * which it inherits from its parent styles.
+     * <p>
+     * Each style is resolved only once. The returned map is shared by all
+     * figures which use the style, and can not be modified.
+     * <p>
+     * If the parent styles form a cycle, the inheritance stops at the first
+     * style which is visited twice. Since the result depends on the style at
+     * which the lookup started, the styles of such a chain are not cached.
+     */
     public Map<AttributeKey<?>, Object> getAttributes(String styleName, String familyName) {
+        return getAttributes(styleName, familyName, new HashSet<String>(), new boolean[1]);
+    }
+
+    /**
+     * @param visited The names of the styles which have been visited in the
+     * chain of parent styles.
+     * @param isCycle Is set to true, if a cycle has been found in the chain
+     * of parent styles.
+     */
+    private Map<AttributeKey<?>, Object> getAttributes(String styleName, String familyName,
+            HashSet<String> visited, boolean[] isCycle) {
         //String key = familyName+"-"+styleName;
         String key = styleName;
+        Map<AttributeKey<?>, Object> a = resolvedStyles.get(key);
+        if (a != null) {
+            return a;
+        }
         Style style;
         if (commonStyles.containsKey(key)) {
             style = commonStyles.get(key);
@@ -92,15 +119,22 @@ public class ODGStylesReader {
         } else {
             style = new Style();
         }
+        visited.add(key);
         if (style.parentName == null) {
-            return style;
+            a = Collections.unmodifiableMap(new HashMap<AttributeKey<?>, Object>(style));
+        } else if (visited.contains(style.parentName)) {
+            isCycle[0] = true;
+            a = Collections.unmodifiableMap(new HashMap<AttributeKey<?>, Object>(style));
         } else {
-            HashMap<AttributeKey<?>, Object> a = new HashMap<AttributeKey<?>, Object>();
-            Map<AttributeKey<?>, Object> parentAttributes = getAttributes(style.parentName, familyName);
-            a.putAll(parentAttributes);
-            a.putAll(style);
-            return a;
+            HashMap<AttributeKey<?>, Object> m = new HashMap<AttributeKey<?>, Object>();
+            m.putAll(getAttributes(style.parentName, familyName, visited, isCycle));
+            m.putAll(style);
+            a = Collections.unmodifiableMap(m);
+        }
+        if (!isCycle[0]) {
+            resolvedStyles.put(key, a);
         }
+        return a;
     }
 
     /**
@@ -128,24 +162,21 @@ public class ODGStylesReader {
      * or with a &lt;document-styles&gt; root element.
      */
     public void read(InputStream in) throws IOException {
-        Element document;
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        ODGElementReader reader = new ODGElementReader(in);
         try {
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(in);
-            document = doc.getDocumentElement();
-        } catch (ParserConfigurationException | SAXException ex) {
-            IOException e = new IOException(ex.getMessage());
-            e.initCause(ex);
-            throw e;
+            if (reader.nextStartElement()) {
+                read(reader.readElement());
+            }
+        } finally {
+            reader.close();
         }
-        read(document);
     }
 
     private void reset() {
         commonStyles = new HashMap<String, Style>();
         automaticStyles = new HashMap<String, Style>();
         masterStyles = new HashMap<String, Style>();
+        resolvedStyles = new HashMap<String, Map<AttributeKey<?>, Object>>();
     }
 
     /**
@@ -157,6 +188,7 @@ public class ODGStylesReader {
      * &lt;document-styles&gt; element.
      */
     public void read(Element root) throws IOException {
+        resolvedStyles.clear();
         String name = root.getLocalName();
         String ns = root.getPrefix();
         if ("document-content".equals(name) && (ns == null || ns.equals(OFFICE_NAMESPACE))) {
@@ -23,6 +23,7 @@ import org.jhotdraw.draw.decoration.ArrowTip;
 public class DependencyFigure extends LineConnectionFigure {
 
     private static final long serialVersionUID = 1L;
+    private boolean isCritical;
 
     /**
      * Creates a new instance.
@@ -87,9 +88,37 @@ public class DependencyFigure extends LineConnectionFigure {
         ef.addDependency(this);
     }
 
+    /**
+     * Sets whether this dependency is on the critical path. This method is
+     * invoked by the {@link PertScheduler}.
+     */
+    void setCritical(boolean newValue) {
+        if (newValue != isCritical) {
+            willChange();
+            isCritical = newValue;
+            changed();
+        }
+    }
+
+    /**
+     * Returns true, if this dependency is on the critical path.
+     */
+    public boolean isCritical() {
+        return isCritical;
+    }
+
+    @Override
+    protected void drawStroke(Graphics2D g) {
+        if (isCritical) {
+            g.setColor(TaskFigure.CRITICAL_COLOR);
+        }
+        super.drawStroke(g);
+    }
+
     @Override
     public DependencyFigure clone() {
         DependencyFigure that = (DependencyFigure) super.clone();
+        that.isCritical = false;
         return that;
     }
 
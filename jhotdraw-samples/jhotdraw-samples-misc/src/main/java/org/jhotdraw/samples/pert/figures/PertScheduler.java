@@ -0,0 +1,502 @@
+/*
+ * @(#)PertScheduler.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.samples.pert.figures;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import org.jhotdraw.draw.Drawing;
+
+/**
+ * Computes the schedule of the tasks of a PERT drawing: the start time and
+ * the slack of each task, and the critical path.
+ * <p>
+ * The scheduler keeps the tasks in a topological order: each task has an
+ * order number, which is greater than the order numbers of its
+ * predecessors. When a dependency is added, which violates the order, only
+ * the tasks between the two ends of the dependency are reordered.
+ * <p>
+ * When a task, its duration or its dependencies change, the scheduler marks
+ * the affected tasks as dirty. Then it recomputes the earliest start times
+ * of the dirty tasks in topological order, and the latest start times in
+ * reverse topological order. A task is recomputed only once per pass, and
+ * its successors, respectively its predecessors, are only marked as dirty
+ * if its result has changed. Thus, an update takes time proportional to the
+ * number of dependencies of the tasks whose schedule has changed.
+ * <p>
+ * The slack of a task is the difference between its latest and its
+ * earliest start time. Tasks without slack are on the critical path. The
+ * results are applied to the figures in a single change transaction of the
+ * drawing. The critical flag of a dependency is recomputed, when the
+ * schedule of one of its tasks has changed, or when the dependency has been
+ * added or removed.
+ * <p>
+ * The scheduler of a drawing is kept in a weak map, see {@link #getInstance}.
+ * Since the tasks of the drawing refer to the drawing, the scheduler holds
+ * the drawing and the tasks only through weak references. Otherwise the
+ * scheduler would keep its drawing reachable, and the drawing could not be
+ * garbage collected.
+ * <p>
+ * This class is not thread safe. It is intended to be used on the AWT Event
+ * Dispatcher Thread.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class PertScheduler {
+
+    private static final WeakHashMap<Drawing, PertScheduler> INSTANCES = new WeakHashMap<>();
+    private final WeakReference<Drawing> drawing;
+    private final WeakHashMap<TaskFigure, Node> nodes = new WeakHashMap<>();
+    /**
+     * The earliest finish times of the tasks, with the number of tasks which
+     * finish at each time. The greatest key is the end of the project.
+     */
+    private final TreeMap<Integer, Integer> finishTimes = new TreeMap<>();
+    private final HashSet<Node> forwardDirty = new HashSet<>();
+    private final HashSet<Node> backwardDirty = new HashSet<>();
+    /**
+     * The dependencies which have been added or removed since the last
+     * update.
+     */
+    private final LinkedHashSet<DependencyFigure> changedDependencies = new LinkedHashSet<>();
+    private int projectEnd;
+    private int nextOrder;
+    private long updateCount;
+
+    /**
+     * The schedule of a task.
+     */
+    private static class Node {
+
+        private final WeakReference<TaskFigure> task;
+        private int order;
+        private int duration;
+        private int earlyStart;
+        private int earlyFinish = Integer.MIN_VALUE;
+        private int lateStart = Integer.MIN_VALUE;
+        private boolean isQueued;
+
+        public Node(TaskFigure task, int order) {
+            this.task = new WeakReference<>(task);
+            this.order = order;
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param drawing The drawing which holds the tasks.
+     */
+    public PertScheduler(Drawing drawing) {
+        this.drawing = new WeakReference<>(drawing);
+    }
+
+    /**
+     * Returns the scheduler of the specified drawing.
+     */
+    public static PertScheduler getInstance(Drawing drawing) {
+        PertScheduler scheduler = INSTANCES.get(drawing);
+        if (scheduler == null) {
+            scheduler = new PertScheduler(drawing);
+            INSTANCES.put(drawing, scheduler);
+        }
+        return scheduler;
+    }
+
+    /**
+     * Adds a task, which has been added to the drawing, and updates the
+     * schedule.
+     */
+    public void add(TaskFigure task) {
+        if (nodes.containsKey(task)) {
+            return;
+        }
+        Node node = new Node(task, nextOrder++);
+        node.duration = task.getDuration();
+        nodes.put(task, node);
+        for (Node pre : getPredecessors(node)) {
+            insertEdge(pre, node);
+        }
+        for (Node succ : getSuccessors(node)) {
+            insertEdge(node, succ);
+        }
+        forwardDirty.add(node);
+        backwardDirty.add(node);
+        update();
+    }
+
+    /**
+     * Removes a task, which has been removed from the drawing, and updates
+     * the schedule.
+     */
+    public void remove(TaskFigure task) {
+        Node node = nodes.get(task);
+        if (node == null) {
+            return;
+        }
+        List<Node> predecessors = getPredecessors(node);
+        List<Node> successors = getSuccessors(node);
+        nodes.remove(task);
+        forwardDirty.remove(node);
+        backwardDirty.remove(node);
+        removeFinishTime(node.earlyFinish);
+        forwardDirty.addAll(successors);
+        backwardDirty.addAll(predecessors);
+        update();
+    }
+
+    /**
+     * Updates the schedule after a dependency has been added to or removed
+     * from one of its tasks.
+     */
+    public void dependencyChanged(DependencyFigure dependency) {
+        Node start = nodes.get(dependency.getStartFigure());
+        Node end = nodes.get(dependency.getEndFigure());
+        if (start != null && end != null
+                && ((TaskFigure) dependency.getStartFigure()).getDependencies().contains(dependency)) {
+            insertEdge(start, end);
+        }
+        if (end != null) {
+            forwardDirty.add(end);
+        }
+        if (start != null) {
+            backwardDirty.add(start);
+        }
+        changedDependencies.add(dependency);
+        update();
+    }
+
+    /**
+     * Updates the schedule after the duration of a task has changed.
+     */
+    public void durationChanged(TaskFigure task) {
+        Node node = nodes.get(task);
+        if (node != null && node.duration != task.getDuration()) {
+            node.duration = task.getDuration();
+            forwardDirty.add(node);
+            backwardDirty.add(node);
+            update();
+        }
+    }
+
+    /**
+     * Returns true if both tasks are scheduled, and the first task comes
+     * before the second task in topological order. Then the first task can
+     * not depend on the second task.
+     */
+    public boolean isBefore(TaskFigure task, TaskFigure other) {
+        Node node = nodes.get(task);
+        Node otherNode = nodes.get(other);
+        return node != null && otherNode != null && node.order < otherNode.order;
+    }
+
+    /**
+     * Returns the end of the project, which is the greatest earliest finish
+     * time of all tasks.
+     */
+    public int getProjectEnd() {
+        return projectEnd;
+    }
+
+    /**
+     * Returns the number of times, the scheduler has computed the earliest
+     * start time of a task.
+     */
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * Restores the topological order after the specified dependency has
+     * been added. If the start of the dependency comes after its end, the
+     * tasks which come after the end and depend on it, and the tasks which
+     * come before the start and on which it depends, are reordered, so that
+     * the former come after the latter. The order numbers of the reordered
+     * tasks are reused.
+     */
+    private void insertEdge(Node start, Node end) {
+        if (start.order < end.order) {
+            return;
+        }
+        int lowerBound = end.order;
+        int upperBound = start.order;
+        ArrayList<Node> forward = new ArrayList<>();
+        if (!collect(end, upperBound, true, forward, start)) {
+            // The dependency closes a cycle. The scheduler ignores it.
+            return;
+        }
+        ArrayList<Node> backward = new ArrayList<>();
+        collect(start, lowerBound, false, backward, null);
+        Comparator<Node> byOrder = new Comparator<Node>() {
+            @Override
+            public int compare(Node a, Node b) {
+                return Integer.compare(a.order, b.order);
+            }
+        };
+        Collections.sort(forward, byOrder);
+        Collections.sort(backward, byOrder);
+        int[] orders = new int[forward.size() + backward.size()];
+        int i = 0;
+        for (Node n : backward) {
+            orders[i++] = n.order;
+        }
+        for (Node n : forward) {
+            orders[i++] = n.order;
+        }
+        Arrays.sort(orders);
+        i = 0;
+        for (Node n : backward) {
+            n.order = orders[i++];
+        }
+        for (Node n : forward) {
+            n.order = orders[i++];
+        }
+    }
+
+    /**
+     * Collects the tasks, which are reachable from the specified task and
+     * whose order lies within the bound.
+     *
+     * @param from The task to start from.
+     * @param bound The greatest order for a forward search, or the least
+     * order for a backward search.
+     * @param isForward True to follow the successors, false to follow the
+     * predecessors.
+     * @param result The reached tasks.
+     * @param cycle A task, which must not be reached, or null.
+     * @return False if the cycle task has been reached.
+     */
+    private boolean collect(Node from, int bound, boolean isForward, ArrayList<Node> result, Node cycle) {
+        HashSet<Node> visited = new HashSet<>();
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(from);
+        visited.add(from);
+        while (!stack.isEmpty()) {
+            Node n = stack.pop();
+            result.add(n);
+            for (Node next : isForward ? getSuccessors(n) : getPredecessors(n)) {
+                if (next == cycle) {
+                    return false;
+                }
+                if ((isForward ? next.order <= bound : next.order >= bound) && visited.add(next)) {
+                    stack.push(next);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Recomputes the schedule of the dirty tasks, and applies the changed
+     * results to the figures.
+     */
+    private void update() {
+        LinkedHashSet<Node> changed = new LinkedHashSet<>();
+
+        // Forward pass: earliest start times in topological order
+        PriorityQueue<Node> queue = new PriorityQueue<>(Math.max(1, forwardDirty.size()), new Comparator<Node>() {
+            @Override
+            public int compare(Node a, Node b) {
+                return Integer.compare(a.order, b.order);
+            }
+        });
+        enqueue(queue, forwardDirty);
+        while (!queue.isEmpty()) {
+            Node n = queue.poll();
+            n.isQueued = false;
+            updateCount++;
+            int earlyStart = 0;
+            for (Node pre : getPredecessors(n)) {
+                if (pre.order < n.order) {
+                    earlyStart = Math.max(earlyStart, pre.earlyFinish);
+                }
+            }
+            if (earlyStart != n.earlyStart) {
+                n.earlyStart = earlyStart;
+                changed.add(n);
+            }
+            int earlyFinish = earlyStart + n.duration;
+            if (earlyFinish != n.earlyFinish) {
+                removeFinishTime(n.earlyFinish);
+                addFinishTime(earlyFinish);
+                n.earlyFinish = earlyFinish;
+                changed.add(n);
+                for (Node succ : getSuccessors(n)) {
+                    if (succ.order > n.order && !succ.isQueued) {
+                        succ.isQueued = true;
+                        queue.add(succ);
+                    }
+                }
+            }
+        }
+
+        // If the end of the project has moved, the latest start times of
+        // all tasks change
+        int newProjectEnd = finishTimes.isEmpty() ? 0 : Math.max(0, finishTimes.lastKey());
+        if (newProjectEnd != projectEnd) {
+            projectEnd = newProjectEnd;
+            for (Node n : nodes.values()) {
+                if (getSuccessors(n).isEmpty()) {
+                    backwardDirty.add(n);
+                }
+            }
+        }
+
+        // Backward pass: latest start times in reverse topological order
+        queue = new PriorityQueue<>(Math.max(1, backwardDirty.size()), new Comparator<Node>() {
+            @Override
+            public int compare(Node a, Node b) {
+                return Integer.compare(b.order, a.order);
+            }
+        });
+        enqueue(queue, backwardDirty);
+        while (!queue.isEmpty()) {
+            Node n = queue.poll();
+            n.isQueued = false;
+            int lateFinish = projectEnd;
+            for (Node succ : getSuccessors(n)) {
+                if (succ.order > n.order) {
+                    lateFinish = Math.min(lateFinish, succ.lateStart);
+                }
+            }
+            int lateStart = lateFinish - n.duration;
+            if (lateStart != n.lateStart) {
+                n.lateStart = lateStart;
+                changed.add(n);
+                for (Node pre : getPredecessors(n)) {
+                    if (pre.order < n.order && !pre.isQueued) {
+                        pre.isQueued = true;
+                        queue.add(pre);
+                    }
+                }
+            }
+        }
+
+        if (!changed.isEmpty() || !changedDependencies.isEmpty()) {
+            apply(changed);
+        }
+    }
+
+    private void enqueue(PriorityQueue<Node> queue, HashSet<Node> dirty) {
+        for (Node n : dirty) {
+            if (!n.isQueued) {
+                n.isQueued = true;
+                queue.add(n);
+            }
+        }
+        dirty.clear();
+    }
+
+    /**
+     * Applies the schedule of the specified tasks to their figures and to
+     * the figures of their dependencies, and updates the critical flag of
+     * the changed dependencies.
+     */
+    private void apply(Collection<Node> changed) {
+        Drawing d = drawing.get();
+        if (d == null) {
+            changedDependencies.clear();
+            return;
+        }
+        d.beginChangeTransaction();
+        try {
+            for (Node n : changed) {
+                TaskFigure task = n.task.get();
+                if (task != null) {
+                    task.setSchedule(n.earlyStart, n.lateStart - n.earlyStart, n.lateStart == n.earlyStart);
+                }
+            }
+            for (Node n : changed) {
+                TaskFigure task = n.task.get();
+                if (task == null) {
+                    continue;
+                }
+                for (DependencyFigure dependency : task.getDependencies()) {
+                    dependency.setCritical(isCritical(dependency));
+                }
+            }
+            for (DependencyFigure dependency : changedDependencies) {
+                dependency.setCritical(isCritical(dependency));
+            }
+        } finally {
+            changedDependencies.clear();
+            d.endChangeTransaction();
+        }
+    }
+
+    /**
+     * Returns true, if the specified dependency connects two scheduled tasks
+     * on the critical path, and the second task starts when the first task
+     * finishes.
+     */
+    private boolean isCritical(DependencyFigure dependency) {
+        Node start = nodes.get(dependency.getStartFigure());
+        Node end = nodes.get(dependency.getEndFigure());
+        return start != null && end != null
+                && ((TaskFigure) dependency.getStartFigure()).getDependencies().contains(dependency)
+                && start.lateStart == start.earlyStart
+                && end.lateStart == end.earlyStart
+                && start.earlyFinish == end.earlyStart;
+    }
+
+    private void addFinishTime(int time) {
+        Integer count = finishTimes.get(time);
+        finishTimes.put(time, (count == null) ? 1 : count + 1);
+    }
+
+    private void removeFinishTime(int time) {
+        Integer count = finishTimes.get(time);
+        if (count != null) {
+            if (count == 1) {
+                finishTimes.remove(time);
+            } else {
+                finishTimes.put(time, count - 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the scheduled predecessors of the specified task.
+     */
+    private List<Node> getPredecessors(Node node) {
+        ArrayList<Node> list = new ArrayList<>();
+        TaskFigure task = node.task.get();
+        if (task == null) {
+            return list;
+        }
+        for (DependencyFigure d : task.getDependencies()) {
+            if (d.getEndFigure() == task) {
+                Node pre = nodes.get(d.getStartFigure());
+                if (pre != null) {
+                    list.add(pre);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the scheduled successors of the specified task.
+     */
+    private List<Node> getSuccessors(Node node) {
+        ArrayList<Node> list = new ArrayList<>();
+        TaskFigure task = node.task.get();
+        if (task == null) {
+            return list;
+        }
+        for (DependencyFigure d : task.getDependencies()) {
+            if (d.getStartFigure() == task) {
+                Node succ = nodes.get(d.getEndFigure());
+                if (succ != null) {
+                    list.add(succ);
+                }
+            }
+        }
+        return list;
+    }
+}
@@ -10,6 +10,8 @@ package org.jhotdraw.samples.pert.figures;
 import org.jhotdraw.draw.figure.RectangleFigure;
 import org.jhotdraw.draw.figure.TextFigure;
 import org.jhotdraw.draw.figure.ListFigure;
+import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.geom.*;
 import java.io.IOException;
 import java.util.*;
@@ -37,7 +39,14 @@ import org.jhotdraw.xml.*;
 public class TaskFigure extends GraphicalCompositeFigure {
 
     private static final long serialVersionUID = 1L;
+    /**
+     * The color of the outline of tasks and of the dependencies, which are on
+     * the critical path.
+     */
+    public static final Color CRITICAL_COLOR = new Color(0xcc0000);
     private HashSet<DependencyFigure> dependencies;
+    private int slack;
+    private boolean isCritical;
 
     /**
      * This adapter is used, to connect a TextFigure with the name of
@@ -72,9 +81,7 @@ public class TaskFigure extends GraphicalCompositeFigure {
             // We could fire a property change event here, in case
             // some other object would like to observe us.
             //target.firePropertyChange("duration", e.getOldValue(), e.getNewValue());
-            for (TaskFigure succ : target.getSuccessors()) {
-                succ.updateStartTime();
-            }
+            target.durationChanged();
         }
     }
 
@@ -154,12 +161,29 @@ public class TaskFigure extends GraphicalCompositeFigure {
         int oldValue = getDuration();
         getDurationFigure().setText(Integer.toString(newValue));
         if (oldValue != newValue) {
-            for (TaskFigure succ : getSuccessors()) {
-                succ.updateStartTime();
-            }
+            durationChanged();
+        }
+    }
+
+    /**
+     * Updates the schedule after the duration of this task has changed.
+     */
+    private void durationChanged() {
+        PertScheduler scheduler = getScheduler();
+        if (scheduler != null) {
+            scheduler.durationChanged(this);
         }
     }
 
+    /**
+     * Returns the scheduler of the drawing, or null if this task is not part
+     * of a drawing.
+     */
+    private PertScheduler getScheduler() {
+        Drawing d = getDrawing();
+        return (d == null) ? null : PertScheduler.getInstance(d);
+    }
+
     public int getDuration() {
         try {
             return Integer.valueOf(getDurationFigure().getText());
@@ -168,25 +192,38 @@ public class TaskFigure extends GraphicalCompositeFigure {
         }
     }
 
+    /**
+     * Updates the start time of this task from its predecessors.
+     * <p>
+     * The start times of the tasks of a drawing are kept up to date by the
+     * {@link PertScheduler} of the drawing. This method only computes the
+     * start time of a task, which is not part of a drawing.
+     */
     public void updateStartTime() {
-        willChange();
-        int oldValue = getStartTime();
-        int newValue = 0;
-        for (TaskFigure pre : getPredecessors()) {
-            newValue = Math.max(newValue,
-                    pre.getStartTime() + pre.getDuration());
-        }
-        getStartTimeFigure().setText(Integer.toString(newValue));
-        if (newValue != oldValue) {
-            for (TaskFigure succ : getSuccessors()) {
-                // The if-statement here guards against
-                // cyclic task dependencies.
-                if (!this.isDependentOf(succ)) {
-                    succ.updateStartTime();
-                }
+        if (getScheduler() == null) {
+            int newValue = 0;
+            for (TaskFigure pre : getPredecessors()) {
+                newValue = Math.max(newValue,
+                        pre.getStartTime() + pre.getDuration());
             }
+            setSchedule(newValue, 0, false);
+        }
+    }
+
+    /**
+     * Sets the start time and the slack of this task, and whether it is on
+     * the critical path. This method is invoked by the {@link PertScheduler}.
+     */
+    void setSchedule(int startTime, int slack, boolean isCritical) {
+        this.slack = slack;
+        if (startTime != getStartTime() || isCritical != this.isCritical) {
+            // The slack is not drawn, we only change the figure if it
+            // looks different
+            willChange();
+            getStartTimeFigure().setText(Integer.toString(startTime));
+            this.isCritical = isCritical;
+            changed();
         }
-        changed();
     }
 
     public int getStartTime() {
@@ -197,6 +234,21 @@ public class TaskFigure extends GraphicalCompositeFigure {
         }
     }
 
+    /**
+     * Returns the time by which this task can be delayed, without delaying
+     * the end of the project.
+     */
+    public int getSlack() {
+        return slack;
+    }
+
+    /**
+     * Returns true, if this task is on the critical path.
+     */
+    public boolean isCritical() {
+        return isCritical;
+    }
+
     private TextFigure getNameFigure() {
         return (TextFigure) ((ListFigure) getChild(0)).getChild(0);
     }
@@ -213,6 +265,8 @@ public class TaskFigure extends GraphicalCompositeFigure {
     public TaskFigure clone() {
         TaskFigure that = (TaskFigure) super.clone();
         that.dependencies = new HashSet<DependencyFigure>();
+        that.slack = 0;
+        that.isCritical = false;
         that.getNameFigure().addFigureListener(new NameAdapter(that));
         that.getDurationFigure().addFigureListener(new DurationAdapter(that));
         that.updateStartTime();
@@ -264,12 +318,21 @@ public class TaskFigure extends GraphicalCompositeFigure {
 
     public void addDependency(DependencyFigure f) {
         dependencies.add(f);
-        updateStartTime();
+        dependencyChanged(f);
     }
 
     public void removeDependency(DependencyFigure f) {
         dependencies.remove(f);
-        updateStartTime();
+        dependencyChanged(f);
+    }
+
+    private void dependencyChanged(DependencyFigure f) {
+        PertScheduler scheduler = getScheduler();
+        if (scheduler == null) {
+            updateStartTime();
+        } else {
+            scheduler.dependencyChanged(f);
+        }
     }
 
     /**
@@ -308,17 +371,54 @@ public class TaskFigure extends GraphicalCompositeFigure {
      * task in the cycle.
      */
     public boolean isDependentOf(TaskFigure t) {
-        if (this == t) {
-            return true;
+        PertScheduler scheduler = getScheduler();
+        if (scheduler != null && scheduler.isBefore(this, t)) {
+            return false;
         }
-        for (TaskFigure pre : getPredecessors()) {
-            if (pre.isDependentOf(t)) {
+        HashSet<TaskFigure> visited = new HashSet<TaskFigure>();
+        LinkedList<TaskFigure> stack = new LinkedList<TaskFigure>();
+        stack.add(this);
+        while (!stack.isEmpty()) {
+            TaskFigure task = stack.removeLast();
+            if (task == t) {
                 return true;
             }
+            if (visited.add(task)) {
+                stack.addAll(task.getPredecessors());
+            }
         }
         return false;
     }
 
+    @Override
+    public void addNotify(Drawing d) {
+        super.addNotify(d);
+        PertScheduler.getInstance(d).add(this);
+    }
+
+    @Override
+    public void removeNotify(Drawing d) {
+        PertScheduler.getInstance(d).remove(this);
+        super.removeNotify(d);
+    }
+
+    @Override
+    protected void drawPresentationFigure(Graphics2D g) {
+        super.drawPresentationFigure(g);
+        if (isCritical) {
+            g.setColor(CRITICAL_COLOR);
+            g.setStroke(AttributeKeys.getStroke(getPresentationFigure(), AttributeKeys.getScaleFactorFromGraphics(g)));
+            g.draw(getBounds());
+        }
+    }
+
+    @Override
+    public String getToolTipText(Point2D.Double p) {
+        ResourceBundleUtil labels
+                = ResourceBundleUtil.getBundle("org.jhotdraw.samples.pert.Labels");
+        return labels.getFormatted("pert.task.toolTipText", getStartTime(), slack);
+    }
+
     @Override
     public String toString() {
         return "TaskFigure#" + hashCode() + " " + getName() + " " + getDuration() + " " + getStartTime();
@@ -30,6 +30,10 @@ import org.jhotdraw.util.*;
 
 /**
  * SVGImage.
+ * <p>
+ * While the figure is part of a drawing, it shares its image data with the
+ * other figures of the drawing, which have equal image data, through the
+ * {@link ImageStore} of the drawing.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -56,9 +60,15 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
     private byte[] imageData;
     /**
      * The buffered image. This can be null, if we haven't yet parsed the
-     * imageData.
+     * imageData, or if the figure is part of a drawing, whose image store
+     * holds the image decoded from the imageData.
      */
     private BufferedImage bufferedImage;
+    /**
+     * Repaints the figure, when the image cache has created a level of the
+     * image. This is created lazily.
+     */
+    private transient Runnable imageCallback;
 
     /**
      * Creates a new instance.
@@ -84,7 +94,19 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
             if (opacity != 1d) {
                 g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) opacity));
             }
-            BufferedImage image = getBufferedImage();
+            // The image is decoded and scaled down to the resolution at which
+            // it is drawn by the image cache in a background thread
+            Object source = (bufferedImage != null) ? bufferedImage : imageData;
+            BufferedImage image = null;
+            if (source != null) {
+                AffineTransform tx = g.getTransform();
+                if (get(TRANSFORM) != null) {
+                    tx.concatenate(get(TRANSFORM));
+                }
+                double scale = AttributeKeys.getScaleFactor(tx);
+                image = MipmapImageCache.getInstance().getImage(source,
+                        rectangle.width * scale, rectangle.height * scale, getImageCallback());
+            }
             if (image != null) {
                 if (get(TRANSFORM) != null) {
                     // FIXME - We should cache the transformed image.
@@ -98,6 +120,10 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
                 } else {
                     g.drawImage(image, (int) rectangle.x, (int) rectangle.y, (int) rectangle.width, (int) rectangle.height, null);
                 }
+            } else if (source != null && !MipmapImageCache.getInstance().isBroken(source)) {
+                // Draw a placeholder until the image has been decoded
+                g.setColor(Color.lightGray);
+                g.fill(getTransformedShape());
             } else {
                 Shape shape = getTransformedShape();
                 g.setColor(Color.red);
@@ -273,9 +299,10 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
                 }
             });
         }
-        if (bufferedImage != null) {
-            if (rectangle.width != bufferedImage.getWidth()
-                    || rectangle.height != bufferedImage.getHeight()) {
+        final BufferedImage image = getBufferedImage();
+        if (image != null) {
+            if (rectangle.width != image.getWidth()
+                    || rectangle.height != image.getHeight()) {
                 actions.add(new AbstractAction(labels.getString("edit.setToImageSize.text")) {
                     private static final long serialVersionUID = 1L;
 
@@ -284,17 +311,17 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
                         Object geometry = getTransformRestoreData();
                         willChange();
                         rectangle = new Rectangle2D.Double(
-                                rectangle.x - (bufferedImage.getWidth() - rectangle.width) / 2d,
-                                rectangle.y - (bufferedImage.getHeight() - rectangle.height) / 2d,
-                                bufferedImage.getWidth(),
-                                bufferedImage.getHeight());
+                                rectangle.x - (image.getWidth() - rectangle.width) / 2d,
+                                rectangle.y - (image.getHeight() - rectangle.height) / 2d,
+                                image.getWidth(),
+                                image.getHeight());
                         fireUndoableEditHappened(
                                 new TransformRestoreEdit(SVGImageFigure.this, geometry, getTransformRestoreData()));
                         changed();
                     }
                 });
             }
-            double imageRatio = bufferedImage.getHeight() / (double) bufferedImage.getWidth();
+            double imageRatio = image.getHeight() / (double) image.getWidth();
             double figureRatio = rectangle.height / rectangle.width;
             if (Math.abs(imageRatio - figureRatio) > 0.001) {
                 actions.add(new AbstractAction(labels.getString("edit.adjustHeightToImageAspect.text")) {
@@ -304,7 +331,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
                     public void actionPerformed(ActionEvent evt) {
                         Object geometry = getTransformRestoreData();
                         willChange();
-                        double newHeight = bufferedImage.getHeight() * rectangle.width / bufferedImage.getWidth();
+                        double newHeight = image.getHeight() * rectangle.width / image.getWidth();
                         rectangle = new Rectangle2D.Double(rectangle.x, rectangle.y - (newHeight - rectangle.height) / 2d, rectangle.width, newHeight);
                         fireUndoableEditHappened(
                                 new TransformRestoreEdit(SVGImageFigure.this, geometry, getTransformRestoreData()));
@@ -318,7 +345,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
                     public void actionPerformed(ActionEvent evt) {
                         Object geometry = getTransformRestoreData();
                         willChange();
-                        double newWidth = bufferedImage.getWidth() * rectangle.height / bufferedImage.getHeight();
+                        double newWidth = image.getWidth() * rectangle.height / image.getHeight();
                         rectangle = new Rectangle2D.Double(rectangle.x - (newWidth - rectangle.width) / 2d, rectangle.y, newWidth, rectangle.height);
                         fireUndoableEditHappened(
                                 new TransformRestoreEdit(SVGImageFigure.this, geometry, getTransformRestoreData()));
@@ -330,6 +357,18 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
         return actions;
     }
 
+    private Runnable getImageCallback() {
+        if (imageCallback == null) {
+            imageCallback = new Runnable() {
+                @Override
+                public void run() {
+                    fireAreaInvalidated();
+                }
+            };
+        }
+        return imageCallback;
+    }
+
     // CONNECTING
     // COMPOSITE FIGURES
     // CLONING
@@ -339,6 +378,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
         that.rectangle = (Rectangle2D.Double) this.rectangle.clone();
         that.cachedTransformedShape = null;
         that.cachedHitShape = null;
+        that.imageCallback = null;
         return that;
     }
 
@@ -370,8 +410,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
     @Override
     public void setImage(byte[] imageData, BufferedImage bufferedImage) {
         willChange();
-        this.imageData = imageData;
-        this.bufferedImage = bufferedImage;
+        basicSetImage(imageData, bufferedImage);
         changed();
     }
 
@@ -385,8 +424,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
      */
     public void setImageData(byte[] imageData) {
         willChange();
-        this.imageData = imageData;
-        this.bufferedImage = null;
+        basicSetImage(imageData, null);
         changed();
     }
 
@@ -397,11 +435,43 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
     @Override
     public void setBufferedImage(BufferedImage image) {
         willChange();
-        this.imageData = null;
-        this.bufferedImage = image;
+        basicSetImage(null, image);
         changed();
     }
 
+    /**
+     * Sets the image data and the buffered image. If the figure is part of
+     * a drawing, the old image data is released from the image store of the
+     * drawing, and the new image data is acquired from it.
+     */
+    private void basicSetImage(byte[] imageData, BufferedImage bufferedImage) {
+        Drawing d = getDrawing();
+        if (d != null) {
+            d.getImageStore().release(this.imageData);
+            if (imageData != null) {
+                imageData = d.getImageStore().acquire(imageData, bufferedImage);
+                bufferedImage = null;
+            }
+        }
+        this.imageData = imageData;
+        this.bufferedImage = bufferedImage;
+    }
+
+    @Override
+    public void addNotify(Drawing d) {
+        if (imageData != null) {
+            imageData = d.getImageStore().acquire(imageData, bufferedImage);
+            bufferedImage = null;
+        }
+        super.addNotify(d);
+    }
+
+    @Override
+    public void removeNotify(Drawing d) {
+        d.getImageStore().release(imageData);
+        super.removeNotify(d);
+    }
+
     /**
      * Gets the buffered image. If necessary, this method creates the buffered
      * image from the image data.
@@ -411,12 +481,18 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
         if (bufferedImage == null && imageData != null) {
             //System.out.println("recreateing bufferedImage");
             try {
+                if (getDrawing() != null) {
+                    return getDrawing().getImageStore().getBufferedImage(imageData);
+                }
                 bufferedImage = ImageIO.read(new ByteArrayInputStream(imageData));
             } catch (Throwable e) {
                 e.printStackTrace();
                 // If we can't create a buffered image from the image data,
                 // there is no use to keep the image data and try again, so
                 // we drop the image data.
+                if (getDrawing() != null) {
+                    getDrawing().getImageStore().release(imageData);
+                }
                 imageData = null;
             }
         }
@@ -438,7 +514,7 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
                 ByteArrayOutputStream bout = new ByteArrayOutputStream();
                 ImageIO.write(bufferedImage, "PNG", bout);
                 bout.close();
-                imageData = bout.toByteArray();
+                basicSetImage(bout.toByteArray(), bufferedImage);
             } catch (IOException e) {
                 e.printStackTrace();
                 // If we can't create image data from the buffered image,
@@ -483,7 +559,6 @@ public class SVGImageFigure extends SVGAttributedFigure implements SVGFigure, Im
             ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
             throw new IOException(labels.getFormatted("file.failedToLoadImage.message", in.toString()));
         }
-        imageData = baos.toByteArray();
-        bufferedImage = img;
+        basicSetImage(baos.toByteArray(), img);
     }
 }
@@ -86,6 +86,13 @@ public class SVGInputFormat implements InputFormat {
      * Maps to all drawing objects from the XML elements they were created from.
      */
     private HashMap<Element, Object> elementObjects;
+    /**
+     * Maps the hrefs of image elements to the image data and to the buffered
+     * images, which have been read from them. We use this, so that image
+     * elements with equal hrefs share the same image data.
+     */
+    private HashMap<String, byte[]> imageDataByHref;
+    private HashMap<String, BufferedImage> bufferedImagesByHref;
     /**
      * Tokenizer for parsing SVG path expressions.
      *
@@ -303,11 +310,15 @@ public class SVGInputFormat implements InputFormat {
         // Get rid of all objects we don't need anymore to help garbage collector.
         identifiedElements.clear();
         elementObjects.clear();
+        imageDataByHref.clear();
+        bufferedImagesByHref.clear();
         viewportStack.clear();
         styleManager.clear();
         document = null;
         identifiedElements = null;
         elementObjects = null;
+        imageDataByHref = null;
+        bufferedImagesByHref = null;
         viewportStack = null;
         styleManager = null;
     }
@@ -316,6 +327,8 @@ public class SVGInputFormat implements InputFormat {
         identifiedElements = new HashMap<String, Element>();
         identifyElements(root);
         elementObjects = new HashMap<Element, Object>();
+        imageDataByHref = new HashMap<String, byte[]>();
+        bufferedImagesByHref = new HashMap<String, BufferedImage>();
         viewportStack = new Stack<Viewport>();
         viewportStack.push(new Viewport());
         styleManager = new StyleManager();
@@ -682,7 +695,11 @@ public class SVGInputFormat implements InputFormat {
             href = readAttribute(elem, "href", null);
         }
         byte[] imageData = null;
-        if (href != null) {
+        BufferedImage bufferedImage = null;
+        if (href != null && imageDataByHref.containsKey(href)) {
+            imageData = imageDataByHref.get(href);
+            bufferedImage = bufferedImagesByHref.get(href);
+        } else if (href != null) {
             if (href.startsWith("data:")) {
                 int semicolonPos = href.indexOf(';');
                 if (semicolonPos != -1) {
@@ -729,8 +746,7 @@ public class SVGInputFormat implements InputFormat {
             }
         }
         // Create a buffered image from the image data
-        BufferedImage bufferedImage = null;
-        if (imageData != null) {
+        if (imageData != null && bufferedImage == null) {
             try {
                 bufferedImage = ImageIO.read(new ByteArrayInputStream(imageData));
             } catch (IIOException e) {
@@ -743,6 +759,10 @@ public class SVGInputFormat implements InputFormat {
             imageData = null;
             //if (DEBUG) System.out.println("FAILED:"+imageUrl);
         }
+        if (href != null) {
+            imageDataByHref.put(href, imageData);
+            bufferedImagesByHref.put(href, bufferedImage);
+        }
         // Create a figure from the image data and the buffered image.
         Figure figure = factory.createImage(x, y, w, h, imageData, bufferedImage, a);
         elementObjects.put(elem, figure);
@@ -1355,10 +1375,15 @@ public class SVGInputFormat implements InputFormat {
      *
      * Also supports elliptical arc commands 'a' and 'A' as specified in
      * http://www.w3.org/TR/SVG/paths.html#PathDataEllipticalArcCommands
+     * <p>
+     * The paths are created in compact mode, and their nodes are only read
+     * through flyweights, so that no node objects are created.
      */
     private BezierPath[] toPath(Element elem, String str) throws IOException {
         LinkedList<BezierPath> paths = new LinkedList<BezierPath>();
         BezierPath path = null;
+        BezierPath.Node first = new BezierPath.Node();
+        BezierPath.Node last = new BezierPath.Node();
         Point2D.Double p = new Point2D.Double();
         Point2D.Double c1 = new Point2D.Double();
         Point2D.Double c2 = new Point2D.Double();
@@ -1394,6 +1419,7 @@ public class SVGInputFormat implements InputFormat {
                         paths.add(path);
                     }
                     path = new BezierPath();
+                    path.setCompact(true);
                     if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
                         throw new IOException("x coordinate missing for 'M' at position " + tt.getStartPosition() + " in " + str);
                     }
@@ -1411,6 +1437,7 @@ public class SVGInputFormat implements InputFormat {
                         paths.add(path);
                     }
                     path = new BezierPath();
+                    path.setCompact(true);
                     if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
                         throw new IOException("dx coordinate missing for 'm' at position " + tt.getStartPosition() + " in " + str);
                     }
@@ -1425,19 +1452,18 @@ public class SVGInputFormat implements InputFormat {
                 case 'Z':
                 case 'z':
                     // close path
-                    p.x = path.get(0).x[0];
-                    p.y = path.get(0).y[0];
+                    node = path.getNode(0, first);
+                    p.x = node.x[0];
+                    p.y = node.y[0];
                     // If the last point and the first point are the same, we
                     // can merge them
                     if (path.size() > 1) {
-                        BezierPath.Node first = path.get(0);
-                        BezierPath.Node last = path.get(path.size() - 1);
-                        if (first.x[0] == last.x[0]
-                                && first.y[0] == last.y[0]) {
-                            if ((last.mask & BezierPath.C1_MASK) != 0) {
-                                first.mask |= BezierPath.C1_MASK;
-                                first.x[1] = last.x[1];
-                                first.y[1] = last.y[1];
+                        node = path.getNode(path.size() - 1, last);
+                        if (p.x == node.x[0]
+                                && p.y == node.y[0]) {
+                            if ((node.mask & BezierPath.C1_MASK) != 0) {
+                                path.setMask(0, path.getMask(0) | BezierPath.C1_MASK);
+                                path.set(0, 1, new Point2D.Double(node.x[1], node.y[1]));
                             }
                             path.remove(path.size() - 1);
                         }
@@ -1566,7 +1592,7 @@ public class SVGInputFormat implements InputFormat {
                     break;
                 case 'S':
                     // absolute-shorthand-curveto x2 y2 x y
-                    node = path.get(path.size() - 1);
+                    node = path.getNode(path.size() - 1, last);
                     c1.x = node.x[0] * 2d - node.x[1];
                     c1.y = node.y[0] * 2d - node.y[1];
                     if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
@@ -1590,7 +1616,7 @@ public class SVGInputFormat implements InputFormat {
                     break;
                 case 's':
                     // relative-shorthand-curveto dx2 dy2 dx dy
-                    node = path.get(path.size() - 1);
+                    node = path.getNode(path.size() - 1, last);
                     c1.x = node.x[0] * 2d - node.x[1];
                     c1.y = node.y[0] * 2d - node.y[1];
                     if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
@@ -1656,7 +1682,7 @@ public class SVGInputFormat implements InputFormat {
                     break;
                 case 'T':
                     // absolute-shorthand-quadto x y
-                    node = path.get(path.size() - 1);
+                    node = path.getNode(path.size() - 1, last);
                     c1.x = node.x[0] * 2d - node.x[1];
                     c1.y = node.y[0] * 2d - node.y[1];
                     if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
@@ -1672,7 +1698,7 @@ public class SVGInputFormat implements InputFormat {
                     break;
                 case 't':
                     // relative-shorthand-quadto dx dy
-                    node = path.get(path.size() - 1);
+                    node = path.getNode(path.size() - 1, last);
                     c1.x = node.x[0] * 2d - node.x[1];
                     c1.y = node.y[0] * 2d - node.y[1];
                     if (tt.nextToken() != StreamPosTokenizer.TT_NUMBER) {
@@ -36,6 +36,7 @@ import org.jhotdraw.draw.*;
 import org.jhotdraw.draw.AttributeKeys.WindingRule;
 import org.jhotdraw.draw.io.OutputFormat;
 import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.geom.Dimension2DDouble;
 import org.jhotdraw.io.Base64;
 import org.jhotdraw.samples.svg.Gradient;
 import org.jhotdraw.samples.svg.LinearGradient;
@@ -83,6 +84,17 @@ public class SVGOutputFormat implements OutputFormat {
      * the same gradient only once.
      */
     private HashMap<Gradient, String> gradientToIDMap;
+    /**
+     * Maps the content hashes of image data to the ID's of the image
+     * elements in the defs element. We use this, so that we need to store
+     * equal image data only once.
+     */
+    private HashMap<String, String> imageToIDMap;
+    /**
+     * Maps the content hashes of image data to the sizes of the image
+     * elements in the defs element.
+     */
+    private HashMap<String, Dimension2DDouble> imageSizes;
     /**
      * Set this to true for pretty printing.
      */
@@ -305,15 +317,55 @@ public class SVGOutputFormat implements OutputFormat {
         parent.appendChild(elem);
     }
 
+    /**
+     * Writes an image figure.
+     * <p>
+     * The image data is written only once into an "image" element in the
+     * defs element. Each image figure with this image data is written as a
+     * "use" element, which refers to the "image" element, and which
+     * transforms it to the bounds of the figure.
+     */
     protected void writeImageElement(Element parent, SVGImageFigure f) throws IOException {
-        parent.appendChild(
-                createImage(document,
-                        f.getX(),
-                        f.getY(),
-                        f.getWidth(),
-                        f.getHeight(),
-                        f.getImageData(),
-                        f.getAttributes()));
+        byte[] imageData = f.getImageData();
+        if (imageData == null || f.getWidth() <= 0 || f.getHeight() <= 0) {
+            parent.appendChild(
+                    createImage(document,
+                            f.getX(),
+                            f.getY(),
+                            f.getWidth(),
+                            f.getHeight(),
+                            imageData,
+                            f.getAttributes()));
+            return;
+        }
+        String hash = ImageStore.getHash(imageData);
+        String id = imageToIDMap.get(hash);
+        if (id == null) {
+            Element imageElem = createImage(document,
+                    0, 0, f.getWidth(), f.getHeight(),
+                    imageData,
+                    new HashMap<AttributeKey<?>, Object>());
+            id = getId(imageElem);
+            imageElem.setAttribute("id", id);
+            defs.appendChild(imageElem);
+            imageToIDMap.put(hash, id);
+            imageSizes.put(hash, new Dimension2DDouble(f.getWidth(), f.getHeight()));
+        }
+        Dimension2DDouble size = imageSizes.get(hash);
+        AffineTransform tx = (f.get(TRANSFORM) == null) ? new AffineTransform() : TRANSFORM.getClone(f);
+        tx.translate(f.getX(), f.getY());
+        tx.scale(f.getWidth() / size.width, f.getHeight() / size.height);
+        Element elem = document.getOwnerDocument().createElement("use");
+        elem.setAttribute("xlink:href", "#" + id);
+        if (tx.getType() == AffineTransform.TYPE_TRANSLATION
+                || tx.getType() == AffineTransform.TYPE_IDENTITY) {
+            writeAttribute(elem, "x", tx.getTranslateX(), 0d);
+            writeAttribute(elem, "y", tx.getTranslateY(), 0d);
+        } else {
+            writeAttribute(elem, "transform", toTransform(tx), "none");
+        }
+        writeOpacityAttribute(elem, f.getAttributes());
+        parent.appendChild(elem);
     }
 
     protected Element createImage(Element doc,
@@ -1327,6 +1379,8 @@ public class SVGOutputFormat implements OutputFormat {
     private void initStorageContext(Element root) {
         identifiedElements = new HashMap<Element, String>();
         gradientToIDMap = new HashMap<Gradient, String>();
+        imageToIDMap = new HashMap<String, String>();
+        imageSizes = new HashMap<String, Dimension2DDouble>();
     }
 
     /**
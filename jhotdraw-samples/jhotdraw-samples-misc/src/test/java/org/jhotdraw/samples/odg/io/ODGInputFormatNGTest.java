@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.samples.odg.io;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.samples.odg.ODGDrawing;
+import org.jhotdraw.samples.odg.figures.ODGImageFigure;
+import org.jhotdraw.samples.odg.figures.ODGPathFigure;
+import static org.jhotdraw.samples.odg.ODGAttributeKeys.*;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Reads small ODG files with {@link ODGInputFormat}, from a file, from an
+ * input stream with the entries in different orders, and as a flat XML
+ * document.
+ *
+ * @author Werner Randelshofer
+ */
+public class ODGInputFormatNGTest {
+
+    private static final String NAMESPACES
+            = " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\""
+            + " xmlns:style=\"urn:oasis:names:tc:opendocument:xmlns:style:1.0\""
+            + " xmlns:draw=\"urn:oasis:names:tc:opendocument:xmlns:drawing:1.0\""
+            + " xmlns:svg=\"urn:oasis:names:tc:opendocument:xmlns:svg-compatible:1.0\""
+            + " xmlns:xlink=\"http://www.w3.org/1999/xlink\"";
+    private static final String STYLES
+            = "<office:styles>\n"
+            + "  <style:style style:name=\"red\" style:family=\"graphic\">\n"
+            + "    <style:graphic-properties svg:stroke-color=\"#ff0000\"/>\n"
+            + "  </style:style>\n"
+            + "</office:styles>\n";
+    private static final String SHAPES
+            = "<draw:polygon draw:style-name=\"red\" svg:x=\"10px\" svg:y=\"20px\""
+            + " svg:width=\"30px\" svg:height=\"40px\" svg:viewBox=\"0 0 30 40\""
+            + " draw:points=\"0,0 30,0 30,40\"/>\n"
+            + "<draw:frame svg:x=\"50px\" svg:y=\"60px\" svg:width=\"8px\" svg:height=\"6px\">\n"
+            + "  <draw:image xlink:href=\"Pictures/a.png\"/>\n"
+            + "</draw:frame>\n";
+    private static final String STYLES_XML
+            = "<office:document-styles" + NAMESPACES + ">\n"
+            + STYLES
+            + "</office:document-styles>";
+    private static final String CONTENT_XML
+            = "<office:document-content" + NAMESPACES + ">\n"
+            + "<office:body><office:drawing><draw:page>\n"
+            + SHAPES
+            + "</draw:page></office:drawing></office:body>\n"
+            + "</office:document-content>";
+    private static final String FLAT_XML
+            = "<office:document" + NAMESPACES + ">\n"
+            + STYLES
+            + "<office:body><office:drawing><draw:page>\n"
+            + SHAPES
+            + "</draw:page></office:drawing></office:body>\n"
+            + "</office:document>";
+
+    public ODGInputFormatNGTest() {
+    }
+
+    /**
+     * Creates an ODG file with the specified entries. The names of the
+     * entries are "styles.xml", "content.xml" and "Pictures/a.png".
+     */
+    private static byte[] createODG(String... entryNames) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(buf)) {
+            for (String name : entryNames) {
+                out.putNextEntry(new ZipEntry(name));
+                if ("styles.xml".equals(name)) {
+                    out.write(STYLES_XML.getBytes(StandardCharsets.UTF_8));
+                } else if ("content.xml".equals(name)) {
+                    out.write(CONTENT_XML.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    ImageIO.write(new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB), "png", out);
+                }
+                out.closeEntry();
+            }
+        }
+        return buf.toByteArray();
+    }
+
+    private static Drawing read(byte[] odg) throws IOException {
+        Drawing drawing = new ODGDrawing();
+        new ODGInputFormat().read(new ByteArrayInputStream(odg), drawing, true);
+        return drawing;
+    }
+
+    private static Drawing read(File file) throws IOException {
+        Drawing drawing = new ODGDrawing();
+        new ODGInputFormat().read(file, drawing);
+        return drawing;
+    }
+
+    private static File createTempFile(byte[] data) throws IOException {
+        File file = File.createTempFile("ODGInputFormatNGTest", ".odg");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+
+    /**
+     * Checks the figures which have been read from the fixture.
+     */
+    private static void assertFigures(Drawing drawing, boolean isPictureExpected) {
+        List<Figure> children = drawing.getChildren();
+        assertEquals(children.size(), 2);
+
+        Figure polygon = children.get(0);
+        assertTrue(polygon instanceof ODGPathFigure);
+        assertEquals(polygon.getBounds(), new Rectangle2D.Double(10, 20, 30, 40));
+        assertEquals(polygon.get(STROKE_COLOR), Color.RED);
+
+        Figure frame = children.get(1);
+        assertTrue(frame instanceof ODGImageFigure);
+        assertEquals(frame.getBounds(), new Rectangle2D.Double(50, 60, 8, 6));
+        ODGImageFigure image = (ODGImageFigure) frame;
+        if (isPictureExpected) {
+            assertNotNull(image.getImageData());
+            BufferedImage picture = image.getBufferedImage();
+            assertEquals(picture.getWidth(), 4);
+            assertEquals(picture.getHeight(), 3);
+        } else {
+            assertNull(image.getImageData());
+        }
+    }
+
+    @Test
+    public void testReadFile() throws IOException {
+        File file = createTempFile(createODG("styles.xml", "content.xml", "Pictures/a.png"));
+        assertFigures(read(file), true);
+    }
+
+    @Test
+    public void testReadFileWithMissingPicture() throws IOException {
+        File file = createTempFile(createODG("styles.xml", "content.xml"));
+        try {
+            read(file);
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Pictures/a.png"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testReadStreamWithPictureBeforeContent() throws IOException {
+        assertFigures(read(createODG("Pictures/a.png", "styles.xml", "content.xml")), true);
+    }
+
+    @Test
+    public void testReadStreamWithPictureAfterContent() throws IOException {
+        assertFigures(read(createODG("styles.xml", "content.xml", "Pictures/a.png")), true);
+    }
+
+    @Test
+    public void testReadStreamWithContentBeforeStyles() throws IOException {
+        assertFigures(read(createODG("content.xml", "Pictures/a.png", "styles.xml")), true);
+        assertFigures(read(createODG("content.xml", "styles.xml", "Pictures/a.png")), true);
+    }
+
+    @Test
+    public void testReadStreamWithMissingPicture() throws IOException {
+        try {
+            read(createODG("styles.xml", "content.xml"));
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Pictures/a.png"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testReadStreamWithMissingContent() throws IOException {
+        try {
+            read(createODG("styles.xml", "Pictures/a.png"));
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("content.xml"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testReadFlatXML() throws IOException {
+        byte[] xml = FLAT_XML.getBytes(StandardCharsets.UTF_8);
+        assertFigures(read(xml), false);
+        assertFigures(read(createTempFile(xml)), false);
+    }
+
+    @Test
+    public void testReadFileWithUnreadablePicture() throws IOException {
+        File file = createTempFile(createODG("styles.xml", "content.xml", "Pictures/a.png"));
+        ODGImageFigure image = (ODGImageFigure) read(file).getChild(1);
+        assertTrue(file.delete());
+        assertNull(image.getImageData());
+        assertTrue(image.isPictureBroken());
+    }
+
+    @Test
+    public void testDrawUnreadablePicture() throws IOException, InterruptedException, InvocationTargetException {
+        File file = createTempFile(createODG("styles.xml", "content.xml", "Pictures/a.png"));
+        ODGImageFigure image = (ODGImageFigure) read(file).getChild(1);
+        assertTrue(file.delete());
+        Graphics2D g = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        image.draw(g);
+        g.dispose();
+
+        // The picture is loaded in a background thread
+        for (int i = 0; i < 100 && !image.isPictureBroken(); i++) {
+            Thread.sleep(20);
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+        assertTrue(image.isPictureBroken());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.samples.odg.io;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.jhotdraw.draw.AttributeKey;
+import static org.jhotdraw.samples.odg.ODGAttributeKeys.*;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that {@link ODGStylesReader} resolves the inherited attributes of
+ * styles, and caches them.
+ *
+ * @author Werner Randelshofer
+ */
+public class ODGStylesReaderNGTest {
+
+    public ODGStylesReaderNGTest() {
+    }
+
+    private static void read(ODGStylesReader reader, String styles) throws IOException {
+        String xml = "<office:document-styles"
+                + " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\""
+                + " xmlns:style=\"urn:oasis:names:tc:opendocument:xmlns:style:1.0\""
+                + " xmlns:draw=\"urn:oasis:names:tc:opendocument:xmlns:drawing:1.0\""
+                + " xmlns:svg=\"urn:oasis:names:tc:opendocument:xmlns:svg-compatible:1.0\">\n"
+                + "<office:styles>\n" + styles + "</office:styles>\n"
+                + "</office:document-styles>";
+        reader.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String style(String name, String parentName, String properties) {
+        return "<style:style style:name=\"" + name + "\" style:family=\"graphic\""
+                + (parentName == null ? "" : " style:parent-style-name=\"" + parentName + "\"") + ">\n"
+                + "  <style:graphic-properties " + properties + "/>\n"
+                + "</style:style>\n";
+    }
+
+    @Test
+    public void testInheritanceIsCached() throws IOException {
+        ODGStylesReader reader = new ODGStylesReader();
+        read(reader, style("base", null, "svg:stroke-color=\"#0000ff\"")
+                + style("child", "base", "draw:fill-color=\"#ff0000\""));
+        Map<AttributeKey<?>, Object> a = reader.getAttributes("child", "graphic");
+        assertEquals(a.get(STROKE_COLOR), Color.BLUE);
+        assertEquals(a.get(FILL_COLOR), Color.RED);
+        assertSame(reader.getAttributes("child", "graphic"), a);
+
+        // Reading styles discards the cached attributes
+        read(reader, style("base", null, "svg:stroke-color=\"#00ff00\""));
+        a = reader.getAttributes("child", "graphic");
+        assertEquals(a.get(STROKE_COLOR), Color.GREEN);
+        assertEquals(a.get(FILL_COLOR), Color.RED);
+    }
+
+    @Test
+    public void testCycleDoesNotDependOnLookupOrder() throws IOException {
+        for (String first : new String[]{"a", "b"}) {
+            ODGStylesReader reader = new ODGStylesReader();
+            read(reader, style("a", "b", "draw:fill-color=\"#ff0000\"")
+                    + style("b", "a", "svg:stroke-color=\"#0000ff\""));
+            reader.getAttributes(first, "graphic");
+            for (String name : new String[]{"a", "b"}) {
+                Map<AttributeKey<?>, Object> a = reader.getAttributes(name, "graphic");
+                assertEquals(a.get(FILL_COLOR), Color.RED, name + " after " + first);
+                assertEquals(a.get(STROKE_COLOR), Color.BLUE, name + " after " + first);
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.samples.pert.figures;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the schedule computed by the {@link PertScheduler} against a
+ * brute-force computation.
+ *
+ * @author Werner Randelshofer
+ */
+public class PertSchedulerNGTest {
+
+    public PertSchedulerNGTest() {
+    }
+
+    private static DependencyFigure connect(Drawing drawing, TaskFigure start, TaskFigure end) {
+        DependencyFigure d = new DependencyFigure();
+        d.setStartConnector(new ChopRectangleConnector(start));
+        d.setEndConnector(new ChopRectangleConnector(end));
+        drawing.add(d);
+        return d;
+    }
+
+    /**
+     * Computes the earliest and the latest start times of the tasks by
+     * iterating until nothing changes, and compares them with the schedule
+     * of the tasks.
+     */
+    private static void assertSchedule(java.util.List<TaskFigure> tasks) {
+        int n = tasks.size();
+        HashMap<TaskFigure, Integer> index = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            index.put(tasks.get(i), i);
+        }
+        int[] earlyStart = new int[n];
+        boolean isChanged = true;
+        while (isChanged) {
+            isChanged = false;
+            for (int i = 0; i < n; i++) {
+                int value = 0;
+                for (TaskFigure pre : tasks.get(i).getPredecessors()) {
+                    value = Math.max(value, earlyStart[index.get(pre)] + pre.getDuration());
+                }
+                if (value != earlyStart[i]) {
+                    earlyStart[i] = value;
+                    isChanged = true;
+                }
+            }
+        }
+        int end = 0;
+        for (int i = 0; i < n; i++) {
+            end = Math.max(end, earlyStart[i] + tasks.get(i).getDuration());
+        }
+        int[] lateStart = new int[n];
+        Arrays.fill(lateStart, Integer.MAX_VALUE);
+        isChanged = true;
+        while (isChanged) {
+            isChanged = false;
+            for (int i = 0; i < n; i++) {
+                int lateFinish = end;
+                for (TaskFigure succ : tasks.get(i).getSuccessors()) {
+                    lateFinish = Math.min(lateFinish, lateStart[index.get(succ)]);
+                }
+                int value = lateFinish - tasks.get(i).getDuration();
+                if (value != lateStart[i]) {
+                    lateStart[i] = value;
+                    isChanged = true;
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            TaskFigure t = tasks.get(i);
+            assertEquals(t.getStartTime(), earlyStart[i], "start time of " + t);
+            assertEquals(t.getSlack(), lateStart[i] - earlyStart[i], "slack of " + t);
+            assertEquals(t.isCritical(), lateStart[i] == earlyStart[i], "critical " + t);
+        }
+    }
+
+    @Test
+    public void testLayeredGraph() {
+        Random r = new Random(1);
+        DefaultDrawing drawing = new DefaultDrawing();
+        ArrayList<TaskFigure> tasks = new ArrayList<>();
+        int layers = 20;
+        int width = 10;
+        for (int i = 0; i < layers * width; i++) {
+            TaskFigure t = new TaskFigure();
+            t.setDuration(1 + r.nextInt(5));
+            tasks.add(t);
+        }
+        // Add the tasks and the dependencies in random order, so that the
+        // topological order must be repaired
+        ArrayList<TaskFigure> shuffled = new ArrayList<>(tasks);
+        Collections.shuffle(shuffled, r);
+        for (TaskFigure t : shuffled) {
+            drawing.add(t);
+        }
+        ArrayList<int[]> edges = new ArrayList<>();
+        for (int l = 1; l < layers; l++) {
+            for (int w = 0; w < width; w++) {
+                for (int k = 0; k < 2; k++) {
+                    edges.add(new int[]{(l - 1) * width + r.nextInt(width), l * width + w});
+                }
+            }
+        }
+        Collections.shuffle(edges, r);
+        ArrayList<DependencyFigure> dependencies = new ArrayList<>();
+        for (int[] e : edges) {
+            TaskFigure start = tasks.get(e[0]);
+            TaskFigure end = tasks.get(e[1]);
+            if (!end.getPredecessors().contains(start)) {
+                dependencies.add(connect(drawing, start, end));
+            }
+        }
+        assertSchedule(tasks);
+
+        for (int i = 0; i < 20; i++) {
+            tasks.get(r.nextInt(tasks.size())).setDuration(1 + r.nextInt(20));
+        }
+        assertSchedule(tasks);
+
+        for (int i = 0; i < 20; i++) {
+            drawing.remove(dependencies.remove(r.nextInt(dependencies.size())));
+        }
+        assertSchedule(tasks);
+
+        for (int i = 0; i < 5; i++) {
+            TaskFigure t = tasks.remove(r.nextInt(tasks.size()));
+            for (DependencyFigure d : new ArrayList<>(t.getDependencies())) {
+                drawing.remove(d);
+            }
+            drawing.remove(t);
+        }
+        assertSchedule(tasks);
+
+        TaskFigure first = tasks.get(0);
+        TaskFigure last = tasks.get(tasks.size() - 1);
+        assertFalse(first.isDependentOf(last));
+        assertTrue(first.isDependentOf(first));
+    }
+
+    @Test
+    public void testCriticalDependencyWithoutScheduleChange() {
+        // Two critical chains a-c and x-b, which end at the same time
+        DefaultDrawing drawing = new DefaultDrawing();
+        TaskFigure a = new TaskFigure();
+        TaskFigure c = new TaskFigure();
+        TaskFigure x = new TaskFigure();
+        TaskFigure b = new TaskFigure();
+        a.setDuration(2);
+        c.setDuration(1);
+        x.setDuration(2);
+        b.setDuration(1);
+        drawing.add(a);
+        drawing.add(c);
+        drawing.add(x);
+        drawing.add(b);
+        connect(drawing, a, c);
+        connect(drawing, x, b);
+        assertEquals(b.getStartTime(), 2);
+
+        // The new dependency does not change the schedule of its tasks
+        DependencyFigure d = connect(drawing, a, b);
+        assertEquals(b.getStartTime(), 2);
+        assertTrue(a.isCritical());
+        assertTrue(b.isCritical());
+        assertTrue(d.isCritical(), "added dependency is critical");
+
+        drawing.remove(d);
+        assertFalse(d.isCritical(), "removed dependency is not critical");
+    }
+
+    @Test
+    public void testDiamondEditIsIncremental() {
+        // A chain of diamonds: each level doubles the number of paths
+        DefaultDrawing drawing = new DefaultDrawing();
+        TaskFigure previous = new TaskFigure();
+        drawing.add(previous);
+        for (int i = 0; i < 40; i++) {
+            TaskFigure left = new TaskFigure();
+            TaskFigure right = new TaskFigure();
+            TaskFigure join = new TaskFigure();
+            drawing.add(left);
+            drawing.add(right);
+            drawing.add(join);
+            connect(drawing, previous, left);
+            connect(drawing, previous, right);
+            connect(drawing, left, join);
+            connect(drawing, right, join);
+            previous = join;
+        }
+        PertScheduler scheduler = PertScheduler.getInstance(drawing);
+        TaskFigure first = (TaskFigure) drawing.getChild(0);
+        long count = scheduler.getUpdateCount();
+        first.setDuration(5);
+        assertTrue(scheduler.getUpdateCount() - count <= drawing.getChildCount(),
+                "each task is recomputed at most once");
+        assertEquals(previous.getStartTime(), 5);
+        assertEquals(scheduler.getProjectEnd(), 5);
+    }
+
+    @Test
+    public void testDrawingIsNotRetained() throws InterruptedException {
+        DefaultDrawing drawing = new DefaultDrawing();
+        TaskFigure a = new TaskFigure();
+        TaskFigure b = new TaskFigure();
+        drawing.add(a);
+        drawing.add(b);
+        connect(drawing, a, b);
+        PertScheduler.getInstance(drawing);
+        WeakReference<Drawing> ref = new WeakReference<Drawing>(drawing);
+        drawing = null;
+        a = null;
+        b = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get(), "the scheduler does not keep its drawing reachable");
+    }
+}
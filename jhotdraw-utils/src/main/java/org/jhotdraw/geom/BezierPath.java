@@ -20,6 +20,19 @@ import java.util.*;
  * C0, C1, C2. A mask defines which control points are in use. At a node,
  * the path passes through C0. C1 controls the curve going towards C0. C2
  * controls the curve going away from C0.
+ * <p>
+ * A BezierPath can be put into a compact mode with {@link #setCompact}. In
+ * this mode, the nodes are not stored as {@code Node} objects, but packed
+ * into an array of control point coordinates and an array of masks. This
+ * needs less than half of the memory. Methods which only read the nodes,
+ * such as drawing, hit testing, {@link #toGeneralPath} and {@link #transform},
+ * read the packed arrays with {@link #getNode(int, Node)}, which
+ * copies the values of a node into a flyweight {@code Node}. Appending nodes
+ * with {@code add(x, y)}, {@code moveTo}, {@code lineTo}, {@code quadTo},
+ * {@code curveTo} and {@code arcTo} appends them to the packed arrays.
+ * All other methods of the list, such as {@link #get(int)}, turn compact mode
+ * off and create the {@code Node} objects again, because a node returned
+ * by the list may be changed by the caller.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -48,6 +61,10 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * Constant for having control points C1 and C2 in effect (in addition to C0).
      */
     public static final int C1C2_MASK = C1_MASK | C2_MASK;
+    /**
+     * Flag in {@link #packedMasks} for the keepColinear hint of a node.
+     */
+    private static final int KEEP_COLINEAR_FLAG = 4;
     /**
      * We cache a Path2D.Double instance to speed up Shape operations.
      */
@@ -60,6 +77,16 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * We cache the index of the outermost node to speed up method indexOfOutermostNode();
      */
     private int outer = -1;
+    /**
+     * We cache flattened versions of the path for the two most recently used
+     * flatness values, to speed up hit testing.
+     */
+    private transient FlattenedBezierPath flattened;
+    private transient FlattenedBezierPath flattened2;
+    /**
+     * The modCount of the list, when the flattened paths were created.
+     */
+    private transient int flattenedModCount;
     /**
      * If this value is set to true, closes the bezier path.
      */
@@ -68,6 +95,17 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * The winding rule for filling the bezier path.
      */
     private int windingRule = Path2D.Double.WIND_EVEN_ODD;
+    /**
+     * The control points of the nodes in compact mode, or null. Each node
+     * uses six values: x0, y0, x1, y1, x2, y2.
+     */
+    private transient double[] packedCoords;
+    /**
+     * The masks of the nodes in compact mode. The {@code KEEP_COLINEAR_FLAG}
+     * holds the keepColinear hint of a node.
+     */
+    private transient byte[] packedMasks;
+    private transient int packedSize;
 
     /**
      * Defines a vertex (node) of the bezier path.
@@ -261,7 +299,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * point C0 to the path.
      */
     public void add(Point2D.Double c0) {
-        add(new Node(0, c0, c0, c0));
+        add(c0.x, c0.y);
     }
 
     /**
@@ -271,7 +309,11 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * point C0 to the path.
      */
     public void add(double x, double y) {
-        add(new Node(0, x, y, x, y, x, y));
+        if (packedCoords != null) {
+            addPacked(0, x, y, x, y, x, y, true);
+        } else {
+            add(new Node(0, x, y, x, y, x, y));
+        }
     }
 
     /**
@@ -286,7 +328,11 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param c2 The coordinates of the C2 control point.
      */
     public void add(int ctrlMask, Point2D.Double c0, Point2D.Double c1, Point2D.Double c2) {
-        add(new Node(ctrlMask, c0, c1, c2));
+        if (packedCoords != null) {
+            addPacked(ctrlMask, c0.x, c0.y, c1.x, c1.y, c2.x, c2.y, true);
+        } else {
+            add(new Node(ctrlMask, c0, c1, c2));
+        }
     }
 
     /**
@@ -297,7 +343,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      */
     public void addPolyline(Collection<Point2D.Double> points) {
         for (Point2D.Double c0 : points) {
-            add(new Node(0, c0, c0, c0));
+            add(c0.x, c0.y);
         }
     }
 
@@ -309,9 +355,16 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param p The control point. The coordinates will be cloned.
      */
     public void set(int nodeIndex, int ctrlIndex, Point2D.Double p) {
-        Node c = get(nodeIndex);
-        c.x[ctrlIndex] = p.x;
-        c.y[ctrlIndex] = p.y;
+        if (packedCoords != null) {
+            checkIndex(nodeIndex);
+            packedCoords[nodeIndex * 6 + ctrlIndex * 2] = p.x;
+            packedCoords[nodeIndex * 6 + ctrlIndex * 2 + 1] = p.y;
+            modCount++;
+        } else {
+            Node c = get(nodeIndex);
+            c.x[ctrlIndex] = p.x;
+            c.y[ctrlIndex] = p.y;
+        }
     }
 
     /**
@@ -322,12 +375,425 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @return Returns a clone of the control point.
      */
     public Point2D.Double get(int nodeIndex, int ctrlIndex) {
+        if (packedCoords != null) {
+            checkIndex(nodeIndex);
+            return new Point2D.Double(
+                    packedCoords[nodeIndex * 6 + ctrlIndex * 2],
+                    packedCoords[nodeIndex * 6 + ctrlIndex * 2 + 1]);
+        }
         Node c = get(nodeIndex);
         return new Point2D.Double(
                 c.x[ctrlIndex],
                 c.y[ctrlIndex]);
     }
 
+    /**
+     * Convenience method for getting the mask of a node.
+     *
+     * @param nodeIndex The index of the node.
+     */
+    public int getMask(int nodeIndex) {
+        if (packedCoords != null) {
+            checkIndex(nodeIndex);
+            return packedMasks[nodeIndex] & C1C2_MASK;
+        }
+        return get(nodeIndex).mask;
+    }
+
+    /**
+     * Convenience method for changing the mask of a node.
+     *
+     * @param nodeIndex The index of the node.
+     * @param mask An or-combination of C0_MASK,C1_MASK and C2_MASK.
+     */
+    public void setMask(int nodeIndex, int mask) {
+        if (packedCoords != null) {
+            checkIndex(nodeIndex);
+            packedMasks[nodeIndex] = (byte) ((packedMasks[nodeIndex] & KEEP_COLINEAR_FLAG) | (mask & C1C2_MASK));
+            modCount++;
+        } else {
+            get(nodeIndex).mask = mask;
+        }
+    }
+
+    /**
+     * Returns the node at the specified index, without turning compact mode
+     * off.
+     * <p>
+     * If the path is in compact mode, the values of the node are copied into
+     * the provided flyweight, and the flyweight is returned. Otherwise, the
+     * node of the path is returned. In both cases, the caller must not change
+     * the returned node.
+     *
+     * @param index The index of the node.
+     * @param flyweight A node which is used to hold the values in compact
+     * mode.
+     */
+    public Node getNode(int index, Node flyweight) {
+        if (packedCoords == null) {
+            return super.get(index);
+        }
+        checkIndex(index);
+        int j = index * 6;
+        flyweight.x[0] = packedCoords[j];
+        flyweight.y[0] = packedCoords[j + 1];
+        flyweight.x[1] = packedCoords[j + 2];
+        flyweight.y[1] = packedCoords[j + 3];
+        flyweight.x[2] = packedCoords[j + 4];
+        flyweight.y[2] = packedCoords[j + 5];
+        flyweight.mask = packedMasks[index] & C1C2_MASK;
+        flyweight.keepColinear = (packedMasks[index] & KEEP_COLINEAR_FLAG) != 0;
+        return flyweight;
+    }
+
+    /**
+     * Returns true if the path is in compact mode.
+     */
+    public boolean isCompact() {
+        return packedCoords != null;
+    }
+
+    /**
+     * Turns compact mode on or off.
+     * <p>
+     * When compact mode is turned on, the nodes of the path are packed into
+     * arrays, and the {@code Node} objects are released. Nodes, which have
+     * been obtained from the path before, are no longer part of the path.
+     * When compact mode is turned off, new {@code Node} objects are created.
+     */
+    public void setCompact(boolean newValue) {
+        if (newValue == (packedCoords != null)) {
+            return;
+        }
+        boolean isFlattenedValid = flattenedModCount == modCount;
+        if (newValue) {
+            int n = super.size();
+            double[] coords = new double[Math.max(n, 4) * 6];
+            byte[] masks = new byte[Math.max(n, 4)];
+            for (int i = 0; i < n; i++) {
+                Node node = super.get(i);
+                int j = i * 6;
+                coords[j] = node.x[0];
+                coords[j + 1] = node.y[0];
+                coords[j + 2] = node.x[1];
+                coords[j + 3] = node.y[1];
+                coords[j + 4] = node.x[2];
+                coords[j + 5] = node.y[2];
+                masks[i] = (byte) ((node.mask & C1C2_MASK) | (node.keepColinear ? KEEP_COLINEAR_FLAG : 0));
+            }
+            super.clear();
+            super.trimToSize();
+            packedCoords = coords;
+            packedMasks = masks;
+            packedSize = n;
+        } else {
+            double[] coords = packedCoords;
+            byte[] masks = packedMasks;
+            int n = packedSize;
+            packedCoords = null;
+            packedMasks = null;
+            packedSize = 0;
+            super.ensureCapacity(n);
+            for (int i = 0; i < n; i++) {
+                int j = i * 6;
+                Node node = new Node(masks[i] & C1C2_MASK, coords[j], coords[j + 1],
+                        coords[j + 2], coords[j + 3], coords[j + 4], coords[j + 5]);
+                node.keepColinear = (masks[i] & KEEP_COLINEAR_FLAG) != 0;
+                super.add(node);
+            }
+        }
+        // Changing the representation does not change the geometry
+        if (isFlattenedValid) {
+            flattenedModCount = modCount;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= packedSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + packedSize);
+        }
+    }
+
+    /**
+     * Appends a node to the packed arrays.
+     */
+    private void addPacked(int mask, double x0, double y0, double x1, double y1,
+            double x2, double y2, boolean keepColinear) {
+        if (packedSize == packedMasks.length) {
+            packedCoords = Arrays.copyOf(packedCoords, packedSize * 12);
+            packedMasks = Arrays.copyOf(packedMasks, packedSize * 2);
+        }
+        int j = packedSize * 6;
+        packedCoords[j] = x0;
+        packedCoords[j + 1] = y0;
+        packedCoords[j + 2] = x1;
+        packedCoords[j + 3] = y1;
+        packedCoords[j + 4] = x2;
+        packedCoords[j + 5] = y2;
+        packedMasks[packedSize] = (byte) ((mask & C1C2_MASK) | (keepColinear ? KEEP_COLINEAR_FLAG : 0));
+        packedSize++;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return (packedCoords != null) ? packedSize : super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Node get(int index) {
+        setCompact(false);
+        return super.get(index);
+    }
+
+    @Override
+    public Node set(int index, Node element) {
+        setCompact(false);
+        return super.set(index, element);
+    }
+
+    @Override
+    public boolean add(Node e) {
+        setCompact(false);
+        return super.add(e);
+    }
+
+    @Override
+    public void add(int index, Node element) {
+        setCompact(false);
+        super.add(index, element);
+    }
+
+    /**
+     * Removes the node at the specified index. In compact mode, the last
+     * node can be removed without turning compact mode off.
+     */
+    @Override
+    public Node remove(int index) {
+        if (packedCoords != null && index == packedSize - 1) {
+            Node node = getNode(index, new Node());
+            packedSize--;
+            modCount++;
+            return node;
+        }
+        setCompact(false);
+        return super.remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        setCompact(false);
+        return super.remove(o);
+    }
+
+    @Override
+    public void clear() {
+        if (packedCoords != null) {
+            packedSize = 0;
+            modCount++;
+        } else {
+            super.clear();
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Node> c) {
+        setCompact(false);
+        return super.addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Node> c) {
+        setCompact(false);
+        return super.addAll(index, c);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        setCompact(false);
+        return super.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        setCompact(false);
+        return super.retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(java.util.function.Predicate<? super Node> filter) {
+        setCompact(false);
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public void replaceAll(java.util.function.UnaryOperator<Node> operator) {
+        setCompact(false);
+        super.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super Node> c) {
+        setCompact(false);
+        super.sort(c);
+    }
+
+    @Override
+    public void forEach(java.util.function.Consumer<? super Node> action) {
+        setCompact(false);
+        super.forEach(action);
+    }
+
+    @Override
+    public Iterator<Node> iterator() {
+        setCompact(false);
+        return super.iterator();
+    }
+
+    @Override
+    public ListIterator<Node> listIterator() {
+        setCompact(false);
+        return super.listIterator();
+    }
+
+    @Override
+    public ListIterator<Node> listIterator(int index) {
+        setCompact(false);
+        return super.listIterator(index);
+    }
+
+    @Override
+    public java.util.List<Node> subList(int fromIndex, int toIndex) {
+        setCompact(false);
+        return super.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public Spliterator<Node> spliterator() {
+        setCompact(false);
+        return super.spliterator();
+    }
+
+    @Override
+    public Object[] toArray() {
+        setCompact(false);
+        return super.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        setCompact(false);
+        return super.toArray(a);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        setCompact(false);
+        return super.contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        setCompact(false);
+        return super.indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        setCompact(false);
+        return super.lastIndexOf(o);
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity) {
+        if (packedCoords != null) {
+            if (minCapacity > packedMasks.length) {
+                packedCoords = Arrays.copyOf(packedCoords, minCapacity * 6);
+                packedMasks = Arrays.copyOf(packedMasks, minCapacity);
+            }
+        } else {
+            super.ensureCapacity(minCapacity);
+        }
+    }
+
+    @Override
+    public void trimToSize() {
+        if (packedCoords != null) {
+            packedCoords = Arrays.copyOf(packedCoords, packedSize * 6);
+            packedMasks = Arrays.copyOf(packedMasks, packedSize);
+        } else {
+            super.trimToSize();
+        }
+    }
+
+    /**
+     * Compares the nodes of the paths like {@link java.util.List#equals}. Does not
+     * turn compact mode off.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof java.util.List)) {
+            return false;
+        }
+        java.util.List<?> that = (java.util.List<?>) o;
+        int n = size();
+        if (that.size() != n) {
+            return false;
+        }
+        Node flyweight = new Node();
+        if (o instanceof BezierPath) {
+            BezierPath thatPath = (BezierPath) o;
+            Node thatFlyweight = new Node();
+            for (int i = 0; i < n; i++) {
+                if (!getNode(i, flyweight).equals(thatPath.getNode(i, thatFlyweight))) {
+                    return false;
+                }
+            }
+        } else {
+            Iterator<?> iter = that.iterator();
+            for (int i = 0; i < n; i++) {
+                if (!getNode(i, flyweight).equals(iter.next())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the hash code of the nodes like {@link java.util.List#hashCode}. Does
+     * not turn compact mode off.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        Node flyweight = new Node();
+        for (int i = 0, n = size(); i < n; i++) {
+            hash = 31 * hash + getNode(i, flyweight).hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * A compact path is serialized like a path which is not compact.
+     */
+    private Object writeReplace() {
+        if (packedCoords != null) {
+            BezierPath that = clone();
+            that.setCompact(false);
+            return that;
+        }
+        return this;
+    }
+
     /**
      * This must be called after the BezierPath has been changed.
      */
@@ -335,6 +801,29 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         generalPath = null;
         bounds = null;
         outer = -1;
+        flattened = flattened2 = null;
+    }
+
+    /**
+     * Returns a flattened version of the path with the specified flatness.
+     * The flattened path is cached until the path is invalidated.
+     */
+    FlattenedBezierPath getFlattenedPath(double flatness) {
+        if (flattenedModCount != modCount) {
+            flattened = flattened2 = null;
+            flattenedModCount = modCount;
+        }
+        if (flattened == null || flattened.getFlatness() != flatness) {
+            FlattenedBezierPath f;
+            if (flattened2 != null && flattened2.getFlatness() == flatness) {
+                f = flattened2;
+            } else {
+                f = new FlattenedBezierPath(this, flatness);
+            }
+            flattened2 = flattened;
+            flattened = f;
+        }
+        return flattened;
     }
 
     /**
@@ -356,17 +845,18 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             gp.moveTo(0, 0);
             gp.lineTo(0, 0 + 1);
         } else if (size() == 1) {
-            Node current = get(0);
+            Node current = getNode(0, new Node());
             gp.moveTo(current.x[0], current.y[0]);
             gp.lineTo(current.x[0], current.y[0] + 1);
         } else {
+            Node[] flyweights = {new Node(), new Node()};
             Node previous;
             Node current;
-            previous = current = get(0);
+            previous = current = getNode(0, flyweights[0]);
             gp.moveTo(current.x[0], current.y[0]);
             for (int i = 1, n = size(); i < n; i++) {
                 previous = current;
-                current = get(i);
+                current = getNode(i, flyweights[i & 1]);
                 if ((previous.mask & C2_MASK) == 0) {
                     if ((current.mask & C1_MASK) == 0) {
                         gp.lineTo(
@@ -391,8 +881,8 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             }
             if (isClosed) {
                 if (size() > 1) {
-                    previous = get(size() - 1);
-                    current = get(0);
+                    previous = getNode(size() - 1, flyweights[0]);
+                    current = getNode(0, flyweights[1]);
                     if ((previous.mask & C2_MASK) == 0) {
                         if ((current.mask & C1_MASK) == 0) {
                             gp.lineTo(
@@ -431,12 +921,16 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     /**
      * Returns true, if the outline of this bezier path contains the specified
      * point.
+     * <p>
+     * The path is flattened with the tolerance as flatness, and the distance
+     * of the point to the flattened path is computed. The flattened path is
+     * cached until the path is invalidated.
      *
      * @param p The point to be tested.
      * @param tolerance The tolerance for the test.
      */
     public boolean outlineContains(Point2D.Double p, double tolerance) {
-        return Shapes.outlineContains(this, p, tolerance);
+        return getFlattenedPath(tolerance).outlineContains(p.x, p.y, tolerance);
     }
 
     @Override
@@ -476,8 +970,9 @@ public class BezierPath extends ArrayList<BezierPath.Node>
                 x1 = y1 = x2 = y2 = 0.0f;
             } else {
                 double x, y;
+                Node flyweight = new Node();
                 // handle first node
-                Node node = get(0);
+                Node node = getNode(0, flyweight);
                 y1 = y2 = node.y[0];
                 x1 = x2 = node.x[0];
                 if (isClosed && (node.mask & C1_MASK) != 0) {
@@ -513,7 +1008,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
                     }
                 }
                 // handle last node
-                node = get(size - 1);
+                node = getNode(size - 1, flyweight);
                 y = node.y[0];
                 x = node.x[0];
                 if (x < x1) {
@@ -562,7 +1057,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
                 }
                 // handle all other nodes
                 for (int i = 1, n = size - 1; i < n; i++) {
-                    node = get(i);
+                    node = getNode(i, flyweight);
                     y = node.y[0];
                     x = node.x[0];
                     if (x < x1) {
@@ -650,8 +1145,14 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     @Override
     public BezierPath clone() {
         BezierPath that = (BezierPath) super.clone();
-        for (int i = 0, n = this.size(); i < n; i++) {
-            that.set(i, (Node) this.get(i).clone());
+        that.flattened = that.flattened2 = null;
+        if (packedCoords != null) {
+            that.packedCoords = Arrays.copyOf(packedCoords, Math.max(packedSize, 4) * 6);
+            that.packedMasks = Arrays.copyOf(packedMasks, Math.max(packedSize, 4));
+        } else {
+            for (int i = 0, n = this.size(); i < n; i++) {
+                that.set(i, (Node) this.get(i).clone());
+            }
         }
         return that;
     }
@@ -662,6 +1163,12 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param tx the transformation.
      */
     public void transform(AffineTransform tx) {
+        if (packedCoords != null) {
+            tx.transform(packedCoords, 0, packedCoords, 0, packedSize * 3);
+            modCount++;
+            invalidatePath();
+            return;
+        }
         Point2D.Double p = new Point2D.Double();
         for (Node cp : this) {
             for (int i = 0; i < 3; i++) {
@@ -680,6 +1187,14 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * path becomes identical to that path.
      */
     public void setTo(BezierPath that) {
+        if (that.packedCoords != null) {
+            super.clear();
+            packedCoords = Arrays.copyOf(that.packedCoords, Math.max(that.packedSize, 4) * 6);
+            packedMasks = Arrays.copyOf(that.packedMasks, Math.max(that.packedSize, 4));
+            packedSize = that.packedSize;
+            modCount++;
+            return;
+        }
         while (that.size() < size()) {
             remove(size() - 1);
         }
@@ -697,11 +1212,13 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     public Point2D.Double getCenter() {
         double sx = 0;
         double sy = 0;
-        for (Node p : this) {
+        Node flyweight = new Node();
+        int n = size();
+        for (int i = 0; i < n; i++) {
+            Node p = getNode(i, flyweight);
             sx += p.x[0];
             sy += p.y[0];
         }
-        int n = size();
         return new Point2D.Double(sx / n, sy / n);
     }
 
@@ -723,8 +1240,9 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             Point2D.Double ctr = getCenter();
             outer = 0;
             double dist = 0;
+            Node flyweight = new Node();
             for (int i = 0, n = size(); i < n; i++) {
-                Node cp = get(i);
+                Node cp = getNode(i, flyweight);
                 double d = Geom.length2(ctr.x, ctr.y,
                         cp.x[0],
                         cp.y[0]);
@@ -745,48 +1263,18 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param relative a value between 0 and 1.
      */
     public Point2D.Double getPointOnPath(double relative, double flatness) {
-        // This method works only for straight lines
         if (size() == 0) {
             return null;
         } else if (size() == 1) {
-            return get(0).getControlPoint(0);
+            return get(0, 0);
         }
         if (relative <= 0) {
-            return get(0).getControlPoint(0);
+            return get(0, 0);
         } else if (relative >= 1) {
-            return get(size() - 1).getControlPoint(0);
+            return get(size() - 1, 0);
         }
-        validatePath();
-        // Compute the relative point on the path
-        double len = getLengthOfPath(flatness);
-        double relativeLen = len * relative;
-        double pos = 0;
-        double[] coords = new double[6];
-        PathIterator i = generalPath.getPathIterator(new AffineTransform(), flatness);
-        double prevX = coords[0];
-        double prevY = coords[1];
-        i.next();
-        for (; !i.isDone(); i.next()) {
-            i.currentSegment(coords);
-            double segLen = Geom.length(prevX, prevY, coords[0], coords[1]);
-            if (pos + segLen >= relativeLen) {
-                //if (true) return new Point2D.Double(coords[0], coords[1]);
-                // Compute the relative Point2D.Double on the line
-                /*
-                return new Point2D.Double(
-                prevX * pos / len + coords[0] * (pos + segLen) / len,
-                prevY * pos / len + coords[1] * (pos + segLen) / len
-                );*/
-                double factor = (relativeLen - pos) / segLen;
-                return new Point2D.Double(
-                        prevX * (1 - factor) + coords[0] * factor,
-                        prevY * (1 - factor) + coords[1] * factor);
-            }
-            pos += segLen;
-            prevX = coords[0];
-            prevY = coords[1];
-        }
-        throw new InternalError("We should never get here");
+        FlattenedBezierPath f = getFlattenedPath(flatness);
+        return f.getPointAt(f.getLength() * relative);
     }
 
     /**
@@ -795,19 +1283,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param flatness the flatness used to approximate the length.
      */
     public double getLengthOfPath(double flatness) {
-        double len = 0;
-        PathIterator i = generalPath.getPathIterator(new AffineTransform(), flatness);
-        double[] coords = new double[6];
-        double prevX = coords[0];
-        double prevY = coords[1];
-        i.next();
-        for (; !i.isDone(); i.next()) {
-            i.currentSegment(coords);
-            len += Geom.length(prevX, prevY, coords[0], coords[1]);
-            prevX = coords[0];
-            prevY = coords[1];
-        }
-        return len;
+        return getFlattenedPath(flatness).getLength();
     }
 
     /**
@@ -819,55 +1295,13 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * Returns -1, if the point is not on the path.
      */
     public double getRelativePositionOnPath(Point2D.Double find, double flatness) {
-        // XXX - This method works only for straight lines!
-        double len = getLengthOfPath(flatness);
-        double relativeLen = 0d;
-        Node v1, v2;
-        BezierPath tempPath = new BezierPath();
-        Node t1, t2;
-        tempPath.add(t1 = new Node());
-        tempPath.add(t2 = new Node());
-        for (int i = 0, n = size() - 1; i < n; i++) {
-            v1 = get(i);
-            v2 = get(i + 1);
-            if (v1.mask == 0 && v2.mask == 0) {
-                if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                } else {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], v2.x[0], v2.y[0]);
-                }
-            } else {
-                t1.setTo(v1);
-                t2.setTo(v2);
-                tempPath.invalidatePath();
-                if (tempPath.outlineContains(find, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                } else {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], v2.x[0], v2.y[0]);
-                }
-            }
-        }
-        if (isClosed && size() > 1) {
-            v1 = get(size() - 1);
-            v2 = get(0);
-            if (v1.mask == 0 && v2.mask == 0) {
-                if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                }
-            } else {
-                t1.setTo(v1);
-                t2.setTo(v2);
-                tempPath.invalidatePath();
-                if (tempPath.outlineContains(find, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                }
-            }
+        FlattenedBezierPath f = getFlattenedPath(flatness);
+        int i = f.findPolylineSegment(find.x, find.y, flatness);
+        if (i == -1) {
+            return -1;
         }
-        return -1;
+        double len = f.getLength();
+        return (len == 0) ? 0 : f.getLengthAt(i, find.x, find.y) / len;
     }
 
     /**
@@ -877,45 +1311,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @return the index of the segment or -1 if no segment was hit.
      */
     public int findSegment(Point2D.Double find, double tolerance) {
-        // XXX - This works only for straight lines!
-        Node v1, v2;
-        BezierPath tempPath = new BezierPath();
-        Node t1, t2;
-        tempPath.add(t1 = new Node());
-        tempPath.add(t2 = new Node());
-        for (int i = 0, n = size() - 1; i < n; i++) {
-            v1 = get(i);
-            v2 = get(i + 1);
-            if (v1.mask == 0 && v2.mask == 0) {
-                if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, tolerance)) {
-                    return i;
-                }
-            } else {
-                t1.setTo(v1);
-                t2.setTo(v2);
-                tempPath.invalidatePath();
-                if (tempPath.outlineContains(find, tolerance)) {
-                    return i;
-                }
-            }
-        }
-        if (isClosed && size() > 1) {
-            v1 = get(size() - 1);
-            v2 = get(0);
-            if (v1.mask == 0 && v2.mask == 0) {
-                if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, tolerance)) {
-                    return size() - 1;
-                }
-            } else {
-                t1.setTo(v1);
-                t2.setTo(v2);
-                tempPath.invalidatePath();
-                if (tempPath.outlineContains(find, tolerance)) {
-                    return size() - 1;
-                }
-            }
-        }
-        return -1;
+        return getFlattenedPath(tolerance).findSegment(find.x, find.y, tolerance);
     }
 
     /**
@@ -974,6 +1370,10 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() != 0) {
             throw new IllegalPathStateException("moveTo only allowed when empty");
         }
+        if (packedCoords != null) {
+            addPacked(0, x1, y1, x1, y1, x1, y1, false);
+            return;
+        }
         Node node = new Node(x1, y1);
         node.keepColinear = false;
         add(node);
@@ -994,6 +1394,11 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() == 0) {
             throw new IllegalPathStateException("lineTo only allowed when not empty");
         }
+        if (packedCoords != null) {
+            packedMasks[packedSize - 1] &= ~KEEP_COLINEAR_FLAG;
+            addPacked(0, x1, y1, x1, y1, x1, y1, true);
+            return;
+        }
         get(size() - 1).keepColinear = false;
         add(new Node(x1, y1));
     }
@@ -1014,6 +1419,10 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() == 0) {
             throw new IllegalPathStateException("quadTo only allowed when not empty");
         }
+        if (packedCoords != null) {
+            addPacked(C1_MASK, x2, y2, x1, y1, x2, y2, true);
+            return;
+        }
         add(new Node(C1_MASK, x2, y2, x1, y1, x2, y2));
     }
 
@@ -1032,6 +1441,24 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() == 0) {
             throw new IllegalPathStateException("curveTo only allowed when not empty");
         }
+        if (packedCoords != null) {
+            int last = packedSize - 1;
+            int j = last * 6;
+            int mask = packedMasks[last] | C2_MASK;
+            packedCoords[j + 4] = x1;
+            packedCoords[j + 5] = y1;
+            if ((mask & C1C2_MASK) == C1C2_MASK) {
+                boolean keepColinear = Math.abs(
+                        Geom.angle(packedCoords[j], packedCoords[j + 1],
+                                packedCoords[j + 2], packedCoords[j + 3])
+                        - Geom.angle(x1, y1,
+                                packedCoords[j], packedCoords[j + 1])) < 0.001;
+                mask = keepColinear ? mask | KEEP_COLINEAR_FLAG : mask & ~KEEP_COLINEAR_FLAG;
+            }
+            packedMasks[last] = (byte) mask;
+            addPacked(C1_MASK, x3, y3, x2, y2, x3, y3, true);
+            return;
+        }
         Node lastPoint = get(size() - 1);
         lastPoint.mask |= C2_MASK;
         lastPoint.x[2] = x1;
@@ -1084,7 +1511,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             return;
         }
         // Get the current (x, y) coordinates of the path
-        Node lastPoint = get(size() - 1);
+        Node lastPoint = getNode(size() - 1, new Node());
         double x0 = ((lastPoint.mask & C2_MASK) == C2_MASK) ? lastPoint.x[2] : lastPoint.x[0];
         double y0 = ((lastPoint.mask & C2_MASK) == C2_MASK) ? lastPoint.y[2] : lastPoint.y[0];
         if (x0 == x && y0 == y) {
@@ -1200,7 +1627,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     public Point2D.Double[] toPolygonArray() {
         Point2D.Double[] points = new Point2D.Double[size()];
         for (int i = 0, n = size(); i < n; i++) {
-            points[i] = new Point2D.Double(get(i).x[0], get(i).y[0]);
+            points[i] = get(i, 0);
         }
         return points;
     }
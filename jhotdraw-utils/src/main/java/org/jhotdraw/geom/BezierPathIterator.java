@@ -35,6 +35,11 @@ public class BezierPathIterator implements PathIterator {
      * The transformation.
      */
     private AffineTransform affine;
+    /**
+     * Flyweights for reading the nodes of a compact path.
+     */
+    private final BezierPath.Node previousFlyweight = new BezierPath.Node();
+    private final BezierPath.Node currentFlyweight = new BezierPath.Node();
     /**
      * ??
      */
@@ -246,8 +251,8 @@ public class BezierPathIterator implements PathIterator {
         if (index == path.size()) {
             // We only get here for closed paths
             if (path.size() > 1) {
-                BezierPath.Node previous = path.get(path.size() - 1);
-                BezierPath.Node current = path.get(0);
+                BezierPath.Node previous = path.getNode(path.size() - 1, previousFlyweight);
+                BezierPath.Node current = path.getNode(0, currentFlyweight);
                 if ((previous.mask & BezierPath.C2_MASK) == 0) {
                     if ((current.mask & BezierPath.C1_MASK) == 0) {
                         numCoords = 1;
@@ -286,14 +291,14 @@ public class BezierPathIterator implements PathIterator {
             // We only get here for closed paths
             return SEG_CLOSE;
         } else if (index == 0) {
-            BezierPath.Node current = path.get(index);
+            BezierPath.Node current = path.getNode(index, currentFlyweight);
             coords[0] = current.x[0];
             coords[1] = current.y[0];
             numCoords = 1;
             type = SEG_MOVETO;
         } else if (index < path.size()) {
-            BezierPath.Node current = path.get(index);
-            BezierPath.Node previous = path.get(index - 1);
+            BezierPath.Node current = path.getNode(index, currentFlyweight);
+            BezierPath.Node previous = path.getNode(index - 1, previousFlyweight);
             if ((previous.mask & BezierPath.C2_MASK) == 0) {
                 if ((current.mask & BezierPath.C1_MASK) == 0) {
                     numCoords = 1;
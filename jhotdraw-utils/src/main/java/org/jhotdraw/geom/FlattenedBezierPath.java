@@ -0,0 +1,344 @@
+/*
+ * @(#)FlattenedBezierPath.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.QuadCurve2D;
+import java.util.Arrays;
+
+/**
+ * A polyline which approximates a {@link BezierPath} with a given flatness.
+ * <p>
+ * The curves of the bezier path are flattened by recursive subdivision,
+ * like {@code java.awt.geom.FlatteningPathIterator} does. Each point of the
+ * polyline knows the segment of the bezier path it belongs to.
+ * <p>
+ * For hit testing, the segments of the polyline are grouped into chunks of
+ * {@link #CHUNK_SIZE} consecutive segments, and the bounding box of each chunk
+ * is computed. A hit test only computes the distance to the segments of the
+ * chunks, whose bounding box is near the point.
+ * <p>
+ * For measuring the path, a table with the cumulative arc length at each
+ * point of the polyline is computed when it is needed for the first time.
+ * A point at a given arc length is found by a binary search in this table.
+ * <p>
+ * Instances of this class are created and cached by {@code BezierPath}.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+class FlattenedBezierPath {
+
+    /**
+     * The number of segments in a chunk.
+     */
+    public static final int CHUNK_SIZE = 16;
+    /**
+     * The maximal recursion level for subdividing curves. This is the same
+     * limit as used by {@code FlatteningPathIterator}.
+     */
+    private static final int LIMIT = 10;
+    private final double flatness;
+    private final double flatnessSq;
+    /**
+     * The coordinates of the points of the polyline.
+     */
+    private double[] xs;
+    private double[] ys;
+    /**
+     * The index of the bezier path segment, which ends with the
+     * corresponding point of the polyline.
+     */
+    private int[] segments;
+    private int count;
+    /**
+     * The bounding boxes of the chunks.
+     */
+    private double[] chunkMinX;
+    private double[] chunkMinY;
+    private double[] chunkMaxX;
+    private double[] chunkMaxY;
+    /**
+     * The arc length from the first point of the polyline to the
+     * corresponding point. This table is created lazily.
+     */
+    private double[] lengths;
+
+    /**
+     * Flattens the specified bezier path.
+     */
+    public FlattenedBezierPath(BezierPath path, double flatness) {
+        this.flatness = flatness;
+        this.flatnessSq = flatness * flatness;
+        int n = path.size();
+        xs = new double[Math.max(4, n * 2)];
+        ys = new double[xs.length];
+        segments = new int[xs.length];
+        if (n > 0) {
+            BezierPath.Node[] flyweights = {new BezierPath.Node(), new BezierPath.Node()};
+            BezierPath.Node current = path.getNode(0, flyweights[0]);
+            add(current.x[0], current.y[0], -1);
+            for (int i = 1; i < n; i++) {
+                BezierPath.Node previous = current;
+                current = path.getNode(i, flyweights[i & 1]);
+                addSegment(previous, current, i - 1);
+            }
+            if (path.isClosed() && n > 1) {
+                addSegment(current, path.getNode(0, flyweights[n & 1]), n - 1);
+            }
+        }
+        computeChunks();
+    }
+
+    public double getFlatness() {
+        return flatness;
+    }
+
+    private void add(double x, double y, int segment) {
+        if (count == xs.length) {
+            xs = Arrays.copyOf(xs, count * 2);
+            ys = Arrays.copyOf(ys, count * 2);
+            segments = Arrays.copyOf(segments, count * 2);
+        }
+        xs[count] = x;
+        ys[count] = y;
+        segments[count] = segment;
+        count++;
+    }
+
+    private void addSegment(BezierPath.Node previous, BezierPath.Node current, int segment) {
+        double x0 = previous.x[0];
+        double y0 = previous.y[0];
+        if ((previous.mask & BezierPath.C2_MASK) == 0) {
+            if ((current.mask & BezierPath.C1_MASK) == 0) {
+                add(current.x[0], current.y[0], segment);
+            } else {
+                addQuad(x0, y0, current.x[1], current.y[1], current.x[0], current.y[0], segment, 0);
+            }
+        } else {
+            if ((current.mask & BezierPath.C1_MASK) == 0) {
+                addQuad(x0, y0, previous.x[2], previous.y[2], current.x[0], current.y[0], segment, 0);
+            } else {
+                addCubic(x0, y0, previous.x[2], previous.y[2], current.x[1], current.y[1],
+                        current.x[0], current.y[0], segment, 0);
+            }
+        }
+    }
+
+    private void addQuad(double x0, double y0, double x1, double y1, double x2, double y2,
+            int segment, int level) {
+        if (level >= LIMIT || QuadCurve2D.getFlatnessSq(x0, y0, x1, y1, x2, y2) < flatnessSq) {
+            add(x2, y2, segment);
+        } else {
+            double ax = (x0 + x1) / 2;
+            double ay = (y0 + y1) / 2;
+            double bx = (x1 + x2) / 2;
+            double by = (y1 + y2) / 2;
+            double mx = (ax + bx) / 2;
+            double my = (ay + by) / 2;
+            addQuad(x0, y0, ax, ay, mx, my, segment, level + 1);
+            addQuad(mx, my, bx, by, x2, y2, segment, level + 1);
+        }
+    }
+
+    private void addCubic(double x0, double y0, double x1, double y1, double x2, double y2,
+            double x3, double y3, int segment, int level) {
+        if (level >= LIMIT || CubicCurve2D.getFlatnessSq(x0, y0, x1, y1, x2, y2, x3, y3) < flatnessSq) {
+            add(x3, y3, segment);
+        } else {
+            double ax = (x0 + x1) / 2;
+            double ay = (y0 + y1) / 2;
+            double bx = (x1 + x2) / 2;
+            double by = (y1 + y2) / 2;
+            double cx = (x2 + x3) / 2;
+            double cy = (y2 + y3) / 2;
+            double abx = (ax + bx) / 2;
+            double aby = (ay + by) / 2;
+            double bcx = (bx + cx) / 2;
+            double bcy = (by + cy) / 2;
+            double mx = (abx + bcx) / 2;
+            double my = (aby + bcy) / 2;
+            addCubic(x0, y0, ax, ay, abx, aby, mx, my, segment, level + 1);
+            addCubic(mx, my, bcx, bcy, cx, cy, x3, y3, segment, level + 1);
+        }
+    }
+
+    private void computeChunks() {
+        int chunks = (count < 2) ? 0 : (count - 2) / CHUNK_SIZE + 1;
+        chunkMinX = new double[chunks];
+        chunkMinY = new double[chunks];
+        chunkMaxX = new double[chunks];
+        chunkMaxY = new double[chunks];
+        for (int c = 0; c < chunks; c++) {
+            int from = c * CHUNK_SIZE;
+            int to = Math.min(from + CHUNK_SIZE, count - 1);
+            double minX = xs[from];
+            double minY = ys[from];
+            double maxX = minX;
+            double maxY = minY;
+            for (int i = from + 1; i <= to; i++) {
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+            chunkMinX[c] = minX;
+            chunkMinY[c] = minY;
+            chunkMaxX[c] = maxX;
+            chunkMaxY[c] = maxY;
+        }
+    }
+
+    /**
+     * Returns the number of points of the polyline.
+     */
+    public int getPointCount() {
+        return count;
+    }
+
+    /**
+     * Returns the index of the first segment of the polyline, which has a
+     * distance of at most {@code tolerance} to the specified point.
+     * Segment {@code i} goes from point {@code i} to point {@code i + 1}.
+     *
+     * @return the index of the segment or -1 if no segment was hit.
+     */
+    public int findPolylineSegment(double px, double py, double tolerance) {
+        double toleranceSq = tolerance * tolerance;
+        for (int c = 0, chunks = chunkMinX.length; c < chunks; c++) {
+            if (px < chunkMinX[c] - tolerance || px > chunkMaxX[c] + tolerance
+                    || py < chunkMinY[c] - tolerance || py > chunkMaxY[c] + tolerance) {
+                continue;
+            }
+            int from = c * CHUNK_SIZE;
+            int to = Math.min(from + CHUNK_SIZE, count - 1);
+            for (int i = from; i < to; i++) {
+                if (distanceSq(xs[i], ys[i], xs[i + 1], ys[i + 1], px, py) <= toleranceSq) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first bezier path segment, which has a
+     * distance of at most {@code tolerance} to the specified point.
+     *
+     * @return the index of the segment or -1 if no segment was hit.
+     */
+    public int findSegment(double px, double py, double tolerance) {
+        int i = findPolylineSegment(px, py, tolerance);
+        return i == -1 ? -1 : segments[i + 1];
+    }
+
+    /**
+     * Returns true, if the polyline has a distance of at most
+     * {@code tolerance} to the specified point.
+     */
+    public boolean outlineContains(double px, double py, double tolerance) {
+        return findPolylineSegment(px, py, tolerance) != -1;
+    }
+
+    /**
+     * Returns the cumulative arc lengths of the polyline.
+     */
+    private double[] getLengths() {
+        if (lengths == null) {
+            double[] l = new double[count];
+            for (int i = 1; i < count; i++) {
+                l[i] = l[i - 1] + Geom.length(xs[i - 1], ys[i - 1], xs[i], ys[i]);
+            }
+            lengths = l;
+        }
+        return lengths;
+    }
+
+    /**
+     * Returns the length of the polyline.
+     */
+    public double getLength() {
+        return count == 0 ? 0 : getLengths()[count - 1];
+    }
+
+    /**
+     * Returns the point at the specified arc length on the polyline.
+     * The length is clamped to the length of the polyline.
+     *
+     * @return the point or null if the polyline has no points.
+     */
+    public Point2D.Double getPointAt(double length) {
+        if (count == 0) {
+            return null;
+        }
+        double[] l = getLengths();
+        if (length <= 0) {
+            return new Point2D.Double(xs[0], ys[0]);
+        } else if (length >= l[count - 1]) {
+            return new Point2D.Double(xs[count - 1], ys[count - 1]);
+        }
+        // Find the first point with an arc length >= length
+        int i = Arrays.binarySearch(l, 0, count, length);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        // Skip zero length segments
+        while (i > 0 && l[i - 1] == length) {
+            i--;
+        }
+        if (i == 0) {
+            return new Point2D.Double(xs[0], ys[0]);
+        }
+        double factor = (length - l[i - 1]) / (l[i] - l[i - 1]);
+        return new Point2D.Double(
+                xs[i - 1] * (1 - factor) + xs[i] * factor,
+                ys[i - 1] * (1 - factor) + ys[i] * factor);
+    }
+
+    /**
+     * Returns the arc length from the start of the polyline to the
+     * projection of the specified point onto the specified segment of the
+     * polyline.
+     *
+     * @param segment the index of a segment of the polyline, as returned
+     * by {@link #findPolylineSegment}.
+     */
+    public double getLengthAt(int segment, double px, double py) {
+        double[] l = getLengths();
+        double dx = xs[segment + 1] - xs[segment];
+        double dy = ys[segment + 1] - ys[segment];
+        double lenSq = dx * dx + dy * dy;
+        double t = (lenSq == 0) ? 0 : ((px - xs[segment]) * dx + (py - ys[segment]) * dy) / lenSq;
+        if (t < 0) {
+            t = 0;
+        } else if (t > 1) {
+            t = 1;
+        }
+        return l[segment] + t * (l[segment + 1] - l[segment]);
+    }
+
+    /**
+     * Returns the squared distance of point p to the line segment from
+     * point 1 to point 2.
+     */
+    private static double distanceSq(double x1, double y1, double x2, double y2, double px, double py) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lenSq = dx * dx + dy * dy;
+        double t = (lenSq == 0) ? 0 : ((px - x1) * dx + (py - y1) * dy) / lenSq;
+        if (t < 0) {
+            t = 0;
+        } else if (t > 1) {
+            t = 1;
+        }
+        double ex = x1 + t * dx - px;
+        double ey = y1 + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+}
@@ -14,6 +14,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -22,13 +23,21 @@ import java.util.Map;
  * QuadTree recursively subdivides a space into four rectangles. Each node of a QuadTree subdivides
  * the space covered by the rectangle of its parent node into four smaller rectangles covering the
  * upper left, upper right, lower left and lower right quadrant of the parent rectangle.
+ * <p>
+ * The {@code visit...} methods of this class are implemented on top of the
+ * {@code find...} methods, and thus allocate a collection for each query. Use
+ * {@link RTree} if queries must not allocate objects.
  *
  * @author Werner Randelshofer
  * @version $Id$
  */
-public class QuadTree<T> implements Serializable {
+public class QuadTree<T> implements SpatialIndex<T>, Serializable {
 
     private static final long serialVersionUID = 1L;
+    /**
+     * The bounds of all objects in the tree.
+     */
+    private HashMap<T, Rectangle2D.Double> entries = new HashMap<>();
     private HashMap<T, Rectangle2D.Double> outside = new HashMap<>();
     private QuadNode root;
     private int maxCapacity = 32;
@@ -46,17 +55,28 @@ public class QuadTree<T> implements Serializable {
         root = new QuadNode(bounds);
     }
 
+    @Override
     public void add(T o, Rectangle2D.Double bounds) {
+        remove(o);
+        bounds = (Rectangle2D.Double) bounds.clone();
+        entries.put(o, bounds);
         if (root.bounds.contains(bounds)) {
-            root.add(o, (Rectangle2D.Double) bounds.clone());
+            root.add(o, bounds);
         } else {
-            outside.put(o, (Rectangle2D.Double) bounds.clone());
+            outside.put(o, bounds);
             if (outside.size() > maxOutside) {
                 reorganize();
             }
         }
     }
 
+    @Override
+    public void addAll(List<? extends T> objects, List<? extends Rectangle2D.Double> bounds) {
+        for (int i = 0, n = objects.size(); i < n; i++) {
+            add(objects.get(i), bounds.get(i));
+        }
+    }
+
     public void reorganize() {
         root.join();
         outside.putAll(root.objects);
@@ -78,11 +98,28 @@ public class QuadTree<T> implements Serializable {
         outside.clear();
     }
 
+    @Override
     public void remove(T o) {
-        outside.remove(o);
-        root.remove(o);
+        Rectangle2D.Double bounds = entries.remove(o);
+        if (bounds != null && outside.remove(o) == null) {
+            root.remove(o, bounds);
+        }
+    }
+
+    @Override
+    public void update(T o, Rectangle2D.Double bounds) {
+        remove(o);
+        add(o, bounds);
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        outside.clear();
+        root = new QuadNode(root.bounds);
     }
 
+    @Override
     public Collection<T> findContains(Point2D.Double p) {
         HashSet<T> result = new HashSet<>();
         root.findContains(p, result);
@@ -94,6 +131,7 @@ public class QuadTree<T> implements Serializable {
         return result;
     }
 
+    @Override
     public Collection<T> findIntersects(Rectangle2D r) {
         return findIntersects(new Rectangle2D.Double(r.getX(), r.getY(), r.getWidth(), r.getHeight()));
     }
@@ -109,6 +147,7 @@ public class QuadTree<T> implements Serializable {
         return result;
     }
 
+    @Override
     public Collection<T> findInside(Rectangle2D.Double r) {
         HashSet<T> result = new HashSet<>();
         root.findInside(r, result);
@@ -120,6 +159,30 @@ public class QuadTree<T> implements Serializable {
         return result;
     }
 
+    @Override
+    public boolean visitContains(double x, double y, Visitor<? super T> visitor) {
+        return visit(findContains(new Point2D.Double(x, y)), visitor);
+    }
+
+    @Override
+    public boolean visitIntersects(double x, double y, double w, double h, Visitor<? super T> visitor) {
+        return visit(findIntersects(new Rectangle2D.Double(x, y, w, h)), visitor);
+    }
+
+    @Override
+    public boolean visitInside(double x, double y, double w, double h, Visitor<? super T> visitor) {
+        return visit(findInside(new Rectangle2D.Double(x, y, w, h)), visitor);
+    }
+
+    private boolean visit(Collection<T> c, Visitor<? super T> visitor) {
+        for (T o : c) {
+            if (!visitor.visit(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private class QuadNode implements Serializable {
 
         private static final long serialVersionUID = 1L;
@@ -145,12 +208,24 @@ public class QuadTree<T> implements Serializable {
             return northEast == null;
         }
 
-        public void remove(T o) {
+        /**
+         * Removes an object from this node and from the child nodes, into
+         * which {@link #add} has put it.
+         */
+        public void remove(T o, Rectangle2D.Double oBounds) {
             if (objects.remove(o) == null && !isLeaf()) {
-                northEast.remove(o);
-                northWest.remove(o);
-                southEast.remove(o);
-                southWest.remove(o);
+                if (northEast.bounds.intersects(oBounds)) {
+                    northEast.remove(o, oBounds);
+                }
+                if (northWest.bounds.intersects(oBounds)) {
+                    northWest.remove(o, oBounds);
+                }
+                if (southEast.bounds.intersects(oBounds)) {
+                    southEast.remove(o, oBounds);
+                }
+                if (southWest.bounds.intersects(oBounds)) {
+                    southWest.remove(o, oBounds);
+                }
             }
         }
 
@@ -0,0 +1,806 @@
+/*
+ * @(#)RTree.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * An R-tree which stores the bounds of its objects in primitive arrays.
+ * <p>
+ * Each object is assigned an integer id. The bounds of the objects and the
+ * bounds of the tree nodes are stored in {@code double[]} arrays, the
+ * children of the tree nodes in {@code int[]} arrays. Thus, the tree
+ * consists of a handful of arrays regardless of the number of objects, and
+ * the {@code visit...} methods do not allocate any objects.
+ * <p>
+ * Objects can be inserted one by one, or in bulk with {@link #addAll}, which
+ * packs the tree using the Sort-Tile-Recursive (STR) algorithm.
+ * <p>
+ * The tests performed on the bounds of the objects have the same semantics
+ * as the corresponding methods of {@code Rectangle2D}.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class RTree<T> implements SpatialIndex<T>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int NIL = -1;
+    /**
+     * The maximal number of children of a node.
+     */
+    private final int maxChildren;
+    /**
+     * The number of array elements reserved for the children of a node.
+     * This is one more than maxChildren, so that a node can temporarily
+     * overflow before it is split.
+     */
+    private final int stride;
+    /**
+     * Maps objects to entry ids.
+     */
+    private HashMap<T, Integer> ids = new HashMap<>();
+    /**
+     * The objects, indexed by entry id.
+     */
+    private Object[] objects;
+    /**
+     * The bounds of the entries: x, y, width, height.
+     */
+    private double[] entryBounds;
+    /**
+     * The leaf node of an entry. For free entries this is the next free
+     * entry.
+     */
+    private int[] entryLeaf;
+    private int entryLimit;
+    private int freeEntry = NIL;
+    /**
+     * The bounds of the nodes: minX, minY, maxX, maxY.
+     */
+    private double[] nodeBounds;
+    /**
+     * The children of the nodes. These are entry ids for leaf nodes and node
+     * ids for inner nodes.
+     */
+    private int[] nodeChildren;
+    private int[] nodeCount;
+    /**
+     * The height of a node above the leaf level. Leaf nodes have level 0.
+     */
+    private int[] nodeLevel;
+    /**
+     * The parent of a node. For free nodes this is the next free node.
+     */
+    private int[] nodeParent;
+    private int nodeLimit;
+    private int freeNode = NIL;
+    private int root = NIL;
+    /**
+     * Scratch arrays for splitting and packing nodes.
+     */
+    private transient double[] keys;
+    private transient int[] items;
+
+    /**
+     * Creates a new instance with a maximal number of 16 children per node.
+     */
+    public RTree() {
+        this(16);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxChildren The maximal number of children of a node.
+     */
+    public RTree(int maxChildren) {
+        if (maxChildren < 2) {
+            throw new IllegalArgumentException("maxChildren must be at least 2, but is " + maxChildren);
+        }
+        this.maxChildren = maxChildren;
+        this.stride = maxChildren + 1;
+        clear();
+    }
+
+    /**
+     * Returns the number of objects in the tree.
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public void clear() {
+        ids.clear();
+        objects = new Object[32];
+        entryBounds = new double[32 * 4];
+        entryLeaf = new int[32];
+        entryLimit = 0;
+        freeEntry = NIL;
+        nodeBounds = new double[8 * 4];
+        nodeChildren = new int[8 * stride];
+        nodeCount = new int[8];
+        nodeLevel = new int[8];
+        nodeParent = new int[8];
+        nodeLimit = 0;
+        freeNode = NIL;
+        root = NIL;
+    }
+
+    @Override
+    public void add(T o, Rectangle2D.Double bounds) {
+        Integer id = ids.get(o);
+        if (id != null) {
+            removeEntry(id);
+        } else {
+            id = allocateEntry();
+            ids.put(o, id);
+        }
+        objects[id] = o;
+        setEntryBounds(id, bounds.x, bounds.y, bounds.width, bounds.height);
+        insert(id);
+    }
+
+    /**
+     * Adds all objects with the specified bounds to the tree.
+     * <p>
+     * If the number of added objects is at least as large as the number of
+     * objects already in the tree, the tree is rebuilt from scratch with
+     * the Sort-Tile-Recursive algorithm. This yields a tree with fully
+     * packed nodes and little overlap between them.
+     */
+    @Override
+    public void addAll(List<? extends T> objects, List<? extends Rectangle2D.Double> bounds) {
+        if (objects.size() != bounds.size()) {
+            throw new IllegalArgumentException("objects.size=" + objects.size() + " != bounds.size=" + bounds.size());
+        }
+        if (objects.size() < size()) {
+            for (int i = 0, n = objects.size(); i < n; i++) {
+                add(objects.get(i), bounds.get(i));
+            }
+            return;
+        }
+        for (int i = 0, n = objects.size(); i < n; i++) {
+            T o = objects.get(i);
+            Rectangle2D.Double r = bounds.get(i);
+            Integer id = ids.get(o);
+            if (id == null) {
+                id = allocateEntry();
+                ids.put(o, id);
+            }
+            this.objects[id] = o;
+            setEntryBounds(id, r.x, r.y, r.width, r.height);
+        }
+        pack();
+    }
+
+    /**
+     * Updates the bounds of an object.
+     * <p>
+     * If the new bounds are inside the bounds of the leaf node which holds
+     * the object, only the bounds of the object are changed. Otherwise the
+     * object is removed from its leaf node and inserted again.
+     */
+    @Override
+    public void update(T o, Rectangle2D.Double bounds) {
+        Integer id = ids.get(o);
+        if (id == null) {
+            add(o, bounds);
+            return;
+        }
+        setEntryBounds(id, bounds.x, bounds.y, bounds.width, bounds.height);
+        int b = entryLeaf[id] * 4;
+        if (nodeBounds[b] <= minX(0, id) && nodeBounds[b + 1] <= minY(0, id)
+                && nodeBounds[b + 2] >= maxX(0, id) && nodeBounds[b + 3] >= maxY(0, id)) {
+            return;
+        }
+        removeEntry(id);
+        insert(id);
+    }
+
+    @Override
+    public void remove(T o) {
+        Integer id = ids.remove(o);
+        if (id != null) {
+            removeEntry(id);
+            objects[id] = null;
+            entryLeaf[id] = freeEntry;
+            freeEntry = id;
+        }
+    }
+
+    @Override
+    public Collection<T> findContains(Point2D.Double p) {
+        HashSet<T> result = new HashSet<>();
+        visitContains(p.x, p.y, new CollectingVisitor<>(result));
+        return result;
+    }
+
+    @Override
+    public Collection<T> findIntersects(Rectangle2D r) {
+        HashSet<T> result = new HashSet<>();
+        visitIntersects(r.getX(), r.getY(), r.getWidth(), r.getHeight(), new CollectingVisitor<>(result));
+        return result;
+    }
+
+    @Override
+    public Collection<T> findInside(Rectangle2D.Double r) {
+        HashSet<T> result = new HashSet<>();
+        visitInside(r.x, r.y, r.width, r.height, new CollectingVisitor<>(result));
+        return result;
+    }
+
+    @Override
+    public boolean visitContains(double x, double y, Visitor<? super T> visitor) {
+        return root == NIL || visitContains(root, x, y, visitor);
+    }
+
+    @Override
+    public boolean visitIntersects(double x, double y, double w, double h, Visitor<? super T> visitor) {
+        if (root == NIL || w <= 0 || h <= 0) {
+            return true;
+        }
+        return visitIntersects(root, x, y, w, h, visitor);
+    }
+
+    @Override
+    public boolean visitInside(double x, double y, double w, double h, Visitor<? super T> visitor) {
+        if (root == NIL || w <= 0 || h <= 0) {
+            return true;
+        }
+        return visitInside(root, x, y, w, h, visitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean visitContains(int node, double x, double y, Visitor<? super T> visitor) {
+        int base = node * stride;
+        int count = nodeCount[node];
+        if (nodeLevel[node] == 0) {
+            for (int i = 0; i < count; i++) {
+                int id = nodeChildren[base + i];
+                int b = id * 4;
+                double x0 = entryBounds[b];
+                double y0 = entryBounds[b + 1];
+                if (x >= x0 && y >= y0 && x < x0 + entryBounds[b + 2] && y < y0 + entryBounds[b + 3]) {
+                    if (!visitor.visit((T) objects[id])) {
+                        return false;
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                int child = nodeChildren[base + i];
+                int b = child * 4;
+                if (x >= nodeBounds[b] && y >= nodeBounds[b + 1] && x <= nodeBounds[b + 2] && y <= nodeBounds[b + 3]) {
+                    if (!visitContains(child, x, y, visitor)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean visitIntersects(int node, double x, double y, double w, double h, Visitor<? super T> visitor) {
+        int base = node * stride;
+        int count = nodeCount[node];
+        if (nodeLevel[node] == 0) {
+            for (int i = 0; i < count; i++) {
+                int id = nodeChildren[base + i];
+                int b = id * 4;
+                double x0 = entryBounds[b];
+                double y0 = entryBounds[b + 1];
+                double w0 = entryBounds[b + 2];
+                double h0 = entryBounds[b + 3];
+                if (w0 > 0 && h0 > 0 && x + w > x0 && y + h > y0 && x < x0 + w0 && y < y0 + h0) {
+                    if (!visitor.visit((T) objects[id])) {
+                        return false;
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                int child = nodeChildren[base + i];
+                int b = child * 4;
+                if (x + w >= nodeBounds[b] && y + h >= nodeBounds[b + 1] && x <= nodeBounds[b + 2] && y <= nodeBounds[b + 3]) {
+                    if (!visitIntersects(child, x, y, w, h, visitor)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean visitInside(int node, double x, double y, double w, double h, Visitor<? super T> visitor) {
+        int base = node * stride;
+        int count = nodeCount[node];
+        if (nodeLevel[node] == 0) {
+            for (int i = 0; i < count; i++) {
+                int id = nodeChildren[base + i];
+                int b = id * 4;
+                double x0 = entryBounds[b];
+                double y0 = entryBounds[b + 1];
+                double w0 = entryBounds[b + 2];
+                double h0 = entryBounds[b + 3];
+                if (w0 > 0 && h0 > 0 && x0 >= x && y0 >= y && x0 + w0 <= x + w && y0 + h0 <= y + h) {
+                    if (!visitor.visit((T) objects[id])) {
+                        return false;
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                int child = nodeChildren[base + i];
+                int b = child * 4;
+                if (x + w >= nodeBounds[b] && y + h >= nodeBounds[b + 1] && x <= nodeBounds[b + 2] && y <= nodeBounds[b + 3]) {
+                    if (!visitInside(child, x, y, w, h, visitor)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // ---- Entries ----
+    private int allocateEntry() {
+        int id;
+        if (freeEntry != NIL) {
+            id = freeEntry;
+            freeEntry = entryLeaf[id];
+        } else {
+            id = entryLimit++;
+            if (id == objects.length) {
+                int newLength = id * 2;
+                objects = Arrays.copyOf(objects, newLength);
+                entryBounds = Arrays.copyOf(entryBounds, newLength * 4);
+                entryLeaf = Arrays.copyOf(entryLeaf, newLength);
+            }
+        }
+        entryLeaf[id] = NIL;
+        return id;
+    }
+
+    private void setEntryBounds(int id, double x, double y, double w, double h) {
+        int b = id * 4;
+        entryBounds[b] = x;
+        entryBounds[b + 1] = y;
+        entryBounds[b + 2] = w;
+        entryBounds[b + 3] = h;
+    }
+
+    // ---- Nodes ----
+    private int allocateNode(int level) {
+        int node;
+        if (freeNode != NIL) {
+            node = freeNode;
+            freeNode = nodeParent[node];
+        } else {
+            node = nodeLimit++;
+            if (node == nodeCount.length) {
+                int newLength = node * 2;
+                nodeBounds = Arrays.copyOf(nodeBounds, newLength * 4);
+                nodeChildren = Arrays.copyOf(nodeChildren, newLength * stride);
+                nodeCount = Arrays.copyOf(nodeCount, newLength);
+                nodeLevel = Arrays.copyOf(nodeLevel, newLength);
+                nodeParent = Arrays.copyOf(nodeParent, newLength);
+            }
+        }
+        nodeCount[node] = 0;
+        nodeLevel[node] = level;
+        nodeParent[node] = NIL;
+        setEmptyBounds(node);
+        return node;
+    }
+
+    private void freeNode(int node) {
+        nodeCount[node] = 0;
+        nodeParent[node] = freeNode;
+        freeNode = node;
+    }
+
+    private void setEmptyBounds(int node) {
+        int b = node * 4;
+        nodeBounds[b] = Double.POSITIVE_INFINITY;
+        nodeBounds[b + 1] = Double.POSITIVE_INFINITY;
+        nodeBounds[b + 2] = Double.NEGATIVE_INFINITY;
+        nodeBounds[b + 3] = Double.NEGATIVE_INFINITY;
+    }
+
+    private double minX(int level, int child) {
+        if (level == 0) {
+            int b = child * 4;
+            return Math.min(entryBounds[b], entryBounds[b] + entryBounds[b + 2]);
+        }
+        return nodeBounds[child * 4];
+    }
+
+    private double minY(int level, int child) {
+        if (level == 0) {
+            int b = child * 4;
+            return Math.min(entryBounds[b + 1], entryBounds[b + 1] + entryBounds[b + 3]);
+        }
+        return nodeBounds[child * 4 + 1];
+    }
+
+    private double maxX(int level, int child) {
+        if (level == 0) {
+            int b = child * 4;
+            return Math.max(entryBounds[b], entryBounds[b] + entryBounds[b + 2]);
+        }
+        return nodeBounds[child * 4 + 2];
+    }
+
+    private double maxY(int level, int child) {
+        if (level == 0) {
+            int b = child * 4;
+            return Math.max(entryBounds[b + 1], entryBounds[b + 1] + entryBounds[b + 3]);
+        }
+        return nodeBounds[child * 4 + 3];
+    }
+
+    /**
+     * Appends a child to a node and extends the bounds of the node.
+     */
+    private void addChild(int node, int child) {
+        int level = nodeLevel[node];
+        nodeChildren[node * stride + nodeCount[node]++] = child;
+        if (level == 0) {
+            entryLeaf[child] = node;
+        } else {
+            nodeParent[child] = node;
+        }
+        int b = node * 4;
+        nodeBounds[b] = Math.min(nodeBounds[b], minX(level, child));
+        nodeBounds[b + 1] = Math.min(nodeBounds[b + 1], minY(level, child));
+        nodeBounds[b + 2] = Math.max(nodeBounds[b + 2], maxX(level, child));
+        nodeBounds[b + 3] = Math.max(nodeBounds[b + 3], maxY(level, child));
+    }
+
+    /**
+     * Removes a child from a node without updating the bounds of the node.
+     */
+    private void removeChild(int node, int child) {
+        int base = node * stride;
+        int last = base + --nodeCount[node];
+        for (int i = base; i <= last; i++) {
+            if (nodeChildren[i] == child) {
+                nodeChildren[i] = nodeChildren[last];
+                return;
+            }
+        }
+        throw new InternalError("child " + child + " not found in node " + node);
+    }
+
+    /**
+     * Recomputes the bounds of a node from its children.
+     *
+     * @return true if the bounds have changed.
+     */
+    private boolean updateBounds(int node) {
+        int level = nodeLevel[node];
+        int base = node * stride;
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0, n = nodeCount[node]; i < n; i++) {
+            int child = nodeChildren[base + i];
+            x0 = Math.min(x0, minX(level, child));
+            y0 = Math.min(y0, minY(level, child));
+            x1 = Math.max(x1, maxX(level, child));
+            y1 = Math.max(y1, maxY(level, child));
+        }
+        int b = node * 4;
+        boolean changed = nodeBounds[b] != x0 || nodeBounds[b + 1] != y0
+                || nodeBounds[b + 2] != x1 || nodeBounds[b + 3] != y1;
+        nodeBounds[b] = x0;
+        nodeBounds[b + 1] = y0;
+        nodeBounds[b + 2] = x1;
+        nodeBounds[b + 3] = y1;
+        return changed;
+    }
+
+    // ---- Insertion ----
+    /**
+     * Inserts an entry, whose bounds have already been set, into the tree.
+     */
+    private void insert(int id) {
+        if (root == NIL) {
+            root = allocateNode(0);
+        }
+        double x0 = minX(0, id);
+        double y0 = minY(0, id);
+        double x1 = maxX(0, id);
+        double y1 = maxY(0, id);
+        int node = chooseLeaf(x0, y0, x1, y1);
+        addChild(node, id);
+        for (int p = nodeParent[node]; p != NIL; p = nodeParent[p]) {
+            int b = p * 4;
+            if (nodeBounds[b] <= x0 && nodeBounds[b + 1] <= y0 && nodeBounds[b + 2] >= x1 && nodeBounds[b + 3] >= y1) {
+                break;
+            }
+            nodeBounds[b] = Math.min(nodeBounds[b], x0);
+            nodeBounds[b + 1] = Math.min(nodeBounds[b + 1], y0);
+            nodeBounds[b + 2] = Math.max(nodeBounds[b + 2], x1);
+            nodeBounds[b + 3] = Math.max(nodeBounds[b + 3], y1);
+        }
+        if (nodeCount[node] > maxChildren) {
+            split(node);
+        }
+    }
+
+    /**
+     * Descends from the root to the leaf which needs the least enlargement
+     * to include the specified bounds.
+     */
+    private int chooseLeaf(double x0, double y0, double x1, double y1) {
+        int node = root;
+        while (nodeLevel[node] > 0) {
+            int base = node * stride;
+            int best = NIL;
+            double bestEnlargement = Double.POSITIVE_INFINITY;
+            double bestArea = Double.POSITIVE_INFINITY;
+            for (int i = 0, n = nodeCount[node]; i < n; i++) {
+                int child = nodeChildren[base + i];
+                int b = child * 4;
+                double area = (nodeBounds[b + 2] - nodeBounds[b]) * (nodeBounds[b + 3] - nodeBounds[b + 1]);
+                double enlarged = (Math.max(nodeBounds[b + 2], x1) - Math.min(nodeBounds[b], x0))
+                        * (Math.max(nodeBounds[b + 3], y1) - Math.min(nodeBounds[b + 1], y0));
+                double enlargement = enlarged - area;
+                if (enlargement < bestEnlargement
+                        || enlargement == bestEnlargement && area < bestArea) {
+                    best = child;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            node = best;
+        }
+        return node;
+    }
+
+    /**
+     * Splits an overflowing node into two nodes along the axis on which
+     * the centers of its children are spread the most.
+     */
+    private void split(int node) {
+        int level = nodeLevel[node];
+        int base = node * stride;
+        int count = nodeCount[node];
+        ensureScratch(count);
+        double cx0 = Double.POSITIVE_INFINITY;
+        double cx1 = Double.NEGATIVE_INFINITY;
+        double cy0 = Double.POSITIVE_INFINITY;
+        double cy1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            int child = nodeChildren[base + i];
+            double cx = minX(level, child) + maxX(level, child);
+            double cy = minY(level, child) + maxY(level, child);
+            cx0 = Math.min(cx0, cx);
+            cx1 = Math.max(cx1, cx);
+            cy0 = Math.min(cy0, cy);
+            cy1 = Math.max(cy1, cy);
+        }
+        boolean alongX = cx1 - cx0 >= cy1 - cy0;
+        for (int i = 0; i < count; i++) {
+            int child = nodeChildren[base + i];
+            items[i] = child;
+            keys[i] = alongX ? minX(level, child) + maxX(level, child) : minY(level, child) + maxY(level, child);
+        }
+        sort(items, keys, 0, count);
+
+        int sibling = allocateNode(level);
+        int half = count / 2;
+        nodeCount[node] = 0;
+        setEmptyBounds(node);
+        for (int i = 0; i < half; i++) {
+            addChild(node, items[i]);
+        }
+        for (int i = half; i < count; i++) {
+            addChild(sibling, items[i]);
+        }
+
+        if (node == root) {
+            root = allocateNode(level + 1);
+            addChild(root, node);
+            addChild(root, sibling);
+        } else {
+            int parent = nodeParent[node];
+            addChild(parent, sibling);
+            if (nodeCount[parent] > maxChildren) {
+                split(parent);
+            }
+        }
+    }
+
+    // ---- Removal ----
+    /**
+     * Removes an entry from its leaf, and condenses the tree.
+     * Nodes which become empty are removed from the tree; underfull nodes
+     * are kept.
+     */
+    private void removeEntry(int id) {
+        int node = entryLeaf[id];
+        removeChild(node, id);
+        while (node != NIL) {
+            int parent = nodeParent[node];
+            if (nodeCount[node] == 0 && parent != NIL) {
+                removeChild(parent, node);
+                freeNode(node);
+            } else if (!updateBounds(node)) {
+                break;
+            }
+            node = parent;
+        }
+        while (nodeLevel[root] > 0 && nodeCount[root] == 1) {
+            int child = nodeChildren[root * stride];
+            freeNode(root);
+            root = child;
+            nodeParent[root] = NIL;
+        }
+        if (nodeCount[root] == 0) {
+            freeNode(root);
+            root = NIL;
+        }
+    }
+
+    // ---- Bulk loading ----
+    /**
+     * Rebuilds the tree from all entries using the Sort-Tile-Recursive
+     * algorithm.
+     */
+    private void pack() {
+        freeNode = NIL;
+        nodeLimit = 0;
+        root = NIL;
+        int n = ids.size();
+        if (n == 0) {
+            return;
+        }
+        ensureScratch(n);
+        int count = 0;
+        for (int id = 0; id < entryLimit; id++) {
+            if (objects[id] != null) {
+                items[count++] = id;
+            }
+        }
+        int level = 0;
+        while (true) {
+            count = packLevel(level, count);
+            if (count == 1) {
+                root = items[0];
+                break;
+            }
+            level++;
+        }
+    }
+
+    /**
+     * Packs the first count items of the specified level into nodes of the
+     * next level, and replaces the items by the new nodes.
+     *
+     * @return the number of new nodes.
+     */
+    private int packLevel(int level, int count) {
+        int nodes = (count + maxChildren - 1) / maxChildren;
+        int slices = (int) Math.ceil(Math.sqrt(nodes));
+        int sliceSize = slices * maxChildren;
+        for (int i = 0; i < count; i++) {
+            keys[i] = minX(level, items[i]) + maxX(level, items[i]);
+        }
+        sort(items, keys, 0, count);
+        for (int from = 0; from < count; from += sliceSize) {
+            int to = Math.min(count, from + sliceSize);
+            for (int i = from; i < to; i++) {
+                keys[i] = minY(level, items[i]) + maxY(level, items[i]);
+            }
+            sort(items, keys, from, to);
+        }
+        // We can write the new nodes into the front of the items array,
+        // because each node consumes at least one item.
+        int newCount = 0;
+        for (int from = 0; from < count; from += maxChildren) {
+            int to = Math.min(count, from + maxChildren);
+            int node = allocateNode(level);
+            for (int i = from; i < to; i++) {
+                addChild(node, items[i]);
+            }
+            items[newCount++] = node;
+        }
+        return newCount;
+    }
+
+    private void ensureScratch(int size) {
+        if (items == null || items.length < size) {
+            int length = Math.max(size, stride);
+            items = new int[length];
+            keys = new double[length];
+        }
+    }
+
+    /**
+     * Sorts the items in the range [from, to) by their keys.
+     */
+    private static void sort(int[] items, double[] keys, int from, int to) {
+        while (to - from > 16) {
+            int mid = (from + to) >>> 1;
+            double pivot = median(keys[from], keys[mid], keys[to - 1]);
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(items, keys, i++, j--);
+                }
+            }
+            // Recurse into the smaller partition, iterate over the larger one
+            if (j - from < to - i) {
+                sort(items, keys, from, j + 1);
+                from = i;
+            } else {
+                sort(items, keys, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && keys[j - 1] > keys[j]; j--) {
+                swap(items, keys, j - 1, j);
+            }
+        }
+    }
+
+    private static double median(double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(int[] items, double[] keys, int i, int j) {
+        int item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+    }
+
+    /**
+     * Collects the visited objects into a collection.
+     */
+    private static class CollectingVisitor<T> implements Visitor<T> {
+
+        private final Collection<T> result;
+
+        public CollectingVisitor(Collection<T> result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean visit(T o) {
+            result.add(o);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * @(#)SpatialIndex.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A SpatialIndex allows to quickly find objects on a two-dimensional space
+ * by their bounds.
+ * <p>
+ * Besides the {@code find...} methods, which return a new collection for
+ * each query, a spatial index provides {@code visit...} methods, which
+ * pass each matching object to a {@link Visitor}. Implementations should
+ * perform the {@code visit...} methods without allocating objects, so that
+ * they can be used on hot paths such as painting and mouse tracking.
+ * <p>
+ * The contents of the index must not be changed while a {@code visit...}
+ * method is in progress.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public interface SpatialIndex<T> {
+
+    /**
+     * Adds an object with the specified bounds to the index.
+     * If the object is already in the index, its bounds are replaced.
+     * The index does not keep a reference to the bounds object.
+     */
+    public void add(T o, Rectangle2D.Double bounds);
+
+    /**
+     * Adds all objects with the specified bounds to the index.
+     * This method is intended for populating the index with many objects
+     * at once, for example, when a file is opened.
+     *
+     * @param objects The objects.
+     * @param bounds The bounds of the objects, in the same order.
+     */
+    public void addAll(List<? extends T> objects, List<? extends Rectangle2D.Double> bounds);
+
+    /**
+     * Updates the bounds of an object in the index.
+     * If the object is not in the index, it is added.
+     * <p>
+     * Implementations should only move the object inside the index if the
+     * new bounds do not fit into the part of the index where the object is
+     * currently stored. This makes this method considerably faster than
+     * removing and adding the object when the bounds change only slightly,
+     * for example, while the object is being dragged.
+     */
+    public void update(T o, Rectangle2D.Double bounds);
+
+    /**
+     * Removes an object from the index.
+     */
+    public void remove(T o);
+
+    /**
+     * Removes all objects from the index.
+     */
+    public void clear();
+
+    /**
+     * Returns all objects whose bounds contain the specified point.
+     */
+    public Collection<T> findContains(Point2D.Double p);
+
+    /**
+     * Returns all objects whose bounds intersect the specified rectangle.
+     */
+    public Collection<T> findIntersects(Rectangle2D r);
+
+    /**
+     * Returns all objects whose bounds are inside the specified rectangle.
+     */
+    public Collection<T> findInside(Rectangle2D.Double r);
+
+    /**
+     * Visits all objects whose bounds contain the specified point.
+     *
+     * @return Returns false if the visitor stopped the traversal.
+     */
+    public boolean visitContains(double x, double y, Visitor<? super T> visitor);
+
+    /**
+     * Visits all objects whose bounds intersect the specified rectangle.
+     *
+     * @return Returns false if the visitor stopped the traversal.
+     */
+    public boolean visitIntersects(double x, double y, double w, double h, Visitor<? super T> visitor);
+
+    /**
+     * Visits all objects whose bounds are inside the specified rectangle.
+     *
+     * @return Returns false if the visitor stopped the traversal.
+     */
+    public boolean visitInside(double x, double y, double w, double h, Visitor<? super T> visitor);
+
+    /**
+     * A visitor receives the objects found by the {@code visit...} methods
+     * of a {@link SpatialIndex}.
+     */
+    public interface Visitor<T> {
+
+        /**
+         * Visits an object.
+         *
+         * @return Returns true to continue the traversal, false to stop it.
+         */
+        public boolean visit(T o);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * @(#)LRUCache.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.util;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+
+/**
+ * A bounded cache which holds its values with soft references.
+ * <p>
+ * When the cache exceeds its maximal size, the least recently used entries
+ * are evicted. Values may also be reclaimed by the garbage collector when
+ * memory is low.
+ * <p>
+ * The cache can be used to intern immutable objects, which are expensive
+ * to create, such as strokes and fonts: {@link #intern} returns the value
+ * which is already in the cache, so that equal values are shared.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class LRUCache<K, V> {
+
+    private final LinkedHashMap<K, SoftReference<V>> map;
+    private final int maxSize;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxSize The maximal number of entries.
+     */
+    public LRUCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<K, SoftReference<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, SoftReference<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the value for the specified key, or null if the cache
+     * does not contain the key.
+     */
+    public synchronized V get(K key) {
+        SoftReference<V> ref = map.get(key);
+        if (ref == null) {
+            return null;
+        }
+        V value = ref.get();
+        if (value == null) {
+            map.remove(key);
+        }
+        return value;
+    }
+
+    /**
+     * Puts the specified value into the cache, unless the cache already
+     * contains a value for the specified key.
+     *
+     * @return The value in the cache.
+     */
+    public synchronized V intern(K key, V value) {
+        V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        map.put(key, new SoftReference<V>(value));
+        return value;
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     */
+    public synchronized int size() {
+        return map.size();
+    }
+}
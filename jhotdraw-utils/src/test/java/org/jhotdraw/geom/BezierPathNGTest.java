@@ -21,6 +21,7 @@ package org.jhotdraw.geom;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
+import java.util.Random;
 import static org.testng.Assert.*;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.AfterMethod;
@@ -135,4 +136,212 @@ public class BezierPathNGTest {
             pathIterator.next();
         }
     }
+
+    private BezierPath createRandomPath(Random r, boolean isCurved) {
+        BezierPath path = new BezierPath();
+        for (int i = 0, n = 2 + r.nextInt(20); i < n; i++) {
+            double x = r.nextDouble() * 200;
+            double y = r.nextDouble() * 200;
+            if (isCurved) {
+                path.add(r.nextInt(4),
+                        new Point2D.Double(x, y),
+                        new Point2D.Double(x + r.nextDouble() * 60 - 30, y + r.nextDouble() * 60 - 30),
+                        new Point2D.Double(x + r.nextDouble() * 60 - 30, y + r.nextDouble() * 60 - 30));
+            } else {
+                path.add(x, y);
+            }
+        }
+        path.setClosed(r.nextBoolean());
+        return path;
+    }
+
+    /**
+     * Returns the distance of the point to the path flattened with
+     * FlatteningPathIterator.
+     */
+    private double distanceToOutline(BezierPath path, Point2D.Double p, double flatness) {
+        double[] coords = new double[6];
+        double prevX = 0;
+        double prevY = 0;
+        double min = Double.POSITIVE_INFINITY;
+        for (PathIterator i = path.getPathIterator(null, flatness); !i.isDone(); i.next()) {
+            int type = i.currentSegment(coords);
+            if (type == PathIterator.SEG_LINETO) {
+                min = Math.min(min, java.awt.geom.Line2D.ptSegDist(prevX, prevY, coords[0], coords[1], p.x, p.y));
+            }
+            if (type != PathIterator.SEG_CLOSE) {
+                prevX = coords[0];
+                prevY = coords[1];
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Checks that outlineContains computes the distance to the same
+     * flattened curves as FlatteningPathIterator, and that it does not hit
+     * points, which Shapes.outlineContains misses.
+     */
+    @Test
+    public void testOutlineContains() {
+        Random r = new Random(7);
+        for (int k = 0; k < 200; k++) {
+            boolean isCurved = k % 2 == 1;
+            BezierPath path = createRandomPath(r, isCurved);
+            double tolerance = 1 + r.nextDouble() * 4;
+            for (int i = 0; i < 200; i++) {
+                Point2D.Double p = new Point2D.Double(r.nextDouble() * 240 - 20, r.nextDouble() * 240 - 20);
+                boolean actual = path.outlineContains(p, tolerance);
+                double d = distanceToOutline(path, p, tolerance);
+                if (Math.abs(d - tolerance) > 1e-6) {
+                    assertEquals(actual, d <= tolerance, "path " + k + " point " + p);
+                }
+                if (!isCurved && !Shapes.outlineContains(path, p, tolerance * 2)) {
+                    assertFalse(actual, "path " + k + " point " + p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the length of the path flattened with FlatteningPathIterator.
+     */
+    private double lengthOfOutline(BezierPath path, double flatness) {
+        double[] coords = new double[6];
+        double prevX = 0;
+        double prevY = 0;
+        double len = 0;
+        for (PathIterator i = path.getPathIterator(null, flatness); !i.isDone(); i.next()) {
+            int type = i.currentSegment(coords);
+            if (type == PathIterator.SEG_LINETO) {
+                len += Point2D.distance(prevX, prevY, coords[0], coords[1]);
+            }
+            if (type != PathIterator.SEG_CLOSE) {
+                prevX = coords[0];
+                prevY = coords[1];
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Checks that the length of the path is measured along the same
+     * flattened curves as FlatteningPathIterator, and that
+     * getRelativePositionOnPath is the inverse of getPointOnPath.
+     */
+    @Test
+    public void testLengthOfPath() {
+        Random r = new Random(11);
+        for (int k = 0; k < 100; k++) {
+            BezierPath path = createRandomPath(r, k % 2 == 1);
+            double flatness = 0.5 + r.nextDouble();
+            assertEquals(path.getLengthOfPath(flatness), lengthOfOutline(path, flatness), 1e-9, "path " + k);
+            for (int i = 0; i < 20; i++) {
+                double relative = 0.01 + r.nextDouble() * 0.98;
+                Point2D.Double p = path.getPointOnPath(relative, flatness);
+                assertEquals(distanceToOutline(path, p, flatness), 0d, 1e-4, "path " + k + " point " + p);
+                double actual = path.getRelativePositionOnPath(p, flatness);
+                // The point may also be near an earlier part of the path
+                assertTrue(actual >= 0 && actual <= relative + 1e-9, "path " + k + " relative " + relative);
+            }
+        }
+        BezierPath line = new BezierPath();
+        line.add(10, 10);
+        line.add(10, 30);
+        line.add(30, 30);
+        assertEquals(line.getLengthOfPath(1), 40d, 1e-9);
+        assertEquals(line.getPointOnPath(0.25, 1), new Point2D.Double(10, 20));
+        assertEquals(line.getPointOnPath(0.75, 1), new Point2D.Double(20, 30));
+        assertEquals(line.getRelativePositionOnPath(new Point2D.Double(20, 31), 1), 0.75, 1e-9);
+        assertEquals(line.getRelativePositionOnPath(new Point2D.Double(20, 40), 1), -1d);
+        line.add(30, 50);
+        assertEquals(line.getLengthOfPath(1), 60d, 1e-9);
+    }
+
+    private void assertSameSegments(BezierPath actual, BezierPath expected, String message) {
+        PathIterator i1 = actual.getPathIterator(null);
+        PathIterator i2 = expected.getPathIterator(null);
+        double[] c1 = new double[6];
+        double[] c2 = new double[6];
+        for (; !i1.isDone() && !i2.isDone(); i1.next(), i2.next()) {
+            assertEquals(i1.currentSegment(c1), i2.currentSegment(c2), message);
+            assertEquals(c1, c2, message);
+        }
+        assertEquals(i1.isDone(), i2.isDone(), message);
+    }
+
+    /**
+     * Checks that a compact path has the same geometry as a path with node
+     * objects, and that reading it does not turn compact mode off.
+     */
+    @Test
+    public void testCompact() throws Exception {
+        Random r = new Random(13);
+        for (int k = 0; k < 100; k++) {
+            BezierPath path = createRandomPath(r, k % 2 == 1);
+            BezierPath compact = path.clone();
+            compact.setCompact(true);
+            assertTrue(compact.isCompact());
+            assertEquals(compact.size(), path.size());
+            assertSameSegments(compact, path, "path " + k);
+            assertEquals(compact.getBounds2D(), path.getBounds2D(), "path " + k);
+            assertEquals(compact.getLengthOfPath(1), path.getLengthOfPath(1), "path " + k);
+            assertEquals(compact.toPolygonArray(), path.toPolygonArray(), "path " + k);
+
+            java.awt.geom.AffineTransform tx = new java.awt.geom.AffineTransform(1.5, 0.2, -0.3, 0.8, 10, 20);
+            compact.transform(tx);
+            path.transform(tx);
+            assertSameSegments(compact, path, "path " + k);
+            BezierPath clone = compact.clone();
+            assertTrue(clone.isCompact());
+            assertSameSegments(clone, path, "path " + k);
+            assertTrue(compact.isCompact());
+
+            // List access turns compact mode off
+            assertEquals(compact.get(0), path.get(0));
+            assertFalse(compact.isCompact());
+            assertEquals(compact, path);
+        }
+
+        // Appending nodes to a compact path
+        BezierPath path = new BezierPath();
+        BezierPath compact = new BezierPath();
+        compact.setCompact(true);
+        for (BezierPath p : new BezierPath[]{path, compact}) {
+            p.moveTo(10, 10);
+            p.lineTo(50, 10);
+            p.quadTo(70, 30, 50, 50);
+            p.curveTo(40, 60, 20, 60, 10, 50);
+            p.arcTo(20, 20, 0, false, true, 10, 10);
+            p.setClosed(true);
+        }
+        assertTrue(compact.isCompact());
+        assertSameSegments(compact, path, "appended");
+
+        // Comparing does not turn compact mode off
+        assertTrue(compact.equals(path));
+        assertTrue(path.equals(compact));
+        assertEquals(compact.hashCode(), path.hashCode());
+        assertTrue(compact.isCompact());
+        BezierPath other = compact.clone();
+        other.lineTo(0, 0);
+        assertFalse(compact.equals(other));
+        assertTrue(other.isCompact());
+        for (int i = 0; i < path.size(); i++) {
+            assertEquals(compact.getNode(i, new BezierPath.Node()).keepColinear, path.get(i).keepColinear, "node " + i);
+        }
+        assertEquals(compact.remove(compact.size() - 1), path.remove(path.size() - 1));
+        assertTrue(compact.isCompact());
+
+        // Serialization
+        java.io.ByteArrayOutputStream buf = new java.io.ByteArrayOutputStream();
+        try (java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(buf)) {
+            out.writeObject(compact);
+        }
+        BezierPath read;
+        try (java.io.ObjectInputStream in = new java.io.ObjectInputStream(new java.io.ByteArrayInputStream(buf.toByteArray()))) {
+            read = (BezierPath) in.readObject();
+        }
+        assertSameSegments(read, path, "serialized");
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Compares the results of {@link RTree} with a brute force search.
+ *
+ * @author Werner Randelshofer
+ */
+public class RTreeNGTest {
+
+    private final Random random = new Random(4711);
+
+    public RTreeNGTest() {
+    }
+
+    private Rectangle2D.Double randomRect() {
+        return new Rectangle2D.Double(
+                random.nextDouble() * 1000 - 100, random.nextDouble() * 1000 - 100,
+                random.nextDouble() * 50, random.nextDouble() * 50);
+    }
+
+    private void assertSameResults(RTree<Integer> tree, Map<Integer, Rectangle2D.Double> expected) {
+        assertEquals(tree.size(), expected.size());
+        for (int k = 0; k < 50; k++) {
+            Rectangle2D.Double r = randomRect();
+            r.width *= 4;
+            r.height *= 4;
+            Point2D.Double p = new Point2D.Double(r.x, r.y);
+            Set<Integer> intersects = new HashSet<>();
+            Set<Integer> inside = new HashSet<>();
+            Set<Integer> contains = new HashSet<>();
+            for (Map.Entry<Integer, Rectangle2D.Double> entry : expected.entrySet()) {
+                if (entry.getValue().intersects(r)) {
+                    intersects.add(entry.getKey());
+                }
+                if (r.contains(entry.getValue())) {
+                    inside.add(entry.getKey());
+                }
+                if (entry.getValue().contains(p)) {
+                    contains.add(entry.getKey());
+                }
+            }
+            assertEquals(new HashSet<>(tree.findIntersects(r)), intersects);
+            assertEquals(new HashSet<>(tree.findInside(r)), inside);
+            assertEquals(new HashSet<>(tree.findContains(p)), contains);
+        }
+    }
+
+    @Test
+    public void testAddRemove() {
+        RTree<Integer> tree = new RTree<>(4);
+        Map<Integer, Rectangle2D.Double> expected = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            Rectangle2D.Double r = randomRect();
+            tree.add(i, r);
+            expected.put(i, r);
+        }
+        assertSameResults(tree, expected);
+        for (int i = 0; i < 500; i += 3) {
+            tree.remove(i);
+            expected.remove(i);
+        }
+        assertSameResults(tree, expected);
+        for (int i = 1; i < 500; i += 3) {
+            Rectangle2D.Double r = randomRect();
+            tree.add(i, r);
+            expected.put(i, r);
+        }
+        assertSameResults(tree, expected);
+        for (int i = 0; i < 500; i++) {
+            tree.remove(i);
+        }
+        assertEquals(tree.size(), 0);
+        assertTrue(tree.findIntersects(new Rectangle2D.Double(-1000, -1000, 3000, 3000)).isEmpty());
+    }
+
+    @Test
+    public void testBulkLoad() {
+        RTree<Integer> tree = new RTree<>();
+        Map<Integer, Rectangle2D.Double> expected = new HashMap<>();
+        ArrayList<Integer> objects = new ArrayList<>();
+        ArrayList<Rectangle2D.Double> bounds = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Rectangle2D.Double r = randomRect();
+            objects.add(i);
+            bounds.add(r);
+            expected.put(i, r);
+        }
+        tree.addAll(objects, bounds);
+        assertSameResults(tree, expected);
+        for (int i = 0; i < 2000; i += 2) {
+            tree.remove(i);
+            expected.remove(i);
+        }
+        assertSameResults(tree, expected);
+    }
+
+    @Test
+    public void testUpdate() {
+        RTree<Integer> tree = new RTree<>(4);
+        Map<Integer, Rectangle2D.Double> expected = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            Rectangle2D.Double r = randomRect();
+            tree.add(i, r);
+            expected.put(i, r);
+        }
+        for (int step = 0; step < 20; step++) {
+            for (int i = step % 2; i < 500; i += 2) {
+                Rectangle2D.Double r = expected.get(i);
+                r = new Rectangle2D.Double(r.x + random.nextDouble() * 20 - 10, r.y + random.nextDouble() * 20 - 10, r.width, r.height);
+                tree.update(i, r);
+                expected.put(i, r);
+            }
+        }
+        assertSameResults(tree, expected);
+    }
+
+    @Test
+    public void testVisitorCanStopTraversal() {
+        RTree<Integer> tree = new RTree<>(4);
+        for (int i = 0; i < 100; i++) {
+            tree.add(i, new Rectangle2D.Double(0, 0, 10, 10));
+        }
+        final int[] count = new int[1];
+        boolean completed = tree.visitContains(5, 5, new SpatialIndex.Visitor<Integer>() {
+            @Override
+            public boolean visit(Integer o) {
+                return ++count[0] < 10;
+            }
+        });
+        assertFalse(completed);
+        assertEquals(count[0], 10);
+    }
+}
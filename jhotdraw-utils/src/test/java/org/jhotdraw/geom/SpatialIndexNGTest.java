@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import static org.testng.Assert.*;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that all implementations of {@link SpatialIndex} fulfill its
+ * contract.
+ *
+ * @author Werner Randelshofer
+ */
+public class SpatialIndexNGTest {
+
+    public SpatialIndexNGTest() {
+    }
+
+    @DataProvider
+    public Object[][] indexes() {
+        return new Object[][]{
+            {new RTree<Integer>(4)},
+            {new QuadTree<Integer>()}
+        };
+    }
+
+    private static Rectangle2D.Double randomRect(Random random) {
+        return new Rectangle2D.Double(
+                random.nextDouble() * 1000 - 100, random.nextDouble() * 1000 - 100,
+                random.nextDouble() * 50, random.nextDouble() * 50);
+    }
+
+    private static void assertSameResults(SpatialIndex<Integer> index, Map<Integer, Rectangle2D.Double> expected, Random random) {
+        for (int k = 0; k < 50; k++) {
+            Rectangle2D.Double r = randomRect(random);
+            r.width *= 4;
+            r.height *= 4;
+            Point2D.Double p = new Point2D.Double(r.x, r.y);
+            Set<Integer> intersects = new HashSet<>();
+            Set<Integer> inside = new HashSet<>();
+            Set<Integer> contains = new HashSet<>();
+            for (Map.Entry<Integer, Rectangle2D.Double> entry : expected.entrySet()) {
+                if (entry.getValue().intersects(r)) {
+                    intersects.add(entry.getKey());
+                }
+                if (r.contains(entry.getValue())) {
+                    inside.add(entry.getKey());
+                }
+                if (entry.getValue().contains(p)) {
+                    contains.add(entry.getKey());
+                }
+            }
+            assertEquals(new HashSet<>(index.findIntersects(r)), intersects);
+            assertEquals(new HashSet<>(index.findInside(r)), inside);
+            assertEquals(new HashSet<>(index.findContains(p)), contains);
+        }
+    }
+
+    @Test(dataProvider = "indexes")
+    public void testAddReplacesBounds(SpatialIndex<Integer> index) {
+        index.add(1, new Rectangle2D.Double(10, 10, 10, 10));
+        index.add(1, new Rectangle2D.Double(500, 400, 10, 10));
+        assertTrue(index.findContains(new Point2D.Double(15, 15)).isEmpty());
+        assertEquals(index.findContains(new Point2D.Double(505, 405)).size(), 1);
+
+        // Bounds outside of the current area of the index
+        index.add(1, new Rectangle2D.Double(-5000, -5000, 10, 10));
+        assertTrue(index.findContains(new Point2D.Double(505, 405)).isEmpty());
+        index.add(1, new Rectangle2D.Double(10, 10, 10, 10));
+        assertTrue(index.findContains(new Point2D.Double(-4995, -4995)).isEmpty());
+        assertEquals(index.findContains(new Point2D.Double(15, 15)).size(), 1);
+
+        index.remove(1);
+        assertTrue(index.findIntersects(new Rectangle2D.Double(-10000, -10000, 20000, 20000)).isEmpty());
+    }
+
+    @Test(dataProvider = "indexes")
+    public void testAddUpdateRemove(SpatialIndex<Integer> index) {
+        Random random = new Random(4711);
+        Map<Integer, Rectangle2D.Double> expected = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            Rectangle2D.Double r = randomRect(random);
+            index.add(i, r);
+            expected.put(i, r);
+        }
+        assertSameResults(index, expected, random);
+        for (int i = 0; i < 500; i += 3) {
+            index.remove(i);
+            expected.remove(i);
+        }
+        assertSameResults(index, expected, random);
+        for (int i = 1; i < 500; i += 3) {
+            Rectangle2D.Double r = randomRect(random);
+            index.add(i, r);
+            expected.put(i, r);
+        }
+        assertSameResults(index, expected, random);
+        for (int i = 2; i < 500; i += 3) {
+            Rectangle2D.Double r = randomRect(random);
+            index.update(i, r);
+            expected.put(i, r);
+        }
+        assertSameResults(index, expected, random);
+        index.clear();
+        assertTrue(index.findIntersects(new Rectangle2D.Double(-1000, -1000, 3000, 3000)).isEmpty());
+    }
+}
@@ -46,6 +46,14 @@ public class JavaxDOMInput implements DOMInput {
      * The factory used to create objects from XML tag names.
      */
     private DOMFactory factory;
+    /**
+     * The element which was last opened by index, its parent and its index.
+     * This is used to open the next element without scanning the child
+     * nodes of the parent from the beginning.
+     */
+    private Node cursorParent;
+    private Node cursorNode;
+    private int cursorIndex;
     protected static DocumentBuilder documentBuilder;
 
     /**
@@ -225,12 +233,17 @@ public class JavaxDOMInput implements DOMInput {
     @Override
     public void openElement(int index) {
         int count = 0;
-        NodeList list = current.getChildNodes();
-        int len = list.getLength();
-        for (int i = 0; i < len; i++) {
-            Node node = list.item(i);
+        Node node = current.getFirstChild();
+        if (cursorParent == current && cursorIndex <= index) {
+            count = cursorIndex;
+            node = cursorNode;
+        }
+        for (; node != null; node = node.getNextSibling()) {
             if ((node instanceof Element)) {
                 if (count++ == index) {
+                    cursorParent = current;
+                    cursorNode = node;
+                    cursorIndex = index;
                     current = node;
                     return;
                 }
@@ -0,0 +1,753 @@
+/*
+ * @(#)StreamingDOMInput.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.xml;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * DOMInput which reads the XML document with a {@code XMLStreamReader},
+ * without building a {@code org.w3c.dom.Document}.
+ * <p>
+ * The document is read twice. The first pass spools the document into a
+ * temporary file and records the structure of the elements in a few
+ * arrays of integers: the number of child elements, the first child, the
+ * next sibling and the tag name of each element. The second pass reads the
+ * attributes and the text of the elements in a single forward pass.
+ * <p>
+ * An element is only held in memory, from the time when the second pass
+ * reaches it, until it has been read with {@link #readObject}, or until its
+ * parent is closed. Elements, which are skipped by {@code openElement},
+ * are held in memory so that they can be opened later. Each element can only
+ * be read once with {@code readObject}.
+ * <p>
+ * Opening the next child element and counting the child elements take
+ * constant time. Therefore, reading a composite with n children takes
+ * linear time.
+ * <p>
+ * Whitespace between child elements is ignored.
+ * <p>
+ * Design pattern:<br>
+ * Name: Adapter.<br>
+ * Role: Adapter.<br>
+ * Partners: {@link javax.xml.stream.XMLStreamReader} as Adaptee.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class StreamingDOMInput implements DOMInput, Closeable {
+
+    /**
+     * This map is used to unmarshall references to objects to
+     * the XML DOM. A key in this map is a String representing a marshalled
+     * reference. A value in this map is an unmarshalled Object.
+     */
+    private HashMap<String, Object> idobjects = new HashMap<String, Object>();
+    /**
+     * The factory used to create objects from XML tag names.
+     */
+    private DOMFactory factory;
+    /**
+     * Interned tag and attribute names.
+     */
+    private HashMap<String, String> names = new HashMap<String, String>();
+    /**
+     * Maps tag names to the indices used in the {@code tagIndex} array.
+     */
+    private HashMap<String, Integer> tagIndices = new HashMap<String, Integer>();
+    /**
+     * The structure of the document recorded in the first pass. Elements
+     * are numbered in document order. Number 0 is the document itself.
+     */
+    private int[] childCount = new int[256];
+    private int[] firstChild = new int[256];
+    private int[] nextSibling = new int[256];
+    private int[] tagIndex = new int[256];
+    /**
+     * The temporary file, which holds the document for the second pass.
+     */
+    private File spoolFile;
+    private InputStream spoolIn;
+    private XMLStreamReader reader;
+    /**
+     * The number of the next element in the second pass.
+     */
+    private int nextElement = 1;
+    /**
+     * The nodes which have been started but not ended in the second pass.
+     */
+    private ArrayList<Node> openNodes = new ArrayList<Node>();
+    private Node document;
+    private Node current;
+
+    /**
+     * An element of the document.
+     */
+    private static class Node {
+
+        private final Node parent;
+        private final String tagName;
+        private final int number;
+        /**
+         * Alternating attribute names and values.
+         */
+        private final String[] attributes;
+        /**
+         * The child elements. Elements which have been read by readObject
+         * are replaced by null.
+         */
+        private ArrayList<Node> children;
+        private StringBuilder text;
+        private boolean isComplete;
+        private boolean isReleased;
+
+        public Node(Node parent, String tagName, int number, String[] attributes) {
+            this.parent = parent;
+            this.tagName = tagName;
+            this.number = number;
+            this.attributes = attributes;
+        }
+
+        public int getChildCount() {
+            return children == null ? 0 : children.size();
+        }
+
+        public String getAttribute(String name) {
+            for (int i = 0; i < attributes.length; i += 2) {
+                if (attributes[i].equals(name)) {
+                    return attributes[i + 1];
+                }
+            }
+            return null;
+        }
+
+        public boolean isReleased() {
+            for (Node n = this; n != null; n = n.parent) {
+                if (n.isReleased) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public StreamingDOMInput(DOMFactory factory, InputStream in) throws IOException {
+        this.factory = factory;
+        spoolFile = File.createTempFile("jhotdraw", ".xml");
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(spoolFile))) {
+                scan(createInputFactory().createXMLStreamReader(new TeeInputStream(in, out)));
+            }
+            spoolIn = new BufferedInputStream(new FileInputStream(spoolFile));
+            reader = createInputFactory().createXMLStreamReader(spoolIn);
+        } catch (XMLStreamException ex) {
+            close();
+            throw new IOException(ex.getMessage(), ex);
+        } catch (IOException | RuntimeException ex) {
+            close();
+            throw ex;
+        }
+        start();
+    }
+
+    public StreamingDOMInput(DOMFactory factory, Reader in) throws IOException {
+        this.factory = factory;
+        spoolFile = File.createTempFile("jhotdraw", ".xml");
+        try {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spoolFile), StandardCharsets.UTF_8))) {
+                scan(createInputFactory().createXMLStreamReader(new TeeReader(in, out)));
+            }
+            spoolIn = new BufferedInputStream(new FileInputStream(spoolFile));
+            reader = createInputFactory().createXMLStreamReader(new InputStreamReader(spoolIn, StandardCharsets.UTF_8));
+        } catch (XMLStreamException ex) {
+            close();
+            throw new IOException(ex.getMessage(), ex);
+        } catch (IOException | RuntimeException ex) {
+            close();
+            throw ex;
+        }
+        start();
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        f.setProperty(XMLInputFactory.IS_COALESCING, true);
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return f;
+    }
+
+    private void start() {
+        // The temporary file is not needed anymore, once it is open.
+        // On some platforms it can only be deleted, when it has been closed.
+        if (!spoolFile.delete()) {
+            spoolFile.deleteOnExit();
+        } else {
+            spoolFile = null;
+        }
+        document = new Node(null, null, 0, new String[0]);
+        document.children = new ArrayList<Node>(1);
+        openNodes.add(document);
+        current = document;
+    }
+
+    /**
+     * Closes the input and deletes the temporary file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            reader = null;
+            if (spoolIn != null) {
+                spoolIn.close();
+                spoolIn = null;
+            }
+            if (spoolFile != null) {
+                spoolFile.delete();
+                spoolFile = null;
+            }
+        }
+    }
+
+    /**
+     * Records the structure of the document.
+     */
+    private void scan(XMLStreamReader r) throws XMLStreamException {
+        int[] stack = new int[16];
+        int[] lastChild = new int[16];
+        int depth = 0;
+        int count = 0;
+        stack[0] = 0;
+        lastChild[0] = 0;
+        while (r.hasNext()) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                int element = ++count;
+                if (element >= childCount.length) {
+                    int n = childCount.length * 2;
+                    childCount = Arrays.copyOf(childCount, n);
+                    firstChild = Arrays.copyOf(firstChild, n);
+                    nextSibling = Arrays.copyOf(nextSibling, n);
+                    tagIndex = Arrays.copyOf(tagIndex, n);
+                }
+                String tagName = getTagName(r);
+                Integer index = tagIndices.get(tagName);
+                if (index == null) {
+                    index = tagIndices.size();
+                    tagIndices.put(tagName, index);
+                }
+                tagIndex[element] = index;
+                int parent = stack[depth];
+                childCount[parent]++;
+                if (lastChild[depth] == 0) {
+                    firstChild[parent] = element;
+                } else {
+                    nextSibling[lastChild[depth]] = element;
+                }
+                lastChild[depth] = element;
+                if (++depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                    lastChild = Arrays.copyOf(lastChild, depth * 2);
+                }
+                stack[depth] = element;
+                lastChild[depth] = 0;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        r.close();
+    }
+
+    private String intern(String name) {
+        String interned = names.get(name);
+        if (interned == null) {
+            names.put(name, name);
+            interned = name;
+        }
+        return interned;
+    }
+
+    private String getTagName(XMLStreamReader r) {
+        String prefix = r.getPrefix();
+        String localName = r.getLocalName();
+        return intern((prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName);
+    }
+
+    /**
+     * Reads the next child element of the specified node in the second pass.
+     * Returns null, if the node has no more child elements.
+     */
+    private Node parseNext(Node node) throws IOException {
+        if (node.isComplete) {
+            return null;
+        }
+        while (openNodes.get(openNodes.size() - 1) != node) {
+            finish(openNodes.get(openNodes.size() - 1));
+        }
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        Node child = new Node(node, getTagName(reader), nextElement++, readAttributes());
+                        if (node.children == null) {
+                            node.children = new ArrayList<Node>();
+                        }
+                        node.children.add(child);
+                        if (node.text != null && isWhitespace(node.text)) {
+                            node.text = null;
+                        }
+                        openNodes.add(child);
+                        return child;
+                    case XMLStreamConstants.END_ELEMENT:
+                        node.isComplete = true;
+                        openNodes.remove(openNodes.size() - 1);
+                        return null;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (node.getChildCount() == 0 || !reader.isWhiteSpace()) {
+                            if (node.text == null) {
+                                node.text = new StringBuilder();
+                            }
+                            node.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+                    case XMLStreamConstants.END_DOCUMENT:
+                        node.isComplete = true;
+                        openNodes.remove(openNodes.size() - 1);
+                        close();
+                        return null;
+                    default:
+                        break;
+                }
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        node.isComplete = true;
+        openNodes.remove(openNodes.size() - 1);
+        return null;
+    }
+
+    /**
+     * Reads the remainder of the specified open node. If the node has been
+     * released, its remainder is skipped.
+     */
+    private void finish(Node node) throws IOException {
+        if (node.isReleased()) {
+            try {
+                int depth = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        nextElement++;
+                        depth++;
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        if (depth-- == 0) {
+                            break;
+                        }
+                    }
+                }
+            } catch (XMLStreamException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+            node.isComplete = true;
+            openNodes.remove(openNodes.size() - 1);
+        } else {
+            while (!node.isComplete) {
+                parseNext(node);
+            }
+        }
+    }
+
+    private String[] readAttributes() {
+        int nsCount = reader.getNamespaceCount();
+        int attrCount = reader.getAttributeCount();
+        String[] attributes = new String[(nsCount + attrCount) * 2];
+        int j = 0;
+        for (int i = 0; i < nsCount; i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            attributes[j++] = intern((prefix == null || prefix.isEmpty()) ? "xmlns" : "xmlns:" + prefix);
+            attributes[j++] = reader.getNamespaceURI(i);
+        }
+        for (int i = 0; i < attrCount; i++) {
+            String prefix = reader.getAttributePrefix(i);
+            String localName = reader.getAttributeLocalName(i);
+            attributes[j++] = intern((prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName);
+            attributes[j++] = reader.getAttributeValue(i);
+        }
+        return attributes;
+    }
+
+    private static boolean isWhitespace(CharSequence s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            if (!Character.isWhitespace(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the child element with the specified index of the current
+     * node, reading it if necessary.
+     */
+    private Node getChild(int index) throws IOException {
+        if (index < 0 || index >= childCount[current.number]) {
+            throw new IllegalArgumentException("no such child [" + index + "]");
+        }
+        while (current.getChildCount() <= index) {
+            if (parseNext(current) == null) {
+                throw new IOException("Unexpected end of element: <" + current.tagName + ">");
+            }
+        }
+        Node child = current.children.get(index);
+        if (child == null) {
+            throw new IOException("Element has already been read: <" + current.tagName + ">[" + index + "]");
+        }
+        return child;
+    }
+
+    /**
+     * Returns the index of the child element with the specified name and
+     * index, or -1 if there is no such child.
+     */
+    private int indexOf(String tagName, int index) {
+        Integer tag = tagIndices.get(tagName);
+        if (tag == null) {
+            return -1;
+        }
+        int count = 0;
+        int i = 0;
+        for (int child = firstChild[current.number]; child != 0 && i < childCount[current.number]; child = nextSibling[child], i++) {
+            if (tagIndex[child] == tag && count++ == index) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the tag name of the current element.
+     */
+    @Override
+    public String getTagName() {
+        return current.tagName;
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public String getAttribute(String name, String defaultValue) {
+        String value = current.getAttribute(name);
+        return (value == null || value.length() == 0) ? defaultValue : value;
+    }
+
+    /**
+     * Gets the text of the current element of the DOM Document.
+     */
+    @Override
+    public String getText() {
+        return getText(null);
+    }
+
+    /**
+     * Gets the text of the current element of the DOM Document.
+     */
+    @Override
+    public String getText(String defaultValue) {
+        try {
+            finish(current);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+        if (current.text == null && current.getChildCount() == 0) {
+            return defaultValue;
+        }
+        StringBuilder buf = new StringBuilder();
+        getText(current, buf);
+        return buf.toString();
+    }
+
+    private static void getText(Node n, StringBuilder buf) {
+        if (n.text != null) {
+            buf.append(n.text);
+        }
+        if (n.children != null) {
+            for (Node child : n.children) {
+                if (child != null) {
+                    getText(child, buf);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document and of
+     * all parent DOM elements.
+     */
+    @Override
+    public java.util.List<String> getInheritedAttribute(String name) {
+        LinkedList<String> values = new LinkedList<String>();
+        for (Node node = current; node != document; node = node.parent) {
+            String value = node.getAttribute(name);
+            values.addFirst(value == null ? "" : value);
+        }
+        return values;
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public int getAttribute(String name, int defaultValue) {
+        String value = current.getAttribute(name);
+        return (value == null || value.length() == 0) ? defaultValue : Long.decode(value).intValue();
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public double getAttribute(String name, double defaultValue) {
+        String value = current.getAttribute(name);
+        return (value == null || value.length() == 0) ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Gets an attribute of the current element of the DOM Document.
+     */
+    @Override
+    public boolean getAttribute(String name, boolean defaultValue) {
+        String value = current.getAttribute(name);
+        return (value == null || value.length() == 0) ? defaultValue : Boolean.valueOf(value).booleanValue();
+    }
+
+    /**
+     * Returns the number of child elements of the current element.
+     */
+    @Override
+    public int getElementCount() {
+        return childCount[current.number];
+    }
+
+    /**
+     * Returns the number of child elements with the specified tag name
+     * of the current element.
+     */
+    @Override
+    public int getElementCount(String tagName) {
+        Integer tag = tagIndices.get(tagName);
+        if (tag == null) {
+            return 0;
+        }
+        int count = 0;
+        int i = 0;
+        for (int child = firstChild[current.number]; child != 0 && i < childCount[current.number]; child = nextSibling[child], i++) {
+            if (tagIndex[child] == tag) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Opens the element with the specified index and makes it the current node.
+     */
+    @Override
+    public void openElement(int index) throws IOException {
+        current = getChild(index);
+    }
+
+    /**
+     * Opens the first element with the specified name and makes it the
+     * current node.
+     */
+    @Override
+    public void openElement(String tagName) throws IOException {
+        int i = indexOf(tagName, 0);
+        if (i == -1) {
+            throw new IllegalArgumentException("element not found:" + tagName);
+        }
+        current = getChild(i);
+    }
+
+    /**
+     * Opens the element with the specified name and index and makes it the
+     * current node.
+     */
+    @Override
+    public void openElement(String tagName, int index) throws IOException {
+        int i = indexOf(tagName, index);
+        if (i == -1) {
+            throw new IllegalArgumentException("no such child " + tagName + "[" + index + "]");
+        }
+        current = getChild(i);
+    }
+
+    /**
+     * Closes the current element of the DOM Document.
+     * The parent of the current element becomes the current element.
+     */
+    @Override
+    public void closeElement() {
+        current = current.parent;
+    }
+
+    /**
+     * Reads an object from the current element.
+     */
+    @Override
+    public Object readObject() throws IOException {
+        return readObject(0);
+    }
+
+    /**
+     * Reads an object from the current element.
+     * The element is released after it has been read.
+     */
+    @Override
+    public Object readObject(int index) throws IOException {
+        openElement(index);
+        Node node = current;
+        Object o;
+        String ref = getAttribute("ref", null);
+        String id = getAttribute("id", null);
+        if (ref != null && id != null) {
+            throw new IOException("Element has both an id and a ref attribute: <" + getTagName() + " id=" + id + " ref=" + ref + ">");
+        }
+        if (id != null && idobjects.containsKey(id)) {
+            throw new IOException("Duplicate id attribute: <" + getTagName() + " id=" + id + ">");
+        }
+        if (ref != null && !idobjects.containsKey(ref)) {
+            throw new IOException("Illegal ref attribute value: <" + getTagName() + " ref=" + ref + ">");
+        }
+        // Keep track of objects which have an ID
+        if (ref != null) {
+            o = idobjects.get(ref);
+        } else {
+            o = factory.read(this);
+            if (id != null) {
+                idobjects.put(id, o);
+            }
+            if (o instanceof DOMStorable) {
+                ((DOMStorable) o).read(this);
+            }
+        }
+        current = node;
+        closeElement();
+        node.isReleased = true;
+        current.children.set(index, null);
+        return o;
+    }
+
+    /**
+     * Copies the bytes read from an input stream to an output stream.
+     */
+    private static class TeeInputStream extends FilterInputStream {
+
+        private final OutputStream out;
+
+        public TeeInputStream(InputStream in, OutputStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                out.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = in.read(b, off, len);
+            if (count > 0) {
+                out.write(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // The input stream is closed by the caller
+        }
+    }
+
+    /**
+     * Copies the characters read from a reader to a writer.
+     */
+    private static class TeeReader extends FilterReader {
+
+        private final Writer out;
+
+        public TeeReader(Reader in, Writer out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = in.read();
+            if (c != -1) {
+                out.write(c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int count = in.read(cbuf, off, len);
+            if (count > 0) {
+                out.write(cbuf, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // The reader is closed by the caller
+        }
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * @(#)StreamingDOMOutput.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.xml;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * DOMOutput which writes the XML document with a {@code XMLStreamWriter},
+ * without building a {@code org.w3c.dom.Document}.
+ * <p>
+ * Like with {@link JavaxDOMOutput}, attributes can be added to the current
+ * element at any time, also after child elements, text or comments have been
+ * added to it. Therefore the elements are held in small lightweight nodes
+ * until the outermost element is closed. Then they are written to the
+ * underlying stream. The document must be finished by calling
+ * {@link #close}.
+ * <p>
+ * If pretty printing is turned on, each element is written on a new line
+ * and indented by its depth in the document. Elements which contain text
+ * are written on a single line.
+ * <p>
+ * Design pattern:<br>
+ * Name: Adapter.<br>
+ * Role: Adapter.<br>
+ * Partners: {@link javax.xml.stream.XMLStreamWriter} as Adaptee.
+ *
+ * @author Werner Randelshofer
+ * @version $Id$
+ */
+public class StreamingDOMOutput implements DOMOutput, Closeable {
+
+    /**
+     * The doctype of the XML document.
+     */
+    private String doctype;
+    /**
+     * This map is used to marshall references to objects to
+     * the XML DOM. A key in this map is a Java Object, a value in this map
+     * is String representing a marshalled reference to that object.
+     */
+    private HashMap<Object, String> objectids = new HashMap<Object, String>();
+    /**
+     * This map is used to cache prototype objects.
+     */
+    private HashMap<String, Object> prototypes;
+    /**
+     * The factory used to create objects.
+     */
+    private DOMFactory factory;
+    private XMLStreamWriter writer;
+    private Flushable out;
+    private boolean isPrettyPrint;
+    private boolean isDocumentStarted;
+    /**
+     * The open elements. The last element is the current element.
+     */
+    private ArrayList<ElementNode> openElements = new ArrayList<ElementNode>();
+
+    /**
+     * An element which has not been written yet.
+     */
+    private static class ElementNode {
+
+        private final String tagName;
+        /**
+         * The attributes as alternating names and values.
+         */
+        private final ArrayList<String> attributes = new ArrayList<String>();
+        /**
+         * The child elements, texts and comments. Texts are held as
+         * {@code String}s, comments as {@code Comment}s.
+         */
+        private final ArrayList<Object> content = new ArrayList<Object>();
+        private boolean hasElements;
+        private boolean hasText;
+
+        public ElementNode(String tagName) {
+            this.tagName = tagName;
+        }
+    }
+
+    /**
+     * A comment which has not been written yet.
+     */
+    private static class Comment {
+
+        private final String text;
+
+        public Comment(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * Creates a new instance which writes UTF-8 encoded XML to the
+     * specified output stream.
+     */
+    public StreamingDOMOutput(DOMFactory factory, OutputStream out) throws IOException {
+        this(factory, out, false);
+    }
+
+    /**
+     * Creates a new instance which writes UTF-8 encoded XML to the
+     * specified output stream.
+     *
+     * @param isPrettyPrint Whether the elements are indented.
+     */
+    public StreamingDOMOutput(DOMFactory factory, OutputStream out, boolean isPrettyPrint) throws IOException {
+        this.factory = factory;
+        this.isPrettyPrint = isPrettyPrint;
+        this.out = out;
+        try {
+            writer = XMLOutputFactory.newInstance().createXMLStreamWriter(
+                    new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Creates a new instance which writes XML to the specified writer.
+     */
+    public StreamingDOMOutput(DOMFactory factory, Writer out) throws IOException {
+        this(factory, out, false);
+    }
+
+    /**
+     * Creates a new instance which writes XML to the specified writer.
+     *
+     * @param isPrettyPrint Whether the elements are indented.
+     */
+    public StreamingDOMOutput(DOMFactory factory, Writer out, boolean isPrettyPrint) throws IOException {
+        this.factory = factory;
+        this.isPrettyPrint = isPrettyPrint;
+        this.out = out;
+        try {
+            writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Finishes the document and flushes the underlying stream.
+     * The underlying stream is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        try {
+            startDocument();
+            while (!openElements.isEmpty()) {
+                closeElement();
+            }
+            writer.writeEndDocument();
+            if (isPrettyPrint) {
+                writer.writeCharacters("\n");
+            }
+            writer.flush();
+            writer.close();
+            writer = null;
+            out.flush();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static UncheckedIOException wrap(XMLStreamException ex) {
+        return new UncheckedIOException(new IOException(ex.getMessage(), ex));
+    }
+
+    private void startDocument() throws XMLStreamException {
+        if (!isDocumentStarted) {
+            isDocumentStarted = true;
+            writer.writeStartDocument("UTF-8", "1.0");
+            if (isPrettyPrint) {
+                writer.writeCharacters("\n");
+            }
+            if (doctype != null) {
+                writer.writeDTD("<!DOCTYPE " + doctype + ">");
+                writer.writeCharacters("\n");
+            }
+        }
+    }
+
+    /**
+     * Writes an element with its descendants to the underlying stream.
+     *
+     * @param depth The number of ancestors of the element.
+     */
+    private void writeElement(ElementNode element, int depth) throws XMLStreamException {
+        if (element.content.isEmpty()) {
+            writer.writeEmptyElement(element.tagName);
+        } else {
+            writer.writeStartElement(element.tagName);
+        }
+        for (int i = 0, n = element.attributes.size(); i < n; i += 2) {
+            writer.writeAttribute(element.attributes.get(i), element.attributes.get(i + 1));
+        }
+        if (!element.content.isEmpty()) {
+            boolean isIndented = !element.hasText;
+            for (Object child : element.content) {
+                if (child instanceof ElementNode) {
+                    if (isIndented) {
+                        indent(depth + 1);
+                    }
+                    writeElement((ElementNode) child, depth + 1);
+                } else if (child instanceof Comment) {
+                    writer.writeComment(((Comment) child).text);
+                } else {
+                    writer.writeCharacters((String) child);
+                }
+            }
+            if (isIndented && element.hasElements) {
+                indent(depth);
+            }
+            writer.writeEndElement();
+        }
+    }
+
+    private void indent(int depth) throws XMLStreamException {
+        if (isPrettyPrint) {
+            char[] chars = new char[depth * 2 + 1];
+            Arrays.fill(chars, ' ');
+            chars[0] = '\n';
+            writer.writeCharacters(chars, 0, chars.length);
+        }
+    }
+
+    private ElementNode getCurrentElement() {
+        if (openElements.isEmpty()) {
+            throw new IllegalStateException("No element is open.");
+        }
+        return openElements.get(openElements.size() - 1);
+    }
+
+    /**
+     * Puts a new element into the document.
+     * The new element is added as a child to the current element.
+     * Then it becomes the current element.
+     * The element must be closed using closeElement.
+     */
+    @Override
+    public void openElement(String tagName) {
+        ElementNode element = new ElementNode(tagName);
+        if (!openElements.isEmpty()) {
+            ElementNode parent = getCurrentElement();
+            parent.hasElements = true;
+            parent.content.add(element);
+        }
+        openElements.add(element);
+    }
+
+    /**
+     * Closes the current element.
+     * The parent of the current element becomes the current element.
+     * If the element is the outermost element, it is written to the
+     * underlying stream.
+     */
+    @Override
+    public void closeElement() {
+        ElementNode element = openElements.remove(openElements.size() - 1);
+        if (openElements.isEmpty()) {
+            try {
+                startDocument();
+                writeElement(element, 0);
+            } catch (XMLStreamException ex) {
+                throw wrap(ex);
+            }
+        }
+    }
+
+    /**
+     * Adds a comment to the current element.
+     */
+    @Override
+    public void addComment(String comment) {
+        if (openElements.isEmpty()) {
+            try {
+                startDocument();
+                writer.writeComment(comment);
+            } catch (XMLStreamException ex) {
+                throw wrap(ex);
+            }
+        } else {
+            getCurrentElement().content.add(new Comment(comment));
+        }
+    }
+
+    /**
+     * Adds a text to current element.
+     */
+    @Override
+    public void addText(String text) {
+        ElementNode element = getCurrentElement();
+        element.hasText = true;
+        element.content.add(text);
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, String value) {
+        if (value != null) {
+            ArrayList<String> attributes = getCurrentElement().attributes;
+            for (int i = 0, n = attributes.size(); i < n; i += 2) {
+                if (attributes.get(i).equals(name)) {
+                    attributes.set(i + 1, value);
+                    return;
+                }
+            }
+            attributes.add(name);
+            attributes.add(value);
+        }
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, int value) {
+        addAttribute(name, Integer.toString(value));
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, boolean value) {
+        addAttribute(name, Boolean.toString(value));
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, float value) {
+        // Remove the awkard .0 at the end of each number
+        String str = Float.toString(value);
+        if (str.endsWith(".0")) {
+            str = str.substring(0, str.length() - 2);
+        }
+        addAttribute(name, str);
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, double value) {
+        // Remove the awkard .0 at the end of each number
+        String str = Double.toString(value);
+        if (str.endsWith(".0")) {
+            str = str.substring(0, str.length() - 2);
+        }
+        addAttribute(name, str);
+    }
+
+    @Override
+    public void writeObject(Object o) throws IOException {
+        String tagName = factory.getName(o);
+        if (tagName == null) {
+            throw new IllegalArgumentException("no tag name for:" + o);
+        }
+        try {
+            openElement(tagName);
+            if (objectids.containsKey(o)) {
+                addAttribute("ref", objectids.get(o));
+            } else {
+                String id = Integer.toString(objectids.size(), 16);
+                objectids.put(o, id);
+                addAttribute("id", id);
+                factory.write(this, o);
+            }
+            closeElement();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, float value, float defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, int value, int defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, double value, double defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, boolean value, boolean defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, String value, String defaultValue) {
+        if (!value.equals(defaultValue)) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public Object getPrototype() {
+        if (prototypes == null) {
+            prototypes = new HashMap<String, Object>();
+        }
+        String tagName = getCurrentElement().tagName;
+        if (!prototypes.containsKey(tagName)) {
+            prototypes.put(tagName, factory.create(tagName));
+        }
+        return prototypes.get(tagName);
+    }
+
+    /**
+     * Sets the doctype of the XML document.
+     * This method must be called before the first element is opened.
+     */
+    @Override
+    public void setDoctype(String doctype) {
+        this.doctype = doctype;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that {@link StreamingDOMInput} reads the same objects as
+ * {@link JavaxDOMInput}.
+ *
+ * @author Werner Randelshofer
+ */
+public class StreamingDOMInputNGTest {
+
+    public StreamingDOMInputNGTest() {
+    }
+
+    public static class Item implements DOMStorable {
+
+        private String name;
+        private String note;
+        private Item partner;
+        private ArrayList<Item> children = new ArrayList<>();
+
+        public Item() {
+        }
+
+        public Item(String name) {
+            this.name = name;
+            this.note = "note of " + name;
+        }
+
+        public List<Item> getChildren() {
+            return children;
+        }
+
+        public void setPartner(Item newValue) {
+            partner = newValue;
+        }
+
+        @Override
+        public void write(DOMOutput out) throws IOException {
+            out.addAttribute("name", name);
+            if (partner != null) {
+                out.openElement("partner");
+                out.writeObject(partner);
+                out.closeElement();
+            }
+            out.openElement("children");
+            for (Item child : children) {
+                out.writeObject(child);
+            }
+            out.closeElement();
+            out.openElement("note");
+            out.addText(note);
+            out.closeElement();
+        }
+
+        @Override
+        public void read(DOMInput in) throws IOException {
+            name = in.getAttribute("name", null);
+            // Read the elements in a different order than they were written
+            in.openElement("children");
+            for (int i = 0; i < in.getElementCount(); i++) {
+                children.add((Item) in.readObject(i));
+            }
+            in.closeElement();
+            in.openElement("note");
+            note = in.getText();
+            in.closeElement();
+            if (in.getElementCount("partner") > 0) {
+                in.openElement("partner");
+                partner = (Item) in.readObject();
+                in.closeElement();
+            }
+        }
+
+        private void describe(StringBuilder buf) {
+            buf.append('(').append(name).append(' ').append(note);
+            if (partner != null) {
+                buf.append(" partner=").append(partner.name);
+            }
+            for (Item child : children) {
+                child.describe(buf);
+            }
+            buf.append(')');
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buf = new StringBuilder();
+            describe(buf);
+            return buf.toString();
+        }
+    }
+
+    private DefaultDOMFactory createFactory() {
+        DefaultDOMFactory factory = new DefaultDOMFactory();
+        factory.addStorableClass("item", Item.class);
+        return factory;
+    }
+
+    private List<Item> createItems() {
+        ArrayList<Item> items = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Item item = new Item("item" + i);
+            for (int j = 0; j < 3; j++) {
+                item.children.add(new Item("child" + i + "." + j));
+            }
+            if (i > 0) {
+                item.partner = items.get(i - 1);
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    private String write(List<Item> items) throws IOException {
+        JavaxDOMOutput out = new JavaxDOMOutput(createFactory());
+        out.openElement("items");
+        for (Item item : items) {
+            out.writeObject(item);
+        }
+        out.closeElement();
+        StringWriter writer = new StringWriter();
+        out.save(writer);
+        return writer.toString();
+    }
+
+    private String read(DOMInput in) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        in.openElement("items");
+        for (int i = 0, n = in.getElementCount(); i < n; i++) {
+            ((Item) in.readObject(i)).describe(buf);
+        }
+        in.closeElement();
+        return buf.toString();
+    }
+
+    @Test
+    public void testReadSameAsJavaxDOMInput() throws IOException {
+        List<Item> items = createItems();
+        String xml = write(items);
+        StringBuilder expected = new StringBuilder();
+        for (Item item : items) {
+            item.describe(expected);
+        }
+        assertEquals(read(new JavaxDOMInput(createFactory(), new StringReader(xml))), expected.toString());
+        try (StreamingDOMInput in = new StreamingDOMInput(createFactory(), new StringReader(xml))) {
+            assertEquals(read(in), expected.toString());
+        }
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        buf.write(xml.getBytes("UTF-8"));
+        try (StreamingDOMInput in = new StreamingDOMInput(createFactory(), new ByteArrayInputStream(buf.toByteArray()))) {
+            assertEquals(read(in), expected.toString());
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testElementCanOnlyBeReadOnce() throws IOException {
+        String xml = write(createItems());
+        try (StreamingDOMInput in = new StreamingDOMInput(createFactory(), new StringReader(xml))) {
+            in.openElement("items");
+            in.readObject(0);
+            in.readObject(0);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.jhotdraw.xml.StreamingDOMInputNGTest.Item;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that the output of {@link StreamingDOMOutput} can be read back.
+ *
+ * @author Werner Randelshofer
+ */
+public class StreamingDOMOutputNGTest {
+
+    public StreamingDOMOutputNGTest() {
+    }
+
+    private DefaultDOMFactory createFactory() {
+        DefaultDOMFactory factory = new DefaultDOMFactory();
+        factory.addStorableClass("item", Item.class);
+        return factory;
+    }
+
+    private List<Item> createItems() {
+        ArrayList<Item> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Item item = new Item("item<" + i + ">");
+            item.getChildren().add(new Item("child & " + i));
+            if (i > 0) {
+                item.setPartner(items.get(i - 1));
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    private String read(DOMInput in) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        in.openElement("items");
+        for (int i = 0, n = in.getElementCount(); i < n; i++) {
+            buf.append(((Item) in.readObject(i)).toString());
+        }
+        in.closeElement();
+        return buf.toString();
+    }
+
+    @Test
+    public void testReadBack() throws IOException {
+        List<Item> items = createItems();
+        StringBuilder expected = new StringBuilder();
+        for (Item item : items) {
+            expected.append(item.toString());
+        }
+        for (boolean isPrettyPrint : new boolean[]{false, true}) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            try (StreamingDOMOutput out = new StreamingDOMOutput(createFactory(), buf, isPrettyPrint)) {
+                out.openElement("items");
+                for (Item item : items) {
+                    out.writeObject(item);
+                }
+                out.closeElement();
+            }
+            assertEquals(read(new JavaxDOMInput(createFactory(), new ByteArrayInputStream(buf.toByteArray()))), expected.toString());
+            try (StreamingDOMInput in = new StreamingDOMInput(createFactory(), new StringReader(buf.toString("UTF-8")))) {
+                assertEquals(read(in), expected.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testAttributeAfterContent() throws IOException {
+        StringWriter buf = new StringWriter();
+        try (StreamingDOMOutput out = new StreamingDOMOutput(createFactory(), buf)) {
+            out.openElement("items");
+            out.openElement("item");
+            out.addText("text");
+            out.addAttribute("name", "text");
+            out.closeElement();
+            out.openElement("item");
+            out.closeElement();
+            out.addAttribute("name", "items");
+            out.closeElement();
+        }
+        assertTrue(buf.toString().endsWith("<items name=\"items\"><item name=\"text\">text</item><item/></items>"),
+                buf.toString());
+    }
+}